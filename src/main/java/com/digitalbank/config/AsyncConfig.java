@@ -1,8 +1,113 @@
 package com.digitalbank.config;
 
+import com.digitalbank.entity.enums.RejectionPolicyEnum;
+import com.digitalbank.properties.ExecutorProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.aop.interceptor.AsyncUncaughtExceptionHandler;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.AsyncConfigurer;
 import org.springframework.scheduling.annotation.EnableAsync;
 
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded executors for the {@code @Async} work, one bulkhead per kind of work. SMTP delivery runs on the
+ * connections of the SmtpDeliveryEngine instead, so it cannot take the threads that store notifications.
+ * Each executor has a fixed number of threads, platform or virtual, a bounded queue and an explicit policy
+ * for tasks arriving when the queue is full.
+ */
 @Configuration
 @EnableAsync
-public class AsyncConfig { }
+@Slf4j
+public class AsyncConfig implements AsyncConfigurer {
+    public static final String NOTIFICATION_EXECUTOR = "notificationTaskExecutor";
+
+    private static final long KEEP_ALIVE_SECONDS = 60;
+
+    @Value("${app.executor.virtual-threads}")
+    private boolean virtualThreads;
+
+    @Value("${app.executor.notification.pool-size}")
+    private int notificationPoolSize;
+
+    @Value("${app.executor.notification.queue-capacity}")
+    private int notificationQueueCapacity;
+
+    @Value("${app.executor.notification.rejection-policy}")
+    private RejectionPolicyEnum notificationRejectionPolicy;
+
+    @Bean
+    public ExecutorProperties executorProperties() {
+        return ExecutorProperties.builder()
+                .virtualThreads(virtualThreads)
+                .notificationPoolSize(notificationPoolSize)
+                .notificationQueueCapacity(notificationQueueCapacity)
+                .notificationRejectionPolicy(notificationRejectionPolicy)
+                .build();
+    }
+
+    /**
+     * Stores notifications and hands their emails to the SMTP delivery engine
+     */
+    @Bean(name = NOTIFICATION_EXECUTOR)
+    public ThreadPoolExecutor notificationTaskExecutor(ExecutorProperties executorProperties, MeterRegistry meterRegistry) {
+        return boundedExecutor("notification", executorProperties.getNotificationPoolSize(),
+                executorProperties.getNotificationQueueCapacity(), executorProperties.getNotificationRejectionPolicy(),
+                executorProperties.isVirtualThreads(), meterRegistry);
+    }
+
+    @Override
+    public AsyncUncaughtExceptionHandler getAsyncUncaughtExceptionHandler() {
+        return (e, method, params) -> log.error("Unexpected error in async method {}", method.getName(), e);
+    }
+
+    //region Helpers
+    private static ThreadPoolExecutor boundedExecutor(String name, int poolSize, int queueCapacity,
+                                                      RejectionPolicyEnum rejectionPolicy, boolean virtualThreads,
+                                                      MeterRegistry meterRegistry) {
+        ThreadFactory threadFactory = virtualThreads
+                ? Thread.ofVirtual().name(name + "-", 0).factory()
+                : Thread.ofPlatform().name(name + "-", 0).factory();
+
+        Counter rejections = Counter.builder("executor.rejected")
+                .description("Tasks that found the executor queue full")
+                .tags("name", name, "policy", rejectionPolicy.name())
+                .register(meterRegistry);
+
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(poolSize, poolSize, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), threadFactory, rejectionHandler(name, rejectionPolicy, rejections));
+        executor.allowCoreThreadTimeOut(true);
+
+        // Queue size, active count, pool size and completed tasks as executor.* meters tagged with the name
+        new ExecutorServiceMetrics(executor, name, Tags.empty()).bindTo(meterRegistry);
+
+        return executor;
+    }
+
+    private static RejectedExecutionHandler rejectionHandler(String name, RejectionPolicyEnum rejectionPolicy, Counter rejections) {
+        return switch (rejectionPolicy) {
+            // Backpressure: the submitting thread runs the task itself and slows down
+            case CALLER_RUNS -> (task, executor) -> {
+                rejections.increment();
+                if (!executor.isShutdown()) {
+                    task.run();
+                }
+            };
+            case DISCARD -> (task, executor) -> {
+                rejections.increment();
+                log.warn("Executor {} is full, discarding task", name);
+            };
+        };
+    }
+    //endregion
+}
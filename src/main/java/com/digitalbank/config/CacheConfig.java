@@ -0,0 +1,27 @@
+package com.digitalbank.config;
+
+import com.digitalbank.properties.CacheProperties;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class CacheConfig {
+    @Value("${app.cache.enabled}")
+    private boolean enabled;
+
+    @Value("${app.cache.customer.size}")
+    private int customerSize;
+
+    @Value("${app.cache.customer.ttl}")
+    private long customerTtlMs;
+
+    @Bean
+    public CacheProperties cacheProperties() {
+        return CacheProperties.builder()
+                .enabled(enabled)
+                .customerSize(customerSize)
+                .customerTtlMs(customerTtlMs)
+                .build();
+    }
+}
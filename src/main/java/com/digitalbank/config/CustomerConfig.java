@@ -0,0 +1,59 @@
+package com.digitalbank.config;
+
+import com.digitalbank.properties.CustomerProperties;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class CustomerConfig {
+    @Value("${app.customer.bloom.enabled}")
+    private boolean bloomEnabled;
+
+    @Value("${app.customer.bloom.expected-insertions}")
+    private long bloomExpectedInsertions;
+
+    @Value("${app.customer.bloom.false-positive-rate}")
+    private double bloomFalsePositiveRate;
+
+    @Value("${app.customer.bloom.rebuild-interval}")
+    private long bloomRebuildIntervalMs;
+
+    @Value("${app.customer.import.chunk-size}")
+    private int importChunkSize;
+
+    @Value("${app.customer.page.size}")
+    private int pageSize;
+
+    @Value("${app.customer.page.max-size}")
+    private int maxPageSize;
+
+    @Value("${app.customer.export.batch-size}")
+    private int exportBatchSize;
+
+    @Value("${app.customer.summary.rebuild-on-startup}")
+    private boolean summaryRebuildOnStartup;
+
+    @Value("${app.customer.summary.rebuild-chunk-size}")
+    private int summaryRebuildChunkSize;
+
+    @Value("${app.customer.summary.rebuild-parallelism}")
+    private int summaryRebuildParallelism;
+
+    @Bean
+    public CustomerProperties customerProperties() {
+        return CustomerProperties.builder()
+                .bloomEnabled(bloomEnabled)
+                .bloomExpectedInsertions(bloomExpectedInsertions)
+                .bloomFalsePositiveRate(bloomFalsePositiveRate)
+                .bloomRebuildIntervalMs(bloomRebuildIntervalMs)
+                .importChunkSize(importChunkSize)
+                .pageSize(pageSize)
+                .maxPageSize(maxPageSize)
+                .exportBatchSize(exportBatchSize)
+                .summaryRebuildOnStartup(summaryRebuildOnStartup)
+                .summaryRebuildChunkSize(summaryRebuildChunkSize)
+                .summaryRebuildParallelism(summaryRebuildParallelism)
+                .build();
+    }
+}
@@ -1,16 +1,30 @@
 package com.digitalbank.config;
 
 import com.digitalbank.properties.EmailProperties;
+import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.JavaMailSenderImpl;
 
 import java.util.Properties;
 
 @Configuration
 public class EmailConfig {
+    private static final String SOCKET_TIMEOUT_MS = "10000";
+
+    @Value("${spring.mail.host}")
+    private String host;
+
+    @Value("${spring.mail.port}")
+    private int port;
+
+    @Value("${spring.mail.username:}")
+    private String username;
+
+    @Value("${spring.mail.password:}")
+    private String password;
+
     @Value("${app.email.from}")
     private String fromEmail;
 
@@ -23,17 +37,47 @@ public class EmailConfig {
     @Value("${app.email.company.name}")
     private String companyName;
 
+    @Value("${app.email.templates.base-path}")
+    private String templatesBasePath;
+
+    @Value("${app.email.smtp.connections}")
+    private int smtpConnections;
+
+    @Value("${app.email.smtp.batch-size}")
+    private int smtpBatchSize;
+
+    @Value("${app.email.smtp.queue-capacity}")
+    private int smtpQueueCapacity;
+
+    @Value("${app.email.smtp.submit-timeout}")
+    private long smtpSubmitTimeoutMs;
+
+    @Value("${app.email.smtp.max-messages-per-connection}")
+    private int smtpMaxMessagesPerConnection;
+
+    @Value("${app.email.smtp.idle-timeout}")
+    private long smtpIdleTimeoutMs;
+
+    /**
+     * Holds the SMTP session settings; messages are delivered by the SmtpDeliveryEngine over its own connections
+     */
     @Bean
-    public JavaMailSender javaMailSender() {
+    public JavaMailSenderImpl javaMailSender() {
         JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
-        mailSender.setHost("localhost");
-        mailSender.setPort(1025);
+        mailSender.setHost(host);
+        mailSender.setPort(port);
+        mailSender.setUsername(StringUtils.trimToNull(username));
+        mailSender.setPassword(StringUtils.trimToNull(password));
 
         Properties props = mailSender.getJavaMailProperties();
         props.put("mail.transport.protocol", "smtp");
         props.put("mail.smtp.auth", "false");
         props.put("mail.smtp.starttls.enable", "false");
-        props.put("mail.debug", "true");
+        props.put("mail.smtp.connectiontimeout", SOCKET_TIMEOUT_MS);
+        props.put("mail.smtp.timeout", SOCKET_TIMEOUT_MS);
+        props.put("mail.smtp.writetimeout", SOCKET_TIMEOUT_MS);
+        // Message-IDs are built from this address, otherwise every message looks up the local host name
+        props.put("mail.from", fromEmail);
 
         return mailSender;
     }
@@ -45,6 +89,13 @@ public class EmailConfig {
                 .fromName(fromName)
                 .supportEmail(supportEmail)
                 .companyName(companyName)
+                .templatesBasePath(templatesBasePath)
+                .smtpConnections(smtpConnections)
+                .smtpBatchSize(smtpBatchSize)
+                .smtpQueueCapacity(smtpQueueCapacity)
+                .smtpSubmitTimeoutMs(smtpSubmitTimeoutMs)
+                .smtpMaxMessagesPerConnection(smtpMaxMessagesPerConnection)
+                .smtpIdleTimeoutMs(smtpIdleTimeoutMs)
                 .build();
     }
 }
@@ -0,0 +1,35 @@
+package com.digitalbank.config;
+
+import com.digitalbank.properties.IdempotencyProperties;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class IdempotencyConfig {
+    @Value("${app.idempotency.cache.size}")
+    private int cacheSize;
+
+    @Value("${app.idempotency.cache.ttl}")
+    private long cacheTtlMs;
+
+    @Value("${app.idempotency.retention}")
+    private long retentionMs;
+
+    @Value("${app.idempotency.wait-timeout}")
+    private long waitTimeoutMs;
+
+    @Value("${app.idempotency.lease}")
+    private long leaseMs;
+
+    @Bean
+    public IdempotencyProperties idempotencyProperties() {
+        return IdempotencyProperties.builder()
+                .cacheSize(cacheSize)
+                .cacheTtlMs(cacheTtlMs)
+                .retentionMs(retentionMs)
+                .waitTimeoutMs(waitTimeoutMs)
+                .leaseMs(leaseMs)
+                .build();
+    }
+}
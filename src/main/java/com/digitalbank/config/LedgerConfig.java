@@ -0,0 +1,51 @@
+package com.digitalbank.config;
+
+import com.digitalbank.properties.LedgerProperties;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class LedgerConfig {
+    @Value("${app.ledger.enabled}")
+    private boolean enabled;
+
+    @Value("${app.ledger.shards}")
+    private int shards;
+
+    @Value("${app.ledger.ring-buffer-size}")
+    private int ringBufferSize;
+
+    @Value("${app.ledger.submit-timeout}")
+    private long submitTimeoutMs;
+
+    @Value("${app.ledger.flush.batch-size}")
+    private int flushBatchSize;
+
+    @Value("${app.ledger.flush.interval}")
+    private long flushIntervalMs;
+
+    @Value("${app.ledger.journal.enabled}")
+    private boolean journalEnabled;
+
+    @Value("${app.ledger.journal.directory}")
+    private String journalDirectory;
+
+    @Value("${app.ledger.journal.segment-size}")
+    private int journalSegmentSize;
+
+    @Bean
+    public LedgerProperties ledgerProperties() {
+        return LedgerProperties.builder()
+                .enabled(enabled)
+                .shards(shards)
+                .ringBufferSize(ringBufferSize)
+                .submitTimeoutMs(submitTimeoutMs)
+                .flushBatchSize(flushBatchSize)
+                .flushIntervalMs(flushIntervalMs)
+                .journalEnabled(journalEnabled)
+                .journalDirectory(journalDirectory)
+                .journalSegmentSize(journalSegmentSize)
+                .build();
+    }
+}
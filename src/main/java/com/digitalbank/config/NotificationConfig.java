@@ -0,0 +1,55 @@
+package com.digitalbank.config;
+
+import com.digitalbank.properties.NotificationProperties;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class NotificationConfig {
+    @Value("${app.notification.outbox.batch-size}")
+    private int outboxBatchSize;
+
+    @Value("${app.notification.outbox.poll-interval}")
+    private long outboxPollIntervalMs;
+
+    @Value("${app.notification.outbox.lease}")
+    private long outboxLeaseMs;
+
+    @Value("${app.notification.digest.window}")
+    private long digestWindowMs;
+
+    @Value("${app.email.notification.email.retry.max-attempts}")
+    private int emailMaxAttempts;
+
+    @Value("${app.email.notification.email.retry.delay}")
+    private long emailRetryDelayMs;
+
+    @Value("${app.email.notification.email.retry.multiplier}")
+    private double emailRetryMultiplier;
+
+    @Value("${app.email.notification.email.retry.batch-size}")
+    private int emailRetryBatchSize;
+
+    @Value("${app.email.notification.email.retry.poll-interval}")
+    private long emailRetryPollIntervalMs;
+
+    @Value("${app.email.notification.email.retry.lease}")
+    private long emailRetryLeaseMs;
+
+    @Bean
+    public NotificationProperties notificationProperties() {
+        return NotificationProperties.builder()
+                .outboxBatchSize(outboxBatchSize)
+                .outboxPollIntervalMs(outboxPollIntervalMs)
+                .outboxLeaseMs(outboxLeaseMs)
+                .digestWindowMs(digestWindowMs)
+                .emailMaxAttempts(emailMaxAttempts)
+                .emailRetryDelayMs(emailRetryDelayMs)
+                .emailRetryMultiplier(emailRetryMultiplier)
+                .emailRetryBatchSize(emailRetryBatchSize)
+                .emailRetryPollIntervalMs(emailRetryPollIntervalMs)
+                .emailRetryLeaseMs(emailRetryLeaseMs)
+                .build();
+    }
+}
@@ -0,0 +1,80 @@
+package com.digitalbank.config;
+
+import com.digitalbank.entity.enums.TransferModeEnum;
+import com.digitalbank.properties.TransactionProperties;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class TransactionConfig {
+    @Value("${app.transaction.timeout}")
+    private int timeoutSeconds;
+
+    @Value("${app.transaction.mode}")
+    private TransferModeEnum mode;
+
+    @Value("${app.transaction.lock.max-attempts}")
+    private int lockMaxAttempts;
+
+    @Value("${app.transaction.lock.initial-backoff}")
+    private long lockInitialBackoffMs;
+
+    @Value("${app.transaction.lock.max-backoff}")
+    private long lockMaxBackoffMs;
+
+    @Value("${app.transaction.optimistic.max-attempts}")
+    private int optimisticMaxAttempts;
+
+    @Value("${app.transaction.optimistic.contended-account-cooldown}")
+    private long contendedAccountCooldownMs;
+
+    @Value("${app.transaction.async.queue-capacity}")
+    private int asyncQueueCapacity;
+
+    @Value("${app.transaction.async.workers}")
+    private int asyncWorkers;
+
+    @Value("${app.transaction.async.batch-size}")
+    private int asyncBatchSize;
+
+    @Value("${app.transaction.async.max-wait}")
+    private long asyncMaxWaitMs;
+
+    @Value("${app.transaction.async.retention}")
+    private long asyncRetentionMs;
+
+    @Value("${app.transaction.history.page-size}")
+    private int historyPageSize;
+
+    @Value("${app.transaction.history.max-page-size}")
+    private int historyMaxPageSize;
+
+    @Value("${app.transaction.statement.fetch-size}")
+    private int statementFetchSize;
+
+    @Value("${app.transaction.statement.flush-rows}")
+    private int statementFlushRows;
+
+    @Bean
+    public TransactionProperties transactionProperties() {
+        return TransactionProperties.builder()
+                .timeoutSeconds(timeoutSeconds)
+                .mode(mode)
+                .lockMaxAttempts(lockMaxAttempts)
+                .lockInitialBackoffMs(lockInitialBackoffMs)
+                .lockMaxBackoffMs(lockMaxBackoffMs)
+                .optimisticMaxAttempts(optimisticMaxAttempts)
+                .contendedAccountCooldownMs(contendedAccountCooldownMs)
+                .asyncQueueCapacity(asyncQueueCapacity)
+                .asyncWorkers(asyncWorkers)
+                .asyncBatchSize(asyncBatchSize)
+                .asyncMaxWaitMs(asyncMaxWaitMs)
+                .asyncRetentionMs(asyncRetentionMs)
+                .historyPageSize(historyPageSize)
+                .historyMaxPageSize(historyMaxPageSize)
+                .statementFetchSize(statementFetchSize)
+                .statementFlushRows(statementFlushRows)
+                .build();
+    }
+}
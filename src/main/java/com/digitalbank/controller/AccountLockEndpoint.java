@@ -0,0 +1,31 @@
+package com.digitalbank.controller;
+
+import com.digitalbank.dto.AccountLockStatsDTO;
+import com.digitalbank.service.AccountLockMetrics;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Actuator endpoint exposing lock contention per account at /actuator/accountlocks
+ */
+@Component
+@Endpoint(id = "accountlocks")
+@RequiredArgsConstructor
+public class AccountLockEndpoint {
+    private final AccountLockMetrics accountLockMetrics;
+
+    @ReadOperation
+    public List<AccountLockStatsDTO> accountLocks() {
+        return accountLockMetrics.snapshot();
+    }
+
+    @ReadOperation
+    public AccountLockStatsDTO accountLock(@Selector Long accountId) {
+        return accountLockMetrics.snapshot(accountId);
+    }
+}
@@ -1,7 +1,10 @@
 package com.digitalbank.controller;
 
+import com.digitalbank.dto.BankTransactionBatchRequestDTO;
+import com.digitalbank.dto.BankTransactionBatchResponseDTO;
 import com.digitalbank.dto.BankTransactionRequestDTO;
 import com.digitalbank.dto.BankTransactionResponseDTO;
+import com.digitalbank.service.AsyncTransferService;
 import com.digitalbank.service.BankTransactionService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -11,24 +14,44 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.concurrent.CompletableFuture;
+
 @RestController
 @RequestMapping("/api/v1/bank-transaction")
 @RequiredArgsConstructor
 @Tag(name = "Bank Transaction", description = "API to handle Bank Transactions")
 public class BankTransactionController {
     private final BankTransactionService bankTransactionService;
+    private final AsyncTransferService asyncTransferService;
 
     @PostMapping("/transfer")
     @Operation(summary = "Do a transfer transaction between customers")
-    public ResponseEntity<BankTransactionResponseDTO> transfer(@Valid @RequestBody BankTransactionRequestDTO request) {
-        BankTransactionResponseDTO response = bankTransactionService.process(request);
+    public ResponseEntity<BankTransactionResponseDTO> transfer(
+            @Valid @RequestBody BankTransactionRequestDTO request,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        BankTransactionResponseDTO response = bankTransactionService.process(request, idempotencyKey);
         return ResponseEntity.status(HttpStatus.CREATED).body(response);
     }
 
-    @GetMapping("/{id}")
-    @Operation(summary = "Find bank transaction by ID")
-    public ResponseEntity<BankTransactionResponseDTO> findBankTransaction(@PathVariable Long id) {
-        BankTransactionResponseDTO response = bankTransactionService.findBankTransactionById(id);
+    @PostMapping("/transfer/async")
+    @Operation(summary = "Accept a transfer to be processed in the background, returning it in PENDING state")
+    public ResponseEntity<BankTransactionResponseDTO> transferAsync(@Valid @RequestBody BankTransactionRequestDTO request) {
+        BankTransactionResponseDTO response = asyncTransferService.submit(request);
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+    }
+
+    @PostMapping("/transfer/batch")
+    @Operation(summary = "Do an ordered batch of transfer transactions, reporting the result of each one")
+    public ResponseEntity<BankTransactionBatchResponseDTO> transferBatch(@Valid @RequestBody BankTransactionBatchRequestDTO request) {
+        BankTransactionBatchResponseDTO response = bankTransactionService.processBatch(request.getTransactions());
         return ResponseEntity.ok(response);
     }
+
+    @GetMapping("/{id}")
+    @Operation(summary = "Find bank transaction by ID, waiting up to wait milliseconds for a pending one to finish")
+    public CompletableFuture<ResponseEntity<BankTransactionResponseDTO>> findBankTransaction(
+            @PathVariable Long id,
+            @RequestParam(defaultValue = "0") long wait) {
+        return asyncTransferService.findStatus(id, wait).thenApply(ResponseEntity::ok);
+    }
 }
@@ -1,24 +1,52 @@
 package com.digitalbank.controller;
 
+import com.digitalbank.dto.BankTransactionHistoryDTO;
 import com.digitalbank.dto.CustomerDTO;
+import com.digitalbank.dto.CustomerPageDTO;
+import com.digitalbank.dto.CustomerSummaryDTO;
 import com.digitalbank.entity.Customer;
+import com.digitalbank.entity.enums.FileFormatEnum;
+import com.digitalbank.service.BankTransactionHistoryService;
+import com.digitalbank.service.CustomerImportService;
 import com.digitalbank.service.CustomerService;
+import com.digitalbank.service.CustomerSummaryService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.util.List;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
 @RequestMapping("/api/v1/customer")
 @RequiredArgsConstructor
 @Tag(name = "Customer", description = "API to handle Customers")
 public class CustomerController {
+    private static final String TEXT_CSV_VALUE = "text/csv";
+    private static final int GZIP_BUFFER_SIZE = 8192;
+
     private final CustomerService customerService;
+    private final CustomerImportService customerImportService;
+    private final CustomerSummaryService customerSummaryService;
+    private final BankTransactionHistoryService bankTransactionHistoryService;
+    private final ObjectMapper objectMapper;
 
     @PostMapping
     @Operation(summary = "Create new Customer")
@@ -27,6 +55,23 @@ public class CustomerController {
         return ResponseEntity.status(HttpStatus.CREATED).body(customer);
     }
 
+    /**
+     * Streams the upload through the import and writes one NDJSON result per row back, flushed after every
+     * chunk, so neither the file nor the report is held in memory
+     */
+    @PostMapping(value = "/import", consumes = {TEXT_CSV_VALUE, MediaType.APPLICATION_NDJSON_VALUE},
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(summary = "Import Customers from a CSV or NDJSON file, reporting the result of each row")
+    public void importCustomers(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        FileFormatEnum format = MediaType.APPLICATION_NDJSON.isCompatibleWith(MediaType.parseMediaType(request.getContentType()))
+                ? FileFormatEnum.NDJSON
+                : FileFormatEnum.CSV;
+
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        ServletOutputStream output = response.getOutputStream();
+        customerImportService.importCustomers(request.getInputStream(), format, results -> writeLines(output, results));
+    }
+
     @GetMapping("/{id}")
     @Operation(summary = "Find Customer by ID")
     public ResponseEntity<Customer> findCustomer(@PathVariable Long id) {
@@ -35,10 +80,86 @@ public class CustomerController {
     }
 
     @GetMapping
-    @Operation(summary = "List all Customers")
-    public ResponseEntity<List<Customer>> listCustomers() {
-        List<Customer> clientes = customerService.listAllCustomers();
-        return ResponseEntity.ok(clientes);
+    @Operation(summary = "List Customers in id order, one page after the cursor at a time")
+    public ResponseEntity<CustomerPageDTO> listCustomers(@RequestParam(required = false) Long after,
+                                                         @RequestParam(required = false) Integer size) {
+        CustomerPageDTO page = customerService.listCustomers(after, size);
+        return ResponseEntity.ok(page);
+    }
+
+    /**
+     * Streams every customer as one NDJSON line, flushed after every batch read from the database
+     */
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(summary = "Export all Customers as NDJSON")
+    public void exportCustomers(HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        ServletOutputStream output = response.getOutputStream();
+        customerService.streamAllCustomers(customers -> writeLines(output, customers));
+    }
+
+    @GetMapping("/{id}/transactions")
+    @Operation(summary = "List the transactions sent and received by a Customer, newest first, one page after the cursor at a time")
+    public ResponseEntity<BankTransactionHistoryDTO> findTransactionHistory(@PathVariable Long id,
+                                                                            @RequestParam(required = false) String cursor,
+                                                                            @RequestParam(required = false) Integer size) {
+        BankTransactionHistoryDTO history = bankTransactionHistoryService.findHistory(id, cursor, size);
+        return ResponseEntity.ok(history);
+    }
+
+    /**
+     * Streams the statement of the period as it is read from the database, gzip compressed on the way out
+     * when the client accepts it. Errors are only answered as JSON before the first row is written.
+     */
+    @GetMapping("/{id}/statement")
+    @Operation(summary = "Export the transactions of a Customer in a period as CSV or NDJSON")
+    public void exportStatement(@PathVariable Long id,
+                                @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+                                @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+                                @RequestParam(defaultValue = "CSV") FileFormatEnum format,
+                                @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+                                HttpServletResponse response) throws IOException {
+        Instant end = to != null ? to : Instant.now();
+        bankTransactionHistoryService.checkStatement(id, from, end);
+
+        String extension = format == FileFormatEnum.NDJSON ? "ndjson" : "csv";
+        response.setContentType(format == FileFormatEnum.NDJSON ? MediaType.APPLICATION_NDJSON_VALUE : TEXT_CSV_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                .filename("statement-" + id + "." + extension)
+                .build()
+                .toString());
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+
+        if (acceptEncoding == null || !acceptEncoding.toLowerCase(Locale.ROOT).contains("gzip")) {
+            bankTransactionHistoryService.exportStatement(id, from, end, format, response.getOutputStream());
+            return;
+        }
+
+        response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        // Sync flush, so every periodic flush of the export reaches the client instead of waiting in the deflater
+        GZIPOutputStream output = new GZIPOutputStream(response.getOutputStream(), GZIP_BUFFER_SIZE, true);
+        bankTransactionHistoryService.exportStatement(id, from, end, format, output);
+        output.finish();
+    }
+
+    @GetMapping("/{id}/summary")
+    @Operation(summary = "Find the transaction and notification totals of a Customer")
+    public ResponseEntity<CustomerSummaryDTO> findCustomerSummary(@PathVariable Long id) {
+        return ResponseEntity.ok(customerSummaryService.findSummary(id));
+    }
+
+    @PostMapping("/summary/rebuild")
+    @Operation(summary = "Recompute the totals of every Customer, returning how many were rebuilt")
+    public ResponseEntity<Long> rebuildCustomerSummaries() {
+        return ResponseEntity.ok(customerSummaryService.rebuild());
+    }
+
+    @PutMapping("/{id}/hot")
+    @Operation(summary = "Split the balance of a Customer receiving many transfers into stripes")
+    public ResponseEntity<Customer> markHot(@PathVariable Long id, @RequestParam(defaultValue = "8") int stripes) {
+        Customer customer = customerService.markHot(id, stripes);
+        return ResponseEntity.ok(customer);
     }
 
     @DeleteMapping("/{id}")
@@ -47,4 +168,18 @@ public class CustomerController {
         customerService.deleteCustomer(id);
         return ResponseEntity.noContent().build();
     }
+
+    //region Helpers
+    private void writeLines(ServletOutputStream output, List<?> values) {
+        try {
+            for (Object value : values) {
+                output.write(objectMapper.writeValueAsBytes(value));
+                output.write('\n');
+            }
+            output.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    //endregion
 }
@@ -0,0 +1,20 @@
+package com.digitalbank.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AccountLockStatsDTO {
+    private Long accountId;
+    private long acquisitions;
+    private double totalWaitMs;
+    private double maxWaitMs;
+    private long timeouts;
+    private long deadlocks;
+    private long retries;
+}
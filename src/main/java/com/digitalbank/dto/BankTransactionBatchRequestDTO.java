@@ -0,0 +1,23 @@
+package com.digitalbank.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BankTransactionBatchRequestDTO {
+
+    @NotEmpty(message = "Batch must contain at least one transaction")
+    @Size(max = 10000, message = "Batch cannot exceed 10000 transactions")
+    private List<@Valid BankTransactionRequestDTO> transactions;
+
+}
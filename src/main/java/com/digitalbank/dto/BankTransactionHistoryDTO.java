@@ -0,0 +1,22 @@
+package com.digitalbank.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * A page of the transaction history of a customer, newest first. nextCursor is the cursor parameter
+ * of the following page, null on the last one.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BankTransactionHistoryDTO {
+    private Long customerId;
+    private List<BankTransactionHistoryEntryDTO> transactions;
+    private String nextCursor;
+}
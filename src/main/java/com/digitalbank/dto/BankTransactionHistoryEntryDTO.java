@@ -0,0 +1,28 @@
+package com.digitalbank.dto;
+
+import com.digitalbank.entity.enums.BankTransactionStatusEnum;
+import com.digitalbank.entity.enums.TransactionDirectionEnum;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * A bank transaction as seen from one customer: a DEBIT they sent or a CREDIT they received,
+ * with the customer on the other side
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BankTransactionHistoryEntryDTO {
+    private Long id;
+    private Instant transactionDate;
+    private TransactionDirectionEnum direction;
+    private Long counterpartyId;
+    private BigDecimal amount;
+    private BankTransactionStatusEnum status;
+}
@@ -1,7 +1,9 @@
 package com.digitalbank.dto;
 
+import com.digitalbank.entity.BankTransaction;
 import jakarta.validation.constraints.DecimalMin;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -25,6 +27,7 @@ public class BankTransactionRequestDTO {
     @DecimalMin(value = "0.01", message = "Amount must be higher than 0")
     private BigDecimal amount;
 
+    @Size(max = BankTransaction.MAX_DESCRIPTION_LENGTH, message = "Description cannot exceed 255 characters")
     private String description;
 
 }
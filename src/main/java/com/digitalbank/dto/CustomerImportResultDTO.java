@@ -0,0 +1,23 @@
+package com.digitalbank.dto;
+
+import com.digitalbank.entity.enums.CustomerImportStatusEnum;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Outcome of one row of a customer import, identified by its line in the uploaded file
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class CustomerImportResultDTO {
+    private long row;
+    private CustomerImportStatusEnum status;
+    private Long id;
+    private String message;
+}
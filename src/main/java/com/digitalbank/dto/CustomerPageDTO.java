@@ -0,0 +1,22 @@
+package com.digitalbank.dto;
+
+import com.digitalbank.entity.Customer;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * A keyset page of customers in id order. nextCursor is the after parameter of the following page,
+ * null on the last one.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CustomerPageDTO {
+    private List<Customer> customers;
+    private Long nextCursor;
+}
@@ -0,0 +1,30 @@
+package com.digitalbank.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * Activity totals of a customer: transactions sent and received whatever their status, the amounts of the
+ * COMPLETED ones and the notifications stored for them. updatedAt is when the totals last changed or were
+ * rebuilt, null for a customer they were never kept for.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CustomerSummaryDTO {
+    private Long customerId;
+    private String name;
+    private String email;
+    private long totalOutgoingTransactions;
+    private long totalIncomingTransactions;
+    private BigDecimal totalOutgoingAmount;
+    private BigDecimal totalIncomingAmount;
+    private long totalNotifications;
+    private Instant updatedAt;
+}
@@ -20,4 +20,5 @@ public class EmailDTO {
     private Map<String, Object> variables;
     private boolean async;
     private boolean success;
+    private String error;
 }
@@ -17,9 +17,14 @@ import java.time.Instant;
 @NoArgsConstructor
 @AllArgsConstructor
 public class BankTransaction {
+    /**
+     * Length of the description column, also well under the description bytes a journal record holds
+     */
+    public static final int MAX_DESCRIPTION_LENGTH = 255;
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "transaction_seq")
+    @SequenceGenerator(name = "transaction_seq", sequenceName = "transaction_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -42,9 +47,12 @@ public class BankTransaction {
     @Column(name = "error_message")
     private String errorMessage;
 
-    @Column(name = "description")
+    @Column(name = "description", length = MAX_DESCRIPTION_LENGTH)
     private String description;
 
+    @Version
+    private Integer version;
+
     @PrePersist
     protected void onCreate() {
         transactionDate = Instant.now();
@@ -1,6 +1,8 @@
 package com.digitalbank.entity;
 
 import com.digitalbank.util.CpfUtil;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -13,13 +15,14 @@ import java.time.Instant;
 @Entity
 @Table(name = "CUSTOMER")
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 public class Customer {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "customer_seq")
+    @SequenceGenerator(name = "customer_seq", sequenceName = "customer_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false)
@@ -40,6 +43,31 @@ public class Customer {
     @Column(name = "updated_at")
     private Instant updatedAt;
 
+    @Version
+    @JsonIgnore
+    private Integer version;
+
+    /**
+     * Number of striped sub-balances; zero for regular accounts.
+     * The balance of a hot account is the sum of this row and its stripes.
+     */
+    @Column(name = "balance_stripes")
+    @JsonIgnore
+    private Integer balanceStripes;
+
+    /**
+     * Set when the ledger could not answer and the balance is the stored one, which may lag behind
+     * transfers not persisted yet.
+     */
+    @Transient
+    @JsonInclude(JsonInclude.Include.NON_DEFAULT)
+    private boolean balanceStale;
+
+    @JsonIgnore
+    public boolean isHot() {
+        return balanceStripes != null && balanceStripes > 0;
+    }
+
     @PrePersist
     @PreUpdate
     protected void preValidations() {
@@ -55,5 +83,9 @@ public class Customer {
         if (balance == null) {
             balance = BigDecimal.ZERO;
         }
+
+        if (balanceStripes == null) {
+            balanceStripes = 0;
+        }
     }
 }
@@ -1,5 +1,6 @@
 package com.digitalbank.entity;
 
+import com.digitalbank.entity.enums.NotificationDeliveryStatusEnum;
 import com.digitalbank.entity.enums.NotificationStatusEnum;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
@@ -7,6 +8,7 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.math.BigDecimal;
 import java.time.Instant;
 
 @Entity
@@ -18,7 +20,8 @@ import java.time.Instant;
 public class Notification {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "notification_seq")
+    @SequenceGenerator(name = "notification_seq", sequenceName = "notification_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -42,9 +45,45 @@ public class Notification {
     @Column(name = "is_sent")
     private boolean isSent;
 
+    @Enumerated(EnumType.STRING)
+    @Column(name = "delivery_status")
+    private NotificationDeliveryStatusEnum deliveryStatus;
+
+    @Column(name = "delivery_attempts")
+    private int deliveryAttempts;
+
+    /**
+     * When a pending email is attempted again, null once it is sent or dead lettered
+     */
+    @Column(name = "next_attempt_at")
+    private Instant nextAttemptAt;
+
+    @Column(name = "last_error")
+    private String lastError;
+
+    /**
+     * Transfers summed up by a digest, 1 for a notification of a single transaction
+     */
+    @Column(name = "transfer_count")
+    private int transferCount;
+
+    /**
+     * Total received by a digest, null when the amount is the one of the transaction
+     */
+    @Column(name = "amount")
+    private BigDecimal amount;
+
     @PrePersist
     protected void onCreate() {
         sendAt = Instant.now();
+
+        if (deliveryStatus == null) {
+            deliveryStatus = NotificationDeliveryStatusEnum.SENT;
+        }
+
+        if (transferCount == 0) {
+            transferCount = 1;
+        }
     }
 
 }
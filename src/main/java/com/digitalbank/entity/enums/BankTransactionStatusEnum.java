@@ -2,6 +2,7 @@ package com.digitalbank.entity.enums;
 
 public enum BankTransactionStatusEnum {
     PENDING,
+    PROCESSING,
     COMPLETED,
     FAILED,
     CANCELLED
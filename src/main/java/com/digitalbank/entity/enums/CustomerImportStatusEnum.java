@@ -0,0 +1,8 @@
+package com.digitalbank.entity.enums;
+
+public enum CustomerImportStatusEnum {
+    CREATED,
+    INVALID,
+    DUPLICATE,
+    FAILED
+}
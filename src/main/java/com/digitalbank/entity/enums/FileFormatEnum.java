@@ -0,0 +1,6 @@
+package com.digitalbank.entity.enums;
+
+public enum FileFormatEnum {
+    CSV,
+    NDJSON
+}
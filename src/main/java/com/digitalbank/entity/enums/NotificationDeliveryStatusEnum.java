@@ -0,0 +1,7 @@
+package com.digitalbank.entity.enums;
+
+public enum NotificationDeliveryStatusEnum {
+    PENDING,
+    SENT,
+    DEAD_LETTER
+}
@@ -2,6 +2,7 @@ package com.digitalbank.entity.enums;
 
 public enum NotificationStatusEnum {
     TRANSFER_RECEIVED,
+    TRANSFER_DIGEST,
     TRANSFER_SENT,
     TRANSFER_FAILED,
     ALERT,
@@ -0,0 +1,6 @@
+package com.digitalbank.entity.enums;
+
+public enum RejectionPolicyEnum {
+    CALLER_RUNS,
+    DISCARD
+}
@@ -0,0 +1,7 @@
+package com.digitalbank.exception.custom;
+
+public class CustomerImportException extends RuntimeException {
+    public CustomerImportException(String message) {
+        super(message);
+    }
+}
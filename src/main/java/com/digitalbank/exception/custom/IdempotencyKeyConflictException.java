@@ -0,0 +1,7 @@
+package com.digitalbank.exception.custom;
+
+public class IdempotencyKeyConflictException extends RuntimeException {
+    public IdempotencyKeyConflictException(String message) {
+        super(message);
+    }
+}
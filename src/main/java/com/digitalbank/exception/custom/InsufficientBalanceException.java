@@ -1,9 +1,15 @@
 package com.digitalbank.exception.custom;
 
+import com.digitalbank.util.Money;
+
 import java.math.BigDecimal;
 
 public class InsufficientBalanceException extends RuntimeException {
     public InsufficientBalanceException(BigDecimal currentBalance, BigDecimal requestedAmount) {
         super(String.format("Insufficient Balance. Current Balance: $ %.2f, Requeste Amount: R$ %.2f", currentBalance, requestedAmount));
     }
+
+    public InsufficientBalanceException(Money currentBalance, Money requestedAmount) {
+        this(currentBalance.toBigDecimal(), requestedAmount.toBigDecimal());
+    }
 }
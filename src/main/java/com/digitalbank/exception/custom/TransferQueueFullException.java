@@ -0,0 +1,7 @@
+package com.digitalbank.exception.custom;
+
+public class TransferQueueFullException extends RuntimeException {
+    public TransferQueueFullException(String message) {
+        super(message);
+    }
+}
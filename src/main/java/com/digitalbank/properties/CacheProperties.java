@@ -0,0 +1,12 @@
+package com.digitalbank.properties;
+
+import lombok.Builder;
+import lombok.Getter;
+
+@Getter
+@Builder
+public class CacheProperties {
+    private final boolean enabled;
+    private final int customerSize;
+    private final long customerTtlMs;
+}
@@ -0,0 +1,20 @@
+package com.digitalbank.properties;
+
+import lombok.Builder;
+import lombok.Getter;
+
+@Getter
+@Builder
+public class CustomerProperties {
+    private final boolean bloomEnabled;
+    private final long bloomExpectedInsertions;
+    private final double bloomFalsePositiveRate;
+    private final long bloomRebuildIntervalMs;
+    private final int importChunkSize;
+    private final int pageSize;
+    private final int maxPageSize;
+    private final int exportBatchSize;
+    private final boolean summaryRebuildOnStartup;
+    private final int summaryRebuildChunkSize;
+    private final int summaryRebuildParallelism;
+}
@@ -10,4 +10,11 @@ public class EmailProperties {
     private final String fromName;
     private final String supportEmail;
     private final String companyName;
+    private final String templatesBasePath;
+    private final int smtpConnections;
+    private final int smtpBatchSize;
+    private final int smtpQueueCapacity;
+    private final long smtpSubmitTimeoutMs;
+    private final int smtpMaxMessagesPerConnection;
+    private final long smtpIdleTimeoutMs;
 }
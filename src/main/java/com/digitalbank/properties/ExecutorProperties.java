@@ -0,0 +1,14 @@
+package com.digitalbank.properties;
+
+import com.digitalbank.entity.enums.RejectionPolicyEnum;
+import lombok.Builder;
+import lombok.Getter;
+
+@Getter
+@Builder
+public class ExecutorProperties {
+    private final boolean virtualThreads;
+    private final int notificationPoolSize;
+    private final int notificationQueueCapacity;
+    private final RejectionPolicyEnum notificationRejectionPolicy;
+}
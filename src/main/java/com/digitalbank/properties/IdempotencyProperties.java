@@ -0,0 +1,14 @@
+package com.digitalbank.properties;
+
+import lombok.Builder;
+import lombok.Getter;
+
+@Getter
+@Builder
+public class IdempotencyProperties {
+    private final int cacheSize;
+    private final long cacheTtlMs;
+    private final long retentionMs;
+    private final long waitTimeoutMs;
+    private final long leaseMs;
+}
@@ -0,0 +1,18 @@
+package com.digitalbank.properties;
+
+import lombok.Builder;
+import lombok.Getter;
+
+@Getter
+@Builder
+public class LedgerProperties {
+    private final boolean enabled;
+    private final int shards;
+    private final int ringBufferSize;
+    private final long submitTimeoutMs;
+    private final int flushBatchSize;
+    private final long flushIntervalMs;
+    private final boolean journalEnabled;
+    private final String journalDirectory;
+    private final int journalSegmentSize;
+}
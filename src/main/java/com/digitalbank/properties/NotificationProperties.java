@@ -0,0 +1,19 @@
+package com.digitalbank.properties;
+
+import lombok.Builder;
+import lombok.Getter;
+
+@Getter
+@Builder
+public class NotificationProperties {
+    private final int outboxBatchSize;
+    private final long outboxPollIntervalMs;
+    private final long outboxLeaseMs;
+    private final long digestWindowMs;
+    private final int emailMaxAttempts;
+    private final long emailRetryDelayMs;
+    private final double emailRetryMultiplier;
+    private final int emailRetryBatchSize;
+    private final long emailRetryPollIntervalMs;
+    private final long emailRetryLeaseMs;
+}
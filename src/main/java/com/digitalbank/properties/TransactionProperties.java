@@ -0,0 +1,26 @@
+package com.digitalbank.properties;
+
+import com.digitalbank.entity.enums.TransferModeEnum;
+import lombok.Builder;
+import lombok.Getter;
+
+@Getter
+@Builder
+public class TransactionProperties {
+    private final int timeoutSeconds;
+    private final TransferModeEnum mode;
+    private final int lockMaxAttempts;
+    private final long lockInitialBackoffMs;
+    private final long lockMaxBackoffMs;
+    private final int optimisticMaxAttempts;
+    private final long contendedAccountCooldownMs;
+    private final int asyncQueueCapacity;
+    private final int asyncWorkers;
+    private final int asyncBatchSize;
+    private final long asyncMaxWaitMs;
+    private final long asyncRetentionMs;
+    private final int historyPageSize;
+    private final int historyMaxPageSize;
+    private final int statementFetchSize;
+    private final int statementFlushRows;
+}
@@ -0,0 +1,100 @@
+package com.digitalbank.repository;
+
+import com.digitalbank.entity.BankTransaction;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Plain JDBC writer for bank transactions, used where many rows are written at once.
+ * The rows go through a single JDBC batch, so it does not depend on Hibernate insert batching.
+ */
+@Repository
+@RequiredArgsConstructor
+public class BankTransactionBatchRepository {
+    private static final String INSERT_SQL = "INSERT INTO bank_transaction " +
+            "(origin_customer_id, destination_customer_id, amount, status, transaction_date, description, error_message) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String INSERT_WITH_ID_SQL = "INSERT INTO bank_transaction " +
+            "(origin_customer_id, destination_customer_id, amount, status, transaction_date, description, error_message, id) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Insert all transactions in one JDBC batch and set the generated ids back on them
+     */
+    public void insertAll(List<BankTransaction> transactions) {
+        if (transactions.isEmpty()) {
+            return;
+        }
+
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+
+        jdbcTemplate.batchUpdate(
+                connection -> connection.prepareStatement(INSERT_SQL, new String[]{"id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        setColumns(ps, transactions.get(i));
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return transactions.size();
+                    }
+                },
+                keyHolder);
+
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        for (int i = 0; i < transactions.size(); i++) {
+            Number id = (Number) keys.get(i).values().iterator().next();
+            transactions.get(i).setId(id.longValue());
+        }
+    }
+
+    /**
+     * Insert all transactions in one JDBC batch keeping the ids already assigned to them
+     */
+    public void insertAllWithIds(List<BankTransaction> transactions) {
+        if (transactions.isEmpty()) {
+            return;
+        }
+
+        jdbcTemplate.batchUpdate(INSERT_WITH_ID_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                BankTransaction transaction = transactions.get(i);
+                setColumns(ps, transaction);
+                ps.setLong(8, transaction.getId());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return transactions.size();
+            }
+        });
+    }
+
+    //region Helpers
+    private static void setColumns(PreparedStatement ps, BankTransaction transaction) throws SQLException {
+        ps.setLong(1, transaction.getOriginCustomer().getId());
+        ps.setLong(2, transaction.getDestinationCustomer().getId());
+        ps.setBigDecimal(3, transaction.getAmount());
+        ps.setString(4, transaction.getStatus().name());
+        ps.setTimestamp(5, Timestamp.from(transaction.getTransactionDate()));
+        ps.setString(6, transaction.getDescription());
+        ps.setString(7, transaction.getErrorMessage());
+    }
+    //endregion
+}
@@ -0,0 +1,127 @@
+package com.digitalbank.repository;
+
+import com.digitalbank.dto.BankTransactionHistoryEntryDTO;
+import com.digitalbank.entity.enums.BankTransactionStatusEnum;
+import com.digitalbank.entity.enums.TransactionDirectionEnum;
+import com.digitalbank.util.TransactionCursor;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Plain JDBC reader for the transaction history of a customer, in pages newest first or as a streamed statement.
+ * The sent and the received transactions are read as two branches of a UNION ALL, each one a range scan
+ * of its composite (customer, transaction_date, id) index stopping after a page, instead of an OR across
+ * two indexes followed by a sort of the whole history. The keyset condition keeps deep pages as cheap
+ * as the first one.
+ */
+@Repository
+@RequiredArgsConstructor
+public class BankTransactionHistoryRepository {
+    private static final String BRANCH_SQL = "(SELECT id, transaction_date, '%s' AS direction, %s AS counterparty_id, amount, status " +
+            "FROM bank_transaction " +
+            "WHERE %s = ?%s " +
+            "ORDER BY transaction_date DESC, id DESC " +
+            "LIMIT ?)";
+
+    private static final String KEYSET_CONDITION = " AND (transaction_date, id) < (?, ?)";
+
+    private static final String FIRST_PAGE_SQL = pageSql("");
+    private static final String NEXT_PAGE_SQL = pageSql(KEYSET_CONDITION);
+
+    private static final String STATEMENT_BRANCH_SQL = "SELECT id, transaction_date, '%s' AS direction, %s AS counterparty_id, " +
+            "amount, status, description " +
+            "FROM bank_transaction " +
+            "WHERE %s = ? AND transaction_date >= ? AND transaction_date < ?";
+
+    private static final String STATEMENT_SQL =
+            STATEMENT_BRANCH_SQL.formatted(TransactionDirectionEnum.DEBIT, "destination_customer_id", "origin_customer_id") +
+                    " UNION ALL " +
+                    STATEMENT_BRANCH_SQL.formatted(TransactionDirectionEnum.CREDIT, "origin_customer_id", "destination_customer_id") +
+                    " ORDER BY transaction_date, id";
+
+    private static final RowMapper<BankTransactionHistoryEntryDTO> ENTRY_MAPPER = (rs, rowNum) ->
+            BankTransactionHistoryEntryDTO.builder()
+                    .id(rs.getLong("id"))
+                    .transactionDate(rs.getTimestamp("transaction_date").toInstant())
+                    .direction(TransactionDirectionEnum.valueOf(rs.getString("direction")))
+                    .counterpartyId(rs.getLong("counterparty_id"))
+                    .amount(rs.getBigDecimal("amount"))
+                    .status(BankTransactionStatusEnum.valueOf(rs.getString("status")))
+                    .build();
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * A transaction of a statement, as seen from its customer
+     */
+    public record StatementLine(long id, Instant transactionDate, TransactionDirectionEnum direction, long counterpartyId,
+                                BigDecimal amount, String status, String description) {
+    }
+
+    /**
+     * Up to limit transactions sent or received by the customer, newest first, starting after the cursor
+     * or from the newest one when the cursor is null
+     */
+    public List<BankTransactionHistoryEntryDTO> findPage(long customerId, TransactionCursor after, int limit) {
+        if (after == null) {
+            return jdbcTemplate.query(FIRST_PAGE_SQL, ENTRY_MAPPER, customerId, limit, customerId, limit, limit);
+        }
+
+        Timestamp date = Timestamp.from(after.transactionDate());
+        return jdbcTemplate.query(NEXT_PAGE_SQL, ENTRY_MAPPER,
+                customerId, date, after.id(), limit,
+                customerId, date, after.id(), limit,
+                limit);
+    }
+
+    /**
+     * Hand every transaction sent or received by the customer in [from, to), oldest first, to the consumer
+     * while it is read from a forward-only result set fetched fetchSize rows at a time.
+     * No row is kept once consumed; on PostgreSQL the fetch size only applies inside a transaction.
+     */
+    public void streamStatement(long customerId, Instant from, Instant to, int fetchSize, Consumer<StatementLine> consumer) {
+        Timestamp fromDate = Timestamp.from(from);
+        Timestamp toDate = Timestamp.from(to);
+
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(STATEMENT_SQL,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(fetchSize);
+            statement.setLong(1, customerId);
+            statement.setTimestamp(2, fromDate);
+            statement.setTimestamp(3, toDate);
+            statement.setLong(4, customerId);
+            statement.setTimestamp(5, fromDate);
+            statement.setTimestamp(6, toDate);
+            return statement;
+        }, rs -> {
+            consumer.accept(new StatementLine(
+                    rs.getLong("id"),
+                    rs.getTimestamp("transaction_date").toInstant(),
+                    TransactionDirectionEnum.valueOf(rs.getString("direction")),
+                    rs.getLong("counterparty_id"),
+                    rs.getBigDecimal("amount"),
+                    rs.getString("status"),
+                    rs.getString("description")));
+        });
+    }
+
+    //region Helpers
+    private static String pageSql(String keysetCondition) {
+        return BRANCH_SQL.formatted(TransactionDirectionEnum.DEBIT, "destination_customer_id", "origin_customer_id", keysetCondition) +
+                " UNION ALL " +
+                BRANCH_SQL.formatted(TransactionDirectionEnum.CREDIT, "origin_customer_id", "destination_customer_id", keysetCondition) +
+                " ORDER BY transaction_date DESC, id DESC LIMIT ?";
+    }
+    //endregion
+}
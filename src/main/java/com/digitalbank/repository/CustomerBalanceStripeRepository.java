@@ -0,0 +1,120 @@
+package com.digitalbank.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Plain JDBC access to the striped sub-balances of hot accounts.
+ * Every statement touches stripe rows only, so the customer row is never locked by a credit.
+ */
+@Repository
+@RequiredArgsConstructor
+public class CustomerBalanceStripeRepository {
+    private static final String CREDIT_SQL = "UPDATE customer_balance_stripe " +
+            "SET balance = balance + ? " +
+            "WHERE customer_id = ? AND stripe = ?";
+
+    private static final String FIND_FOR_UPDATE_SQL = "SELECT stripe, balance FROM customer_balance_stripe " +
+            "WHERE customer_id = ? ORDER BY stripe FOR UPDATE";
+
+    private static final String SET_BALANCE_SQL = "UPDATE customer_balance_stripe " +
+            "SET balance = ? " +
+            "WHERE customer_id = ? AND stripe = ?";
+
+    private static final String SUM_SQL = "SELECT customer_id, SUM(balance) AS total FROM customer_balance_stripe " +
+            "WHERE customer_id IN (:ids) GROUP BY customer_id";
+
+    private static final String CREATE_SQL = "INSERT INTO customer_balance_stripe (customer_id, stripe, balance) " +
+            "VALUES (?, ?, 0.00)";
+
+    private static final String COLLAPSE_SQL = "UPDATE customer c " +
+            "SET balance = balance + (SELECT COALESCE(SUM(s.balance), 0) FROM customer_balance_stripe s WHERE s.customer_id = c.id) " +
+            "WHERE c.balance_stripes > 0";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    public record Stripe(int stripe, BigDecimal balance) {
+    }
+
+    /**
+     * Add the amount to one stripe. Returns false when the stripe does not exist.
+     */
+    public boolean credit(Long customerId, int stripe, BigDecimal amount) {
+        return jdbcTemplate.update(CREDIT_SQL, amount, customerId, stripe) == 1;
+    }
+
+    /**
+     * Lock and read every stripe of the customer in stripe order
+     */
+    public List<Stripe> findAllForUpdate(Long customerId) {
+        return jdbcTemplate.query(FIND_FOR_UPDATE_SQL,
+                (rs, rowNum) -> new Stripe(rs.getInt("stripe"), rs.getBigDecimal("balance")),
+                customerId);
+    }
+
+    public void updateBalances(Long customerId, List<Stripe> stripes) {
+        if (stripes.isEmpty()) {
+            return;
+        }
+
+        List<Object[]> arguments = new ArrayList<>(stripes.size());
+        stripes.forEach(stripe -> arguments.add(new Object[]{stripe.balance(), customerId, stripe.stripe()}));
+
+        jdbcTemplate.batchUpdate(SET_BALANCE_SQL, arguments);
+    }
+
+    public void resetBalances(Long customerId) {
+        jdbcTemplate.update("UPDATE customer_balance_stripe SET balance = 0 WHERE customer_id = ?", customerId);
+    }
+
+    /**
+     * Sum of the stripes of each given customer. Customers without stripes are absent from the result.
+     */
+    public Map<Long, BigDecimal> sumByCustomer(Collection<Long> customerIds) {
+        Map<Long, BigDecimal> totals = new HashMap<>();
+        if (customerIds.isEmpty()) {
+            return totals;
+        }
+
+        namedParameterJdbcTemplate.query(SUM_SQL, new MapSqlParameterSource("ids", customerIds),
+                rs -> {
+                    totals.put(rs.getLong("customer_id"), rs.getBigDecimal("total"));
+                });
+
+        return totals;
+    }
+
+    /**
+     * Create the stripes numbered from {@code fromStripe} (inclusive) to {@code toStripe} (exclusive) with a zero balance
+     */
+    public void createStripes(Long customerId, int fromStripe, int toStripe) {
+        List<Object[]> arguments = new ArrayList<>(toStripe - fromStripe);
+        for (int stripe = fromStripe; stripe < toStripe; stripe++) {
+            arguments.add(new Object[]{customerId, stripe});
+        }
+
+        jdbcTemplate.batchUpdate(CREATE_SQL, arguments);
+    }
+
+    /**
+     * Move the stripe balances of every hot account back into the customer row.
+     * Hot accounts keep their stripes, now empty, so credits keep spreading across them.
+     */
+    @Transactional
+    public void collapseIntoBase() {
+        jdbcTemplate.update(COLLAPSE_SQL);
+        jdbcTemplate.update("UPDATE customer_balance_stripe SET balance = 0");
+    }
+}
@@ -0,0 +1,147 @@
+package com.digitalbank.repository;
+
+import com.digitalbank.entity.Customer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Plain JDBC writer for customers, used where many customers or balances change at once
+ */
+@Repository
+@RequiredArgsConstructor
+public class CustomerBatchRepository {
+    private static final String APPLY_DELTA_SQL = "UPDATE customer " +
+            "SET balance = balance + ?, updated_at = ?, version = version + 1 " +
+            "WHERE id = ?";
+
+    private static final String INSERT_SQL = "INSERT INTO customer " +
+            "(name, email, cpf, balance, created_at, updated_at, version, balance_stripes) " +
+            "VALUES (?, ?, ?, ?, ?, ?, 0, 0)";
+
+    private static final String EXISTING_CPFS_SQL = "SELECT cpf FROM customer WHERE cpf IN (:values)";
+    private static final String EXISTING_EMAILS_SQL = "SELECT email FROM customer WHERE email IN (:values)";
+    private static final String EXISTING_IDS_SQL = "SELECT id FROM customer WHERE id IN (:values)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    /**
+     * Add each delta to the customer balance in one JDBC batch.
+     * Rows are updated in ascending id order, the same order used by the transfer locks.
+     */
+    public void applyBalanceDeltas(Map<Long, BigDecimal> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        Timestamp now = Timestamp.from(Instant.now());
+        List<Object[]> arguments = new ArrayList<>(deltas.size());
+        new TreeMap<>(deltas).forEach((customerId, delta) -> arguments.add(new Object[]{delta, now, customerId}));
+
+        jdbcTemplate.batchUpdate(APPLY_DELTA_SQL, arguments);
+    }
+
+    /**
+     * Insert all customers in one JDBC batch and set the generated ids and timestamps back on them.
+     * CPFs are expected to be normalized already.
+     */
+    public void insertAll(List<Customer> customers) {
+        if (customers.isEmpty()) {
+            return;
+        }
+
+        Instant now = Instant.now();
+        Timestamp timestamp = Timestamp.from(now);
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+
+        jdbcTemplate.batchUpdate(
+                connection -> connection.prepareStatement(INSERT_SQL, new String[]{"id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        Customer customer = customers.get(i);
+                        ps.setString(1, customer.getName());
+                        ps.setString(2, customer.getEmail());
+                        ps.setString(3, customer.getCpf());
+                        ps.setBigDecimal(4, customer.getBalance() != null ? customer.getBalance() : BigDecimal.ZERO);
+                        ps.setTimestamp(5, timestamp);
+                        ps.setTimestamp(6, timestamp);
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return customers.size();
+                    }
+                },
+                keyHolder);
+
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        for (int i = 0; i < customers.size(); i++) {
+            Customer customer = customers.get(i);
+            customer.setId(((Number) keys.get(i).values().iterator().next()).longValue());
+            customer.setCreatedAt(now);
+            customer.setUpdatedAt(now);
+            customer.setVersion(0);
+            customer.setBalanceStripes(0);
+            if (customer.getBalance() == null) {
+                customer.setBalance(BigDecimal.ZERO);
+            }
+        }
+    }
+
+    /**
+     * The given CPFs that already belong to a customer, in one query
+     */
+    public Set<String> findExistingCpfs(Collection<String> cpfs) {
+        return findExisting(EXISTING_CPFS_SQL, cpfs);
+    }
+
+    /**
+     * The given emails that already belong to a customer, in one query
+     */
+    public Set<String> findExistingEmails(Collection<String> emails) {
+        return findExisting(EXISTING_EMAILS_SQL, emails);
+    }
+
+    /**
+     * The given ids that still belong to a customer, in one query
+     */
+    public Set<Long> findExistingIds(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return Set.of();
+        }
+
+        return new HashSet<>(namedParameterJdbcTemplate.queryForList(EXISTING_IDS_SQL,
+                new MapSqlParameterSource("values", ids), Long.class));
+    }
+
+    //region Helpers
+    private Set<String> findExisting(String sql, Collection<String> values) {
+        if (values.isEmpty()) {
+            return Set.of();
+        }
+
+        return new HashSet<>(namedParameterJdbcTemplate.queryForList(sql,
+                new MapSqlParameterSource("values", values), String.class));
+    }
+    //endregion
+}
@@ -2,13 +2,22 @@ package com.digitalbank.repository;
 
 import com.digitalbank.entity.Customer;
 import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
 
 @Repository
 public interface CustomerRepository extends JpaRepository<Customer, Long> {
@@ -19,4 +28,24 @@ public interface CustomerRepository extends JpaRepository<Customer, Long> {
     @Lock(LockModeType.PESSIMISTIC_WRITE)
     @Query("SELECT c FROM Customer c WHERE c.id = :id")
     Optional<Customer> findByIdWithLock(@Param("id") Long id);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM Customer c WHERE c.id IN :ids ORDER BY c.id")
+    List<Customer> findAllByIdWithLock(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Keyset page: the customers with an id above the cursor, in id order
+     */
+    List<Customer> findByIdGreaterThanOrderByIdAsc(Long after, Limit limit);
+
+    /**
+     * Every customer in id order, read from the database as the stream is consumed.
+     * Must be consumed inside a transaction, detaching the entities already handled.
+     */
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT c FROM Customer c ORDER BY c.id")
+    Stream<Customer> streamAllOrderById();
 }
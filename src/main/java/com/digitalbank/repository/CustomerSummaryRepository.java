@@ -0,0 +1,238 @@
+package com.digitalbank.repository;
+
+import com.digitalbank.dto.CustomerSummaryDTO;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Plain JDBC access to the customer_summary table, the activity totals of each customer.
+ * Writes add deltas to the rows of the customers they touch, so reading a summary is one primary key lookup
+ * whatever the size of the history. A rebuild recomputes the rows of a range of customers from the
+ * transactions and notifications, aggregating each table on its own before joining the totals, so the rows
+ * of a customer are never multiplied across the three tables.
+ */
+@Repository
+@RequiredArgsConstructor
+public class CustomerSummaryRepository {
+    private static final String INSERT_SQL = "INSERT INTO customer_summary (customer_id, updated_at) VALUES (?, ?)";
+
+    private static final String ADD_SQL = "UPDATE customer_summary " +
+            "SET total_outgoing_transactions = total_outgoing_transactions + ?, " +
+            "total_incoming_transactions = total_incoming_transactions + ?, " +
+            "total_outgoing_amount = total_outgoing_amount + ?, " +
+            "total_incoming_amount = total_incoming_amount + ?, " +
+            "total_notifications = total_notifications + ?, " +
+            "updated_at = ? " +
+            "WHERE customer_id = ?";
+
+    private static final String INSERT_DELTA_SQL = "INSERT INTO customer_summary " +
+            "(total_outgoing_transactions, total_incoming_transactions, total_outgoing_amount, total_incoming_amount, " +
+            "total_notifications, updated_at, customer_id) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String FIND_SQL = "SELECT c.id, c.name, c.email, s.total_outgoing_transactions, " +
+            "s.total_incoming_transactions, s.total_outgoing_amount, s.total_incoming_amount, s.total_notifications, " +
+            "s.updated_at " +
+            "FROM customer c " +
+            "LEFT JOIN customer_summary s ON s.customer_id = c.id " +
+            "WHERE c.id = ?";
+
+    private static final String CHUNK_END_SQL = "SELECT MAX(id) FROM " +
+            "(SELECT id FROM customer WHERE id > ? ORDER BY id LIMIT ?) chunk";
+
+    private static final String COUNTERPARTIES_SQL = "SELECT destination_customer_id FROM bank_transaction WHERE origin_customer_id = ? " +
+            "UNION " +
+            "SELECT origin_customer_id FROM bank_transaction WHERE destination_customer_id = ?";
+
+    private static final String RANGE = "BETWEEN :from AND :to";
+    private static final String LIST = "IN (:ids)";
+
+    private static final String LOCK_SQL = "SELECT customer_id FROM customer_summary WHERE customer_id %s ORDER BY customer_id FOR UPDATE";
+
+    private static final String REBUILD_SQL = "MERGE INTO customer_summary s " +
+            "USING (SELECT c.id AS customer_id, " +
+            "COALESCE(t_out.transactions, 0) AS outgoing_transactions, " +
+            "COALESCE(t_in.transactions, 0) AS incoming_transactions, " +
+            "COALESCE(t_out.amount, 0) AS outgoing_amount, " +
+            "COALESCE(t_in.amount, 0) AS incoming_amount, " +
+            "COALESCE(n.notifications, 0) AS notifications " +
+            "FROM customer c " +
+            "LEFT JOIN (SELECT origin_customer_id AS customer_id, COUNT(*) AS transactions, " +
+            "SUM(CASE WHEN status = 'COMPLETED' THEN amount ELSE 0 END) AS amount " +
+            "FROM bank_transaction WHERE origin_customer_id %1$s GROUP BY origin_customer_id) t_out " +
+            "ON t_out.customer_id = c.id " +
+            "LEFT JOIN (SELECT destination_customer_id AS customer_id, COUNT(*) AS transactions, " +
+            "SUM(CASE WHEN status = 'COMPLETED' THEN amount ELSE 0 END) AS amount " +
+            "FROM bank_transaction WHERE destination_customer_id %1$s GROUP BY destination_customer_id) t_in " +
+            "ON t_in.customer_id = c.id " +
+            "LEFT JOIN (SELECT customer_id, COUNT(*) AS notifications " +
+            "FROM notification WHERE customer_id %1$s GROUP BY customer_id) n " +
+            "ON n.customer_id = c.id " +
+            "WHERE c.id %1$s) r " +
+            "ON s.customer_id = r.customer_id " +
+            "WHEN MATCHED THEN UPDATE SET total_outgoing_transactions = r.outgoing_transactions, " +
+            "total_incoming_transactions = r.incoming_transactions, " +
+            "total_outgoing_amount = r.outgoing_amount, " +
+            "total_incoming_amount = r.incoming_amount, " +
+            "total_notifications = r.notifications, " +
+            "updated_at = :now " +
+            "WHEN NOT MATCHED THEN INSERT (customer_id, total_outgoing_transactions, total_incoming_transactions, " +
+            "total_outgoing_amount, total_incoming_amount, total_notifications, updated_at) " +
+            "VALUES (r.customer_id, r.outgoing_transactions, r.incoming_transactions, r.outgoing_amount, " +
+            "r.incoming_amount, r.notifications, :now)";
+
+    private static final RowMapper<CustomerSummaryDTO> SUMMARY_MAPPER = (rs, rowNum) -> {
+        Timestamp updatedAt = rs.getTimestamp("updated_at");
+        BigDecimal outgoingAmount = rs.getBigDecimal("total_outgoing_amount");
+        BigDecimal incomingAmount = rs.getBigDecimal("total_incoming_amount");
+        return CustomerSummaryDTO.builder()
+                .customerId(rs.getLong("id"))
+                .name(rs.getString("name"))
+                .email(rs.getString("email"))
+                .totalOutgoingTransactions(rs.getLong("total_outgoing_transactions"))
+                .totalIncomingTransactions(rs.getLong("total_incoming_transactions"))
+                .totalOutgoingAmount(outgoingAmount != null ? outgoingAmount : BigDecimal.ZERO)
+                .totalIncomingAmount(incomingAmount != null ? incomingAmount : BigDecimal.ZERO)
+                .totalNotifications(rs.getLong("total_notifications"))
+                .updatedAt(updatedAt != null ? updatedAt.toInstant() : null)
+                .build();
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    /**
+     * Change of the totals of one customer
+     */
+    public record Delta(long outgoingTransactions, long incomingTransactions, BigDecimal outgoingAmount,
+                        BigDecimal incomingAmount, long notifications) {
+        public static final Delta NONE = new Delta(0, 0, BigDecimal.ZERO, BigDecimal.ZERO, 0);
+
+        public Delta plus(Delta other) {
+            return new Delta(outgoingTransactions + other.outgoingTransactions,
+                    incomingTransactions + other.incomingTransactions,
+                    outgoingAmount.add(other.outgoingAmount),
+                    incomingAmount.add(other.incomingAmount),
+                    notifications + other.notifications);
+        }
+    }
+
+    /**
+     * Start the totals of new customers at zero, in one JDBC batch
+     */
+    public void insertAll(Collection<Long> customerIds) {
+        if (customerIds.isEmpty()) {
+            return;
+        }
+
+        Timestamp now = Timestamp.from(Instant.now());
+        jdbcTemplate.batchUpdate(INSERT_SQL, customerIds.stream()
+                .map(customerId -> new Object[]{customerId, now})
+                .toList());
+    }
+
+    /**
+     * Add each delta to the totals of its customer in one JDBC batch, in ascending customer id order
+     * so concurrent writers lock the rows in the same order. A customer without a row yet, one inserted
+     * outside of the application, gets a row holding the delta.
+     */
+    public void addAll(Map<Long, Delta> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        Timestamp now = Timestamp.from(Instant.now());
+        List<Map.Entry<Long, Delta>> sorted = new ArrayList<>(new TreeMap<>(deltas).entrySet());
+        List<Object[]> arguments = sorted.stream().map(entry -> arguments(entry, now)).toList();
+
+        int[] updated = jdbcTemplate.batchUpdate(ADD_SQL, arguments);
+
+        List<Object[]> missing = new ArrayList<>();
+        for (int i = 0; i < updated.length; i++) {
+            if (updated[i] == 0) {
+                missing.add(arguments.get(i));
+            }
+        }
+        if (!missing.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_DELTA_SQL, missing);
+        }
+    }
+
+    /**
+     * The totals of the customer, zero when it has no row yet, or empty when the customer does not exist
+     */
+    public Optional<CustomerSummaryDTO> findByCustomerId(long customerId) {
+        return jdbcTemplate.query(FIND_SQL, SUMMARY_MAPPER, customerId).stream().findFirst();
+    }
+
+    /**
+     * The id of the last customer of the chunk of up to size customers after the given id, or null past the last customer
+     */
+    public Long findChunkEnd(long after, int size) {
+        return jdbcTemplate.queryForObject(CHUNK_END_SQL, Long.class, after, size);
+    }
+
+    /**
+     * The customers that sent a transaction to the customer or received one from them
+     */
+    public Set<Long> findCounterparties(long customerId) {
+        return new HashSet<>(jdbcTemplate.queryForList(COUNTERPARTIES_SQL, Long.class, customerId, customerId));
+    }
+
+    /**
+     * Recompute the totals of the customers with ids in [from, to]. The existing rows are locked first, so a
+     * writer adding a delta waits for the new totals instead of having its delta overwritten, and one whose
+     * transaction is still open adds it on top of totals that do not count it yet.
+     * Returns the number of customers rebuilt.
+     */
+    public int rebuildRange(long from, long to) {
+        MapSqlParameterSource parameters = new MapSqlParameterSource()
+                .addValue("from", from)
+                .addValue("to", to)
+                .addValue("now", Timestamp.from(Instant.now()));
+        return rebuild(RANGE, parameters);
+    }
+
+    /**
+     * Recompute the totals of the given customers, like {@link #rebuildRange}
+     */
+    public int rebuildAll(Collection<Long> customerIds) {
+        if (customerIds.isEmpty()) {
+            return 0;
+        }
+
+        MapSqlParameterSource parameters = new MapSqlParameterSource()
+                .addValue("ids", customerIds)
+                .addValue("now", Timestamp.from(Instant.now()));
+        return rebuild(LIST, parameters);
+    }
+
+    //region Helpers
+    private int rebuild(String condition, MapSqlParameterSource parameters) {
+        namedParameterJdbcTemplate.queryForList(LOCK_SQL.formatted(condition), parameters, Long.class);
+        return namedParameterJdbcTemplate.update(REBUILD_SQL.formatted(condition), parameters);
+    }
+
+    private static Object[] arguments(Map.Entry<Long, Delta> entry, Timestamp now) {
+        Delta delta = entry.getValue();
+        return new Object[]{delta.outgoingTransactions(), delta.incomingTransactions(), delta.outgoingAmount(),
+                delta.incomingAmount(), delta.notifications(), now, entry.getKey()};
+    }
+    //endregion
+}
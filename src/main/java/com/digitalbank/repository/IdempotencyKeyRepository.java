@@ -0,0 +1,91 @@
+package com.digitalbank.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Plain JDBC access to the idempotency_key table
+ */
+@Repository
+@RequiredArgsConstructor
+public class IdempotencyKeyRepository {
+    private static final String INSERT_SQL = "INSERT INTO idempotency_key (idempotency_key, request_hash, created_at, claimed_at) " +
+            "VALUES (?, ?, ?, ?)";
+
+    private static final String TAKE_OVER_SQL = "UPDATE idempotency_key SET claimed_at = ? " +
+            "WHERE idempotency_key = ? AND request_hash = ? AND response IS NULL AND claimed_at < ?";
+
+    private static final String FIND_SQL = "SELECT request_hash, response FROM idempotency_key " +
+            "WHERE idempotency_key = ?";
+
+    private static final String COMPLETE_SQL = "UPDATE idempotency_key " +
+            "SET response = ?, completed_at = ? " +
+            "WHERE idempotency_key = ? AND response IS NULL";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public record StoredKey(String requestHash, String response) {
+    }
+
+    /**
+     * Insert the key as in progress. When the key already exists and was created after {@code expiredBefore}
+     * the stored row is returned instead; an older row is replaced. A row of the same request still in progress
+     * but claimed before {@code leaseExpiredBefore} belongs to an execution that died before completing it,
+     * and is claimed again.
+     */
+    public Optional<StoredKey> claim(String key, String requestHash, Instant expiredBefore, Instant leaseExpiredBefore) {
+        if (tryInsert(key, requestHash)) {
+            return Optional.empty();
+        }
+
+        int expired = jdbcTemplate.update("DELETE FROM idempotency_key WHERE idempotency_key = ? AND created_at < ?",
+                key, Timestamp.from(expiredBefore));
+        if (expired > 0 && tryInsert(key, requestHash)) {
+            return Optional.empty();
+        }
+
+        if (jdbcTemplate.update(TAKE_OVER_SQL, Timestamp.from(Instant.now()), key, requestHash,
+                Timestamp.from(leaseExpiredBefore)) > 0) {
+            return Optional.empty();
+        }
+
+        return jdbcTemplate.query(FIND_SQL,
+                (rs, rowNum) -> new StoredKey(rs.getString("request_hash"), rs.getString("response")),
+                key).stream().findFirst();
+    }
+
+    /**
+     * Store the response of a key still in progress, returning false when another execution of the key
+     * completed it first
+     */
+    public boolean complete(String key, String response) {
+        return jdbcTemplate.update(COMPLETE_SQL, response, Timestamp.from(Instant.now()), key) > 0;
+    }
+
+    /**
+     * Forget a key whose first execution failed, so a retry runs again
+     */
+    public void release(String key) {
+        jdbcTemplate.update("DELETE FROM idempotency_key WHERE idempotency_key = ? AND response IS NULL", key);
+    }
+
+    public int deleteCreatedBefore(Instant instant) {
+        return jdbcTemplate.update("DELETE FROM idempotency_key WHERE created_at < ?", Timestamp.from(instant));
+    }
+
+    private boolean tryInsert(String key, String requestHash) {
+        try {
+            Timestamp now = Timestamp.from(Instant.now());
+            jdbcTemplate.update(INSERT_SQL, key, requestHash, now, now);
+            return true;
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+    }
+}
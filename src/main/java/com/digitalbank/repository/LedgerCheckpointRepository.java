@@ -0,0 +1,34 @@
+package com.digitalbank.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+
+/**
+ * Journal offset up to which the ledger entries are written to the database
+ */
+@Repository
+@RequiredArgsConstructor
+public class LedgerCheckpointRepository {
+    private static final int CHECKPOINT_ID = 1;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public long findJournalOffset() {
+        Long offset = jdbcTemplate.queryForObject("SELECT journal_offset FROM ledger_checkpoint WHERE id = ?",
+                Long.class, CHECKPOINT_ID);
+        return offset != null ? offset : 0;
+    }
+
+    /**
+     * Move the checkpoint forward. Must run in the transaction writing the entries up to the offset.
+     */
+    public void advance(long journalOffset) {
+        jdbcTemplate.update("UPDATE ledger_checkpoint SET journal_offset = ?, updated_at = ? " +
+                        "WHERE id = ? AND journal_offset < ?",
+                journalOffset, Timestamp.from(Instant.now()), CHECKPOINT_ID, journalOffset);
+    }
+}
@@ -0,0 +1,156 @@
+package com.digitalbank.repository;
+
+import com.digitalbank.entity.enums.NotificationDeliveryStatusEnum;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Plain JDBC access to the email delivery state of notifications.
+ * A PENDING notification is due once its next_attempt_at has passed; the retry scheduler claims due rows by
+ * moving next_attempt_at past a lease, skipping rows another instance has locked, and records the outcome
+ * of each attempt in batches.
+ */
+@Repository
+@RequiredArgsConstructor
+public class NotificationDeliveryRepository {
+    private static final String CLAIM_SQL = "SELECT id FROM notification " +
+            "WHERE delivery_status = 'PENDING' AND next_attempt_at <= ? " +
+            "ORDER BY next_attempt_at " +
+            "LIMIT ? " +
+            "FOR UPDATE SKIP LOCKED";
+
+    private static final String PENDING_EMAILS_SQL = "SELECT n.id, n.delivery_attempts, n.bank_transaction_id, " +
+            "d.email AS destination_email, d.name AS destination_name, o.name AS origin_name, " +
+            "COALESCE(n.amount, t.amount) AS amount, t.transaction_date, n.transfer_count " +
+            "FROM notification n " +
+            "JOIN customer d ON d.id = n.customer_id " +
+            "JOIN bank_transaction t ON t.id = n.bank_transaction_id " +
+            "JOIN customer o ON o.id = t.origin_customer_id " +
+            "WHERE n.id IN (%s)";
+
+    private static final String SENT_SQL = "UPDATE notification " +
+            "SET delivery_status = 'SENT', is_sent = TRUE, delivery_attempts = delivery_attempts + 1, " +
+            "next_attempt_at = NULL, last_error = NULL " +
+            "WHERE id = ? AND delivery_status = 'PENDING'";
+
+    private static final String FAILED_SQL = "UPDATE notification " +
+            "SET delivery_status = ?, delivery_attempts = ?, next_attempt_at = ?, last_error = ? " +
+            "WHERE id = ? AND delivery_status = 'PENDING'";
+
+    private static final String LAST_EMAILED_SQL = "SELECT customer_id, MAX(sent_at) AS last_emailed_at " +
+            "FROM notification " +
+            "WHERE customer_id IN (%s) AND notification_type IN ('TRANSFER_RECEIVED', 'TRANSFER_DIGEST') AND sent_at > ? " +
+            "GROUP BY customer_id";
+
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * The email of a notification. For a digest the transaction is the most recent one, the amount is the
+     * total of the {@code transferCount} transfers.
+     */
+    public record PendingEmail(long notificationId,
+                               int attempts,
+                               long bankTransactionId,
+                               String destinationEmail,
+                               String destinationName,
+                               String originName,
+                               BigDecimal amount,
+                               Instant transactionDate,
+                               int transferCount) {
+
+        public boolean isDigest() {
+            return transferCount > 1;
+        }
+    }
+
+    /**
+     * Outcome of a failed attempt, already resolved to the next attempt or to the dead letter state
+     */
+    public record Failure(long notificationId, int attempts, Instant nextAttemptAt, String error) {
+
+        public NotificationDeliveryStatusEnum status() {
+            return nextAttemptAt == null ? NotificationDeliveryStatusEnum.DEAD_LETTER : NotificationDeliveryStatusEnum.PENDING;
+        }
+    }
+
+    /**
+     * Claim up to {@code limit} due emails until {@code leaseUntil}. Must run in a transaction.
+     */
+    public List<PendingEmail> claimDue(int limit, Instant now, Instant leaseUntil) {
+        List<Long> ids = jdbcTemplate.queryForList(CLAIM_SQL, Long.class, Timestamp.from(now), limit);
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+
+        jdbcTemplate.batchUpdate("UPDATE notification SET next_attempt_at = ? WHERE id = ?", ids, ids.size(),
+                (ps, id) -> {
+                    ps.setTimestamp(1, Timestamp.from(leaseUntil));
+                    ps.setLong(2, id);
+                });
+
+        String placeholders = String.join(", ", Collections.nCopies(ids.size(), "?"));
+        return jdbcTemplate.query(PENDING_EMAILS_SQL.formatted(placeholders), (rs, rowNum) -> new PendingEmail(
+                rs.getLong("id"),
+                rs.getInt("delivery_attempts"),
+                rs.getLong("bank_transaction_id"),
+                rs.getString("destination_email"),
+                rs.getString("destination_name"),
+                rs.getString("origin_name"),
+                rs.getBigDecimal("amount"),
+                rs.getTimestamp("transaction_date").toInstant(),
+                rs.getInt("transfer_count")), ids.toArray());
+    }
+
+    /**
+     * When each of the customers was last sent a transfer email after {@code since}; customers without one are absent
+     */
+    public Map<Long, Instant> findLastEmailedAt(Collection<Long> customerIds, Instant since) {
+        if (customerIds.isEmpty()) {
+            return Map.of();
+        }
+
+        List<Object> args = new ArrayList<>(customerIds);
+        args.add(Timestamp.from(since));
+
+        String placeholders = String.join(", ", Collections.nCopies(customerIds.size(), "?"));
+        Map<Long, Instant> lastEmailedAt = new HashMap<>();
+        jdbcTemplate.query(LAST_EMAILED_SQL.formatted(placeholders), rs -> {
+            lastEmailedAt.put(rs.getLong("customer_id"), rs.getTimestamp("last_emailed_at").toInstant());
+        }, args.toArray());
+        return lastEmailedAt;
+    }
+
+    public void markSent(List<Long> notificationIds) {
+        jdbcTemplate.batchUpdate(SENT_SQL, notificationIds, notificationIds.size(),
+                (ps, id) -> ps.setLong(1, id));
+    }
+
+    public void markFailed(List<Failure> failures) {
+        jdbcTemplate.batchUpdate(FAILED_SQL, failures, failures.size(), (ps, failure) -> {
+            ps.setString(1, failure.status().name());
+            ps.setInt(2, failure.attempts());
+            if (failure.nextAttemptAt() != null) {
+                ps.setTimestamp(3, Timestamp.from(failure.nextAttemptAt()));
+            } else {
+                ps.setNull(3, Types.TIMESTAMP);
+            }
+            ps.setString(4, failure.error() != null && failure.error().length() > MAX_ERROR_LENGTH
+                    ? failure.error().substring(0, MAX_ERROR_LENGTH) : failure.error());
+            ps.setLong(5, failure.notificationId());
+        });
+    }
+}
@@ -0,0 +1,126 @@
+package com.digitalbank.repository;
+
+import com.digitalbank.entity.BankTransaction;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Plain JDBC access to the notification_outbox table.
+ * A row is written in the transaction of its transfer with the customer names it needs copied in, and
+ * relays claim rows by moving their available_at past a lease, skipping rows another relay has locked.
+ * Rows go away with their transaction, so deleting a customer drops the notifications of its transfers.
+ */
+@Repository
+@RequiredArgsConstructor
+public class NotificationOutboxRepository {
+    private static final String INSERT_SQL = "INSERT INTO notification_outbox " +
+            "(bank_transaction_id, origin_customer_id, destination_customer_id, origin_name, destination_name, " +
+            "destination_email, amount, transaction_date) " +
+            "SELECT ?, o.id, d.id, o.name, d.name, d.email, ?, ? " +
+            "FROM customer o JOIN customer d ON d.id = ? " +
+            "WHERE o.id = ?";
+
+    private static final String CLAIM_SQL = "SELECT * FROM notification_outbox " +
+            "WHERE available_at <= ? " +
+            "ORDER BY id " +
+            "LIMIT ? " +
+            "FOR UPDATE SKIP LOCKED";
+
+    private static final String LOCK_SQL = "SELECT id FROM notification_outbox WHERE id IN (:ids) ORDER BY id FOR UPDATE";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    public record OutboxEntry(long id,
+                              long bankTransactionId,
+                              long originCustomerId,
+                              long destinationCustomerId,
+                              String originName,
+                              String destinationName,
+                              String destinationEmail,
+                              BigDecimal amount,
+                              Instant transactionDate) {
+    }
+
+    /**
+     * Queue the notifications of the transactions in one JDBC batch. Must run in the transaction that stores them.
+     */
+    public void insertAll(List<BankTransaction> transactions) {
+        if (transactions.isEmpty()) {
+            return;
+        }
+
+        jdbcTemplate.batchUpdate(INSERT_SQL, transactions, transactions.size(), (ps, transaction) -> {
+            ps.setLong(1, transaction.getId());
+            ps.setBigDecimal(2, transaction.getAmount());
+            ps.setTimestamp(3, Timestamp.from(transaction.getTransactionDate()));
+            ps.setLong(4, transaction.getDestinationCustomer().getId());
+            ps.setLong(5, transaction.getOriginCustomer().getId());
+        });
+    }
+
+    /**
+     * Claim up to {@code limit} available rows until {@code leaseUntil}. Must run in a transaction.
+     */
+    public List<OutboxEntry> claim(int limit, Instant now, Instant leaseUntil) {
+        List<OutboxEntry> entries = jdbcTemplate.query(CLAIM_SQL, (rs, rowNum) -> new OutboxEntry(
+                rs.getLong("id"),
+                rs.getLong("bank_transaction_id"),
+                rs.getLong("origin_customer_id"),
+                rs.getLong("destination_customer_id"),
+                rs.getString("origin_name"),
+                rs.getString("destination_name"),
+                rs.getString("destination_email"),
+                rs.getBigDecimal("amount"),
+                rs.getTimestamp("transaction_date").toInstant()), Timestamp.from(now), limit);
+
+        jdbcTemplate.batchUpdate("UPDATE notification_outbox SET available_at = ? WHERE id = ?", entries, entries.size(),
+                (ps, entry) -> {
+                    ps.setTimestamp(1, Timestamp.from(leaseUntil));
+                    ps.setLong(2, entry.id());
+                });
+
+        return entries;
+    }
+
+    /**
+     * Lock the rows of claimed entries that still exist, returning those entries. A row deleted along with its
+     * transaction since it was claimed is left out, and one locked here keeps its transaction until the caller commits.
+     * Must run in a transaction.
+     */
+    public List<OutboxEntry> lockAll(List<OutboxEntry> entries) {
+        if (entries.isEmpty()) {
+            return entries;
+        }
+
+        Set<Long> existing = new HashSet<>(namedParameterJdbcTemplate.queryForList(LOCK_SQL,
+                Map.of("ids", entries.stream().map(OutboxEntry::id).toList()), Long.class));
+        return entries.stream().filter(entry -> existing.contains(entry.id())).toList();
+    }
+
+    /**
+     * Hide the rows until {@code until}, when a relay claims them again
+     */
+    public void deferAll(List<OutboxEntry> entries, Instant until) {
+        jdbcTemplate.batchUpdate("UPDATE notification_outbox SET available_at = ? WHERE id = ?", entries, entries.size(),
+                (ps, entry) -> {
+                    ps.setTimestamp(1, Timestamp.from(until));
+                    ps.setLong(2, entry.id());
+                });
+    }
+
+    public void deleteAll(List<OutboxEntry> entries) {
+        jdbcTemplate.batchUpdate("DELETE FROM notification_outbox WHERE id = ?", entries, entries.size(),
+                (ps, entry) -> ps.setLong(1, entry.id()));
+    }
+}
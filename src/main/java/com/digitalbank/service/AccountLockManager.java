@@ -0,0 +1,153 @@
+package com.digitalbank.service;
+
+import com.digitalbank.entity.Customer;
+import com.digitalbank.exception.custom.TransactionException;
+import com.digitalbank.properties.TransactionProperties;
+import com.digitalbank.repository.CustomerRepository;
+import com.digitalbank.service.AccountLockMetrics.LockFailure;
+import jakarta.persistence.LockTimeoutException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Acquires customer row locks in ascending id order, so two transfers touching the same
+ * accounts always lock them in the same sequence and cannot deadlock each other.
+ * Work that still fails on a lock timeout or deadlock is retried in a fresh transaction
+ * with jittered exponential backoff.
+ */
+@Service
+@Slf4j
+public class AccountLockManager {
+    private static final int H2_LOCK_TIMEOUT_ERROR_CODE = 50200;
+
+    private final CustomerRepository customerRepository;
+    private final AccountLockMetrics accountLockMetrics;
+    private final TransactionProperties transactionProperties;
+    private final TransactionTemplate transactionTemplate;
+
+    public AccountLockManager(CustomerRepository customerRepository,
+                              AccountLockMetrics accountLockMetrics,
+                              TransactionProperties transactionProperties,
+                              PlatformTransactionManager transactionManager) {
+        this.customerRepository = customerRepository;
+        this.accountLockMetrics = accountLockMetrics;
+        this.transactionProperties = transactionProperties;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.transactionTemplate.setTimeout(transactionProperties.getTimeoutSeconds());
+    }
+
+    /**
+     * Lock the given customers ordered by id. Customers that do not exist are absent from the result.
+     * Must be called inside a transaction, usually from {@link #executeWithRetry}.
+     */
+    public Map<Long, Customer> lockInOrder(Collection<Long> accountIds) {
+        Map<Long, Customer> locked = new LinkedHashMap<>();
+
+        for (Long accountId : new TreeSet<>(accountIds)) {
+            long start = System.nanoTime();
+            customerRepository.findByIdWithLock(accountId).ifPresent(customer -> locked.put(accountId, customer));
+            accountLockMetrics.recordLockWait(accountId, System.nanoTime() - start);
+        }
+
+        return locked;
+    }
+
+    /**
+     * Lock the given customers with a single query ordered by id, recording the wait against each of them.
+     * Customers that do not exist are absent from the result. Must be called inside a transaction, like
+     * {@link #lockInOrder}.
+     */
+    public Map<Long, Customer> lockAll(Collection<Long> accountIds) {
+        Map<Long, Customer> locked = new LinkedHashMap<>();
+        if (accountIds.isEmpty()) {
+            return locked;
+        }
+
+        long start = System.nanoTime();
+        customerRepository.findAllByIdWithLock(new TreeSet<>(accountIds)).forEach(customer -> locked.put(customer.getId(), customer));
+        long waitNanos = System.nanoTime() - start;
+        accountIds.forEach(accountId -> accountLockMetrics.recordLockWait(accountId, waitNanos));
+
+        return locked;
+    }
+
+    /**
+     * Run the work in a new transaction, retrying it when a lock on any of the accounts times out or deadlocks
+     */
+    public <T> T executeWithRetry(Collection<Long> accountIds, Supplier<T> work) {
+        int attempt = 1;
+
+        while (true) {
+            try {
+                return transactionTemplate.execute(status -> work.get());
+            } catch (RuntimeException e) {
+                LockFailure failure = classify(e);
+                if (failure == null) {
+                    throw e;
+                }
+
+                accountLockMetrics.recordFailure(accountIds, failure);
+
+                if (attempt >= transactionProperties.getLockMaxAttempts()) {
+                    accountLockMetrics.recordExhausted();
+                    log.error("Lock {} on accounts {} after {} attempts, giving up", failure, accountIds, attempt);
+                    throw e;
+                }
+
+                log.warn("Lock {} on accounts {} (attempt {}/{}), retrying",
+                        failure, accountIds, attempt, transactionProperties.getLockMaxAttempts());
+                accountLockMetrics.recordRetry(accountIds);
+                backoff(attempt++);
+            }
+        }
+    }
+
+    //region Helpers
+    private LockFailure classify(Throwable error) {
+        LockFailure failure = null;
+
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof SQLException sqlException) {
+                String sqlState = sqlException.getSQLState();
+                if ("40001".equals(sqlState) || "40P01".equals(sqlState)) {
+                    return LockFailure.DEADLOCK;
+                }
+                if ("55P03".equals(sqlState) || sqlException.getErrorCode() == H2_LOCK_TIMEOUT_ERROR_CODE) {
+                    return LockFailure.TIMEOUT;
+                }
+            }
+
+            if (t instanceof PessimisticLockingFailureException || t instanceof LockTimeoutException) {
+                failure = LockFailure.TIMEOUT;
+            }
+        }
+
+        return failure;
+    }
+
+    private void backoff(int attempt) {
+        long ceiling = Math.min(transactionProperties.getLockMaxBackoffMs(),
+                transactionProperties.getLockInitialBackoffMs() << (attempt - 1));
+
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TransactionException("Interrupted while waiting to retry account lock");
+        }
+    }
+    //endregion
+}
@@ -0,0 +1,117 @@
+package com.digitalbank.service;
+
+import com.digitalbank.dto.AccountLockStatsDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock contention statistics for customer accounts.
+ * Aggregated values are published to Micrometer, while the per account breakdown
+ * is kept in memory to avoid one meter per account.
+ */
+@Component
+public class AccountLockMetrics {
+    public enum LockFailure {
+        TIMEOUT,
+        DEADLOCK
+    }
+
+    private final Map<Long, AccountLockStats> statsByAccount = new ConcurrentHashMap<>();
+    private final Timer lockWaitTimer;
+    private final Counter timeoutCounter;
+    private final Counter deadlockCounter;
+    private final Counter retryCounter;
+    private final Counter exhaustedCounter;
+
+    public AccountLockMetrics(MeterRegistry meterRegistry) {
+        this.lockWaitTimer = Timer.builder("bank.account.lock.wait")
+                .description("Time spent waiting for an account row lock")
+                .register(meterRegistry);
+        this.timeoutCounter = Counter.builder("bank.account.lock.failures")
+                .tag("reason", "timeout")
+                .register(meterRegistry);
+        this.deadlockCounter = Counter.builder("bank.account.lock.failures")
+                .tag("reason", "deadlock")
+                .register(meterRegistry);
+        this.retryCounter = Counter.builder("bank.account.lock.retries")
+                .register(meterRegistry);
+        this.exhaustedCounter = Counter.builder("bank.account.lock.exhausted")
+                .description("Transfers that gave up after the last lock retry")
+                .register(meterRegistry);
+    }
+
+    public void recordLockWait(Long accountId, long waitNanos) {
+        lockWaitTimer.record(waitNanos, TimeUnit.NANOSECONDS);
+
+        AccountLockStats stats = statsFor(accountId);
+        stats.acquisitions.increment();
+        stats.totalWaitNanos.add(waitNanos);
+        stats.maxWaitNanos.accumulate(waitNanos);
+    }
+
+    public void recordFailure(Collection<Long> accountIds, LockFailure failure) {
+        (failure == LockFailure.DEADLOCK ? deadlockCounter : timeoutCounter).increment();
+
+        for (Long accountId : accountIds) {
+            AccountLockStats stats = statsFor(accountId);
+            (failure == LockFailure.DEADLOCK ? stats.deadlocks : stats.timeouts).increment();
+        }
+    }
+
+    public void recordRetry(Collection<Long> accountIds) {
+        retryCounter.increment();
+        accountIds.forEach(accountId -> statsFor(accountId).retries.increment());
+    }
+
+    public void recordExhausted() {
+        exhaustedCounter.increment();
+    }
+
+    public AccountLockStatsDTO snapshot(Long accountId) {
+        AccountLockStats stats = statsByAccount.get(accountId);
+        return stats == null ? AccountLockStatsDTO.builder().accountId(accountId).build() : stats.toDTO(accountId);
+    }
+
+    public List<AccountLockStatsDTO> snapshot() {
+        return statsByAccount.entrySet().stream()
+                .map(entry -> entry.getValue().toDTO(entry.getKey()))
+                .toList();
+    }
+
+    //region Helpers
+    private AccountLockStats statsFor(Long accountId) {
+        return statsByAccount.computeIfAbsent(accountId, id -> new AccountLockStats());
+    }
+
+    private static class AccountLockStats {
+        private final LongAdder acquisitions = new LongAdder();
+        private final LongAdder totalWaitNanos = new LongAdder();
+        private final LongAccumulator maxWaitNanos = new LongAccumulator(Math::max, 0);
+        private final LongAdder timeouts = new LongAdder();
+        private final LongAdder deadlocks = new LongAdder();
+        private final LongAdder retries = new LongAdder();
+
+        private AccountLockStatsDTO toDTO(Long accountId) {
+            return AccountLockStatsDTO.builder()
+                    .accountId(accountId)
+                    .acquisitions(acquisitions.sum())
+                    .totalWaitMs(totalWaitNanos.sum() / 1_000_000.0)
+                    .maxWaitMs(maxWaitNanos.get() / 1_000_000.0)
+                    .timeouts(timeouts.sum())
+                    .deadlocks(deadlocks.sum())
+                    .retries(retries.sum())
+                    .build();
+        }
+    }
+    //endregion
+}
@@ -0,0 +1,260 @@
+package com.digitalbank.service;
+
+import com.digitalbank.dto.BankTransactionRequestDTO;
+import com.digitalbank.dto.BankTransactionResponseDTO;
+import com.digitalbank.entity.enums.BankTransactionStatusEnum;
+import com.digitalbank.exception.custom.TransactionException;
+import com.digitalbank.exception.custom.TransferQueueFullException;
+import com.digitalbank.properties.TransactionProperties;
+import com.digitalbank.service.ledger.TransactionIdAllocator;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Accepts transfers without holding the request thread for the transfer itself.
+ * An accepted transfer gets its id up front and waits on a bounded queue; worker threads drain the
+ * queue in micro-batches, each processed in one transaction by {@link BankTransactionService#processAccepted}.
+ * The status of a transfer still being processed, or finished within the retention, is answered from
+ * memory, afterwards from its bank_transaction row, which is stored as FAILED when processing fails.
+ * Accepted transfers not processed yet are lost on a crash.
+ */
+@Service
+@Slf4j
+public class AsyncTransferService implements SmartLifecycle {
+    private static final long STOP_TIMEOUT_MS = 30_000;
+
+    private final BankTransactionService bankTransactionService;
+    private final TransactionIdAllocator transactionIdAllocator;
+    private final TransactionProperties transactionProperties;
+    private final BlockingQueue<Accepted> queue;
+    private final Map<Long, Tracked> tracked = new ConcurrentHashMap<>();
+    private final Timer queueWait;
+    private final Counter rejected;
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean running;
+
+    private record Accepted(long id, BankTransactionRequestDTO request, long acceptedAtNanos) {
+    }
+
+    private static final class Tracked {
+        private final BankTransactionResponseDTO accepted;
+        private final CompletableFuture<BankTransactionResponseDTO> result = new CompletableFuture<>();
+        private volatile BankTransactionStatusEnum status = BankTransactionStatusEnum.PENDING;
+        private volatile long completedAt;
+
+        private Tracked(BankTransactionResponseDTO accepted) {
+            this.accepted = accepted;
+        }
+
+        private BankTransactionResponseDTO current() {
+            if (result.isDone()) {
+                return result.join();
+            }
+
+            if (status == BankTransactionStatusEnum.PENDING) {
+                return accepted;
+            }
+
+            return accepted.toBuilder()
+                    .status(status)
+                    .message("Transaction processing")
+                    .build();
+        }
+    }
+
+    public AsyncTransferService(BankTransactionService bankTransactionService,
+                                TransactionIdAllocator transactionIdAllocator,
+                                TransactionProperties transactionProperties,
+                                MeterRegistry meterRegistry) {
+        this.bankTransactionService = bankTransactionService;
+        this.transactionIdAllocator = transactionIdAllocator;
+        this.transactionProperties = transactionProperties;
+        this.queue = new ArrayBlockingQueue<>(transactionProperties.getAsyncQueueCapacity());
+        this.queueWait = Timer.builder("bank.transfer.async.wait")
+                .description("Time accepted transfers wait in the queue before a worker picks them up")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("bank.transfer.async.rejected")
+                .description("Transfers rejected because the queue was full")
+                .register(meterRegistry);
+        Gauge.builder("bank.transfer.async.queue.depth", queue, BlockingQueue::size)
+                .description("Accepted transfers waiting for a worker")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Validate the transfer and queue it, returning it in PENDING state with the id it will be stored under
+     */
+    public BankTransactionResponseDTO submit(BankTransactionRequestDTO request) {
+        if (!running) {
+            throw new TransactionException("Transfer queue is not running");
+        }
+
+        bankTransactionService.validateTransaction(request);
+
+        long id = transactionIdAllocator.nextId();
+        Tracked transfer = new Tracked(BankTransactionResponseDTO.builder()
+                .id(id)
+                .originCustomerId(request.getOriginCustomerId())
+                .destinationCustomerId(request.getDestinationCustomerId())
+                .amount(request.getAmount())
+                .status(BankTransactionStatusEnum.PENDING)
+                .transactionDate(Instant.now())
+                .description(request.getDescription())
+                .message("Transaction accepted")
+                .build());
+        tracked.put(id, transfer);
+
+        if (!queue.offer(new Accepted(id, request, System.nanoTime()))) {
+            tracked.remove(id);
+            rejected.increment();
+            throw new TransferQueueFullException("Too many transfers waiting, try again later");
+        }
+
+        return transfer.accepted;
+    }
+
+    /**
+     * Current state of the transfer. When it is still pending or processing, wait up to {@code waitMs}
+     * for its final state without holding a thread.
+     */
+    public CompletableFuture<BankTransactionResponseDTO> findStatus(Long id, long waitMs) {
+        Tracked transfer = tracked.get(id);
+        if (transfer == null) {
+            return CompletableFuture.completedFuture(bankTransactionService.findBankTransactionById(id));
+        }
+
+        if (transfer.result.isDone() || waitMs <= 0) {
+            return CompletableFuture.completedFuture(transfer.current());
+        }
+
+        return transfer.result.copy()
+                .orTimeout(Math.min(waitMs, transactionProperties.getAsyncMaxWaitMs()), TimeUnit.MILLISECONDS)
+                .exceptionally(e -> transfer.current());
+    }
+
+    @Scheduled(fixedDelayString = "${app.transaction.async.retention}")
+    public void purgeFinished() {
+        long expiredBefore = System.currentTimeMillis() - transactionProperties.getAsyncRetentionMs();
+        tracked.values().removeIf(transfer -> transfer.result.isDone() && transfer.completedAt < expiredBefore);
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        for (int i = 0; i < transactionProperties.getAsyncWorkers(); i++) {
+            workers.add(Thread.ofPlatform().name("transfer-async-" + i).daemon().start(this::drain));
+        }
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+
+        try {
+            for (Thread worker : workers) {
+                worker.join(STOP_TIMEOUT_MS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("Interrupted while stopping the transfer workers");
+        }
+        workers.clear();
+
+        if (!queue.isEmpty()) {
+            log.error("Transfer workers stopped with {} accepted transfers not processed", queue.size());
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    //region Helpers
+    private void drain() {
+        List<Accepted> batch = new ArrayList<>(transactionProperties.getAsyncBatchSize());
+
+        while (running || !queue.isEmpty()) {
+            try {
+                Accepted first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+
+                batch.add(first);
+                queue.drainTo(batch, transactionProperties.getAsyncBatchSize() - 1);
+                process(batch);
+
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Unexpected error processing accepted transfers", e);
+            }
+            batch.clear();
+        }
+    }
+
+    private void process(List<Accepted> batch) {
+        Map<Long, BankTransactionRequestDTO> transfers = new LinkedHashMap<>();
+        long now = System.nanoTime();
+
+        for (Accepted accepted : batch) {
+            queueWait.record(now - accepted.acceptedAtNanos(), TimeUnit.NANOSECONDS);
+            tracked.get(accepted.id()).status = BankTransactionStatusEnum.PROCESSING;
+            transfers.put(accepted.id(), accepted.request());
+        }
+
+        Map<Long, BankTransactionResponseDTO> results;
+        try {
+            results = bankTransactionService.processAccepted(transfers);
+        } catch (RuntimeException e) {
+            log.error("Failed to process {} accepted transfers", batch.size(), e);
+            results = failed(transfers, e.getMessage());
+        }
+
+        long completedAt = System.currentTimeMillis();
+        results.forEach((id, response) -> {
+            Tracked transfer = tracked.get(id);
+            transfer.completedAt = completedAt;
+            transfer.status = response.getStatus();
+            transfer.result.complete(response);
+        });
+    }
+
+    /**
+     * Store the transfers as FAILED so their outcome outlives the retention, or keep it in memory only
+     * when they cannot be stored either
+     */
+    private Map<Long, BankTransactionResponseDTO> failed(Map<Long, BankTransactionRequestDTO> transfers, String errorMessage) {
+        try {
+            return bankTransactionService.failAccepted(transfers, errorMessage);
+        } catch (RuntimeException e) {
+            log.error("Failed to store {} failed accepted transfers", transfers.size(), e);
+            Map<Long, BankTransactionResponseDTO> results = new LinkedHashMap<>();
+            transfers.keySet().forEach(id -> results.put(id, tracked.get(id).accepted.toBuilder()
+                    .status(BankTransactionStatusEnum.FAILED)
+                    .message("Failed: " + errorMessage)
+                    .build()));
+            return results;
+        }
+    }
+    //endregion
+}
@@ -0,0 +1,214 @@
+package com.digitalbank.service;
+
+import com.digitalbank.dto.BankTransactionHistoryDTO;
+import com.digitalbank.dto.BankTransactionHistoryEntryDTO;
+import com.digitalbank.entity.enums.FileFormatEnum;
+import com.digitalbank.exception.custom.CustomerNotFoundException;
+import com.digitalbank.exception.custom.TransactionException;
+import com.digitalbank.properties.TransactionProperties;
+import com.digitalbank.repository.BankTransactionHistoryRepository;
+import com.digitalbank.repository.BankTransactionHistoryRepository.StatementLine;
+import com.digitalbank.repository.CustomerRepository;
+import com.digitalbank.util.TransactionCursor;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BankTransactionHistoryService {
+    private final BankTransactionHistoryRepository bankTransactionHistoryRepository;
+    private final CustomerRepository customerRepository;
+    private final TransactionProperties transactionProperties;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * The page of transactions sent or received by the customer that follows the cursor, newest first.
+     * One row past the page is read to tell whether another page follows.
+     */
+    public BankTransactionHistoryDTO findHistory(Long customerId, String cursor, Integer size) {
+        int pageSize = size != null ? size : transactionProperties.getHistoryPageSize();
+        if (pageSize < 1 || pageSize > transactionProperties.getHistoryMaxPageSize()) {
+            throw new TransactionException("Page size should be between 1 and " + transactionProperties.getHistoryMaxPageSize());
+        }
+
+        TransactionCursor after = null;
+        if (cursor != null) {
+            after = TransactionCursor.decode(cursor).orElseThrow(() -> new TransactionException("Invalid history cursor"));
+        }
+
+        if (!customerRepository.existsById(customerId)) {
+            throw new CustomerNotFoundException(customerId);
+        }
+
+        log.debug("Reading transaction history of customer {} after {}", customerId, after);
+        List<BankTransactionHistoryEntryDTO> entries = bankTransactionHistoryRepository.findPage(customerId, after, pageSize + 1);
+        boolean hasNext = entries.size() > pageSize;
+        List<BankTransactionHistoryEntryDTO> page = hasNext ? entries.subList(0, pageSize) : entries;
+        BankTransactionHistoryEntryDTO last = hasNext ? page.get(page.size() - 1) : null;
+
+        return BankTransactionHistoryDTO.builder()
+                .customerId(customerId)
+                .transactions(page)
+                .nextCursor(last != null ? new TransactionCursor(last.getTransactionDate(), last.getId()).encode() : null)
+                .build();
+    }
+
+    /**
+     * Fail before a statement export starts streaming, while an error can still be answered as usual
+     */
+    public void checkStatement(Long customerId, Instant from, Instant to) {
+        if (!from.isBefore(to)) {
+            throw new TransactionException("Statement period should end after it starts");
+        }
+
+        if (!customerRepository.existsById(customerId)) {
+            throw new CustomerNotFoundException(customerId);
+        }
+    }
+
+    /**
+     * Write the transactions sent or received by the customer in [from, to), oldest first, to the output as they
+     * are read from the database, flushing it every statementFlushRows rows. Returns the number of rows written.
+     */
+    @Transactional(readOnly = true)
+    public long exportStatement(Long customerId, Instant from, Instant to, FileFormatEnum format, OutputStream output) throws IOException {
+        int flushRows = transactionProperties.getStatementFlushRows();
+        StatementWriter writer = format == FileFormatEnum.NDJSON
+                ? new NdjsonStatementWriter(objectMapper.getFactory().createGenerator(output))
+                : new CsvStatementWriter(new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8)));
+
+        long[] rows = {0};
+        try {
+            writer.start();
+            bankTransactionHistoryRepository.streamStatement(customerId, from, to, transactionProperties.getStatementFetchSize(), line -> {
+                try {
+                    writer.write(line);
+                    if (++rows[0] % flushRows == 0) {
+                        writer.flush();
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            writer.flush();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        log.info("Exported statement of customer {} from {} to {} as {}: {} transactions", customerId, from, to, format, rows[0]);
+        return rows[0];
+    }
+
+    //region Helpers
+    private interface StatementWriter {
+        void start() throws IOException;
+
+        void write(StatementLine line) throws IOException;
+
+        void flush() throws IOException;
+    }
+
+    private static final class CsvStatementWriter implements StatementWriter {
+        private static final String HEADER = "id,transaction_date,direction,counterparty_id,amount,status,description\n";
+
+        private final Writer writer;
+
+        private CsvStatementWriter(Writer writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void start() throws IOException {
+            writer.write(HEADER);
+        }
+
+        @Override
+        public void write(StatementLine line) throws IOException {
+            writer.write(Long.toString(line.id()));
+            writer.write(',');
+            writer.write(line.transactionDate().toString());
+            writer.write(',');
+            writer.write(line.direction().name());
+            writer.write(',');
+            writer.write(Long.toString(line.counterpartyId()));
+            writer.write(',');
+            writer.write(line.amount().toPlainString());
+            writer.write(',');
+            writer.write(line.status());
+            writer.write(',');
+            if (line.description() != null) {
+                writeQuoted(line.description());
+            }
+            writer.write('\n');
+        }
+
+        @Override
+        public void flush() throws IOException {
+            writer.flush();
+        }
+
+        /**
+         * Quote the field when it holds a separator, a quote or a line break, doubling its quotes
+         */
+        private void writeQuoted(String value) throws IOException {
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+                writer.write(value);
+                return;
+            }
+
+            writer.write('"');
+            writer.write(value.replace("\"", "\"\""));
+            writer.write('"');
+        }
+    }
+
+    private static final class NdjsonStatementWriter implements StatementWriter {
+        private final JsonGenerator generator;
+
+        private NdjsonStatementWriter(JsonGenerator generator) {
+            this.generator = generator;
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        }
+
+        @Override
+        public void start() {
+        }
+
+        @Override
+        public void write(StatementLine line) throws IOException {
+            generator.writeStartObject();
+            generator.writeNumberField("id", line.id());
+            generator.writeStringField("transactionDate", line.transactionDate().toString());
+            generator.writeStringField("direction", line.direction().name());
+            generator.writeNumberField("counterpartyId", line.counterpartyId());
+            generator.writeNumberField("amount", line.amount());
+            generator.writeStringField("status", line.status());
+            if (line.description() != null) {
+                generator.writeStringField("description", line.description());
+            }
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+
+        @Override
+        public void flush() throws IOException {
+            generator.flush();
+        }
+    }
+    //endregion
+}
@@ -1,82 +1,291 @@
 package com.digitalbank.service;
 
+import com.digitalbank.dto.BankTransactionBatchResponseDTO;
 import com.digitalbank.dto.BankTransactionRequestDTO;
 import com.digitalbank.dto.BankTransactionResponseDTO;
 import com.digitalbank.entity.BankTransaction;
 import com.digitalbank.entity.Customer;
 import com.digitalbank.entity.enums.BankTransactionStatusEnum;
+import com.digitalbank.entity.enums.TransferModeEnum;
+import com.digitalbank.exception.custom.IdempotencyKeyConflictException;
 import com.digitalbank.exception.custom.InsufficientBalanceException;
 import com.digitalbank.exception.custom.TransactionException;
+import com.digitalbank.properties.TransactionProperties;
+import com.digitalbank.repository.BankTransactionBatchRepository;
 import com.digitalbank.repository.BankTransactionRepository;
 import com.digitalbank.repository.CustomerRepository;
+import com.digitalbank.repository.NotificationOutboxRepository;
+import com.digitalbank.service.ledger.LedgerEngine;
+import com.digitalbank.util.Money;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class BankTransactionService {
     private final BankTransactionRepository bankTransactionRepository;
+    private final BankTransactionBatchRepository bankTransactionBatchRepository;
     private final CustomerRepository customerRepository;
-    private final NotificationService notificationService;
+    private final StripedBalanceService stripedBalanceService;
+    private final CustomerSummaryService customerSummaryService;
+    private final NotificationOutboxRepository notificationOutboxRepository;
+    private final AccountLockManager accountLockManager;
+    private final OptimisticTransferExecutor optimisticTransferExecutor;
+    private final IdempotencyService idempotencyService;
+    private final TransactionProperties transactionProperties;
+    private final Optional<LedgerEngine> ledgerEngine;
 
-    @Transactional(propagation = Propagation.REQUIRES_NEW)
     public BankTransactionResponseDTO process(BankTransactionRequestDTO request) {
+        return process(request, null);
+    }
+
+    /**
+     * Process a transfer at most once per idempotency key. A repeated key returns the response of the
+     * first execution without locking any customer.
+     */
+    public BankTransactionResponseDTO process(BankTransactionRequestDTO request, String idempotencyKey) {
+        if (idempotencyKey == null) {
+            return execute(request, null);
+        }
+
+        return idempotencyService.execute(idempotencyKey, request, () -> execute(request, idempotencyKey));
+    }
+
+    private BankTransactionResponseDTO execute(BankTransactionRequestDTO request, String idempotencyKey) {
         log.info("Processing transaction: {} -> {}", request.getOriginCustomerId(), request.getDestinationCustomerId());
 
         try {
             validateTransaction(request);
 
-            Customer origin = customerRepository.findByIdWithLock(request.getOriginCustomerId())
-                    .orElseThrow(() -> new TransactionException("Origin Customer not found"));
+            // The ledger stores the response of the key with the transfer, since the money moves before it is persisted
+            if (ledgerEngine.isPresent()) {
+                return ledgerEngine.get().transfer(request, idempotencyKey);
+            }
 
-            Customer destination = customerRepository.findByIdWithLock(request.getDestinationCustomerId())
-                    .orElseThrow(() -> new TransactionException("Destination Customer not found"));
+            List<Long> accountIds = List.of(request.getOriginCustomerId(), request.getDestinationCustomerId());
 
-            if (origin.getBalance().compareTo(request.getAmount()) < 0) {
-                throw new InsufficientBalanceException(origin.getBalance(), request.getAmount());
+            if (transactionProperties.getMode() == TransferModeEnum.OPTIMISTIC
+                    && !optimisticTransferExecutor.isContended(accountIds)) {
+                Optional<BankTransactionResponseDTO> response = optimisticTransferExecutor.execute(accountIds,
+                        () -> transfer(request, findAllById(accountIds), idempotencyKey));
+                if (response.isPresent()) {
+                    return response.get();
+                }
             }
 
-            origin.setBalance(origin.getBalance().subtract(request.getAmount()));
-            destination.setBalance(destination.getBalance().add(request.getAmount()));
+            return accountLockManager.executeWithRetry(accountIds,
+                    () -> transfer(request, lockForTransfer(request, accountIds), idempotencyKey));
 
-            customerRepository.save(origin);
-            customerRepository.save(destination);
+        } catch (TransactionException | InsufficientBalanceException | IdempotencyKeyConflictException e) {
+            // Already typed for the client: a 409 for a key completed by another execution, a 400 otherwise
+            throw e;
+        } catch (Exception e) {
+            log.error("Error processing transaction", e);
+            throw new TransactionException("Error processing transaction: " + e.getMessage());
+        }
+    }
 
-            BankTransaction bankTransaction = BankTransaction.builder()
-                    .originCustomer(origin)
-                    .destinationCustomer(destination)
-                    .amount(request.getAmount())
-                    .description(request.getDescription())
-                    .status(BankTransactionStatusEnum.COMPLETED)
-                    .build();
+    /**
+     * Process an ordered list of transfers in a single transaction, retried as a whole on lock failures.
+     * Every customer involved is locked once, balances are moved in memory and the
+     * completed transactions are written in one JDBC batch. Items failing validation
+     * or balance checks are reported as FAILED without aborting the rest of the batch.
+     * When the in-memory ledger is enabled the items are submitted to it instead.
+     */
+    public BankTransactionBatchResponseDTO processBatch(List<BankTransactionRequestDTO> requests) {
+        log.info("Processing batch of {} transactions", requests.size());
 
-            BankTransaction savedBankTransaction = bankTransactionRepository.saveAndFlush(bankTransaction);
+        if (ledgerEngine.isPresent()) {
+            return processBatchInLedger(ledgerEngine.get(), requests);
+        }
 
-            notificationService.sendTransactionNotification(savedBankTransaction);
+        return accountLockManager.executeWithRetry(accountIds(requests), () -> moveBatch(requests));
+    }
 
-            log.info("Transaction {} succeeded", savedBankTransaction.getId());
+    private BankTransactionBatchResponseDTO moveBatch(List<BankTransactionRequestDTO> requests) {
+        Map<Long, Customer> customers = lockForBatch(requests);
 
-            return BankTransactionResponseDTO.builder()
-                    .id(savedBankTransaction.getId())
-                    .originCustomerId(origin.getId())
-                    .destinationCustomerId(destination.getId())
-                    .amount(savedBankTransaction.getAmount())
-                    .status(savedBankTransaction.getStatus())
-                    .transactionDate(savedBankTransaction.getTransactionDate())
-                    .description(savedBankTransaction.getDescription())
-                    .message("Transaction succeeded")
-                    .build();
+        List<BankTransactionResponseDTO> results = new ArrayList<>(requests.size());
+        List<BankTransaction> completed = new ArrayList<>();
+        List<Integer> completedPositions = new ArrayList<>();
 
-        } catch (Exception e) {
-            log.error("Error processing transaction", e);
-            throw new TransactionException("Error processing transaction: " + e.getMessage());
+        for (BankTransactionRequestDTO request : requests) {
+            try {
+                completed.add(moveInBatch(request, customers));
+                completedPositions.add(results.size());
+                results.add(null);
+
+            } catch (TransactionException | InsufficientBalanceException e) {
+                results.add(mapToFailedResponseDTO(request, e.getMessage()));
+            }
+        }
+
+        bankTransactionBatchRepository.insertAll(completed);
+        customerSummaryService.recordTransactions(completed);
+        notificationOutboxRepository.insertAll(completed);
+
+        for (int i = 0; i < completed.size(); i++) {
+            results.set(completedPositions.get(i), mapToResponseDTO(completed.get(i)));
         }
+
+        log.info("Batch processed: {} succeeded, {} failed", completed.size(), requests.size() - completed.size());
+
+        return BankTransactionBatchResponseDTO.builder()
+                .total(requests.size())
+                .succeeded(completed.size())
+                .failed(requests.size() - completed.size())
+                .results(results)
+                .build();
+    }
+
+    private BankTransactionBatchResponseDTO processBatchInLedger(LedgerEngine engine, List<BankTransactionRequestDTO> requests) {
+        List<CompletableFuture<BankTransactionResponseDTO>> submitted = new ArrayList<>(requests.size());
+
+        for (BankTransactionRequestDTO request : requests) {
+            try {
+                validateTransaction(request);
+                submitted.add(engine.submit(request));
+            } catch (TransactionException e) {
+                submitted.add(CompletableFuture.failedFuture(e));
+            }
+        }
+
+        List<BankTransactionResponseDTO> results = new ArrayList<>(requests.size());
+        int succeeded = 0;
+
+        for (int i = 0; i < requests.size(); i++) {
+            try {
+                results.add(submitted.get(i).join());
+                succeeded++;
+            } catch (CompletionException e) {
+                results.add(mapToFailedResponseDTO(requests.get(i), e.getCause().getMessage()));
+            }
+        }
+
+        return BankTransactionBatchResponseDTO.builder()
+                .total(requests.size())
+                .succeeded(succeeded)
+                .failed(requests.size() - succeeded)
+                .results(results)
+                .build();
+    }
+
+    /**
+     * Process transfers accepted by the asynchronous API, keyed by the id each one was given when accepted.
+     * Works like {@link #processBatch} in a transaction retried on lock failures, except that failed transfers
+     * are stored as FAILED too, so their outcome can still be looked up once the caller forgets about them.
+     */
+    public Map<Long, BankTransactionResponseDTO> processAccepted(Map<Long, BankTransactionRequestDTO> transfers) {
+        if (ledgerEngine.isPresent()) {
+            return processAcceptedInLedger(ledgerEngine.get(), transfers);
+        }
+
+        List<BankTransactionRequestDTO> requests = new ArrayList<>(transfers.values());
+
+        return accountLockManager.executeWithRetry(accountIds(requests), () -> {
+            Map<Long, Customer> customers = lockForBatch(requests);
+            List<BankTransaction> processed = new ArrayList<>(transfers.size());
+
+            transfers.forEach((id, request) -> {
+                BankTransaction bankTransaction;
+                try {
+                    bankTransaction = moveInBatch(request, customers);
+                } catch (TransactionException | InsufficientBalanceException e) {
+                    bankTransaction = failedTransaction(request, e.getMessage());
+                }
+                bankTransaction.setId(id);
+                processed.add(bankTransaction);
+            });
+
+            List<BankTransaction> stored = storable(processed, customers.keySet());
+            bankTransactionBatchRepository.insertAllWithIds(stored);
+            customerSummaryService.recordTransactions(stored);
+
+            List<BankTransaction> completed = processed.stream()
+                    .filter(bankTransaction -> bankTransaction.getStatus() == BankTransactionStatusEnum.COMPLETED)
+                    .toList();
+            notificationOutboxRepository.insertAll(completed);
+
+            log.info("Accepted transfers processed: {} succeeded, {} failed", completed.size(), processed.size() - completed.size());
+
+            Map<Long, BankTransactionResponseDTO> results = new LinkedHashMap<>();
+            processed.forEach(bankTransaction -> results.put(bankTransaction.getId(), mapToResponseDTO(bankTransaction)));
+            return results;
+        });
+    }
+
+    private Map<Long, BankTransactionResponseDTO> processAcceptedInLedger(LedgerEngine engine,
+                                                                          Map<Long, BankTransactionRequestDTO> transfers) {
+        Map<Long, CompletableFuture<BankTransactionResponseDTO>> submitted = new LinkedHashMap<>();
+
+        // Already validated when accepted; the ledger releases the id of a transfer it rejects
+        transfers.forEach((id, request) -> {
+            try {
+                submitted.put(id, engine.submit(request, id));
+            } catch (RuntimeException e) {
+                submitted.put(id, CompletableFuture.failedFuture(e));
+            }
+        });
+
+        Map<Long, BankTransactionResponseDTO> results = new LinkedHashMap<>();
+        List<BankTransaction> failed = new ArrayList<>();
+
+        submitted.forEach((id, result) -> {
+            try {
+                results.put(id, result.join());
+            } catch (CompletionException e) {
+                BankTransaction bankTransaction = failedTransaction(transfers.get(id), e.getCause().getMessage());
+                bankTransaction.setId(id);
+                failed.add(bankTransaction);
+                results.put(id, mapToResponseDTO(bankTransaction));
+            }
+        });
+
+        // The transfers the ledger committed are final, so failing to store the rejected ones must not fail them all
+        try {
+            storeFailed(failed);
+        } catch (RuntimeException e) {
+            log.error("Failed to store {} accepted transfers rejected by the ledger", failed.size(), e);
+        }
+
+        return results;
+    }
+
+    /**
+     * Store transfers accepted by the asynchronous API as FAILED with the error that failed their processing
+     * as a whole, so their outcome can still be looked up like the one of a transfer processed normally
+     */
+    @Transactional
+    public Map<Long, BankTransactionResponseDTO> failAccepted(Map<Long, BankTransactionRequestDTO> transfers,
+                                                              String errorMessage) {
+        List<BankTransaction> failed = new ArrayList<>(transfers.size());
+        Map<Long, BankTransactionResponseDTO> results = new LinkedHashMap<>();
+        transfers.forEach((id, request) -> {
+            BankTransaction bankTransaction = failedTransaction(request, errorMessage);
+            bankTransaction.setId(id);
+            failed.add(bankTransaction);
+            results.put(id, mapToResponseDTO(bankTransaction));
+        });
+
+        storeFailed(failed);
+        return results;
     }
 
     @Transactional(readOnly = true)
@@ -87,15 +296,214 @@ public class BankTransactionService {
         return mapToResponseDTO(bankTransaction);
     }
 
-    //region Helpers
-    private void validateTransaction(BankTransactionRequestDTO request) {
+    /**
+     * Check the parts of a transfer request that do not depend on the customers
+     */
+    public void validateTransaction(BankTransactionRequestDTO request) {
         if (request.getOriginCustomerId().equals(request.getDestinationCustomerId())) {
             throw new TransactionException("You cannot do a transaction to the same origin customer");
         }
 
-        if (request.getAmount().compareTo(BigDecimal.ZERO) <= 0) {
+        Money amount;
+        try {
+            amount = Money.of(request.getAmount());
+        } catch (ArithmeticException e) {
+            throw new TransactionException("Transaction amount should have at most " + Money.SCALE + " decimal places");
+        }
+
+        if (!amount.isPositive()) {
             throw new TransactionException("Transaction amount should be higher than 0");
         }
+
+        if (request.getDescription() != null && request.getDescription().length() > BankTransaction.MAX_DESCRIPTION_LENGTH) {
+            throw new TransactionException("Transaction description should have at most "
+                    + BankTransaction.MAX_DESCRIPTION_LENGTH + " characters");
+        }
+    }
+
+    //region Helpers
+    /**
+     * Move the amount between the given customers. The customers are either row locked or,
+     * in optimistic mode, plain reads whose version is checked when the changes are flushed.
+     */
+    private BankTransactionResponseDTO transfer(BankTransactionRequestDTO request, Map<Long, Customer> customers,
+                                                String idempotencyKey) {
+        Customer origin = customers.get(request.getOriginCustomerId());
+        if (origin == null) {
+            throw new TransactionException("Origin Customer not found");
+        }
+
+        Customer destination = customers.get(request.getDestinationCustomerId());
+        if (destination == null) {
+            throw new TransactionException("Destination Customer not found");
+        }
+
+        Money amount = Money.of(request.getAmount());
+        stripedBalanceService.debit(origin, amount);
+        stripedBalanceService.credit(destination, amount);
+
+        customerRepository.save(origin);
+        customerRepository.save(destination);
+
+        BankTransaction bankTransaction = BankTransaction.builder()
+                .originCustomer(origin)
+                .destinationCustomer(destination)
+                .amount(request.getAmount())
+                .description(request.getDescription())
+                .status(BankTransactionStatusEnum.COMPLETED)
+                .build();
+
+        BankTransaction savedBankTransaction = bankTransactionRepository.saveAndFlush(bankTransaction);
+        customerSummaryService.recordTransactions(List.of(savedBankTransaction));
+
+        notificationOutboxRepository.insertAll(List.of(savedBankTransaction));
+
+        log.info("Transaction {} succeeded", savedBankTransaction.getId());
+
+        BankTransactionResponseDTO response = BankTransactionResponseDTO.builder()
+                .id(savedBankTransaction.getId())
+                .originCustomerId(origin.getId())
+                .destinationCustomerId(destination.getId())
+                .amount(savedBankTransaction.getAmount())
+                .status(savedBankTransaction.getStatus())
+                .transactionDate(savedBankTransaction.getTransactionDate())
+                .description(savedBankTransaction.getDescription())
+                .message("Transaction succeeded")
+                .build();
+
+        if (idempotencyKey != null) {
+            idempotencyService.complete(idempotencyKey, response);
+        }
+
+        return response;
+    }
+
+    /**
+     * Lock the customers of a transfer in id order. A hot destination is credited on one of its
+     * stripes, so it is read without locking its row.
+     */
+    private Map<Long, Customer> lockForTransfer(BankTransactionRequestDTO request, List<Long> accountIds) {
+        Long destinationId = request.getDestinationCustomerId();
+        if (!stripedBalanceService.isHot(destinationId)) {
+            return accountLockManager.lockInOrder(accountIds);
+        }
+
+        Map<Long, Customer> customers = new HashMap<>(accountLockManager.lockInOrder(List.of(request.getOriginCustomerId())));
+        customerRepository.findById(destinationId).ifPresent(customer -> customers.put(destinationId, customer));
+        return customers;
+    }
+
+    private static Set<Long> accountIds(List<BankTransactionRequestDTO> requests) {
+        Set<Long> accountIds = new TreeSet<>();
+        requests.forEach(request -> {
+            accountIds.add(request.getOriginCustomerId());
+            accountIds.add(request.getDestinationCustomerId());
+        });
+        return accountIds;
+    }
+
+    /**
+     * Lock every customer of a batch with one query. Hot accounts that only receive money are credited
+     * on their stripes and are read without a row lock.
+     */
+    private Map<Long, Customer> lockForBatch(List<BankTransactionRequestDTO> requests) {
+        Set<Long> lockedIds = new TreeSet<>();
+        Set<Long> hotDestinationIds = new TreeSet<>();
+        for (BankTransactionRequestDTO request : requests) {
+            lockedIds.add(request.getOriginCustomerId());
+            if (stripedBalanceService.isHot(request.getDestinationCustomerId())) {
+                hotDestinationIds.add(request.getDestinationCustomerId());
+            } else {
+                lockedIds.add(request.getDestinationCustomerId());
+            }
+        }
+        hotDestinationIds.removeAll(lockedIds);
+
+        Map<Long, Customer> customers = new HashMap<>(accountLockManager.lockAll(lockedIds));
+        if (!hotDestinationIds.isEmpty()) {
+            customerRepository.findAllById(hotDestinationIds).forEach(customer -> customers.put(customer.getId(), customer));
+        }
+
+        return customers;
+    }
+
+    /**
+     * Move the amount of one batch item between customers loaded by {@link #lockForBatch}
+     */
+    private BankTransaction moveInBatch(BankTransactionRequestDTO request, Map<Long, Customer> customers) {
+        validateTransaction(request);
+
+        Customer origin = customers.get(request.getOriginCustomerId());
+        if (origin == null) {
+            throw new TransactionException("Origin Customer not found");
+        }
+
+        Customer destination = customers.get(request.getDestinationCustomerId());
+        if (destination == null) {
+            throw new TransactionException("Destination Customer not found");
+        }
+
+        Money amount = Money.of(request.getAmount());
+        stripedBalanceService.debit(origin, amount);
+        stripedBalanceService.credit(destination, amount);
+
+        return BankTransaction.builder()
+                .originCustomer(origin)
+                .destinationCustomer(destination)
+                .amount(request.getAmount())
+                .description(request.getDescription())
+                .status(BankTransactionStatusEnum.COMPLETED)
+                .transactionDate(Instant.now())
+                .build();
+    }
+
+    private BankTransaction failedTransaction(BankTransactionRequestDTO request, String errorMessage) {
+        return BankTransaction.builder()
+                .originCustomer(Customer.builder().id(request.getOriginCustomerId()).build())
+                .destinationCustomer(Customer.builder().id(request.getDestinationCustomerId()).build())
+                .amount(request.getAmount())
+                .description(request.getDescription())
+                .status(BankTransactionStatusEnum.FAILED)
+                .errorMessage(errorMessage)
+                .transactionDate(Instant.now())
+                .build();
+    }
+
+    /**
+     * Store FAILED transactions given their ids up front, leaving out the ones of customers that do not exist
+     */
+    private void storeFailed(List<BankTransaction> failed) {
+        if (failed.isEmpty()) {
+            return;
+        }
+
+        Set<Long> accountIds = new TreeSet<>();
+        failed.forEach(bankTransaction -> {
+            accountIds.add(bankTransaction.getOriginCustomer().getId());
+            accountIds.add(bankTransaction.getDestinationCustomer().getId());
+        });
+
+        Set<Long> existing = customerRepository.findAllById(accountIds).stream()
+                .map(Customer::getId)
+                .collect(Collectors.toSet());
+        List<BankTransaction> stored = storable(failed, existing);
+        bankTransactionBatchRepository.insertAllWithIds(stored);
+        customerSummaryService.recordTransactions(stored);
+    }
+
+    /**
+     * Transactions that can be stored, leaving out the ones referencing a customer that does not exist
+     */
+    private List<BankTransaction> storable(List<BankTransaction> transactions, Set<Long> existingCustomerIds) {
+        return transactions.stream()
+                .filter(bankTransaction -> existingCustomerIds.contains(bankTransaction.getOriginCustomer().getId())
+                        && existingCustomerIds.contains(bankTransaction.getDestinationCustomer().getId()))
+                .toList();
+    }
+
+    private Map<Long, Customer> findAllById(List<Long> accountIds) {
+        return customerRepository.findAllById(accountIds).stream()
+                .collect(Collectors.toMap(Customer::getId, Function.identity()));
     }
 
     private BankTransactionResponseDTO mapToResponseDTO(BankTransaction bankTransaction) {
@@ -106,8 +514,20 @@ public class BankTransactionService {
                 .amount(bankTransaction.getAmount())
                 .status(bankTransaction.getStatus())
                 .transactionDate(bankTransaction.getTransactionDate())
+                .description(bankTransaction.getDescription())
                 .message(bankTransaction.getErrorMessage() != null ? "Failed: " + bankTransaction.getErrorMessage() : "Success")
                 .build();
     }
+
+    private BankTransactionResponseDTO mapToFailedResponseDTO(BankTransactionRequestDTO request, String errorMessage) {
+        return BankTransactionResponseDTO.builder()
+                .originCustomerId(request.getOriginCustomerId())
+                .destinationCustomerId(request.getDestinationCustomerId())
+                .amount(request.getAmount())
+                .status(BankTransactionStatusEnum.FAILED)
+                .description(request.getDescription())
+                .message("Failed: " + errorMessage)
+                .build();
+    }
     //endregion
 }
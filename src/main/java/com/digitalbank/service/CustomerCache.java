@@ -0,0 +1,165 @@
+package com.digitalbank.service;
+
+import com.digitalbank.entity.Customer;
+import com.digitalbank.properties.CacheProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Bounded read-through cache of customers, evicting the least recently read one and entries older than the TTL.
+ * Every change to a customer invalidates it once its transaction commits and bumps the version of the customer's
+ * slot. A read only stores what it loaded if the version did not move while loading, so a load racing with a
+ * commit can never put the balance from before the commit back in the cache.
+ */
+@Component
+public class CustomerCache {
+    private static final int VERSION_SLOTS = 1024;
+
+    private final CacheProperties cacheProperties;
+    private final Counter hits;
+    private final Counter misses;
+
+    /**
+     * Access ordered, so the least recently read customer is evicted first. Guarded by its own monitor,
+     * like {@link #versions}.
+     */
+    private final Map<Long, Entry> customers;
+
+    /**
+     * Invalidation count of each slot of customer ids. Colliding ids only cost a skipped store.
+     */
+    private final long[] versions = new long[VERSION_SLOTS];
+
+    private record Entry(Customer customer, long loadedAt) {
+    }
+
+    public CustomerCache(CacheProperties cacheProperties, MeterRegistry meterRegistry) {
+        this.cacheProperties = cacheProperties;
+        this.hits = requestCounter(meterRegistry, "hit");
+        this.misses = requestCounter(meterRegistry, "miss");
+        this.customers = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                return size() > cacheProperties.getCustomerSize();
+            }
+        };
+
+        Gauge.builder("bank.cache.customer.size", this, CustomerCache::size)
+                .description("Customers held in the cache")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Return the cached customer, or load it and cache it. The loader is called outside of the cache lock
+     * and may throw, in which case nothing is cached.
+     */
+    public Customer get(Long customerId, Supplier<Customer> loader) {
+        if (!cacheProperties.isEnabled()) {
+            return loader.get();
+        }
+
+        long version;
+        synchronized (customers) {
+            Entry entry = customers.get(customerId);
+            if (entry != null && !isExpired(entry)) {
+                hits.increment();
+                return copy(entry.customer());
+            }
+            version = versions[slot(customerId)];
+        }
+
+        misses.increment();
+        Customer customer = loader.get();
+
+        synchronized (customers) {
+            if (versions[slot(customerId)] == version) {
+                customers.put(customerId, new Entry(copy(customer), System.currentTimeMillis()));
+            }
+        }
+        return customer;
+    }
+
+    /**
+     * Invalidate the customer once the current transaction commits, or right away outside of a transaction.
+     * The customers changed by one transaction are invalidated together.
+     */
+    public void invalidateAfterCommit(Long customerId) {
+        if (!cacheProperties.isEnabled()) {
+            return;
+        }
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            invalidate(List.of(customerId));
+            return;
+        }
+
+        @SuppressWarnings("unchecked")
+        Set<Long> changed = (Set<Long>) TransactionSynchronizationManager.getResource(this);
+        if (changed == null) {
+            Set<Long> pending = new HashSet<>();
+            TransactionSynchronizationManager.bindResource(this, pending);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(CustomerCache.this);
+                    if (status == STATUS_COMMITTED) {
+                        invalidate(pending);
+                    }
+                }
+            });
+            changed = pending;
+        }
+        changed.add(customerId);
+    }
+
+    public void invalidate(Collection<Long> customerIds) {
+        synchronized (customers) {
+            for (Long customerId : customerIds) {
+                versions[slot(customerId)]++;
+                customers.remove(customerId);
+            }
+        }
+    }
+
+    //region Helpers
+    private int size() {
+        synchronized (customers) {
+            return customers.size();
+        }
+    }
+
+    private boolean isExpired(Entry entry) {
+        return System.currentTimeMillis() - entry.loadedAt() > cacheProperties.getCustomerTtlMs();
+    }
+
+    private static int slot(Long customerId) {
+        return (int) (customerId & (VERSION_SLOTS - 1));
+    }
+
+    /**
+     * Customers are mutable entities, so callers never share the cached instance
+     */
+    private static Customer copy(Customer customer) {
+        return customer.toBuilder().build();
+    }
+
+    private static Counter requestCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("bank.cache.customer.requests")
+                .description("Customer reads answered from the cache or loaded from the database")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+    //endregion
+}
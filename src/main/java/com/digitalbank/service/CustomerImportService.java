@@ -0,0 +1,366 @@
+package com.digitalbank.service;
+
+import com.digitalbank.dto.CustomerDTO;
+import com.digitalbank.dto.CustomerImportResultDTO;
+import com.digitalbank.entity.Customer;
+import com.digitalbank.entity.enums.CustomerImportStatusEnum;
+import com.digitalbank.entity.enums.FileFormatEnum;
+import com.digitalbank.exception.custom.CustomerImportException;
+import com.digitalbank.properties.CustomerProperties;
+import com.digitalbank.repository.CustomerBatchRepository;
+import com.digitalbank.service.ledger.LedgerEngine;
+import com.digitalbank.util.CpfUtil;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Imports customers from a CSV or NDJSON upload, read line by line and handled in chunks: each chunk is
+ * validated, checked for duplicates within itself and against the customer table, and inserted in one JDBC
+ * batch and transaction before the next one is read. Only one chunk is held at a time, so memory does not
+ * grow with the file. A row repeating one of an earlier chunk is found by the table check, since the
+ * earlier chunk is committed by then.
+ */
+@Service
+@Slf4j
+public class CustomerImportService {
+    private static final String CPF_EXISTS = "CPF already exists";
+    private static final String EMAIL_EXISTS = "Email already exists";
+    private static final String CPF_REPEATED = "CPF repeated in the file";
+    private static final String EMAIL_REPEATED = "Email repeated in the file";
+    private static final String BYTE_ORDER_MARK = "\uFEFF";
+    private static final List<String> CSV_COLUMNS = List.of("name", "email", "cpf", "balance");
+
+    private final CustomerBatchRepository customerBatchRepository;
+    private final CustomerUniquenessFilter customerUniquenessFilter;
+    private final CustomerSummaryService customerSummaryService;
+    private final CustomerProperties customerProperties;
+    private final Optional<LedgerEngine> ledgerEngine;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final Map<CustomerImportStatusEnum, Counter> rowCounters = new EnumMap<>(CustomerImportStatusEnum.class);
+
+    /**
+     * A line of the file, holding the customer it describes or the reason it could not be read
+     */
+    private record ImportRow(long row, CustomerDTO customer, String error) {
+    }
+
+    /**
+     * A row that passed validation, with its place in the chunk results
+     */
+    private record Candidate(int index, long row, Customer customer) {
+    }
+
+    public CustomerImportService(CustomerBatchRepository customerBatchRepository,
+                                 CustomerUniquenessFilter customerUniquenessFilter,
+                                 CustomerSummaryService customerSummaryService,
+                                 CustomerProperties customerProperties,
+                                 Optional<LedgerEngine> ledgerEngine,
+                                 Validator validator,
+                                 ObjectMapper objectMapper,
+                                 PlatformTransactionManager transactionManager,
+                                 MeterRegistry meterRegistry) {
+        this.customerBatchRepository = customerBatchRepository;
+        this.customerUniquenessFilter = customerUniquenessFilter;
+        this.customerSummaryService = customerSummaryService;
+        this.customerProperties = customerProperties;
+        this.ledgerEngine = ledgerEngine;
+        this.validator = validator;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+
+        for (CustomerImportStatusEnum status : CustomerImportStatusEnum.values()) {
+            rowCounters.put(status, Counter.builder("bank.customer.import.rows")
+                    .description("Rows of customer imports by outcome")
+                    .tag("status", status.name())
+                    .register(meterRegistry));
+        }
+    }
+
+    /**
+     * Import every row of the upload, handing the results of each chunk to the report as soon as it is
+     * committed. A CSV upload must start with a header naming the name, email and cpf columns, and may
+     * have a balance column; a missing column fails the import before any row is read.
+     */
+    public void importCustomers(InputStream input, FileFormatEnum format, Consumer<List<CustomerImportResultDTO>> report) {
+        int chunkSize = customerProperties.getImportChunkSize();
+        Map<CustomerImportStatusEnum, Long> totals = new EnumMap<>(CustomerImportStatusEnum.class);
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            long lineNumber = 0;
+            int[] columns = null;
+            if (format == FileFormatEnum.CSV) {
+                columns = readHeader(reader.readLine());
+                lineNumber++;
+            }
+
+            List<ImportRow> chunk = new ArrayList<>(chunkSize);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+
+                chunk.add(format == FileFormatEnum.CSV ? parseCsv(lineNumber, line, columns) : parseJson(lineNumber, line));
+                if (chunk.size() == chunkSize) {
+                    report.accept(importChunk(chunk, totals));
+                    chunk = new ArrayList<>(chunkSize);
+                }
+            }
+
+            if (!chunk.isEmpty()) {
+                report.accept(importChunk(chunk, totals));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        log.info("Imported customers from a {} file: {}", format, totals);
+    }
+
+    //region Helpers
+    private List<CustomerImportResultDTO> importChunk(List<ImportRow> rows, Map<CustomerImportStatusEnum, Long> totals) {
+        CustomerImportResultDTO[] results = new CustomerImportResultDTO[rows.size()];
+        List<Candidate> candidates = new ArrayList<>(rows.size());
+        Set<String> cpfs = new HashSet<>();
+        Set<String> emails = new HashSet<>();
+
+        for (int i = 0; i < rows.size(); i++) {
+            ImportRow row = rows.get(i);
+            String error = row.error() != null ? row.error() : validate(row.customer());
+            if (error != null) {
+                results[i] = result(row.row(), CustomerImportStatusEnum.INVALID, null, error);
+                continue;
+            }
+
+            CustomerDTO customer = row.customer();
+            String cpf = CpfUtil.normalize(customer.getCpf());
+            if (!cpfs.add(cpf)) {
+                results[i] = result(row.row(), CustomerImportStatusEnum.DUPLICATE, null, CPF_REPEATED);
+            } else if (!emails.add(customer.getEmail())) {
+                results[i] = result(row.row(), CustomerImportStatusEnum.DUPLICATE, null, EMAIL_REPEATED);
+            } else {
+                candidates.add(new Candidate(i, row.row(), Customer.builder()
+                        .name(customer.getName())
+                        .email(customer.getEmail())
+                        .cpf(cpf)
+                        .balance(customer.getBalance() != null ? customer.getBalance() : BigDecimal.ZERO)
+                        .build()));
+            }
+        }
+
+        insert(candidates, results, false);
+
+        List<CustomerImportResultDTO> report = Arrays.asList(results);
+        for (CustomerImportResultDTO result : report) {
+            rowCounters.get(result.getStatus()).increment();
+            totals.merge(result.getStatus(), 1L, Long::sum);
+        }
+        return report;
+    }
+
+    /**
+     * Look up the CPFs and emails the Bloom filters cannot rule out, or all of them when checkAll is set,
+     * and insert the remaining candidates in one batch. A unique constraint violation means the filters
+     * missed a customer inserted elsewhere or another import raced this one, so the batch is retried once
+     * looking everything up.
+     */
+    private void insert(List<Candidate> candidates, CustomerImportResultDTO[] results, boolean checkAll) {
+        if (candidates.isEmpty()) {
+            return;
+        }
+
+        Set<String> existingCpfs = customerBatchRepository.findExistingCpfs(candidates.stream()
+                .map(candidate -> candidate.customer().getCpf())
+                .filter(cpf -> checkAll || customerUniquenessFilter.mightContainCpf(cpf))
+                .toList());
+        Set<String> existingEmails = customerBatchRepository.findExistingEmails(candidates.stream()
+                .map(candidate -> candidate.customer().getEmail())
+                .filter(email -> checkAll || customerUniquenessFilter.mightContainEmail(email))
+                .toList());
+
+        List<Candidate> fresh = new ArrayList<>(candidates.size());
+        for (Candidate candidate : candidates) {
+            if (existingCpfs.contains(candidate.customer().getCpf())) {
+                results[candidate.index()] = result(candidate.row(), CustomerImportStatusEnum.DUPLICATE, null, CPF_EXISTS);
+            } else if (existingEmails.contains(candidate.customer().getEmail())) {
+                results[candidate.index()] = result(candidate.row(), CustomerImportStatusEnum.DUPLICATE, null, EMAIL_EXISTS);
+            } else {
+                fresh.add(candidate);
+            }
+        }
+
+        List<Customer> customers = fresh.stream().map(Candidate::customer).toList();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                customerBatchRepository.insertAll(customers);
+                customerSummaryService.recordCreated(customers.stream().map(Customer::getId).toList());
+            });
+        } catch (DataIntegrityViolationException e) {
+            if (!checkAll) {
+                log.debug("Import chunk hit a unique constraint, checking all of its rows again", e);
+                insert(fresh, results, true);
+                return;
+            }
+
+            log.warn("Import chunk of {} rows failed: {}", fresh.size(), e.getMostSpecificCause().getMessage());
+            fresh.forEach(candidate -> results[candidate.index()] = result(candidate.row(),
+                    CustomerImportStatusEnum.FAILED, null, "Conflicted with a concurrent insert, import the row again"));
+            return;
+        }
+
+        for (Candidate candidate : fresh) {
+            Customer customer = candidate.customer();
+            customerUniquenessFilter.added(customer.getCpf(), customer.getEmail());
+            ledgerEngine.ifPresent(engine -> engine.register(customer.getId(), customer.getBalance()));
+            results[candidate.index()] = result(candidate.row(), CustomerImportStatusEnum.CREATED, customer.getId(), null);
+        }
+    }
+
+    private String validate(CustomerDTO customer) {
+        Set<ConstraintViolation<CustomerDTO>> violations = validator.validate(customer);
+        if (!violations.isEmpty()) {
+            return violations.stream()
+                    .map(ConstraintViolation::getMessage)
+                    .sorted()
+                    .collect(Collectors.joining("; "));
+        }
+
+        if (!CpfUtil.isValid(customer.getCpf())) {
+            return "Invalid CPF";
+        }
+        return null;
+    }
+
+    private ImportRow parseJson(long row, String line) {
+        try {
+            return new ImportRow(row, objectMapper.readValue(line, CustomerDTO.class), null);
+        } catch (JsonProcessingException e) {
+            return new ImportRow(row, null, "Malformed JSON: " + e.getOriginalMessage());
+        }
+    }
+
+    private static ImportRow parseCsv(long row, String line, int[] columns) {
+        List<String> fields = splitCsv(line);
+        if (fields == null) {
+            return new ImportRow(row, null, "Unterminated quoted field");
+        }
+
+        String balance = field(fields, columns[3]);
+        CustomerDTO customer = CustomerDTO.builder()
+                .name(field(fields, columns[0]))
+                .email(field(fields, columns[1]))
+                .cpf(field(fields, columns[2]))
+                .build();
+
+        if (balance != null && !balance.isBlank()) {
+            try {
+                customer.setBalance(new BigDecimal(balance.trim()));
+            } catch (NumberFormatException e) {
+                return new ImportRow(row, null, "Invalid balance: " + balance);
+            }
+        }
+        return new ImportRow(row, customer, null);
+    }
+
+    /**
+     * Position of each of the CSV_COLUMNS in the header, -1 for an absent balance column
+     */
+    private static int[] readHeader(String header) {
+        List<String> names = header != null ? splitCsv(header.replace(BYTE_ORDER_MARK, "")) : null;
+        if (names == null) {
+            throw new CustomerImportException("CSV import requires a header with the columns " + CSV_COLUMNS);
+        }
+
+        List<String> normalized = names.stream().map(name -> name.trim().toLowerCase(Locale.ROOT)).toList();
+        int[] columns = new int[CSV_COLUMNS.size()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = normalized.indexOf(CSV_COLUMNS.get(i));
+            if (columns[i] < 0 && !"balance".equals(CSV_COLUMNS.get(i))) {
+                throw new CustomerImportException("CSV header is missing the " + CSV_COLUMNS.get(i) + " column");
+            }
+        }
+        return columns;
+    }
+
+    private static String field(List<String> fields, int column) {
+        return column >= 0 && column < fields.size() ? fields.get(column) : null;
+    }
+
+    /**
+     * Split a CSV line on commas, honoring double-quoted fields with doubled quotes inside.
+     * Returns null for an unterminated quote, as fields spanning lines are not supported.
+     */
+    private static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>(CSV_COLUMNS.size());
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+
+        if (quoted) {
+            return null;
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static CustomerImportResultDTO result(long row, CustomerImportStatusEnum status, Long id, String message) {
+        return CustomerImportResultDTO.builder()
+                .row(row)
+                .status(status)
+                .id(id)
+                .message(message)
+                .build();
+    }
+    //endregion
+}
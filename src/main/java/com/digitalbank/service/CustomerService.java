@@ -1,25 +1,53 @@
 package com.digitalbank.service;
 
 import com.digitalbank.dto.CustomerDTO;
+import com.digitalbank.dto.CustomerPageDTO;
 import com.digitalbank.entity.Customer;
 import com.digitalbank.exception.custom.CustomerNotFoundException;
 import com.digitalbank.exception.custom.DuplicateResourceException;
 import com.digitalbank.exception.custom.InvalidCpfException;
+import com.digitalbank.exception.custom.TransactionException;
+import com.digitalbank.properties.CustomerProperties;
 import com.digitalbank.repository.CustomerRepository;
+import com.digitalbank.service.ledger.LedgerEngine;
 import com.digitalbank.util.CpfUtil;
+import jakarta.persistence.EntityManager;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class CustomerService {
+    private static final int MAX_BALANCE_STRIPES = 64;
+    private static final String CPF_EXISTS = "CPF already exists";
+    private static final String EMAIL_EXISTS = "Email already exists";
+
     private final CustomerRepository customerRepository;
+    private final StripedBalanceService stripedBalanceService;
+    private final CustomerCache customerCache;
+    private final CustomerUniquenessFilter customerUniquenessFilter;
+    private final CustomerSummaryService customerSummaryService;
+    private final Optional<LedgerEngine> ledgerEngine;
+    private final CustomerProperties customerProperties;
+    private final EntityManager entityManager;
 
     @Transactional
     public Customer createCustomer(CustomerDTO customerDTO) {
@@ -31,13 +59,17 @@ public class CustomerService {
             throw new InvalidCpfException(customerDTO.getCpf());
         }
 
-        customerRepository.findByCpf(normalizedCpf).ifPresent(c -> {
-            throw new DuplicateResourceException("CPF already exists");
-        });
+        if (customerUniquenessFilter.mightContainCpf(normalizedCpf)) {
+            customerRepository.findByCpf(normalizedCpf).ifPresent(c -> {
+                throw new DuplicateResourceException(CPF_EXISTS);
+            });
+        }
 
-        customerRepository.findByEmail(customerDTO.getEmail()).ifPresent(c -> {
-            throw new DuplicateResourceException("Email already exists");
-        });
+        if (customerUniquenessFilter.mightContainEmail(customerDTO.getEmail())) {
+            customerRepository.findByEmail(customerDTO.getEmail()).ifPresent(c -> {
+                throw new DuplicateResourceException(EMAIL_EXISTS);
+            });
+        }
 
         Customer customer = Customer.builder()
                 .name(customerDTO.getName())
@@ -46,33 +78,216 @@ public class CustomerService {
                 .balance(customerDTO.getBalance() != null ? customerDTO.getBalance() : BigDecimal.ZERO)
                 .build();
 
-        return customerRepository.save(customer);
+        Customer savedCustomer;
+        try {
+            savedCustomer = customerRepository.saveAndFlush(customer);
+        } catch (DataIntegrityViolationException e) {
+            throw duplicate(e);
+        }
+        customerSummaryService.recordCreated(List.of(savedCustomer.getId()));
+        customerUniquenessFilter.added(savedCustomer.getCpf(), savedCustomer.getEmail());
+        customerCache.invalidateAfterCommit(savedCustomer.getId());
+
+        ledgerEngine.ifPresent(engine -> afterCommit(() -> engine.register(savedCustomer.getId(), savedCustomer.getBalance())));
+
+        return savedCustomer;
     }
 
+    /**
+     * Read the customer through the cache, with the whole balance of a hot account.
+     * With the ledger enabled the balance comes from the ledger, since the stored one lags behind the
+     * transfers it has not persisted yet. When the ledger cannot answer, the stored balance is returned marked stale.
+     */
     public Customer findCustomerById(Long id) {
         log.debug("Searching customer with ID: {}", id);
-        return customerRepository.findById(id).orElseThrow(() -> new CustomerNotFoundException(id));
+        Customer customer = customerCache.get(id, () -> {
+            Customer stored = customerRepository.findById(id).orElseThrow(() -> new CustomerNotFoundException(id));
+            return stripedBalanceService.withTotalBalance(stored);
+        });
+
+        return withLedgerBalance(customer);
     }
 
+    /**
+     * The page of customers following the cursor, an id, in id order. One row past the page is read
+     * to tell whether another page follows. With the ledger enabled the balances come from the ledger.
+     */
     @Transactional(readOnly = true)
-    public List<Customer> listAllCustomers() {
-        return customerRepository.findAll();
+    public CustomerPageDTO listCustomers(Long after, Integer size) {
+        int pageSize = size != null ? size : customerProperties.getPageSize();
+        if (pageSize < 1 || pageSize > customerProperties.getMaxPageSize()) {
+            throw new TransactionException("Page size should be between 1 and " + customerProperties.getMaxPageSize());
+        }
+
+        List<Customer> customers = customerRepository.findByIdGreaterThanOrderByIdAsc(
+                after != null ? after : 0L, Limit.of(pageSize + 1));
+        boolean hasNext = customers.size() > pageSize;
+        List<Customer> page = withLedgerBalance(
+                stripedBalanceService.withTotalBalance(hasNext ? customers.subList(0, pageSize) : customers));
+
+        return CustomerPageDTO.builder()
+                .customers(page)
+                .nextCursor(hasNext ? page.get(page.size() - 1).getId() : null)
+                .build();
+    }
+
+    /**
+     * Hand every customer, in id order and in batches, to the consumer while they are read from the database.
+     * The persistence context is cleared after each batch, so a full export holds one batch at a time.
+     * With the ledger enabled the balances of each batch come from the ledger.
+     */
+    @Transactional(readOnly = true)
+    public void streamAllCustomers(Consumer<List<Customer>> consumer) {
+        int batchSize = customerProperties.getExportBatchSize();
+        List<Customer> batch = new ArrayList<>(batchSize);
+
+        try (Stream<Customer> customers = customerRepository.streamAllOrderById()) {
+            Iterator<Customer> iterator = customers.iterator();
+            while (iterator.hasNext()) {
+                batch.add(iterator.next());
+                if (batch.size() == batchSize) {
+                    consumer.accept(withLedgerBalance(stripedBalanceService.withTotalBalance(batch)));
+                    batch.clear();
+                    entityManager.clear();
+                }
+            }
+        }
+
+        if (!batch.isEmpty()) {
+            consumer.accept(withLedgerBalance(stripedBalanceService.withTotalBalance(batch)));
+        }
     }
 
     @Transactional
     public Customer updateBalance(Long customerId, BigDecimal newBalance) {
-        Customer customer = findCustomerById(customerId);
-        customer.setBalance(newBalance);
+        Customer customer = customerRepository.findByIdWithLock(customerId)
+                .orElseThrow(() -> new CustomerNotFoundException(customerId));
+
+        if (ledgerEngine.isPresent()) {
+            // The ledger owns balances and persists the change asynchronously, so the managed entity is left untouched
+            ledgerEngine.get().setBalance(customerId, newBalance);
+            customerCache.invalidateAfterCommit(customerId);
+            return customer.toBuilder().balance(newBalance).build();
+        }
+
+        stripedBalanceService.setBalance(customer, newBalance);
 
         return customerRepository.save(customer);
     }
 
+    /**
+     * Mark the customer as a hot account whose balance is split into the given number of stripes,
+     * so concurrent credits to it no longer wait on the customer row
+     */
+    @Transactional
+    public Customer markHot(Long customerId, int stripes) {
+        if (stripes < 1 || stripes > MAX_BALANCE_STRIPES) {
+            throw new TransactionException("Stripe count should be between 1 and " + MAX_BALANCE_STRIPES);
+        }
+
+        Customer customer = customerRepository.findByIdWithLock(customerId)
+                .orElseThrow(() -> new CustomerNotFoundException(customerId));
+
+        stripedBalanceService.markHot(customer, stripes);
+
+        return stripedBalanceService.withTotalBalance(customerRepository.save(customer));
+    }
+
+    /**
+     * Delete the customer and recount the totals of its counterparties in one transaction, so the totals
+     * never count transactions that are gone or miss ones that are still there
+     */
+    @Transactional
     public void deleteCustomer(Long id) {
         if (!customerRepository.existsById(id)) {
             throw new CustomerNotFoundException(id);
         }
 
+        // The transactions of the customer are deleted with it, so they leave the totals of the other side too
+        Set<Long> counterparties = customerSummaryService.findCounterparties(id);
         customerRepository.deleteById(id);
+        customerRepository.flush();
+        customerSummaryService.refresh(counterparties);
+        customerCache.invalidateAfterCommit(id);
+        customerUniquenessFilter.removed();
+        ledgerEngine.ifPresent(engine -> afterCommit(() -> engine.remove(id)));
         log.info("Deleted customer with ID {}", id);
     }
+
+    //region Helpers
+    /**
+     * Translate a violated unique constraint of the customer table, the last check when the Bloom filters
+     * skipped the lookups or two sign-ups raced
+     */
+    private RuntimeException duplicate(DataIntegrityViolationException e) {
+        String message = String.valueOf(e.getMostSpecificCause().getMessage()).toLowerCase(Locale.ROOT);
+        if (message.contains("uk_customer_cpf")) {
+            return new DuplicateResourceException(CPF_EXISTS);
+        }
+        if (message.contains("uk_customer_email")) {
+            return new DuplicateResourceException(EMAIL_EXISTS);
+        }
+        return e;
+    }
+
+    /**
+     * Replace the stored balance with the one of the ledger, or mark it stale when the ledger is halted or overloaded
+     */
+    private Customer withLedgerBalance(Customer customer) {
+        if (ledgerEngine.isEmpty()) {
+            return customer;
+        }
+
+        try {
+            return ledgerEngine.get().findBalance(customer.getId())
+                    .map(balance -> customer.toBuilder().balance(balance).build())
+                    .orElse(customer);
+        } catch (TransactionException e) {
+            log.warn("Ledger could not read the balance of customer {}, returning the stored one: {}",
+                    customer.getId(), e.getMessage());
+            return customer.toBuilder().balanceStale(true).build();
+        }
+    }
+
+    /**
+     * Replace the stored balances with the ones of the ledger, read in one round over the shards,
+     * or mark them stale when the ledger is halted or overloaded
+     */
+    private List<Customer> withLedgerBalance(List<Customer> customers) {
+        if (ledgerEngine.isEmpty() || customers.isEmpty()) {
+            return customers;
+        }
+
+        Map<Long, BigDecimal> balances;
+        try {
+            balances = ledgerEngine.get().findBalances(customers.stream().map(Customer::getId).toList());
+        } catch (TransactionException e) {
+            log.warn("Ledger could not read the balances of {} customers, returning the stored ones: {}",
+                    customers.size(), e.getMessage());
+            return customers.stream()
+                    .map(customer -> customer.toBuilder().balanceStale(true).build())
+                    .toList();
+        }
+
+        return customers.stream()
+                .map(customer -> balances.containsKey(customer.getId())
+                        ? customer.toBuilder().balance(balances.get(customer.getId())).build()
+                        : customer)
+                .toList();
+    }
+
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+    //endregion
 }
@@ -0,0 +1,211 @@
+package com.digitalbank.service;
+
+import com.digitalbank.dto.CustomerSummaryDTO;
+import com.digitalbank.entity.BankTransaction;
+import com.digitalbank.entity.Notification;
+import com.digitalbank.entity.enums.BankTransactionStatusEnum;
+import com.digitalbank.exception.custom.CustomerNotFoundException;
+import com.digitalbank.properties.CustomerProperties;
+import com.digitalbank.repository.CustomerSummaryRepository;
+import com.digitalbank.repository.CustomerSummaryRepository.Delta;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the activity totals of every customer in the customer_summary table, so reading them costs one row
+ * instead of an aggregate over the whole history. The writes of transactions and notifications record their
+ * deltas here; the deltas of one transaction are summed per customer and added right before it commits, in one
+ * batch in customer id order, so the summary rows are locked only for the end of the transaction.
+ * A rebuild recomputes the totals from the tables in chunks of customers, several chunks at a time, at startup,
+ * on a schedule and on demand.
+ */
+@Service
+@Slf4j
+public class CustomerSummaryService {
+    private final CustomerSummaryRepository customerSummaryRepository;
+    private final CustomerProperties customerProperties;
+    private final TransactionTemplate transactionTemplate;
+    private final Timer rebuildTimer;
+    private final Object rebuildLock = new Object();
+
+    public CustomerSummaryService(CustomerSummaryRepository customerSummaryRepository, CustomerProperties customerProperties,
+                                  PlatformTransactionManager transactionManager, MeterRegistry meterRegistry) {
+        this.customerSummaryRepository = customerSummaryRepository;
+        this.customerProperties = customerProperties;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.rebuildTimer = Timer.builder("bank.customer.summary.rebuild")
+                .description("Time to recompute the activity totals of every customer")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void build() {
+        if (customerProperties.isSummaryRebuildOnStartup()) {
+            rebuild();
+        }
+    }
+
+    public CustomerSummaryDTO findSummary(Long customerId) {
+        return customerSummaryRepository.findByCustomerId(customerId)
+                .orElseThrow(() -> new CustomerNotFoundException(customerId));
+    }
+
+    /**
+     * Start the totals of new customers at zero, so their first transfers only update a row
+     */
+    public void recordCreated(Collection<Long> customerIds) {
+        customerSummaryRepository.insertAll(customerIds);
+    }
+
+    /**
+     * Count stored transactions for both of their customers, along with the amount of the COMPLETED ones
+     */
+    public void recordTransactions(Collection<BankTransaction> transactions) {
+        Map<Long, Delta> deltas = new HashMap<>();
+        for (BankTransaction transaction : transactions) {
+            BigDecimal amount = transaction.getStatus() == BankTransactionStatusEnum.COMPLETED
+                    ? transaction.getAmount()
+                    : BigDecimal.ZERO;
+            deltas.merge(transaction.getOriginCustomer().getId(),
+                    new Delta(1, 0, amount, BigDecimal.ZERO, 0), Delta::plus);
+            deltas.merge(transaction.getDestinationCustomer().getId(),
+                    new Delta(0, 1, BigDecimal.ZERO, amount, 0), Delta::plus);
+        }
+        add(deltas);
+    }
+
+    public void recordNotifications(Collection<Notification> notifications) {
+        Map<Long, Delta> deltas = new HashMap<>();
+        for (Notification notification : notifications) {
+            deltas.merge(notification.getCustomer().getId(),
+                    new Delta(0, 0, BigDecimal.ZERO, BigDecimal.ZERO, 1), Delta::plus);
+        }
+        add(deltas);
+    }
+
+    /**
+     * The customers whose totals lose the transactions of a customer about to be deleted
+     */
+    public Set<Long> findCounterparties(Long customerId) {
+        return customerSummaryRepository.findCounterparties(customerId);
+    }
+
+    /**
+     * Recompute the totals of the given customers after the rows they count were removed, in the current
+     * transaction or a new one, so their rows stay locked from the recount to the commit
+     */
+    public void refresh(Collection<Long> customerIds) {
+        transactionTemplate.executeWithoutResult(status -> customerSummaryRepository.rebuildAll(customerIds));
+    }
+
+    /**
+     * Recompute the totals of every customer in chunks of ids, each one in its own transaction, running
+     * up to the configured parallelism of chunks at once. A failed chunk keeps its previous totals.
+     * Returns the number of customers rebuilt.
+     */
+    @Scheduled(fixedDelayString = "${app.customer.summary.rebuild-interval}",
+            initialDelayString = "${app.customer.summary.rebuild-interval}")
+    public long rebuild() {
+        synchronized (rebuildLock) {
+            long start = System.nanoTime();
+            int chunkSize = customerProperties.getSummaryRebuildChunkSize();
+            List<Chunk> chunks = new ArrayList<>();
+
+            try (ExecutorService executor = Executors.newFixedThreadPool(customerProperties.getSummaryRebuildParallelism(),
+                    Thread.ofPlatform().name("summary-rebuild-", 0).factory())) {
+                long after = Long.MIN_VALUE;
+                Long end;
+                while ((end = customerSummaryRepository.findChunkEnd(after, chunkSize)) != null) {
+                    long from = after + 1;
+                    long to = end;
+                    chunks.add(new Chunk(from, to, executor.submit(() ->
+                            transactionTemplate.execute(status -> customerSummaryRepository.rebuildRange(from, to)))));
+                    after = end;
+                }
+            }
+
+            long rebuilt = 0;
+            int failed = 0;
+            for (Chunk chunk : chunks) {
+                try {
+                    rebuilt += chunk.customers().get();
+                } catch (ExecutionException e) {
+                    failed++;
+                    log.error("Failed to rebuild the summaries of customers {} to {}", chunk.from(), chunk.to(), e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while rebuilding customer summaries", e);
+                }
+            }
+
+            long elapsed = System.nanoTime() - start;
+            rebuildTimer.record(elapsed, TimeUnit.NANOSECONDS);
+            log.info("Rebuilt the summaries of {} customers in {} chunks ({} failed) in {} ms",
+                    rebuilt, chunks.size(), failed, TimeUnit.NANOSECONDS.toMillis(elapsed));
+            return rebuilt;
+        }
+    }
+
+    //region Helpers
+    private record Chunk(long from, long to, Future<Integer> customers) {
+    }
+
+    /**
+     * Add the deltas before the current transaction commits, together with the others it records,
+     * or right away outside of a transaction
+     */
+    private void add(Map<Long, Delta> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            customerSummaryRepository.addAll(deltas);
+            return;
+        }
+
+        @SuppressWarnings("unchecked")
+        Map<Long, Delta> recorded = (Map<Long, Delta>) TransactionSynchronizationManager.getResource(this);
+        if (recorded == null) {
+            Map<Long, Delta> pending = new HashMap<>();
+            TransactionSynchronizationManager.bindResource(this, pending);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    customerSummaryRepository.addAll(pending);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(CustomerSummaryService.this);
+                }
+            });
+            recorded = pending;
+        }
+        for (Map.Entry<Long, Delta> delta : deltas.entrySet()) {
+            recorded.merge(delta.getKey(), delta.getValue(), Delta::plus);
+        }
+    }
+    //endregion
+}
@@ -0,0 +1,191 @@
+package com.digitalbank.service;
+
+import com.digitalbank.properties.CustomerProperties;
+import com.digitalbank.util.BloomFilter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.PreparedStatement;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Bloom filters of the CPFs and emails in the customer table, so a sign-up only looks them up when
+ * the filter cannot rule a duplicate out. Filled from the table at startup and on every new customer.
+ * Deleted customers stay in the filters, where they only cost a lookup, until the next rebuild.
+ * The unique constraints of the table remain the final check, for customers inserted by another instance
+ * or outside of the CustomerService.
+ */
+@Component
+@Slf4j
+public class CustomerUniquenessFilter {
+    private static final String SCAN_SQL = "SELECT cpf, email FROM customer";
+    private static final int SCAN_FETCH_SIZE = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CustomerProperties customerProperties;
+    private final Counter cpfLookupsSkipped;
+    private final Counter cpfLookups;
+    private final Counter emailLookupsSkipped;
+    private final Counter emailLookups;
+    private final Timer rebuildTimer;
+    private final AtomicLong deletedSinceRebuild = new AtomicLong();
+    private final Object rebuildLock = new Object();
+    private volatile Filters filters;
+
+    /**
+     * Filters being filled by a rebuild, which receive new customers too. Null outside of a rebuild.
+     */
+    private volatile Filters rebuilding;
+
+    private record Filters(BloomFilter cpfs, BloomFilter emails) {
+
+        private static Filters create(long expectedInsertions, double falsePositiveRate) {
+            return new Filters(BloomFilter.create(expectedInsertions, falsePositiveRate),
+                    BloomFilter.create(expectedInsertions, falsePositiveRate));
+        }
+
+        private void put(String cpf, String email) {
+            cpfs.put(cpf);
+            emails.put(email);
+        }
+    }
+
+    public CustomerUniquenessFilter(JdbcTemplate jdbcTemplate, CustomerProperties customerProperties,
+                                    MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.customerProperties = customerProperties;
+        this.cpfLookupsSkipped = checkCounter(meterRegistry, "cpf", "skipped");
+        this.cpfLookups = checkCounter(meterRegistry, "cpf", "looked-up");
+        this.emailLookupsSkipped = checkCounter(meterRegistry, "email", "skipped");
+        this.emailLookups = checkCounter(meterRegistry, "email", "looked-up");
+        this.rebuildTimer = Timer.builder("bank.customer.bloom.rebuild")
+                .description("Time to rebuild the CPF and email Bloom filters from the customer table")
+                .register(meterRegistry);
+
+        falsePositiveGauge(meterRegistry, "cpf", filters -> filters.cpfs().expectedFalsePositiveRate());
+        falsePositiveGauge(meterRegistry, "email", filters -> filters.emails().expectedFalsePositiveRate());
+    }
+
+    @PostConstruct
+    void build() {
+        if (customerProperties.isBloomEnabled()) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Whether a customer with the CPF may exist. False means it certainly does not.
+     */
+    public boolean mightContainCpf(String cpf) {
+        Filters current = filters;
+        boolean mightContain = current == null || current.cpfs().mightContain(cpf);
+        (mightContain ? cpfLookups : cpfLookupsSkipped).increment();
+        return mightContain;
+    }
+
+    /**
+     * Whether a customer with the email may exist. False means it certainly does not.
+     */
+    public boolean mightContainEmail(String email) {
+        Filters current = filters;
+        boolean mightContain = current == null || current.emails().mightContain(email);
+        (mightContain ? emailLookups : emailLookupsSkipped).increment();
+        return mightContain;
+    }
+
+    /**
+     * Record a new customer as soon as it is inserted; one whose transaction rolls back is left behind
+     * as a false positive.
+     */
+    public void added(String cpf, String email) {
+        Filters current = filters;
+        if (current == null) {
+            return;
+        }
+
+        current.put(cpf, email);
+        Filters next = rebuilding;
+        if (next != null) {
+            next.put(cpf, email);
+        }
+    }
+
+    public void removed() {
+        deletedSinceRebuild.incrementAndGet();
+    }
+
+    /**
+     * Replace the filters with ones built from the table, sized for at least twice the customers found
+     */
+    @Scheduled(fixedDelayString = "${app.customer.bloom.rebuild-interval}",
+            initialDelayString = "${app.customer.bloom.rebuild-interval}")
+    public void rebuild() {
+        if (!customerProperties.isBloomEnabled()) {
+            return;
+        }
+
+        synchronized (rebuildLock) {
+            long start = System.nanoTime();
+            long deleted = deletedSinceRebuild.getAndSet(0);
+
+            Long count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM customer", Long.class);
+            long expectedInsertions = Math.max(customerProperties.getBloomExpectedInsertions(), 2 * (count != null ? count : 0));
+            Filters next = Filters.create(expectedInsertions, customerProperties.getBloomFalsePositiveRate());
+            rebuilding = next;
+
+            AtomicLong scanned = new AtomicLong();
+            try {
+                jdbcTemplate.query(connection -> {
+                    PreparedStatement statement = connection.prepareStatement(SCAN_SQL);
+                    statement.setFetchSize(SCAN_FETCH_SIZE);
+                    return statement;
+                }, rs -> {
+                    next.put(rs.getString("cpf"), rs.getString("email"));
+                    scanned.incrementAndGet();
+                });
+
+                filters = next;
+            } catch (RuntimeException e) {
+                deletedSinceRebuild.addAndGet(deleted);
+                throw e;
+            } finally {
+                rebuilding = null;
+            }
+
+            long elapsed = System.nanoTime() - start;
+            rebuildTimer.record(elapsed, TimeUnit.NANOSECONDS);
+            log.info("Built customer Bloom filters from {} customers ({} deleted since the last build) in {} ms: " +
+                            "{} bits and {} hash functions, {} KB each, false positive rate {} at {} customers",
+                    scanned.get(), deleted, TimeUnit.NANOSECONDS.toMillis(elapsed), next.cpfs().bitCount(),
+                    next.cpfs().hashFunctions(), next.cpfs().sizeInBytes() / 1024,
+                    customerProperties.getBloomFalsePositiveRate(), expectedInsertions);
+        }
+    }
+
+    //region Helpers
+    private void falsePositiveGauge(MeterRegistry meterRegistry, String field, ToDoubleFunction<Filters> rate) {
+        Gauge.builder("bank.customer.bloom.false.positive.rate", this,
+                        filter -> filter.filters != null ? rate.applyAsDouble(filter.filters) : Double.NaN)
+                .description("False positive rate expected from the bits set in the Bloom filter")
+                .tag("field", field)
+                .register(meterRegistry);
+    }
+
+    private static Counter checkCounter(MeterRegistry meterRegistry, String field, String result) {
+        return Counter.builder("bank.customer.bloom.checks")
+                .description("Sign-up uniqueness checks, skipped when the Bloom filter rules a duplicate out")
+                .tag("field", field)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+    //endregion
+}
@@ -2,17 +2,12 @@ package com.digitalbank.service;
 
 import com.digitalbank.dto.EmailDTO;
 import com.digitalbank.properties.EmailProperties;
-import jakarta.mail.MessagingException;
+import com.digitalbank.service.EmailTemplateService.RenderedEmail;
 import jakarta.mail.internet.MimeMessage;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
-import org.springframework.mail.MailException;
-import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.MimeMessageHelper;
-import org.springframework.retry.annotation.Backoff;
-import org.springframework.retry.annotation.Retryable;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
 import java.util.Date;
@@ -23,17 +18,16 @@ import java.util.concurrent.CompletableFuture;
 @RequiredArgsConstructor
 @Slf4j
 public class EmailService {
-    private final JavaMailSender mailSender;
+    private final SmtpDeliveryEngine smtpDeliveryEngine;
     private final EmailTemplateService templateService;
     private final EmailProperties emailProperties;
 
     /**
-     * Send transfer notification email
+     * Queue a transfer notification email, completing once the SMTP host accepted or refused it
      */
-    @Async
-    public void sendTransferEmail(String recipientEmail, String recipientName,
-                                  String senderName, String amount,
-                                  String transactionId, String date) {
+    public CompletableFuture<EmailDTO> sendTransferEmail(String recipientEmail, String recipientName,
+                                                         String senderName, String amount,
+                                                         String transactionId, String date) {
 
         Map<String, Object> variables = Map.of(
                 "recipientName", recipientName,
@@ -51,33 +45,62 @@ public class EmailService {
                 .async(true)
                 .build();
 
-        sendEmailAsync(request)
-                .thenAccept(response -> {
-                    if (response.isSuccess()) {
-                        log.info("Transfer email sent to: {}", recipientEmail);
-                    } else {
-                        log.error("Failed to send transfer email to: {}", recipientEmail);
-                    }
-                });
+        return send(request).thenApply(response -> {
+            if (response.isSuccess()) {
+                log.info("Transfer email sent to: {}", recipientEmail);
+            } else {
+                log.error("Failed to send transfer email to: {}", recipientEmail);
+            }
+            return response;
+        });
     }
 
     /**
-     * Send email asynchronously
+     * Queue a digest of several transfers to the recipient, completing once the SMTP host accepted or refused it
      */
-    @Async("emailTaskExecutor")
-    private CompletableFuture<EmailDTO> sendEmailAsync(EmailDTO request) {
-        return CompletableFuture.supplyAsync(() -> sendEmail(request));
+    public CompletableFuture<EmailDTO> sendTransferDigestEmail(String recipientEmail, String recipientName,
+                                                               int transferCount, String totalAmount,
+                                                               String lastDate) {
+
+        Map<String, Object> variables = Map.of(
+                "recipientName", recipientName,
+                "transferCount", String.valueOf(transferCount),
+                "totalAmount", totalAmount,
+                "lastDate", lastDate
+        );
+
+        EmailDTO request = EmailDTO.builder()
+                .to(recipientEmail)
+                .subject(String.format("%d Transfers Received: $%s", transferCount, totalAmount))
+                .template("transfer-digest")
+                .variables(variables)
+                .async(true)
+                .build();
+
+        return send(request).thenApply(response -> {
+            if (response.isSuccess()) {
+                log.info("Transfer digest email sent to: {}", recipientEmail);
+            } else {
+                log.error("Failed to send transfer digest email to: {}", recipientEmail);
+            }
+            return response;
+        });
     }
 
-    @Retryable(
-            retryFor = {MailException.class, MessagingException.class},
-            backoff = @Backoff(delay = 5000, multiplier = 2)
-    )
+    /**
+     * Send the email and wait for the SMTP host to accept or refuse it. Failures are not retried here;
+     * transfer emails are retried by the NotificationRetryScheduler without holding a thread.
+     */
     public EmailDTO sendEmail(EmailDTO request) {
+        return send(request).join();
+    }
+
+    //region Helpers
+    private CompletableFuture<EmailDTO> send(EmailDTO request) {
         try {
             log.info("Sending email to: {}, Subject: {}", request.getTo(), request.getSubject());
 
-            MimeMessage mimeMessage = mailSender.createMimeMessage();
+            MimeMessage mimeMessage = smtpDeliveryEngine.createMimeMessage();
             MimeMessageHelper helper = new MimeMessageHelper(mimeMessage, true, "UTF-8");
 
             helper.setTo(request.getTo());
@@ -94,22 +117,35 @@ public class EmailService {
             helper.setSubject(request.getSubject());
             helper.setSentDate(new Date());
 
-            String htmlContent = templateService.buildHtml(request.getTemplate(), request.getVariables());
-            String textContent = templateService.buildText(request.getTemplate(), request.getVariables());
-
-            helper.setText(textContent, htmlContent);
-
-            mailSender.send(mimeMessage);
-
-            log.info("Email sent successfully to: {}", request.getTo());
-
-            request.setSuccess(true);
-            return request;
+            RenderedEmail content = templateService.render(request.getTemplate(), request.getVariables());
+            helper.setText(content.text(), content.html());
+
+            return smtpDeliveryEngine.send(mimeMessage).handle((sent, e) -> {
+                if (e != null) {
+                    log.error("Failed to send email to: {}", request.getTo(), e);
+                    request.setSuccess(false);
+                    request.setError(rootMessage(e));
+                } else {
+                    log.info("Email sent successfully to: {}", request.getTo());
+                    request.setSuccess(true);
+                }
+                return request;
+            });
 
         } catch (Exception e) {
             log.error("Failed to send email to: {}", request.getTo(), e);
             request.setSuccess(false);
-            return request;
+            request.setError(rootMessage(e));
+            return CompletableFuture.completedFuture(request);
+        }
+    }
+
+    private static String rootMessage(Throwable e) {
+        Throwable root = e;
+        while (root.getCause() != null && root.getCause() != root) {
+            root = root.getCause();
         }
+        return root.getClass().getSimpleName() + ": " + root.getMessage();
     }
+    //endregion
 }
@@ -1,56 +1,200 @@
 package com.digitalbank.service;
 
 import com.digitalbank.exception.custom.EmailTemplateException;
-import lombok.RequiredArgsConstructor;
+import com.digitalbank.properties.EmailProperties;
+import com.digitalbank.util.CompiledTemplate;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
 import org.springframework.stereotype.Service;
 import org.thymeleaf.TemplateEngine;
 import org.thymeleaf.context.Context;
+import org.unbescape.html.HtmlEscape;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
+/**
+ * Renders the HTML and text bodies of an email in one pass over one variable model.
+ * Every template under the base path is compiled at startup into literal segments and variable slots: the
+ * HTML body by running it through Thymeleaf once with a marker in place of every variable, the text body by
+ * splitting it on its ${name} placeholders. Rendering then only escapes and appends the values. An HTML
+ * template whose compiled form does not reproduce the Thymeleaf output, one with conditionals or loops for
+ * instance, keeps being rendered through Thymeleaf.
+ */
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class EmailTemplateService {
+    private static final String THYMELEAF_PREFIX = "email/";
+    private static final Pattern VARIABLE = Pattern.compile("\\$\\{\\s*([A-Za-z_]\\w*)");
+    private static final Pattern TEXT_SLOT = Pattern.compile("\\$\\{(\\w+)}");
+    // Private use characters, which Thymeleaf copies to the output as they are
+    private static final String MARKER_START = "\uE000";
+    private static final String MARKER_END = "\uE001";
+    private static final Pattern MARKER_SLOT = Pattern.compile(MARKER_START + "(\\w+)" + MARKER_END);
+    private static final String CURRENT_YEAR = "currentYear";
+
     private final TemplateEngine templateEngine;
+    private final EmailProperties emailProperties;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Object> sharedVariables;
+    private final Map<String, Template> templates = new ConcurrentHashMap<>();
+    private volatile CurrentYear currentYear = CurrentYear.now();
 
-    public String buildHtml(String templateName, Map<String, Object> variables) {
-        try {
-            Context context = new Context(Locale.getDefault());
+    public record RenderedEmail(String html, String text) {
+    }
+
+    /**
+     * A template ready to render; {@code html} is null when the HTML body is rendered through Thymeleaf
+     */
+    private record Template(CompiledTemplate html, CompiledTemplate text, Timer renderTimer) {
+    }
 
-            context.setVariable("currentYear", java.time.Year.now().getValue());
-            context.setVariable("companyName", "Digital Bank");
-            context.setVariable("supportEmail", "support@digitalbank.com");
+    private record CurrentYear(String value, long validUntil) {
+
+        private static CurrentYear now() {
+            LocalDate today = LocalDate.now();
+            long nextYear = today.withDayOfYear(1).plusYears(1).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            return new CurrentYear(String.valueOf(today.getYear()), nextYear);
+        }
+    }
+
+    public EmailTemplateService(TemplateEngine templateEngine, EmailProperties emailProperties, MeterRegistry meterRegistry) {
+        this.templateEngine = templateEngine;
+        this.emailProperties = emailProperties;
+        this.meterRegistry = meterRegistry;
+        this.sharedVariables = Map.of(
+                "companyName", emailProperties.getCompanyName(),
+                "supportEmail", emailProperties.getSupportEmail());
+    }
 
-            if (variables != null) {
-                variables.forEach(context::setVariable);
+    @PostConstruct
+    public void compileTemplates() {
+        try {
+            Resource[] resources = new PathMatchingResourcePatternResolver()
+                    .getResources(emailProperties.getTemplatesBasePath() + "*.html");
+
+            for (Resource resource : resources) {
+                String name = resource.getFilename().substring(0, resource.getFilename().length() - ".html".length());
+                templates.put(name, compile(name, resource));
             }
+        } catch (IOException e) {
+            throw new EmailTemplateException("Failed to read email templates from " + emailProperties.getTemplatesBasePath(), e);
+        }
 
-            String templatePath = "email/" + templateName + ".html";
-            return templateEngine.process(templatePath, context);
+        log.info("Compiled email templates {}", templates.keySet());
+    }
 
-        } catch (Exception e) {
+    /**
+     * Render both bodies of the template with the given variables
+     */
+    public RenderedEmail render(String templateName, Map<String, Object> variables) {
+        Template template = templates.get(templateName);
+        if (template == null) {
+            throw new EmailTemplateException("Unknown email template: " + templateName);
+        }
+
+        long start = System.nanoTime();
+        try {
+            String html = template.html() != null
+                    ? template.html().render(slot -> HtmlEscape.escapeHtml4Xml(value(slot, variables)))
+                    : renderWithThymeleaf(templateName, variables);
+            String text = template.text().render(slot -> value(slot, variables));
+            return new RenderedEmail(html, text);
+
+        } catch (RuntimeException e) {
             log.error("Error building email template: {}", templateName, e);
             throw new EmailTemplateException("Failed to build email template: " + templateName, e);
+        } finally {
+            template.renderTimer().record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
         }
     }
 
-    public String buildText(String templateName, Map<String, Object> variables) {
-        try {
-            Context context = new Context(Locale.getDefault());
+    //region Helpers
+    private Template compile(String name, Resource htmlResource) throws IOException {
+        CompiledTemplate html = compileHtml(name, htmlResource.getContentAsString(StandardCharsets.UTF_8));
 
-            if (variables != null) {
-                variables.forEach(context::setVariable);
-            }
+        Resource textResource = htmlResource.createRelative(name + ".txt");
+        CompiledTemplate text = CompiledTemplate.compile(
+                textResource.exists() ? textResource.getContentAsString(StandardCharsets.UTF_8) : "", TEXT_SLOT);
+
+        Timer renderTimer = Timer.builder("bank.email.render")
+                .description("Time to render the HTML and text bodies of an email")
+                .tags("template", name, "compiled", String.valueOf(html != null))
+                .register(meterRegistry);
+
+        return new Template(html, text, renderTimer);
+    }
+
+    /**
+     * Run the template through Thymeleaf with a marker for every variable it reads and split the output on
+     * the markers. Returns null when the compiled form does not render like Thymeleaf does.
+     */
+    private CompiledTemplate compileHtml(String name, String source) {
+        Set<String> variableNames = new LinkedHashSet<>();
+        Matcher matcher = VARIABLE.matcher(source);
+        while (matcher.find()) {
+            variableNames.add(matcher.group(1));
+        }
+        variableNames.removeAll(sharedVariables.keySet());
+
+        Map<String, Object> markers = new HashMap<>();
+        Map<String, Object> samples = new HashMap<>();
+        for (String variable : variableNames) {
+            markers.put(variable, MARKER_START + variable + MARKER_END);
+            samples.put(variable, "<b>&" + variable);
+        }
+
+        CompiledTemplate compiled = CompiledTemplate.compile(renderWithThymeleaf(name, markers), MARKER_SLOT);
 
-            String templatePath = "email/" + templateName + ".txt";
-            return templateEngine.process(templatePath, context);
+        String expected = renderWithThymeleaf(name, samples);
+        String actual = compiled.render(slot -> HtmlEscape.escapeHtml4Xml(value(slot, samples)));
+        if (!expected.equals(actual)) {
+            log.warn("Email template {} cannot be compiled, rendering it through Thymeleaf", name);
+            return null;
+        }
+
+        return compiled;
+    }
+
+    private String renderWithThymeleaf(String templateName, Map<String, Object> variables) {
+        Context context = new Context(Locale.getDefault());
+        context.setVariables(sharedVariables);
+        context.setVariable(CURRENT_YEAR, currentYear());
+        context.setVariables(variables);
+
+        return templateEngine.process(THYMELEAF_PREFIX + templateName + ".html", context);
+    }
+
+    private String value(String slot, Map<String, Object> variables) {
+        Object value = variables.get(slot);
+        if (value == null) {
+            value = CURRENT_YEAR.equals(slot) ? currentYear() : sharedVariables.get(slot);
+        }
+        return value != null ? value.toString() : "";
+    }
 
-        } catch (Exception e) {
-            log.error("Error building text template: {}", templateName, e);
-            throw new EmailTemplateException("Failed to build text template: " + templateName, e);
+    private String currentYear() {
+        CurrentYear year = currentYear;
+        if (System.currentTimeMillis() >= year.validUntil()) {
+            year = CurrentYear.now();
+            currentYear = year;
         }
+        return year.value();
     }
+    //endregion
 }
@@ -0,0 +1,237 @@
+package com.digitalbank.service;
+
+import com.digitalbank.dto.BankTransactionRequestDTO;
+import com.digitalbank.dto.BankTransactionResponseDTO;
+import com.digitalbank.exception.custom.IdempotencyKeyConflictException;
+import com.digitalbank.exception.custom.TransactionException;
+import com.digitalbank.properties.IdempotencyProperties;
+import com.digitalbank.repository.IdempotencyKeyRepository;
+import com.digitalbank.repository.IdempotencyKeyRepository.StoredKey;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Runs a transfer at most once per Idempotency-Key.
+ * Recent keys are kept in a bounded LRU cache with a TTL and every key is claimed in the idempotency_key
+ * table, which answers replays older than the cache and replays reaching another instance. A duplicate
+ * arriving while the first execution is still running on this instance waits for its result.
+ * A claim is held for a lease: a key left in progress by an instance that died can be claimed again by a retry
+ * once the lease runs out, and only the first execution to store its response keeps its transfer.
+ */
+@Service
+@Slf4j
+public class IdempotencyService {
+    public static final int MAX_KEY_LENGTH = 255;
+
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+    private final IdempotencyProperties idempotencyProperties;
+    private final ObjectMapper objectMapper;
+    private final Counter cacheReplays;
+    private final Counter tableReplays;
+    private final Counter inFlightWaits;
+
+    /**
+     * Access ordered, so the least recently used key is evicted first. Guarded by its own monitor.
+     */
+    private final Map<String, Entry> recentKeys;
+
+    private record Entry(String requestHash, CompletableFuture<BankTransactionResponseDTO> result, long createdAt) {
+    }
+
+    public IdempotencyService(IdempotencyKeyRepository idempotencyKeyRepository,
+                              IdempotencyProperties idempotencyProperties,
+                              ObjectMapper objectMapper,
+                              MeterRegistry meterRegistry) {
+        this.idempotencyKeyRepository = idempotencyKeyRepository;
+        this.idempotencyProperties = idempotencyProperties;
+        this.objectMapper = objectMapper;
+        this.cacheReplays = replayCounter(meterRegistry, "cache");
+        this.tableReplays = replayCounter(meterRegistry, "table");
+        this.inFlightWaits = replayCounter(meterRegistry, "in-flight");
+        this.recentKeys = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > idempotencyProperties.getCacheSize();
+            }
+        };
+    }
+
+    /**
+     * Return the response of the first execution of the key, running the action only if the key is new.
+     * The action must call {@link #complete} in the transaction that moves the money, or hand the key to the
+     * ledger, which stores the response with {@link #completeCommitted} when it persists the transfer.
+     */
+    public BankTransactionResponseDTO execute(String key, BankTransactionRequestDTO request,
+                                              Supplier<BankTransactionResponseDTO> action) {
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new TransactionException("Idempotency-Key should have between 1 and " + MAX_KEY_LENGTH + " characters");
+        }
+
+        String requestHash = hash(request);
+        Entry entry;
+        boolean owner = false;
+
+        synchronized (recentKeys) {
+            entry = recentKeys.get(key);
+            if (entry == null || isExpired(entry)) {
+                entry = new Entry(requestHash, new CompletableFuture<>(), System.currentTimeMillis());
+                recentKeys.put(key, entry);
+                owner = true;
+            }
+        }
+
+        if (!entry.requestHash().equals(requestHash)) {
+            throw new IdempotencyKeyConflictException("Idempotency-Key " + key + " was already used with a different request");
+        }
+
+        if (!owner) {
+            (entry.result().isDone() ? cacheReplays : inFlightWaits).increment();
+            return await(key, entry);
+        }
+
+        try {
+            BankTransactionResponseDTO response = claimAndRun(key, requestHash, action);
+            entry.result().complete(response);
+            return response;
+        } catch (RuntimeException e) {
+            synchronized (recentKeys) {
+                recentKeys.remove(key, entry);
+            }
+            entry.result().completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Store the response of the key. Called inside the transfer transaction so the key and the
+     * money movement are committed together; fails, rolling the transfer back, when an execution that
+     * took the key over completed it first.
+     */
+    public void complete(String key, BankTransactionResponseDTO response) {
+        if (!idempotencyKeyRepository.complete(key, write(key, response))) {
+            throw new IdempotencyKeyConflictException("A request with Idempotency-Key " + key + " was already completed");
+        }
+    }
+
+    /**
+     * Store the response of a key whose transfer can no longer be rolled back, in the transaction that writes it.
+     * A key completed first by an execution that took it over is only reported, as its transfer stands anyway.
+     */
+    public void completeCommitted(String key, BankTransactionResponseDTO response) {
+        if (!idempotencyKeyRepository.complete(key, write(key, response))) {
+            log.warn("Idempotency-Key {} was already completed or is gone, keeping transaction {}", key, response.getId());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.idempotency.cache.ttl}")
+    public void purgeExpiredKeys() {
+        int deleted = idempotencyKeyRepository.deleteCreatedBefore(Instant.now().minusMillis(idempotencyProperties.getRetentionMs()));
+        if (deleted > 0) {
+            log.info("Purged {} expired idempotency keys", deleted);
+        }
+    }
+
+    //region Helpers
+    private BankTransactionResponseDTO claimAndRun(String key, String requestHash, Supplier<BankTransactionResponseDTO> action) {
+        Instant now = Instant.now();
+        Optional<StoredKey> stored = idempotencyKeyRepository.claim(key, requestHash,
+                now.minusMillis(idempotencyProperties.getRetentionMs()), now.minusMillis(idempotencyProperties.getLeaseMs()));
+
+        if (stored.isPresent()) {
+            if (!stored.get().requestHash().equals(requestHash)) {
+                throw new IdempotencyKeyConflictException("Idempotency-Key " + key + " was already used with a different request");
+            }
+
+            if (stored.get().response() == null) {
+                throw new IdempotencyKeyConflictException("A request with Idempotency-Key " + key + " is still in progress");
+            }
+
+            tableReplays.increment();
+            return read(key, stored.get().response());
+        }
+
+        try {
+            return action.get();
+        } catch (RuntimeException e) {
+            idempotencyKeyRepository.release(key);
+            throw e;
+        }
+    }
+
+    private BankTransactionResponseDTO await(String key, Entry entry) {
+        try {
+            return entry.result().get(idempotencyProperties.getWaitTimeoutMs(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new IdempotencyKeyConflictException("A request with Idempotency-Key " + key + " is still in progress");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new TransactionException("Error processing transaction: " + e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TransactionException("Interrupted while waiting for Idempotency-Key " + key);
+        }
+    }
+
+    private boolean isExpired(Entry entry) {
+        return entry.result().isDone()
+                && System.currentTimeMillis() - entry.createdAt() > idempotencyProperties.getCacheTtlMs();
+    }
+
+    private String write(String key, BankTransactionResponseDTO response) {
+        try {
+            return objectMapper.writeValueAsString(response);
+        } catch (JsonProcessingException e) {
+            throw new TransactionException("Could not store the response of Idempotency-Key " + key);
+        }
+    }
+
+    private BankTransactionResponseDTO read(String key, String response) {
+        try {
+            return objectMapper.readValue(response, BankTransactionResponseDTO.class);
+        } catch (JsonProcessingException e) {
+            throw new TransactionException("Could not read the stored response of Idempotency-Key " + key);
+        }
+    }
+
+    private static String hash(BankTransactionRequestDTO request) {
+        String canonical = request.getOriginCustomerId() + "|" + request.getDestinationCustomerId() + "|"
+                + request.getAmount().stripTrailingZeros().toPlainString() + "|"
+                + (request.getDescription() != null ? request.getDescription() : "");
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(canonical.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static Counter replayCounter(MeterRegistry meterRegistry, String source) {
+        return Counter.builder("bank.transfer.idempotency.replays")
+                .description("Transfers answered from an earlier execution of the same Idempotency-Key")
+                .tag("source", source)
+                .register(meterRegistry);
+    }
+    //endregion
+}
@@ -0,0 +1,66 @@
+package com.digitalbank.service;
+
+import com.digitalbank.properties.NotificationProperties;
+import com.digitalbank.repository.NotificationOutboxRepository;
+import com.digitalbank.repository.NotificationOutboxRepository.OutboxEntry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Moves transfer notifications from the outbox to the {@link NotificationService}.
+ * Rows are claimed in batches with a lease, so several instances can relay the same outbox, and a row is
+ * only removed once its notifications are stored. A row whose dispatch fails is claimed again after the lease.
+ */
+@Component
+@Slf4j
+public class NotificationOutboxRelay {
+    private final NotificationOutboxRepository notificationOutboxRepository;
+    private final NotificationService notificationService;
+    private final NotificationProperties notificationProperties;
+    private final TransactionTemplate transactionTemplate;
+
+    public NotificationOutboxRelay(NotificationOutboxRepository notificationOutboxRepository,
+                                   NotificationService notificationService,
+                                   NotificationProperties notificationProperties,
+                                   PlatformTransactionManager transactionManager) {
+        this.notificationOutboxRepository = notificationOutboxRepository;
+        this.notificationService = notificationService;
+        this.notificationProperties = notificationProperties;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Scheduled(fixedDelayString = "${app.notification.outbox.poll-interval}")
+    public void relay() {
+        try {
+            List<OutboxEntry> batch;
+            do {
+                batch = claim();
+                if (!batch.isEmpty()) {
+                    int size = batch.size();
+                    notificationService.dispatch(batch).whenComplete((result, e) -> {
+                        if (e != null) {
+                            log.error("Failed to dispatch {} outbox notifications, retrying after the lease", size, e);
+                        }
+                    });
+                }
+            } while (batch.size() == notificationProperties.getOutboxBatchSize());
+
+        } catch (RuntimeException e) {
+            log.error("Failed to claim notifications from the outbox", e);
+        }
+    }
+
+    //region Helpers
+    private List<OutboxEntry> claim() {
+        Instant now = Instant.now();
+        return transactionTemplate.execute(status -> notificationOutboxRepository.claim(
+                notificationProperties.getOutboxBatchSize(), now, now.plusMillis(notificationProperties.getOutboxLeaseMs())));
+    }
+    //endregion
+}
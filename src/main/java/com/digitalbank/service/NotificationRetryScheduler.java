@@ -0,0 +1,175 @@
+package com.digitalbank.service;
+
+import com.digitalbank.dto.EmailDTO;
+import com.digitalbank.properties.NotificationProperties;
+import com.digitalbank.repository.NotificationDeliveryRepository;
+import com.digitalbank.repository.NotificationDeliveryRepository.Failure;
+import com.digitalbank.repository.NotificationDeliveryRepository.PendingEmail;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Delivers transfer and digest emails and retries the failed ones from the notification table.
+ * An attempt only queues the email on the SMTP engine; its outcome is collected in memory and written in
+ * batches on the next tick, as SENT, as PENDING with the attempt count and the time of the next attempt, or
+ * as DEAD_LETTER after the last attempt. The same tick claims the emails that are due again, so no thread
+ * waits out a backoff. An email whose outcome was never recorded, after a crash for instance, is due again
+ * once the lease of its attempt expires.
+ */
+@Component
+@Slf4j
+public class NotificationRetryScheduler {
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("dd MMMM yyyy, HH:mm");
+
+    private final NotificationDeliveryRepository notificationDeliveryRepository;
+    private final EmailService emailService;
+    private final NotificationProperties notificationProperties;
+    private final TransactionTemplate transactionTemplate;
+    private final Queue<Long> sent = new ConcurrentLinkedQueue<>();
+    private final Queue<Failure> failed = new ConcurrentLinkedQueue<>();
+    private final Counter retries;
+    private final Counter deadLettered;
+
+    public NotificationRetryScheduler(NotificationDeliveryRepository notificationDeliveryRepository,
+                                      EmailService emailService,
+                                      NotificationProperties notificationProperties,
+                                      PlatformTransactionManager transactionManager,
+                                      MeterRegistry meterRegistry) {
+        this.notificationDeliveryRepository = notificationDeliveryRepository;
+        this.emailService = emailService;
+        this.notificationProperties = notificationProperties;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.retries = Counter.builder("bank.notification.email.retries")
+                .description("Transfer emails attempted again after a failed attempt")
+                .register(meterRegistry);
+        this.deadLettered = Counter.builder("bank.notification.email.dead.lettered")
+                .description("Transfer emails given up after the last attempt failed")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Attempt the emails now. Their notifications must be committed as PENDING with a lease.
+     */
+    public void deliver(List<PendingEmail> emails) {
+        emails.forEach(this::attempt);
+    }
+
+    @Scheduled(fixedDelayString = "${app.email.notification.email.retry.poll-interval}")
+    public void tick() {
+        try {
+            recordOutcomes();
+
+            List<PendingEmail> due;
+            do {
+                due = claimDue();
+                retries.increment(due.size());
+                deliver(due);
+            } while (due.size() == notificationProperties.getEmailRetryBatchSize());
+
+        } catch (RuntimeException e) {
+            log.error("Failed to retry notification emails", e);
+        }
+    }
+
+    //region Helpers
+    private void attempt(PendingEmail email) {
+        try {
+            String formattedDate = LocalDateTime.ofInstant(email.transactionDate(), ZoneId.systemDefault())
+                    .format(DATE_FORMATTER);
+
+            CompletableFuture<EmailDTO> response = email.isDigest()
+                    ? emailService.sendTransferDigestEmail(
+                            email.destinationEmail(),
+                            email.destinationName(),
+                            email.transferCount(),
+                            String.format("%.2f", email.amount()),
+                            formattedDate)
+                    : emailService.sendTransferEmail(
+                            email.destinationEmail(),
+                            email.destinationName(),
+                            email.originName(),
+                            String.format("%.2f", email.amount()),
+                            String.valueOf(email.bankTransactionId()),
+                            formattedDate);
+
+            response.whenComplete((result, e) -> {
+                if (e == null && result.isSuccess()) {
+                    sent.add(email.notificationId());
+                } else {
+                    failed(email, e != null ? e.getMessage() : result.getError());
+                }
+            });
+
+        } catch (RuntimeException e) {
+            failed(email, e.getMessage());
+        }
+    }
+
+    private void failed(PendingEmail email, String error) {
+        int attempts = email.attempts() + 1;
+        Instant nextAttemptAt = null;
+
+        if (attempts < notificationProperties.getEmailMaxAttempts()) {
+            long delayMs = (long) (notificationProperties.getEmailRetryDelayMs()
+                    * Math.pow(notificationProperties.getEmailRetryMultiplier(), attempts - 1));
+            nextAttemptAt = Instant.now().plusMillis(delayMs);
+        } else {
+            deadLettered.increment();
+            log.error("Giving up on the email of notification {} after {} attempts", email.notificationId(), attempts);
+        }
+
+        failed.add(new Failure(email.notificationId(), attempts, nextAttemptAt, error));
+    }
+
+    private void recordOutcomes() {
+        List<Long> sentIds = drain(sent);
+        List<Failure> failures = drain(failed);
+        if (sentIds.isEmpty() && failures.isEmpty()) {
+            return;
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                notificationDeliveryRepository.markSent(sentIds);
+                notificationDeliveryRepository.markFailed(failures);
+            });
+        } catch (RuntimeException e) {
+            // Keep them for the next tick, the leases still protect the emails from a second attempt
+            sent.addAll(sentIds);
+            failed.addAll(failures);
+            throw e;
+        }
+    }
+
+    private List<PendingEmail> claimDue() {
+        Instant now = Instant.now();
+        return transactionTemplate.execute(status -> notificationDeliveryRepository.claimDue(
+                notificationProperties.getEmailRetryBatchSize(), now,
+                now.plusMillis(notificationProperties.getEmailRetryLeaseMs())));
+    }
+
+    private static <T> List<T> drain(Queue<T> queue) {
+        List<T> drained = new ArrayList<>();
+        T item;
+        while ((item = queue.poll()) != null) {
+            drained.add(item);
+        }
+        return drained;
+    }
+    //endregion
+}
@@ -1,95 +1,179 @@
 package com.digitalbank.service;
 
-import com.digitalbank.entity.BankTransaction;
-import com.digitalbank.entity.Customer;
+import com.digitalbank.config.AsyncConfig;
 import com.digitalbank.entity.Notification;
+import com.digitalbank.entity.enums.NotificationDeliveryStatusEnum;
 import com.digitalbank.entity.enums.NotificationStatusEnum;
+import com.digitalbank.properties.NotificationProperties;
+import com.digitalbank.repository.BankTransactionRepository;
+import com.digitalbank.repository.CustomerRepository;
+import com.digitalbank.repository.NotificationDeliveryRepository;
+import com.digitalbank.repository.NotificationDeliveryRepository.PendingEmail;
+import com.digitalbank.repository.NotificationOutboxRepository;
+import com.digitalbank.repository.NotificationOutboxRepository.OutboxEntry;
 import com.digitalbank.repository.NotificationRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
-import java.time.LocalDateTime;
-import java.time.ZoneId;
-import java.time.format.DateTimeFormatter;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class NotificationService {
     private final NotificationRepository notificationRepository;
-    private final EmailService emailService;
+    private final NotificationOutboxRepository notificationOutboxRepository;
+    private final NotificationDeliveryRepository notificationDeliveryRepository;
+    private final CustomerRepository customerRepository;
+    private final BankTransactionRepository bankTransactionRepository;
+    private final CustomerSummaryService customerSummaryService;
+    private final NotificationRetryScheduler notificationRetryScheduler;
+    private final NotificationProperties notificationProperties;
 
-    @Async()
-    public CompletableFuture<Void> sendTransactionNotification(BankTransaction bankTransaction) {
-        return CompletableFuture.runAsync(() -> {
-            String threadName = Thread.currentThread().getName();
-            log.info("[{}] Starting notification for transaction {}", threadName, bankTransaction.getId());
+    /**
+     * Store the notifications of outbox entries claimed by the relay and remove the entries in one transaction,
+     * then queue their emails for SMTP delivery. The email of a received transfer stays PENDING until it is sent.
+     * Transfers to a recipient emailed less than the digest window ago stay in the outbox until the window closes;
+     * the transfers to one recipient dispatched together get one digest email and one summary notification.
+     * Entries whose transaction was deleted since they were claimed are skipped.
+     */
+    @Async(AsyncConfig.NOTIFICATION_EXECUTOR)
+    @Transactional
+    public CompletableFuture<Void> dispatch(List<OutboxEntry> entries) {
+        String threadName = Thread.currentThread().getName();
+        log.info("[{}] Dispatching notifications of {} transactions", threadName, entries.size());
 
-            try {
-                saveNotificationsToDatabase(bankTransaction);
-                sendEmailNotifications(bankTransaction);
+        List<OutboxEntry> existing = notificationOutboxRepository.lockAll(entries);
+        if (existing.size() < entries.size()) {
+            log.info("[{}] Skipping {} notifications whose transaction was deleted", threadName,
+                    entries.size() - existing.size());
+        }
+
+        Instant now = Instant.now();
+        Instant leaseUntil = now.plusMillis(notificationProperties.getEmailRetryLeaseMs());
+        List<List<OutboxEntry>> groups = coalesce(existing, now);
+
+        List<Notification> received = new ArrayList<>(groups.size());
+        List<Notification> notifications = new ArrayList<>(groups.size() + existing.size());
+        List<OutboxEntry> dispatched = new ArrayList<>(existing.size());
+        for (List<OutboxEntry> group : groups) {
+            Notification receivedNotification = receivedNotification(group, leaseUntil);
+            received.add(receivedNotification);
+            notifications.add(receivedNotification);
+
+            // Shown in the app only, there is no email to deliver
+            for (OutboxEntry entry : group) {
+                notifications.add(Notification.builder()
+                        .customer(customerRepository.getReferenceById(entry.originCustomerId()))
+                        .bankTransaction(bankTransactionRepository.getReferenceById(entry.bankTransactionId()))
+                        .message(String.format("Transaction of $ %.2f to %s completed",
+                                entry.amount(), entry.destinationName()))
+                        .notificationType(NotificationStatusEnum.TRANSFER_SENT)
+                        .isSent(true)
+                        .deliveryStatus(NotificationDeliveryStatusEnum.SENT)
+                        .build());
+            }
+            dispatched.addAll(group);
+        }
 
-                log.info("[{}] Notification completed for transaction {}", threadName, bankTransaction.getId());
+        notificationRepository.saveAll(notifications);
+        customerSummaryService.recordNotifications(notifications);
+        notificationOutboxRepository.deleteAll(dispatched);
 
-            } catch (Exception e) {
-                log.error("[{}] Error in notification for transaction {}", threadName, bankTransaction.getId(), e);
+        List<PendingEmail> emails = new ArrayList<>(groups.size());
+        for (int i = 0; i < groups.size(); i++) {
+            Notification notification = received.get(i);
+            OutboxEntry latest = latest(groups.get(i));
+            emails.add(new PendingEmail(notification.getId(), 0, latest.bankTransactionId(),
+                    latest.destinationEmail(), latest.destinationName(), latest.originName(),
+                    notification.getAmount() != null ? notification.getAmount() : latest.amount(),
+                    latest.transactionDate(), notification.getTransferCount()));
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                notificationRetryScheduler.deliver(emails);
             }
         });
+
+        return CompletableFuture.completedFuture(null);
     }
 
-    private void saveNotificationsToDatabase(BankTransaction bankTransaction) {
-        try {
-            Notification destinationNotification = Notification.builder()
-                    .customer(bankTransaction.getDestinationCustomer())
-                    .bankTransaction(bankTransaction)
-                    .message(String.format("You received a transaction of $ %.2f from %s",
-                            bankTransaction.getAmount(), bankTransaction.getOriginCustomer().getName()))
-                    .notificationType(NotificationStatusEnum.TRANSFER_RECEIVED)
-                    .isSent(true)
-                    .build();
+    //region Helpers
+    /**
+     * Group the entries to dispatch now by recipient, deferring the ones whose recipient is inside a digest window
+     */
+    private List<List<OutboxEntry>> coalesce(List<OutboxEntry> entries, Instant now) {
+        long windowMs = notificationProperties.getDigestWindowMs();
+        if (windowMs <= 0) {
+            return entries.stream().map(List::of).toList();
+        }
 
-            Notification originNotification = Notification.builder()
-                    .customer(bankTransaction.getOriginCustomer())
-                    .bankTransaction(bankTransaction)
-                    .message(String.format("Transaction of $ %.2f to %s completed",
-                            bankTransaction.getAmount(), bankTransaction.getOriginCustomer().getName()))
-                    .notificationType(NotificationStatusEnum.TRANSFER_SENT)
-                    .isSent(true)
-                    .build();
+        Map<Long, List<OutboxEntry>> byRecipient = entries.stream().collect(Collectors.groupingBy(
+                OutboxEntry::destinationCustomerId, LinkedHashMap::new, Collectors.toList()));
+        Map<Long, Instant> lastEmailedAt = notificationDeliveryRepository.findLastEmailedAt(
+                byRecipient.keySet(), now.minusMillis(windowMs));
 
-            notificationRepository.saveAll(List.of(destinationNotification, originNotification));
+        List<List<OutboxEntry>> groups = new ArrayList<>(byRecipient.size());
+        int deferred = 0;
+        for (Map.Entry<Long, List<OutboxEntry>> recipient : byRecipient.entrySet()) {
+            Instant emailedAt = lastEmailedAt.get(recipient.getKey());
+            if (emailedAt != null) {
+                notificationOutboxRepository.deferAll(recipient.getValue(), emailedAt.plusMillis(windowMs));
+                deferred += recipient.getValue().size();
+            } else {
+                groups.add(recipient.getValue());
+            }
+        }
 
-        } catch (Exception e) {
-            log.error("Failed to save notifications to database", e);
-            throw e;
+        if (deferred > 0) {
+            log.info("Deferred {} transfers to recipients inside their digest window", deferred);
         }
+        return groups;
     }
 
-    private void sendEmailNotifications(BankTransaction transaction) {
-        try {
-            Customer sender = transaction.getOriginCustomer();
-            Customer recipient = transaction.getDestinationCustomer();
-
-            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd MMMM yyyy, HH:mm");
-            String formattedDate = LocalDateTime.ofInstant(
-                    transaction.getTransactionDate(),
-                    ZoneId.systemDefault()
-            ).format(formatter);
-
-            emailService.sendTransferEmail(
-                    "vinisspy@gmail.com",
-                    recipient.getName(),
-                    sender.getName(),
-                    String.format("%.2f", transaction.getAmount()),
-                    transaction.getId().toString(),
-                    formattedDate
-            );
-        } catch (Exception e) {
-            log.error("Failed to send email notifications", e);
+    private Notification receivedNotification(List<OutboxEntry> group, Instant leaseUntil) {
+        OutboxEntry latest = latest(group);
+        Notification.NotificationBuilder notification = Notification.builder()
+                .customer(customerRepository.getReferenceById(latest.destinationCustomerId()))
+                .bankTransaction(bankTransactionRepository.getReferenceById(latest.bankTransactionId()))
+                .isSent(false)
+                .deliveryStatus(NotificationDeliveryStatusEnum.PENDING)
+                .nextAttemptAt(leaseUntil);
+
+        if (group.size() == 1) {
+            return notification
+                    .message(String.format("You received a transaction of $ %.2f from %s",
+                            latest.amount(), latest.originName()))
+                    .notificationType(NotificationStatusEnum.TRANSFER_RECEIVED)
+                    .build();
         }
+
+        BigDecimal total = group.stream().map(OutboxEntry::amount).reduce(BigDecimal.ZERO, BigDecimal::add);
+        return notification
+                .message(String.format("You received %d transactions totalling $ %.2f", group.size(), total))
+                .notificationType(NotificationStatusEnum.TRANSFER_DIGEST)
+                .transferCount(group.size())
+                .amount(total)
+                .build();
+    }
+
+    private static OutboxEntry latest(List<OutboxEntry> group) {
+        return group.stream().max(Comparator.comparing(OutboxEntry::transactionDate)).orElseThrow();
     }
+    //endregion
 }
@@ -0,0 +1,105 @@
+package com.digitalbank.service;
+
+import com.digitalbank.properties.TransactionProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.OptimisticLockException;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.StaleStateException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Runs transfers without row locks, relying on the customer version column to detect
+ * concurrent updates. Conflicting attempts are retried a bounded number of times; when
+ * they keep conflicting the accounts are treated as contended for a cooldown period and
+ * the caller is expected to fall back to the pessimistic path.
+ */
+@Service
+@Slf4j
+public class OptimisticTransferExecutor {
+    private final TransactionProperties transactionProperties;
+    private final TransactionTemplate transactionTemplate;
+    private final Map<Long, Long> contendedUntil = new ConcurrentHashMap<>();
+    private final Counter conflictCounter;
+    private final Counter fallbackCounter;
+
+    public OptimisticTransferExecutor(TransactionProperties transactionProperties,
+                                      PlatformTransactionManager transactionManager,
+                                      MeterRegistry meterRegistry) {
+        this.transactionProperties = transactionProperties;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.transactionTemplate.setTimeout(transactionProperties.getTimeoutSeconds());
+        this.conflictCounter = Counter.builder("bank.transfer.optimistic.conflicts").register(meterRegistry);
+        this.fallbackCounter = Counter.builder("bank.transfer.optimistic.fallbacks").register(meterRegistry);
+    }
+
+    /**
+     * Whether any of the accounts recently exhausted its optimistic retries
+     */
+    public boolean isContended(Collection<Long> accountIds) {
+        long now = System.currentTimeMillis();
+
+        for (Long accountId : accountIds) {
+            Long until = contendedUntil.get(accountId);
+            if (until != null) {
+                if (until > now) {
+                    return true;
+                }
+                contendedUntil.remove(accountId, until);
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Run the work in a new transaction, retrying on version conflicts.
+     * Returns empty when every attempt conflicted, so the caller can take the pessimistic path.
+     */
+    public <T> Optional<T> execute(Collection<Long> accountIds, Supplier<T> work) {
+        for (int attempt = 1; attempt <= transactionProperties.getOptimisticMaxAttempts(); attempt++) {
+            try {
+                return Optional.ofNullable(transactionTemplate.execute(status -> work.get()));
+            } catch (RuntimeException e) {
+                if (!isVersionConflict(e)) {
+                    throw e;
+                }
+
+                conflictCounter.increment();
+                log.debug("Version conflict on accounts {} (attempt {}/{})",
+                        accountIds, attempt, transactionProperties.getOptimisticMaxAttempts());
+            }
+        }
+
+        long until = System.currentTimeMillis() + transactionProperties.getContendedAccountCooldownMs();
+        accountIds.forEach(accountId -> contendedUntil.put(accountId, until));
+        fallbackCounter.increment();
+        log.info("Accounts {} are contended, falling back to pessimistic locking", accountIds);
+
+        return Optional.empty();
+    }
+
+    //region Helpers
+    private boolean isVersionConflict(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof OptimisticLockingFailureException
+                    || t instanceof OptimisticLockException
+                    || t instanceof StaleStateException) {
+                return true;
+            }
+        }
+        return false;
+    }
+    //endregion
+}
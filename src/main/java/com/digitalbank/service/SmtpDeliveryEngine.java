@@ -0,0 +1,245 @@
+package com.digitalbank.service;
+
+import com.digitalbank.properties.EmailProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Delivers emails over a small pool of long-lived SMTP connections instead of connecting once per message.
+ * Messages wait on a bounded queue; every connection has its own worker, which takes the queued messages in
+ * batches and sends them back to back over the open connection. The number of connections caps the deliveries
+ * in flight against the SMTP host. A connection is opened again after a failed delivery, after a number of
+ * messages and after being idle; a message that fails on a reused connection is retried once on a fresh one.
+ */
+@Service
+@Slf4j
+public class SmtpDeliveryEngine implements SmartLifecycle {
+    private static final long STOP_TIMEOUT_MS = 30_000;
+    private static final long POLL_INTERVAL_MS = 100;
+
+    private final JavaMailSenderImpl mailSender;
+    private final EmailProperties emailProperties;
+    private final BlockingQueue<Delivery> queue;
+    private final Timer delivered;
+    private final Counter failed;
+    private final Counter connections;
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean running;
+
+    private record Delivery(MimeMessage message, CompletableFuture<Void> result) {
+    }
+
+    public SmtpDeliveryEngine(JavaMailSenderImpl mailSender, EmailProperties emailProperties, MeterRegistry meterRegistry) {
+        this.mailSender = mailSender;
+        this.emailProperties = emailProperties;
+        this.queue = new ArrayBlockingQueue<>(emailProperties.getSmtpQueueCapacity());
+        this.delivered = Timer.builder("bank.email.delivery")
+                .description("Time to hand a message to the SMTP host over an open connection")
+                .register(meterRegistry);
+        this.failed = Counter.builder("bank.email.failed")
+                .description("Messages the SMTP host did not accept")
+                .register(meterRegistry);
+        this.connections = Counter.builder("bank.email.connections")
+                .description("SMTP connections opened")
+                .register(meterRegistry);
+        Gauge.builder("bank.email.queue.depth", queue, BlockingQueue::size)
+                .description("Messages waiting for an SMTP connection")
+                .register(meterRegistry);
+    }
+
+    public MimeMessage createMimeMessage() {
+        return mailSender.createMimeMessage();
+    }
+
+    /**
+     * Queue the message for delivery, waiting up to the submit timeout for room in the queue.
+     * The returned future fails with a {@link MailSendException} when the message is not delivered.
+     */
+    public CompletableFuture<Void> send(MimeMessage message) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        if (!running) {
+            result.completeExceptionally(new MailSendException("SMTP delivery is not running"));
+            return result;
+        }
+
+        try {
+            if (!queue.offer(new Delivery(message, result), emailProperties.getSmtpSubmitTimeoutMs(), TimeUnit.MILLISECONDS)) {
+                result.completeExceptionally(new MailSendException("Too many emails waiting for delivery"));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.completeExceptionally(new MailSendException("Interrupted while queueing email"));
+        }
+
+        return result;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        for (int i = 0; i < emailProperties.getSmtpConnections(); i++) {
+            workers.add(Thread.ofPlatform().name("smtp-" + i).daemon().start(this::deliver));
+        }
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+
+        try {
+            for (Thread worker : workers) {
+                worker.join(STOP_TIMEOUT_MS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("Interrupted while stopping the SMTP workers");
+        }
+        workers.clear();
+
+        Delivery delivery;
+        while ((delivery = queue.poll()) != null) {
+            delivery.result().completeExceptionally(new MailSendException("SMTP delivery stopped"));
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    //region Helpers
+    private void deliver() {
+        List<Delivery> batch = new ArrayList<>(emailProperties.getSmtpBatchSize());
+        Connection connection = new Connection();
+
+        try {
+            while (running || !queue.isEmpty()) {
+                try {
+                    Delivery first = queue.poll(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        connection.closeIfIdle();
+                        continue;
+                    }
+
+                    batch.add(first);
+                    queue.drainTo(batch, emailProperties.getSmtpBatchSize() - 1);
+                    batch.forEach(connection::send);
+
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (RuntimeException e) {
+                    log.error("Unexpected error delivering {} emails", batch.size(), e);
+                    batch.forEach(delivery -> delivery.result().completeExceptionally(e));
+                }
+                batch.clear();
+            }
+        } finally {
+            connection.close();
+        }
+    }
+
+    /**
+     * One SMTP connection, used only by the worker that owns it
+     */
+    private final class Connection {
+        private Transport transport;
+        private int messages;
+        private long lastUsedAt;
+
+        private void send(Delivery delivery) {
+            boolean reused = transport != null;
+
+            try {
+                sendOnce(delivery.message());
+            } catch (MessagingException e) {
+                close();
+                if (!reused) {
+                    fail(delivery, e);
+                    return;
+                }
+
+                // The host may have dropped a connection that was idle for a while, retry on a fresh one
+                try {
+                    sendOnce(delivery.message());
+                } catch (MessagingException retryError) {
+                    close();
+                    fail(delivery, retryError);
+                    return;
+                }
+            }
+
+            delivery.result().complete(null);
+        }
+
+        private void sendOnce(MimeMessage message) throws MessagingException {
+            long start = System.nanoTime();
+
+            if (message.getSentDate() == null) {
+                message.setSentDate(new Date());
+            }
+            message.saveChanges();
+            transport().sendMessage(message, message.getAllRecipients());
+
+            delivered.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            lastUsedAt = System.currentTimeMillis();
+
+            if (++messages >= emailProperties.getSmtpMaxMessagesPerConnection()) {
+                close();
+            }
+        }
+
+        private Transport transport() throws MessagingException {
+            if (transport == null) {
+                transport = mailSender.getSession().getTransport("smtp");
+                transport.connect(mailSender.getHost(), mailSender.getPort(), mailSender.getUsername(), mailSender.getPassword());
+                connections.increment();
+                messages = 0;
+            }
+            return transport;
+        }
+
+        private void fail(Delivery delivery, MessagingException e) {
+            failed.increment();
+            delivery.result().completeExceptionally(new MailSendException("Failed to deliver email", e));
+        }
+
+        private void closeIfIdle() {
+            if (transport != null && System.currentTimeMillis() - lastUsedAt > emailProperties.getSmtpIdleTimeoutMs()) {
+                close();
+            }
+        }
+
+        private void close() {
+            if (transport == null) {
+                return;
+            }
+
+            try {
+                transport.close();
+            } catch (MessagingException e) {
+                log.debug("Failed to close SMTP connection cleanly", e);
+            }
+            transport = null;
+        }
+    }
+    //endregion
+}
@@ -0,0 +1,196 @@
+package com.digitalbank.service;
+
+import com.digitalbank.entity.Customer;
+import com.digitalbank.exception.custom.InsufficientBalanceException;
+import com.digitalbank.exception.custom.TransactionException;
+import com.digitalbank.repository.CustomerBalanceStripeRepository;
+import com.digitalbank.repository.CustomerBalanceStripeRepository.Stripe;
+import com.digitalbank.util.Money;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+
+/**
+ * Balance movements that are aware of hot accounts.
+ * A hot account keeps part of its balance in K stripe rows: credits go to a random stripe without
+ * touching the customer row, debits take from the customer row first and then sweep the stripes
+ * in order, and reads add the stripes up. Regular accounts are updated on the customer row as before.
+ * Every movement invalidates the cached customer once its transaction commits.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StripedBalanceService {
+    private final CustomerBalanceStripeRepository stripeRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final CustomerCache customerCache;
+
+    /**
+     * Ids of the known hot accounts. Only updated after a commit, so an account found here is
+     * hot in the database too; an account missing here is simply locked like a regular one.
+     */
+    private final Set<Long> hotAccounts = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    void loadHotAccounts() {
+        hotAccounts.addAll(jdbcTemplate.queryForList("SELECT id FROM customer WHERE balance_stripes > 0", Long.class));
+        log.info("Loaded {} hot accounts", hotAccounts.size());
+    }
+
+    public boolean isHot(Long customerId) {
+        return hotAccounts.contains(customerId);
+    }
+
+    /**
+     * Take the amount from the customer. The customer row must be locked or version checked by the caller.
+     * Balances are converted to cents when read from the entities and back when written to them.
+     */
+    public void debit(Customer origin, Money amount) {
+        customerCache.invalidateAfterCommit(origin.getId());
+        Money base = Money.of(origin.getBalance());
+
+        if (!base.isLessThan(amount)) {
+            origin.setBalance(base.minus(amount).toBigDecimal());
+            return;
+        }
+
+        if (!origin.isHot()) {
+            throw new InsufficientBalanceException(base, amount);
+        }
+
+        List<Stripe> stripes = stripeRepository.findAllForUpdate(origin.getId());
+        Money available = base;
+        for (Stripe stripe : stripes) {
+            available = available.plus(Money.of(stripe.balance()));
+        }
+        if (available.isLessThan(amount)) {
+            throw new InsufficientBalanceException(available, amount);
+        }
+
+        Money remaining = amount.minus(base);
+        List<Stripe> changed = new ArrayList<>();
+
+        for (Stripe stripe : stripes) {
+            if (!remaining.isPositive()) {
+                break;
+            }
+
+            Money stripeBalance = Money.of(stripe.balance());
+            Money taken = stripeBalance.isLessThan(remaining) ? stripeBalance : remaining;
+            if (taken.isPositive()) {
+                changed.add(new Stripe(stripe.stripe(), stripeBalance.minus(taken).toBigDecimal()));
+                remaining = remaining.minus(taken);
+            }
+        }
+
+        origin.setBalance(BigDecimal.ZERO);
+        stripeRepository.updateBalances(origin.getId(), changed);
+    }
+
+    /**
+     * Give the amount to the customer. A hot customer is credited on a random stripe and its row
+     * is left untouched, so the caller does not need to lock it.
+     */
+    public void credit(Customer destination, Money amount) {
+        customerCache.invalidateAfterCommit(destination.getId());
+        if (!destination.isHot()) {
+            destination.setBalance(Money.of(destination.getBalance()).plus(amount).toBigDecimal());
+            return;
+        }
+
+        int stripe = ThreadLocalRandom.current().nextInt(destination.getBalanceStripes());
+        if (!stripeRepository.credit(destination.getId(), stripe, amount.toBigDecimal())) {
+            throw new TransactionException("Balance stripe " + stripe + " of customer " + destination.getId() + " not found");
+        }
+    }
+
+    /**
+     * Replace the whole balance of the customer, emptying its stripes. The customer row must be locked by the caller.
+     */
+    public void setBalance(Customer customer, BigDecimal newBalance) {
+        customerCache.invalidateAfterCommit(customer.getId());
+        if (customer.isHot()) {
+            stripeRepository.resetBalances(customer.getId());
+        }
+
+        customer.setBalance(newBalance);
+    }
+
+    /**
+     * Copy of the customer showing its whole balance, for customers read outside of a transfer
+     */
+    public Customer withTotalBalance(Customer customer) {
+        if (!customer.isHot()) {
+            return customer;
+        }
+
+        BigDecimal striped = stripeRepository.sumByCustomer(List.of(customer.getId()))
+                .getOrDefault(customer.getId(), BigDecimal.ZERO);
+
+        return customer.toBuilder().balance(customer.getBalance().add(striped)).build();
+    }
+
+    public List<Customer> withTotalBalance(Collection<Customer> customers) {
+        Set<Long> hotIds = customers.stream()
+                .filter(Customer::isHot)
+                .map(Customer::getId)
+                .collect(Collectors.toSet());
+
+        if (hotIds.isEmpty()) {
+            return new ArrayList<>(customers);
+        }
+
+        Map<Long, BigDecimal> striped = stripeRepository.sumByCustomer(hotIds);
+
+        return customers.stream()
+                .map(customer -> hotIds.contains(customer.getId())
+                        ? customer.toBuilder()
+                            .balance(customer.getBalance().add(striped.getOrDefault(customer.getId(), BigDecimal.ZERO)))
+                            .build()
+                        : customer)
+                .toList();
+    }
+
+    /**
+     * Split the balance of the customer across the given number of stripes. Must run in the transaction
+     * that locked the customer row. The stripe count can only grow, so concurrent credits never miss a stripe.
+     */
+    public void markHot(Customer customer, int stripes) {
+        int current = customer.getBalanceStripes() != null ? customer.getBalanceStripes() : 0;
+        if (stripes <= current) {
+            return;
+        }
+
+        stripeRepository.createStripes(customer.getId(), current, stripes);
+        customer.setBalanceStripes(stripes);
+        customerCache.invalidateAfterCommit(customer.getId());
+
+        Long customerId = customer.getId();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    hotAccounts.add(customerId);
+                }
+            });
+        } else {
+            hotAccounts.add(customerId);
+        }
+
+        log.info("Customer {} balance split into {} stripes", customerId, stripes);
+    }
+}
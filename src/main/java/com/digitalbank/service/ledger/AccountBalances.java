@@ -0,0 +1,117 @@
+package com.digitalbank.service.ledger;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing map from account id to balance in cents, so a shard keeps balances
+ * without boxing. Not thread safe: only the owning shard writer touches it.
+ */
+final class AccountBalances {
+    static final long MISSING = Long.MIN_VALUE;
+
+    private static final long EMPTY = Long.MIN_VALUE;
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private long[] keys;
+    private long[] values;
+    private int size;
+
+    AccountBalances(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        keys = new long[capacity];
+        values = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+    }
+
+    /**
+     * Balance of the account, or {@link #MISSING} when the account is unknown
+     */
+    long get(long accountId) {
+        int slot = find(accountId);
+        return keys[slot] == EMPTY ? MISSING : values[slot];
+    }
+
+    void put(long accountId, long cents) {
+        int slot = find(accountId);
+        if (keys[slot] == EMPTY) {
+            keys[slot] = accountId;
+            if (++size > keys.length * LOAD_FACTOR) {
+                values[slot] = cents;
+                resize();
+                return;
+            }
+        }
+        values[slot] = cents;
+    }
+
+    boolean putIfAbsent(long accountId, long cents) {
+        if (keys[find(accountId)] != EMPTY) {
+            return false;
+        }
+        put(accountId, cents);
+        return true;
+    }
+
+    /**
+     * Remove the account, shifting back the entries of its probe chain so lookups need no tombstones
+     */
+    void remove(long accountId) {
+        int slot = find(accountId);
+        if (keys[slot] == EMPTY) {
+            return;
+        }
+
+        int mask = keys.length - 1;
+        int hole = slot;
+        int next = (hole + 1) & mask;
+
+        while (keys[next] != EMPTY) {
+            int home = slotOf(keys[next]);
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+
+        keys[hole] = EMPTY;
+        size--;
+    }
+
+    int size() {
+        return size;
+    }
+
+    //region Helpers
+    private int find(long accountId) {
+        int mask = keys.length - 1;
+        int slot = slotOf(accountId);
+        while (keys[slot] != EMPTY && keys[slot] != accountId) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private int slotOf(long accountId) {
+        return (int) ((accountId * 0x9E3779B97F4A7C15L) >>> 32) & (keys.length - 1);
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+
+        keys = new long[oldKeys.length << 1];
+        values = new long[oldValues.length << 1];
+        Arrays.fill(keys, EMPTY);
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = find(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+    //endregion
+}
@@ -0,0 +1,53 @@
+package com.digitalbank.service.ledger;
+
+import com.digitalbank.dto.BankTransactionResponseDTO;
+import com.digitalbank.util.Money;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Unit of work handed to a shard writer, completing its result with a value of type {@code T}.
+ * A transfer starts as DEBIT on the origin shard and continues as CREDIT on the destination shard,
+ * or as REFUND back on the origin shard when the credit cannot be applied; its result is the response.
+ * BALANCE reads an account on its shard writer, its result is the balance or null when the shard does not hold it.
+ * The other account commands complete their result with null.
+ */
+record LedgerCommand<T>(Type type,
+                        long transactionId,
+                        long originId,
+                        long destinationId,
+                        Money amount,
+                        String description,
+                        String idempotencyKey,
+                        CompletableFuture<T> result) {
+
+    enum Type {
+        DEBIT,
+        CREDIT,
+        REFUND,
+        SET_BALANCE,
+        REGISTER,
+        REMOVE,
+        BALANCE
+    }
+
+    static LedgerCommand<BankTransactionResponseDTO> transfer(long transactionId, long originId, long destinationId,
+                                                              Money amount, String description, String idempotencyKey,
+                                                              CompletableFuture<BankTransactionResponseDTO> result) {
+        return new LedgerCommand<>(Type.DEBIT, transactionId, originId, destinationId, amount, description, idempotencyKey,
+                result);
+    }
+
+    static LedgerCommand<Void> account(Type type, long accountId, Money amount, CompletableFuture<Void> result) {
+        return new LedgerCommand<>(type, 0, accountId, accountId, amount, null, null, result);
+    }
+
+    static LedgerCommand<Money> balance(long accountId, CompletableFuture<Money> result) {
+        return new LedgerCommand<>(Type.BALANCE, 0, accountId, accountId, null, null, null, result);
+    }
+
+    LedgerCommand<T> next(Type nextType) {
+        return new LedgerCommand<>(nextType, transactionId, originId, destinationId, amount, description, idempotencyKey,
+                result);
+    }
+}
@@ -0,0 +1,328 @@
+package com.digitalbank.service.ledger;
+
+import com.digitalbank.dto.BankTransactionRequestDTO;
+import com.digitalbank.dto.BankTransactionResponseDTO;
+import com.digitalbank.exception.custom.TransactionException;
+import com.digitalbank.properties.LedgerProperties;
+import com.digitalbank.repository.CustomerBalanceStripeRepository;
+import com.digitalbank.repository.LedgerCheckpointRepository;
+import com.digitalbank.util.Money;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * In-memory ledger that replaces row locks on the transfer path.
+ * Balances are split into shards by account id and every shard is owned by one writer thread.
+ * A transfer is debited on the origin shard and then credited on the destination shard; once the
+ * credit is applied the transfer is committed in memory and handed to the {@link LedgerPersister}.
+ * When the {@link TransactionJournal} is enabled a transfer is only acknowledged once it is durable in
+ * the journal, and entries left unprojected by a crash are written to the database before startup.
+ * Once the journal fails the ledger halts: the transfers it could not make durable fail and new ones are rejected,
+ * since the balances in memory already include transfers that a restart would not find.
+ * Balances are loaded on startup from the customer table, which is up to date once the journal is replayed.
+ */
+@Service
+@ConditionalOnProperty(name = "app.ledger.enabled", havingValue = "true")
+@Slf4j
+public class LedgerEngine implements SmartLifecycle {
+    private static final long STOP_TIMEOUT_MS = 30_000;
+
+    private final LedgerProperties ledgerProperties;
+    private final JdbcTemplate jdbcTemplate;
+    private final CustomerBalanceStripeRepository stripeRepository;
+    private final TransactionIdAllocator transactionIdAllocator;
+    private final LedgerPersister ledgerPersister;
+    private final LedgerCheckpointRepository ledgerCheckpointRepository;
+    private final Optional<TransactionJournal> transactionJournal;
+    private final LedgerShard[] shards;
+    private volatile boolean running;
+
+    public LedgerEngine(LedgerProperties ledgerProperties,
+                        JdbcTemplate jdbcTemplate,
+                        CustomerBalanceStripeRepository stripeRepository,
+                        TransactionIdAllocator transactionIdAllocator,
+                        LedgerPersister ledgerPersister,
+                        LedgerCheckpointRepository ledgerCheckpointRepository,
+                        Optional<TransactionJournal> transactionJournal,
+                        MeterRegistry meterRegistry) {
+        this.ledgerProperties = ledgerProperties;
+        this.jdbcTemplate = jdbcTemplate;
+        this.stripeRepository = stripeRepository;
+        this.transactionIdAllocator = transactionIdAllocator;
+        this.ledgerPersister = ledgerPersister;
+        this.ledgerCheckpointRepository = ledgerCheckpointRepository;
+        this.transactionJournal = transactionJournal;
+        this.shards = new LedgerShard[ledgerProperties.getShards()];
+
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new LedgerShard(i, this, ledgerProperties.getRingBufferSize());
+            Gauge.builder("bank.ledger.pending", shards[i], LedgerShard::pending)
+                    .tag("shard", String.valueOf(i))
+                    .register(meterRegistry);
+        }
+
+        transactionJournal.ifPresent(journal -> Gauge.builder("bank.ledger.journal.pending", journal, TransactionJournal::pending)
+                .register(meterRegistry));
+    }
+
+    @Override
+    public void start() {
+        transactionJournal.ifPresent(journal -> {
+            ledgerPersister.replay(journal.recover(ledgerCheckpointRepository.findJournalOffset()));
+            journal.start();
+        });
+        loadBalances();
+        Arrays.stream(shards).forEach(LedgerShard::start);
+        ledgerPersister.start();
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+
+        try {
+            long deadline = System.currentTimeMillis() + STOP_TIMEOUT_MS;
+            while (Arrays.stream(shards).anyMatch(shard -> shard.pending() > 0) && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+
+            for (LedgerShard shard : shards) {
+                shard.stop();
+            }
+            if (transactionJournal.isPresent()) {
+                transactionJournal.get().stop();
+            }
+            ledgerPersister.stop();
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("Interrupted while stopping the ledger");
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Start before and stop after the components submitting transfers to the ledger
+     */
+    @Override
+    public int getPhase() {
+        return DEFAULT_PHASE - 1;
+    }
+
+    public BankTransactionResponseDTO transfer(BankTransactionRequestDTO request) {
+        return transfer(request, null);
+    }
+
+    /**
+     * Transfer under an Idempotency-Key, whose response is stored along with the transfer when it is persisted
+     */
+    public BankTransactionResponseDTO transfer(BankTransactionRequestDTO request, String idempotencyKey) {
+        return await(submit(request, transactionIdAllocator.nextId(), idempotencyKey));
+    }
+
+    /**
+     * Queue the transfer on the origin shard. The future completes once the transfer is committed in memory.
+     */
+    public CompletableFuture<BankTransactionResponseDTO> submit(BankTransactionRequestDTO request) {
+        return submit(request, transactionIdAllocator.nextId());
+    }
+
+    /**
+     * Queue the transfer under an id already taken from the {@link TransactionIdAllocator}
+     */
+    public CompletableFuture<BankTransactionResponseDTO> submit(BankTransactionRequestDTO request, long transactionId) {
+        return submit(request, transactionId, null);
+    }
+
+    public void register(long accountId, BigDecimal balance) {
+        await(enqueueAccountCommand(LedgerCommand.Type.REGISTER, accountId, Money.of(balance)));
+    }
+
+    public void remove(long accountId) {
+        await(enqueueAccountCommand(LedgerCommand.Type.REMOVE, accountId, null));
+    }
+
+    public void setBalance(long accountId, BigDecimal balance) {
+        await(enqueueAccountCommand(LedgerCommand.Type.SET_BALANCE, accountId, Money.of(balance)));
+    }
+
+    /**
+     * Current balance of the account, including the transfers not persisted yet, or empty when the ledger
+     * does not hold the account
+     */
+    public Optional<BigDecimal> findBalance(long accountId) {
+        CompletableFuture<Money> balance = new CompletableFuture<>();
+        enqueue(LedgerCommand.balance(accountId, balance));
+        return Optional.ofNullable(await(balance)).map(Money::toBigDecimal);
+    }
+
+    /**
+     * Current balances of the accounts the ledger holds, read on every shard at once instead of one account
+     * after another
+     */
+    public Map<Long, BigDecimal> findBalances(Collection<Long> accountIds) {
+        Map<Long, CompletableFuture<Money>> pending = new LinkedHashMap<>();
+        for (Long accountId : accountIds) {
+            CompletableFuture<Money> balance = new CompletableFuture<>();
+            enqueue(LedgerCommand.balance(accountId, balance));
+            pending.put(accountId, balance);
+        }
+
+        Map<Long, BigDecimal> balances = new HashMap<>();
+        pending.forEach((accountId, balance) -> {
+            Money found = await(balance);
+            if (found != null) {
+                balances.put(accountId, found.toBigDecimal());
+            }
+        });
+        return balances;
+    }
+
+    /**
+     * Hand a follow-up step to the shard owning the account it applies to. Called by shard writers.
+     */
+    void route(LedgerCommand<?> command) {
+        long accountId = command.type() == LedgerCommand.Type.CREDIT ? command.destinationId() : command.originId();
+        shardFor(accountId).handoff(command);
+    }
+
+    void commit(LedgerCommand<BankTransactionResponseDTO> command) {
+        LedgerEntry entry = new LedgerEntry(LedgerEntry.Kind.TRANSFER,
+                command.transactionId(),
+                command.originId(),
+                command.destinationId(),
+                command.amount(),
+                command.description(),
+                command.idempotencyKey(),
+                Instant.now(),
+                0);
+
+        record(entry, () -> command.result().complete(entry.toResponse()), command.result());
+    }
+
+    void adjusted(LedgerCommand<?> command, Money delta) {
+        record(LedgerEntry.adjustment(command.originId(), delta), () -> command.result().complete(null), command.result());
+    }
+
+    //region Helpers
+    /**
+     * Queue the transfer on the origin shard under its id and the Idempotency-Key it carries, if any
+     */
+    private CompletableFuture<BankTransactionResponseDTO> submit(BankTransactionRequestDTO request, long transactionId,
+                                                                 String idempotencyKey) {
+        CompletableFuture<BankTransactionResponseDTO> result = new CompletableFuture<>();
+
+        enqueue(LedgerCommand.transfer(transactionId,
+                request.getOriginCustomerId(),
+                request.getDestinationCustomerId(),
+                Money.of(request.getAmount()),
+                request.getDescription(),
+                idempotencyKey,
+                result));
+
+        return result;
+    }
+
+    /**
+     * Hand the entry to the persister and acknowledge it, after making it durable in the journal when enabled.
+     * An entry the journal fails to make durable is neither persisted nor acknowledged, its result fails instead.
+     */
+    private void record(LedgerEntry entry, Runnable acknowledge, CompletableFuture<?> result) {
+        if (transactionJournal.isEmpty()) {
+            ledgerPersister.enqueue(entry);
+            acknowledge.run();
+            return;
+        }
+
+        transactionJournal.get().append(entry, durable -> {
+            ledgerPersister.enqueue(durable);
+            acknowledge.run();
+        }, e -> result.completeExceptionally(new TransactionException("Transaction could not be made durable: " + e.getMessage())));
+    }
+
+    private void loadBalances() {
+        long start = System.nanoTime();
+        int[] loaded = {0};
+
+        // The ledger already removes row contention and persists deltas on the customer row, so stripes are folded back
+        stripeRepository.collapseIntoBase();
+
+        jdbcTemplate.query("SELECT id, balance FROM customer", rs -> {
+            long accountId = rs.getLong("id");
+            shardFor(accountId).load(accountId, Money.of(rs.getBigDecimal("balance")));
+            loaded[0]++;
+        });
+
+        log.info("Ledger loaded {} balances into {} shards in {} ms",
+                loaded[0], shards.length, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private CompletableFuture<Void> enqueueAccountCommand(LedgerCommand.Type type, long accountId, Money amount) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        enqueue(LedgerCommand.account(type, accountId, amount, result));
+        return result;
+    }
+
+    private void enqueue(LedgerCommand<?> command) {
+        if (!running) {
+            throw new TransactionException("Ledger is not running");
+        }
+        if (transactionJournal.isPresent() && transactionJournal.get().isFailed()) {
+            throw new TransactionException("Ledger is halted after a journal failure");
+        }
+
+        LedgerShard shard = shardFor(command.originId());
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ledgerProperties.getSubmitTimeoutMs());
+
+        while (!shard.offer(command)) {
+            if (System.nanoTime() > deadline) {
+                throw new TransactionException("Ledger is overloaded, try again later");
+            }
+            Thread.yield();
+        }
+    }
+
+    private <T> T await(CompletableFuture<T> result) {
+        try {
+            return result.get(ledgerProperties.getSubmitTimeoutMs(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new TransactionException("Ledger failed: " + e.getCause().getMessage());
+        } catch (TimeoutException e) {
+            throw new TransactionException("Timed out waiting for the ledger");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TransactionException("Interrupted while waiting for the ledger");
+        }
+    }
+
+    private LedgerShard shardFor(long accountId) {
+        return shards[Math.floorMod(Long.hashCode(accountId * 0x9E3779B97F4A7C15L), shards.length)];
+    }
+    //endregion
+}
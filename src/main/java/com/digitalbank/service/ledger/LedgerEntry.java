@@ -0,0 +1,55 @@
+package com.digitalbank.service.ledger;
+
+import com.digitalbank.dto.BankTransactionResponseDTO;
+import com.digitalbank.entity.enums.BankTransactionStatusEnum;
+import com.digitalbank.util.Money;
+
+import java.time.Instant;
+
+/**
+ * Change committed in memory by the ledger and waiting to be written to the database.
+ * A TRANSFER becomes a bank_transaction row plus two balance deltas, an ADJUSTMENT is a
+ * single balance delta on the origin account. A TRANSFER made under an Idempotency-Key carries it, so the
+ * response of the key is stored in the transaction that writes the transfer. The journal offset is the end of
+ * the entry in the {@link TransactionJournal}, or zero when the journal is disabled.
+ */
+public record LedgerEntry(Kind kind,
+                          long transactionId,
+                          long originId,
+                          long destinationId,
+                          Money amount,
+                          String description,
+                          String idempotencyKey,
+                          Instant timestamp,
+                          long journalOffset) {
+
+    public enum Kind {
+        TRANSFER,
+        ADJUSTMENT
+    }
+
+    static LedgerEntry adjustment(long accountId, Money delta) {
+        return new LedgerEntry(Kind.ADJUSTMENT, 0, accountId, accountId, delta, null, null, Instant.now(), 0);
+    }
+
+    LedgerEntry withJournalOffset(long offset) {
+        return new LedgerEntry(kind, transactionId, originId, destinationId, amount, description, idempotencyKey,
+                timestamp, offset);
+    }
+
+    /**
+     * Response of the transfer, the same when it is acknowledged and when it is stored for its Idempotency-Key
+     */
+    BankTransactionResponseDTO toResponse() {
+        return BankTransactionResponseDTO.builder()
+                .id(transactionId)
+                .originCustomerId(originId)
+                .destinationCustomerId(destinationId)
+                .amount(amount.toBigDecimal())
+                .status(BankTransactionStatusEnum.COMPLETED)
+                .transactionDate(timestamp)
+                .description(description)
+                .message("Transaction succeeded")
+                .build();
+    }
+}
@@ -0,0 +1,267 @@
+package com.digitalbank.service.ledger;
+
+import com.digitalbank.entity.BankTransaction;
+import com.digitalbank.entity.Customer;
+import com.digitalbank.entity.enums.BankTransactionStatusEnum;
+import com.digitalbank.properties.LedgerProperties;
+import com.digitalbank.repository.BankTransactionBatchRepository;
+import com.digitalbank.repository.CustomerBatchRepository;
+import com.digitalbank.repository.LedgerCheckpointRepository;
+import com.digitalbank.repository.NotificationOutboxRepository;
+import com.digitalbank.service.CustomerCache;
+import com.digitalbank.service.CustomerSummaryService;
+import com.digitalbank.service.IdempotencyService;
+import com.digitalbank.util.Money;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes entries committed by the ledger to the database in the background.
+ * Each flush inserts the transfers of a batch with one JDBC batch and applies the net balance
+ * change of every account touched by the batch with a single update per account.
+ * With the journal enabled, entries arrive in journal order and each batch moves the
+ * ledger checkpoint forward in the same transaction, so recovery knows where to resume.
+ * The response of a transfer made under an Idempotency-Key is stored in the transaction that writes the transfer,
+ * so a retry of the key never finds the money moved without its response.
+ */
+@Component
+@ConditionalOnProperty(name = "app.ledger.enabled", havingValue = "true")
+@Slf4j
+public class LedgerPersister {
+    private final LedgerProperties ledgerProperties;
+    private final BankTransactionBatchRepository bankTransactionBatchRepository;
+    private final CustomerBatchRepository customerBatchRepository;
+    private final NotificationOutboxRepository notificationOutboxRepository;
+    private final LedgerCheckpointRepository ledgerCheckpointRepository;
+    private final Optional<TransactionJournal> transactionJournal;
+    private final CustomerCache customerCache;
+    private final CustomerSummaryService customerSummaryService;
+    private final IdempotencyService idempotencyService;
+    private final TransactionTemplate transactionTemplate;
+    private final Queue<LedgerEntry> pending = new ConcurrentLinkedQueue<>();
+    private final List<LedgerEntry> retry = new ArrayList<>();
+    private ScheduledExecutorService scheduler;
+
+    public LedgerPersister(LedgerProperties ledgerProperties,
+                           BankTransactionBatchRepository bankTransactionBatchRepository,
+                           CustomerBatchRepository customerBatchRepository,
+                           NotificationOutboxRepository notificationOutboxRepository,
+                           LedgerCheckpointRepository ledgerCheckpointRepository,
+                           Optional<TransactionJournal> transactionJournal,
+                           CustomerCache customerCache,
+                           CustomerSummaryService customerSummaryService,
+                           IdempotencyService idempotencyService,
+                           PlatformTransactionManager transactionManager) {
+        this.ledgerProperties = ledgerProperties;
+        this.bankTransactionBatchRepository = bankTransactionBatchRepository;
+        this.customerBatchRepository = customerBatchRepository;
+        this.notificationOutboxRepository = notificationOutboxRepository;
+        this.ledgerCheckpointRepository = ledgerCheckpointRepository;
+        this.transactionJournal = transactionJournal;
+        this.customerCache = customerCache;
+        this.customerSummaryService = customerSummaryService;
+        this.idempotencyService = idempotencyService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    void enqueue(LedgerEntry entry) {
+        pending.add(entry);
+    }
+
+    /**
+     * Write entries recovered from the journal before the ledger starts
+     */
+    void replay(List<LedgerEntry> entries) {
+        pending.addAll(entries);
+        flush();
+
+        if (!retry.isEmpty() || !pending.isEmpty()) {
+            throw new IllegalStateException("Failed to project " + (retry.size() + pending.size()) + " journal entries");
+        }
+    }
+
+    void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("ledger-persister").daemon().factory());
+        scheduler.scheduleWithFixedDelay(this::flush, ledgerProperties.getFlushIntervalMs(),
+                ledgerProperties.getFlushIntervalMs(), TimeUnit.MILLISECONDS);
+    }
+
+    void stop() throws InterruptedException {
+        scheduler.shutdown();
+        scheduler.awaitTermination(30, TimeUnit.SECONDS);
+        flush();
+
+        if (!retry.isEmpty() || !pending.isEmpty()) {
+            log.error("Ledger stopped with {} entries not persisted", retry.size() + pending.size());
+        }
+    }
+
+    //region Helpers
+    private void flush() {
+        try {
+            List<LedgerEntry> batch;
+            while (!(batch = nextBatch()).isEmpty()) {
+                if (!persist(batch)) {
+                    return;
+                }
+            }
+        } catch (RuntimeException e) {
+            log.error("Unexpected error flushing the ledger", e);
+        }
+    }
+
+    private List<LedgerEntry> nextBatch() {
+        List<LedgerEntry> batch = new ArrayList<>(retry);
+        retry.clear();
+
+        LedgerEntry entry;
+        while (batch.size() < ledgerProperties.getFlushBatchSize() && (entry = pending.poll()) != null) {
+            batch.add(entry);
+        }
+
+        return batch;
+    }
+
+    /**
+     * Persist the batch, returning false when it has to be retried on the next flush.
+     * Entries are persisted in journal order: one that cannot be is retried along with every entry after it,
+     * so the checkpoint never moves past an unpersisted entry.
+     */
+    private boolean persist(List<LedgerEntry> batch) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> write(batch, Set.of()));
+            return true;
+
+        } catch (DataIntegrityViolationException e) {
+            log.warn("Ledger batch of {} entries rejected, persisting entries one by one", batch.size(), e);
+            for (int i = 0; i < batch.size(); i++) {
+                if (!persistAlone(batch.get(i))) {
+                    retry.addAll(batch.subList(i, batch.size()));
+                    return false;
+                }
+            }
+            return true;
+
+        } catch (RuntimeException e) {
+            log.error("Failed to persist ledger batch of {} entries, retrying on next flush", batch.size(), e);
+            retry.addAll(batch);
+            return false;
+        }
+    }
+
+    /**
+     * Persist a single entry. One rejected because a customer it touches was deleted since the ledger applied it
+     * is written without the deleted side, like the transactions deleted with the customer, so it does not hold
+     * every later entry back forever.
+     */
+    private boolean persistAlone(LedgerEntry entry) {
+        try {
+            try {
+                transactionTemplate.executeWithoutResult(status -> write(List.of(entry), Set.of()));
+            } catch (DataIntegrityViolationException e) {
+                Set<Long> deleted = deleted(entry);
+                if (deleted.isEmpty()) {
+                    throw e;
+                }
+                log.warn("Persisting ledger entry without deleted customers {}: {}", deleted, entry);
+                transactionTemplate.executeWithoutResult(status -> write(List.of(entry), deleted));
+            }
+            return true;
+        } catch (RuntimeException e) {
+            log.error("Failed to persist ledger entry, holding it and every later entry until the next flush: {}", entry, e);
+            return false;
+        }
+    }
+
+    /**
+     * Write the entries, leaving out the transactions and balance changes of the given deleted customers
+     */
+    private void write(List<LedgerEntry> batch, Set<Long> deleted) {
+        List<BankTransaction> transactions = new ArrayList<>();
+        List<LedgerEntry> keyed = new ArrayList<>();
+        Map<Long, Long> deltas = new HashMap<>();
+
+        for (LedgerEntry entry : batch) {
+            if (entry.kind() == LedgerEntry.Kind.TRANSFER && entry.idempotencyKey() != null) {
+                keyed.add(entry);
+            }
+
+            if (entry.kind() == LedgerEntry.Kind.TRANSFER) {
+                if (deleted.contains(entry.originId()) || deleted.contains(entry.destinationId())) {
+                    deltas.merge(entry.originId(), -entry.amount().cents(), Math::addExact);
+                    deltas.merge(entry.destinationId(), entry.amount().cents(), Math::addExact);
+                    continue;
+                }
+                transactions.add(BankTransaction.builder()
+                        .id(entry.transactionId())
+                        .originCustomer(Customer.builder().id(entry.originId()).build())
+                        .destinationCustomer(Customer.builder().id(entry.destinationId()).build())
+                        .amount(entry.amount().toBigDecimal())
+                        .description(entry.description())
+                        .status(BankTransactionStatusEnum.COMPLETED)
+                        .transactionDate(entry.timestamp())
+                        .build());
+                deltas.merge(entry.originId(), -entry.amount().cents(), Math::addExact);
+                deltas.merge(entry.destinationId(), entry.amount().cents(), Math::addExact);
+            } else {
+                deltas.merge(entry.originId(), entry.amount().cents(), Math::addExact);
+            }
+        }
+
+        deltas.keySet().removeAll(deleted);
+        Map<Long, BigDecimal> balanceDeltas = new HashMap<>();
+        deltas.forEach((customerId, cents) -> balanceDeltas.put(customerId, Money.ofCents(cents).toBigDecimal()));
+
+        bankTransactionBatchRepository.insertAllWithIds(transactions);
+        customerSummaryService.recordTransactions(transactions);
+        notificationOutboxRepository.insertAll(transactions);
+        customerBatchRepository.applyBalanceDeltas(balanceDeltas);
+        keyed.forEach(entry -> idempotencyService.completeCommitted(entry.idempotencyKey(), entry.toResponse()));
+        balanceDeltas.keySet().forEach(customerCache::invalidateAfterCommit);
+
+        long journalOffset = batch.stream().mapToLong(LedgerEntry::journalOffset).max().orElse(0);
+        if (journalOffset > 0) {
+            ledgerCheckpointRepository.advance(journalOffset);
+            transactionJournal.ifPresent(journal -> TransactionSynchronizationManager.registerSynchronization(
+                    new TransactionSynchronization() {
+                        @Override
+                        public void afterCommit() {
+                            journal.projected(journalOffset);
+                        }
+                    }));
+        }
+    }
+
+    /**
+     * The customers of the entry that no longer exist
+     */
+    private Set<Long> deleted(LedgerEntry entry) {
+        Set<Long> customerIds = entry.kind() == LedgerEntry.Kind.TRANSFER
+                ? Set.of(entry.originId(), entry.destinationId())
+                : Set.of(entry.originId());
+        Set<Long> deleted = new HashSet<>(customerIds);
+        deleted.removeAll(customerBatchRepository.findExistingIds(customerIds));
+        return deleted;
+    }
+    //endregion
+}
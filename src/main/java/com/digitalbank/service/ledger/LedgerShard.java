@@ -0,0 +1,185 @@
+package com.digitalbank.service.ledger;
+
+import com.digitalbank.dto.BankTransactionResponseDTO;
+import com.digitalbank.exception.custom.InsufficientBalanceException;
+import com.digitalbank.exception.custom.TransactionException;
+import com.digitalbank.util.Money;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * One partition of the in-memory ledger. The balances are owned by a single writer thread that
+ * drains the shard ring buffer, so no balance is ever touched by two threads and no locks are needed.
+ * Second steps of cross-shard transfers arrive on a separate unbounded hand-off queue, so a writer
+ * never blocks on another shard's full ring buffer. Its size is bounded by the debits in flight.
+ */
+@Slf4j
+final class LedgerShard implements Runnable {
+    private static final int SPIN_TRIES = 200;
+    private static final long PARK_NANOS = 50_000;
+    private static final int INITIAL_ACCOUNTS = 1024;
+
+    private final int index;
+    private final LedgerEngine engine;
+    private final MpscRingBuffer<LedgerCommand<?>> ringBuffer;
+    private final Queue<LedgerCommand<?>> handoffs = new ConcurrentLinkedQueue<>();
+    private final AccountBalances balances = new AccountBalances(INITIAL_ACCOUNTS);
+    private volatile boolean running = true;
+    private Thread writer;
+
+    LedgerShard(int index, LedgerEngine engine, int ringBufferSize) {
+        this.index = index;
+        this.engine = engine;
+        this.ringBuffer = new MpscRingBuffer<>(ringBufferSize);
+    }
+
+    /**
+     * Seed a balance before the writer thread starts
+     */
+    void load(long accountId, Money balance) {
+        balances.put(accountId, balance.cents());
+    }
+
+    void start() {
+        writer = Thread.ofPlatform().name("ledger-shard-" + index).daemon().start(this);
+    }
+
+    void stop() throws InterruptedException {
+        running = false;
+        if (writer != null) {
+            writer.join();
+        }
+    }
+
+    boolean offer(LedgerCommand<?> command) {
+        return ringBuffer.offer(command);
+    }
+
+    void handoff(LedgerCommand<?> command) {
+        handoffs.add(command);
+    }
+
+    int pending() {
+        return ringBuffer.size() + handoffs.size();
+    }
+
+    @Override
+    public void run() {
+        int idle = 0;
+
+        while (running || pending() > 0) {
+            LedgerCommand<?> command = handoffs.poll();
+            if (command == null) {
+                command = ringBuffer.poll();
+            }
+
+            if (command == null) {
+                if (++idle < SPIN_TRIES) {
+                    Thread.onSpinWait();
+                } else {
+                    LockSupport.parkNanos(PARK_NANOS);
+                }
+                continue;
+            }
+
+            idle = 0;
+
+            try {
+                apply(command);
+            } catch (RuntimeException e) {
+                log.error("Ledger shard {} failed to apply {} for transaction {}", index, command.type(), command.transactionId(), e);
+                command.result().completeExceptionally(e);
+            }
+        }
+    }
+
+    //region Helpers
+    /**
+     * Apply the command, whose type tells what its result carries
+     */
+    @SuppressWarnings("unchecked")
+    private void apply(LedgerCommand<?> command) {
+        switch (command.type()) {
+            case DEBIT -> debit(command);
+            case CREDIT -> credit((LedgerCommand<BankTransactionResponseDTO>) command);
+            case REFUND -> refund(command);
+            case SET_BALANCE -> setBalance(command);
+            case REGISTER -> {
+                balances.putIfAbsent(command.originId(), command.amount().cents());
+                command.result().complete(null);
+            }
+            case REMOVE -> {
+                balances.remove(command.originId());
+                command.result().complete(null);
+            }
+            case BALANCE -> balance((LedgerCommand<Money>) command);
+        }
+    }
+
+    private void debit(LedgerCommand<?> command) {
+        long balance = balances.get(command.originId());
+        long amount = command.amount().cents();
+
+        if (balance == AccountBalances.MISSING) {
+            command.result().completeExceptionally(new TransactionException("Origin Customer not found"));
+            return;
+        }
+
+        if (balance < amount) {
+            command.result().completeExceptionally(new InsufficientBalanceException(Money.ofCents(balance), command.amount()));
+            return;
+        }
+
+        balances.put(command.originId(), balance - amount);
+        engine.route(command.next(LedgerCommand.Type.CREDIT));
+    }
+
+    private void credit(LedgerCommand<BankTransactionResponseDTO> command) {
+        long balance = balances.get(command.destinationId());
+
+        if (balance == AccountBalances.MISSING) {
+            engine.route(command.next(LedgerCommand.Type.REFUND));
+            return;
+        }
+
+        long credited;
+        try {
+            credited = Math.addExact(balance, command.amount().cents());
+        } catch (ArithmeticException e) {
+            engine.route(command.next(LedgerCommand.Type.REFUND));
+            return;
+        }
+
+        balances.put(command.destinationId(), credited);
+        engine.commit(command);
+    }
+
+    private void refund(LedgerCommand<?> command) {
+        long balance = balances.get(command.originId());
+        if (balance != AccountBalances.MISSING) {
+            balances.put(command.originId(), balance + command.amount().cents());
+        }
+        command.result().completeExceptionally(new TransactionException("Destination Customer cannot receive the transfer"));
+    }
+
+    private void setBalance(LedgerCommand<?> command) {
+        long balance = balances.get(command.originId());
+
+        if (balance == AccountBalances.MISSING) {
+            command.result().completeExceptionally(new TransactionException("Customer not found in ledger"));
+            return;
+        }
+
+        balances.put(command.originId(), command.amount().cents());
+        engine.adjusted(command, command.amount().minus(Money.ofCents(balance)));
+    }
+
+    private void balance(LedgerCommand<Money> command) {
+        long balance = balances.get(command.originId());
+        command.result().complete(balance == AccountBalances.MISSING ? null : Money.ofCents(balance));
+    }
+    //endregion
+}
@@ -0,0 +1,78 @@
+package com.digitalbank.service.ledger;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded lock-free queue for many producers and a single consumer.
+ * Each slot carries a sequence number: producers claim a position with a CAS on the tail and
+ * publish the element by advancing the slot sequence, the consumer frees the slot the same way.
+ */
+final class MpscRingBuffer<E> {
+    private final int mask;
+    private final Object[] elements;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+
+    MpscRingBuffer(int capacity) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Ring buffer capacity must be a power of two: " + capacity);
+        }
+
+        this.mask = capacity - 1;
+        this.elements = new Object[capacity];
+        this.sequences = new AtomicLongArray(capacity);
+
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Try to enqueue the element, returning false when the buffer is full
+     */
+    boolean offer(E element) {
+        while (true) {
+            long position = tail.get();
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    elements[index] = element;
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+            } else if (difference < 0) {
+                return false;
+            } else {
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    /**
+     * Dequeue the next element or return null when empty. Must only be called by the consumer thread.
+     */
+    @SuppressWarnings("unchecked")
+    E poll() {
+        long position = head;
+        int index = (int) position & mask;
+
+        if (sequences.get(index) != position + 1) {
+            return null;
+        }
+
+        E element = (E) elements[index];
+        elements[index] = null;
+        sequences.set(index, position + mask + 1);
+        head = position + 1;
+
+        return element;
+    }
+
+    int size() {
+        return (int) Math.max(0, tail.get() - head);
+    }
+}
@@ -0,0 +1,30 @@
+package com.digitalbank.service.ledger;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Hands out bank transaction ids ahead of the insert.
+ * Every value read from transaction_seq reserves the block [value, value + 50), matching the
+ * sequence increment, so ids never collide with rows that take their id from the column default.
+ */
+@Component
+@RequiredArgsConstructor
+public class TransactionIdAllocator {
+    private static final int BLOCK_SIZE = 50;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private long next;
+    private long limit;
+
+    public synchronized long nextId() {
+        if (next == limit) {
+            Long blockStart = jdbcTemplate.queryForObject("SELECT nextval('transaction_seq')", Long.class);
+            next = blockStart;
+            limit = blockStart + BLOCK_SIZE;
+        }
+        return next++;
+    }
+}
@@ -0,0 +1,430 @@
+package com.digitalbank.service.ledger;
+
+import com.digitalbank.properties.LedgerProperties;
+import com.digitalbank.util.Money;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only journal of the entries committed by the ledger, written to memory-mapped segment files.
+ * Appends from every shard are taken by a single writer thread, which writes all the appends waiting at
+ * that moment and makes them durable with one {@code force()} before acknowledging any of them (group commit).
+ * When a write or a force fails the journal halts: the records not forced yet are erased from the segment and
+ * their entries, along with every entry appended afterwards, are reported as failed instead of durable.
+ * <p>
+ * An offset is the position of a byte in the whole journal: segment {@code n} covers the offsets from
+ * {@code n * segmentSize} and is named after its first offset. Every record has a fixed 64 byte header
+ * followed by the description and the Idempotency-Key, padded to 8 bytes:
+ * <pre>
+ *  0 int    record length, 0 marks the end of the written part of a segment
+ *  4 int    CRC32C of bytes 8 to length
+ *  8 byte   kind
+ * 12 int    description length in bytes
+ * 16 long   transaction id
+ * 24 long   origin account id
+ * 32 long   destination account id
+ * 40 long   amount in cents
+ * 48 long   timestamp seconds
+ * 56 int    timestamp nanos
+ * 60 int    Idempotency-Key length in bytes, 0 without a key
+ * 64 bytes  description, UTF-8, then the Idempotency-Key, UTF-8
+ * </pre>
+ */
+@Component
+@ConditionalOnProperty(name = "app.ledger.journal.enabled", havingValue = "true")
+@Slf4j
+public class TransactionJournal {
+    static final int HEADER_SIZE = 64;
+    static final int MAX_DESCRIPTION_BYTES = 1024;
+    static final int MAX_IDEMPOTENCY_KEY_BYTES = 1024;
+    private static final int MAX_GROUP = 4096;
+    private static final String SEGMENT_SUFFIX = ".journal";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final BlockingQueue<Append> appends = new LinkedBlockingQueue<>();
+    private final ThreadLocal<CRC32C> checksums = ThreadLocal.withInitial(CRC32C::new);
+    private Segment segment;
+    private volatile long projectedOffset;
+    private volatile boolean running;
+    private volatile boolean failed;
+
+    /**
+     * Offset up to which the journal is forced to disk. Only used by the writer thread after recovery.
+     */
+    private long durableOffset;
+    private Thread writer;
+
+    private record Append(LedgerEntry entry, Consumer<LedgerEntry> onDurable, Consumer<RuntimeException> onFailed) {
+    }
+
+    @Autowired
+    public TransactionJournal(LedgerProperties ledgerProperties) {
+        this(Path.of(ledgerProperties.getJournalDirectory()), ledgerProperties.getJournalSegmentSize());
+    }
+
+    TransactionJournal(Path directory, int segmentSize) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Read every valid entry ending after {@code fromOffset} and position the writer after the last one.
+     * A record with a bad length or checksum is a write torn by a crash: it and everything after it
+     * are discarded.
+     */
+    List<LedgerEntry> recover(long fromOffset) {
+        try {
+            Files.createDirectories(directory);
+            List<Path> segments = listSegments().stream()
+                    .filter(path -> baseOffsetOf(path) + segmentSize > fromOffset)
+                    .toList();
+            List<LedgerEntry> entries = new ArrayList<>();
+            long end = fromOffset;
+
+            for (int i = 0; i < segments.size(); i++) {
+                long baseOffset = baseOffsetOf(segments.get(i));
+
+                if (i > 0 && baseOffset != baseOffsetOf(segments.get(i - 1)) + segmentSize) {
+                    log.warn("Journal segment {} does not follow the previous one, discarding it and later segments", baseOffset);
+                    deleteFrom(segments, i);
+                    break;
+                }
+
+                try (FileChannel channel = FileChannel.open(segments.get(i), StandardOpenOption.READ)) {
+                    ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                    int position = (int) Math.max(0, fromOffset - baseOffset);
+
+                    LedgerEntry entry;
+                    while ((entry = read(buffer, position, baseOffset)) != null) {
+                        entries.add(entry);
+                        position = (int) (entry.journalOffset() - baseOffset);
+                    }
+
+                    end = baseOffset + position;
+
+                    if (position + 4 <= buffer.limit() && buffer.getInt(position) != 0) {
+                        log.warn("Journal has a torn record at offset {}, discarding the rest", end);
+                        deleteFrom(segments, i + 1);
+                        break;
+                    }
+                }
+            }
+
+            openForAppend(end);
+            durableOffset = end;
+            projectedOffset = fromOffset;
+            log.info("Journal recovered up to offset {} with {} entries to project", end, entries.size());
+
+            return entries;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to recover the ledger journal", e);
+        }
+    }
+
+    void start() {
+        running = true;
+        writer = Thread.ofPlatform().name("ledger-journal").daemon().start(this::writeLoop);
+    }
+
+    void stop() throws InterruptedException {
+        running = false;
+        if (writer != null) {
+            writer.join();
+        }
+        closeSegment();
+    }
+
+    /**
+     * Queue the entry. {@code onDurable} runs on the journal thread once the entry is forced to disk,
+     * with the entry carrying its journal offset. {@code onFailed} runs instead when the journal could not
+     * make the entry durable; the journal is halted from then on.
+     */
+    void append(LedgerEntry entry, Consumer<LedgerEntry> onDurable, Consumer<RuntimeException> onFailed) {
+        appends.add(new Append(entry, onDurable, onFailed));
+    }
+
+    boolean isFailed() {
+        return failed;
+    }
+
+    /**
+     * Entries up to the offset are in the database, so segments ending before it can be deleted
+     */
+    void projected(long offset) {
+        projectedOffset = Math.max(projectedOffset, offset);
+    }
+
+    int pending() {
+        return appends.size();
+    }
+
+    //region Helpers
+    private void writeLoop() {
+        List<Append> group = new ArrayList<>();
+        List<LedgerEntry> written = new ArrayList<>();
+
+        while (running || !appends.isEmpty()) {
+            try {
+                Append first = appends.poll(1, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+
+                group.add(first);
+                appends.drainTo(group, MAX_GROUP - 1);
+
+                if (!failed) {
+                    for (Append append : group) {
+                        written.add(write(append.entry()));
+                    }
+                    force();
+                }
+
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException | IOException e) {
+                log.error("Failed to make {} journal entries durable, halting the journal", group.size(), e);
+                failed = true;
+                discardUnforced();
+            }
+
+            IllegalStateException failure = new IllegalStateException("Ledger journal is halted after a write failure");
+            for (int i = 0; i < group.size(); i++) {
+                Append append = group.get(i);
+                if (i < written.size() && written.get(i).journalOffset() <= durableOffset) {
+                    append.onDurable().accept(written.get(i));
+                } else {
+                    append.onFailed().accept(failure);
+                }
+            }
+            group.clear();
+            written.clear();
+        }
+    }
+
+    private LedgerEntry write(LedgerEntry entry) throws IOException {
+        byte[] description = entry.description() != null
+                ? entry.description().getBytes(StandardCharsets.UTF_8)
+                : new byte[0];
+        if (description.length > MAX_DESCRIPTION_BYTES) {
+            throw new IllegalArgumentException("Description of transaction " + entry.transactionId() + " is too long for the journal");
+        }
+
+        byte[] idempotencyKey = entry.idempotencyKey() != null
+                ? entry.idempotencyKey().getBytes(StandardCharsets.UTF_8)
+                : new byte[0];
+        if (idempotencyKey.length > MAX_IDEMPOTENCY_KEY_BYTES) {
+            throw new IllegalArgumentException("Idempotency-Key of transaction " + entry.transactionId() + " is too long for the journal");
+        }
+
+        int length = align(HEADER_SIZE + description.length + idempotencyKey.length);
+        if (segment.position + length > segmentSize) {
+            force();
+            long next = segment.baseOffset + segmentSize;
+            closeSegment();
+            deleteProjectedSegments();
+            openForAppend(next);
+        }
+
+        MappedByteBuffer buffer = segment.buffer;
+        int start = segment.position;
+
+        buffer.put(start + 8, (byte) entry.kind().ordinal());
+        buffer.putInt(start + 12, description.length);
+        buffer.putLong(start + 16, entry.transactionId());
+        buffer.putLong(start + 24, entry.originId());
+        buffer.putLong(start + 32, entry.destinationId());
+        buffer.putLong(start + 40, entry.amount().cents());
+        buffer.putLong(start + 48, entry.timestamp().getEpochSecond());
+        buffer.putInt(start + 56, entry.timestamp().getNano());
+        buffer.putInt(start + 60, idempotencyKey.length);
+        buffer.put(start + HEADER_SIZE, description);
+        buffer.put(start + HEADER_SIZE + description.length, idempotencyKey);
+        buffer.putInt(start + 4, checksum(buffer, start + 8, length - 8));
+        // The length goes last so a reader never sees a complete length over an incomplete record
+        buffer.putInt(start, length);
+
+        segment.position = start + length;
+        return entry.withJournalOffset(segment.baseOffset + segment.position);
+    }
+
+    /**
+     * Entry starting at the position, or null at the end of the written data or at a torn record
+     */
+    private LedgerEntry read(ByteBuffer buffer, int position, long baseOffset) {
+        if (position + HEADER_SIZE > buffer.limit()) {
+            return null;
+        }
+
+        int length = buffer.getInt(position);
+        if (length < HEADER_SIZE || length % 8 != 0 || position + length > buffer.limit()) {
+            return null;
+        }
+
+        int descriptionLength = buffer.getInt(position + 12);
+        int idempotencyKeyLength = buffer.getInt(position + 60);
+        if (descriptionLength < 0 || idempotencyKeyLength < 0
+                || HEADER_SIZE + (long) descriptionLength + idempotencyKeyLength > length
+                || buffer.getInt(position + 4) != checksum(buffer, position + 8, length - 8)) {
+            return null;
+        }
+
+        byte kind = buffer.get(position + 8);
+        if (kind < 0 || kind >= LedgerEntry.Kind.values().length) {
+            return null;
+        }
+
+        byte[] description = new byte[descriptionLength];
+        buffer.get(position + HEADER_SIZE, description);
+        byte[] idempotencyKey = new byte[idempotencyKeyLength];
+        buffer.get(position + HEADER_SIZE + descriptionLength, idempotencyKey);
+
+        return new LedgerEntry(LedgerEntry.Kind.values()[kind],
+                buffer.getLong(position + 16),
+                buffer.getLong(position + 24),
+                buffer.getLong(position + 32),
+                Money.ofCents(buffer.getLong(position + 40)),
+                descriptionLength > 0 ? new String(description, StandardCharsets.UTF_8) : null,
+                idempotencyKeyLength > 0 ? new String(idempotencyKey, StandardCharsets.UTF_8) : null,
+                Instant.ofEpochSecond(buffer.getLong(position + 48), buffer.getInt(position + 56)),
+                baseOffset + position + length);
+    }
+
+    private void force() {
+        segment.force();
+        durableOffset = segment.baseOffset + segment.forcedPosition;
+    }
+
+    /**
+     * Erase the records written after the last force, so none of them can be read back after a restart
+     */
+    private void discardUnforced() {
+        if (segment == null) {
+            return;
+        }
+
+        try {
+            for (int i = segment.forcedPosition; i < segment.position; i += 8) {
+                segment.buffer.putLong(i, 0);
+            }
+            segment.position = segment.forcedPosition;
+        } catch (RuntimeException e) {
+            log.error("Failed to erase the unforced records of journal segment {}", segment.baseOffset, e);
+        }
+    }
+
+    private int checksum(ByteBuffer buffer, int from, int length) {
+        CRC32C crc = checksums.get();
+        crc.reset();
+        crc.update(buffer.slice(from, length));
+        return (int) crc.getValue();
+    }
+
+    private void openForAppend(long offset) throws IOException {
+        long baseOffset = offset - offset % segmentSize;
+        Path path = directory.resolve(String.format("%020d%s", baseOffset, SEGMENT_SUFFIX));
+
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        int position = (int) (offset - baseOffset);
+
+        // Clear whatever a crash left after the last valid record, so it can never be read back later
+        for (int i = position; i < segmentSize; i += 8) {
+            buffer.putLong(i, 0);
+        }
+
+        segment = new Segment(baseOffset, channel, buffer, position);
+    }
+
+    private void closeSegment() {
+        if (segment == null) {
+            return;
+        }
+
+        try {
+            segment.force();
+            segment.channel.close();
+        } catch (IOException e) {
+            log.error("Failed to close journal segment {}", segment.baseOffset, e);
+        }
+        segment = null;
+    }
+
+    private void deleteProjectedSegments() throws IOException {
+        for (Path path : listSegments()) {
+            if (baseOffsetOf(path) + segmentSize <= projectedOffset) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    private void deleteFrom(List<Path> segments, int from) throws IOException {
+        for (int i = from; i < segments.size(); i++) {
+            Files.deleteIfExists(segments.get(i));
+        }
+    }
+
+    private List<Path> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static long baseOffsetOf(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static int align(int length) {
+        return (length + 7) & ~7;
+    }
+    //endregion
+
+    private static final class Segment {
+        private final long baseOffset;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private int position;
+        private int forcedPosition;
+
+        private Segment(long baseOffset, FileChannel channel, MappedByteBuffer buffer, int position) {
+            this.baseOffset = baseOffset;
+            this.channel = channel;
+            this.buffer = buffer;
+            this.position = position;
+            this.forcedPosition = position;
+        }
+
+        private void force() {
+            if (position > forcedPosition) {
+                buffer.force(forcedPosition, position - forcedPosition);
+                forcedPosition = position;
+            }
+        }
+    }
+}
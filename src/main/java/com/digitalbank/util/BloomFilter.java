@@ -0,0 +1,122 @@
+package com.digitalbank.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe Bloom filter of strings: {@link #mightContain} never answers false for a value that was put,
+ * and answers true for a value that was not with about the false positive rate it was sized for.
+ * Values cannot be removed; a filter with removed values is rebuilt instead.
+ * The k bit positions come from two 64-bit hashes combined as h1 + i * h2.
+ */
+public final class BloomFilter {
+    private final AtomicLongArray words;
+    private final long bitCount;
+    private final int hashFunctions;
+    private final AtomicLong bitsSet = new AtomicLong();
+
+    private BloomFilter(long bitCount, int hashFunctions) {
+        this.words = new AtomicLongArray(Math.toIntExact((bitCount + 63) / 64));
+        this.bitCount = bitCount;
+        this.hashFunctions = hashFunctions;
+    }
+
+    /**
+     * Size the filter for the number of values it will hold and the false positive rate it should keep at that size
+     */
+    public static BloomFilter create(long expectedInsertions, double falsePositiveRate) {
+        if (expectedInsertions < 1) {
+            throw new IllegalArgumentException("Expected insertions should be at least 1");
+        }
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("False positive rate should be between 0 and 1");
+        }
+
+        long bitCount = Math.max(64, (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2))));
+        int hashFunctions = Math.max(1, (int) Math.round((double) bitCount / expectedInsertions * Math.log(2)));
+        return new BloomFilter(bitCount, hashFunctions);
+    }
+
+    public void put(String value) {
+        long h1 = hash(value);
+        long h2 = mix(h1 + 0x9E3779B97F4A7C15L);
+
+        for (int i = 0; i < hashFunctions; i++) {
+            long bit = Long.remainderUnsigned(h1 + i * h2, bitCount);
+            if (setBit(bit)) {
+                bitsSet.incrementAndGet();
+            }
+        }
+    }
+
+    public boolean mightContain(String value) {
+        long h1 = hash(value);
+        long h2 = mix(h1 + 0x9E3779B97F4A7C15L);
+
+        for (int i = 0; i < hashFunctions; i++) {
+            long bit = Long.remainderUnsigned(h1 + i * h2, bitCount);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * False positive rate expected from the share of bits set so far
+     */
+    public double expectedFalsePositiveRate() {
+        return Math.pow((double) bitsSet.get() / bitCount, hashFunctions);
+    }
+
+    public long bitCount() {
+        return bitCount;
+    }
+
+    public int hashFunctions() {
+        return hashFunctions;
+    }
+
+    public long sizeInBytes() {
+        return (long) words.length() * Long.BYTES;
+    }
+
+    //region Helpers
+    /**
+     * Set the bit, returning whether it was clear before
+     */
+    private boolean setBit(long bit) {
+        int index = (int) (bit >>> 6);
+        long mask = 1L << bit;
+
+        long word;
+        do {
+            word = words.get(index);
+            if ((word & mask) != 0) {
+                return false;
+            }
+        } while (!words.compareAndSet(index, word, word | mask));
+        return true;
+    }
+
+    /**
+     * FNV-1a over the UTF-16 chars followed by a 64-bit finalizer, so similar values spread over the whole range
+     */
+    private static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+    //endregion
+}
@@ -0,0 +1,59 @@
+package com.digitalbank.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A template split once into literal segments and named slots, so rendering is a single pass of appends.
+ * There is always one more literal than slots: literal 0, slot 0, literal 1, ..., slot n-1, literal n.
+ */
+public final class CompiledTemplate {
+    private final String[] literals;
+    private final String[] slots;
+    private final int literalLength;
+
+    private CompiledTemplate(List<String> literals, List<String> slots) {
+        this.literals = literals.toArray(String[]::new);
+        this.slots = slots.toArray(String[]::new);
+        this.literalLength = literals.stream().mapToInt(String::length).sum();
+    }
+
+    /**
+     * Split the source on every match of the slot pattern, whose first group is the slot name
+     */
+    public static CompiledTemplate compile(String source, Pattern slot) {
+        List<String> literals = new ArrayList<>();
+        List<String> slots = new ArrayList<>();
+        Matcher matcher = slot.matcher(source);
+
+        int start = 0;
+        while (matcher.find()) {
+            literals.add(source.substring(start, matcher.start()));
+            slots.add(matcher.group(1));
+            start = matcher.end();
+        }
+        literals.add(source.substring(start));
+
+        return new CompiledTemplate(literals, slots);
+    }
+
+    public Set<String> slots() {
+        return Set.copyOf(Arrays.asList(slots));
+    }
+
+    /**
+     * Render with the value of every slot, already escaped for the output
+     */
+    public String render(Function<String, String> values) {
+        StringBuilder output = new StringBuilder(literalLength + slots.length * 16);
+        for (int i = 0; i < slots.length; i++) {
+            output.append(literals[i]).append(values.apply(slots[i]));
+        }
+        return output.append(literals[slots.length]).toString();
+    }
+}
@@ -2,22 +2,38 @@ package com.digitalbank.util;
 
 import org.apache.commons.lang3.StringUtils;
 
-import java.util.regex.Pattern;
+import java.util.BitSet;
+import java.util.List;
 
 public class CpfUtil {
-    private static final Pattern CPF_NUMERIC_PATTERN = Pattern.compile("^\\d{11}$");
-    private static final Pattern CPF_FORMATTED_PATTERN = Pattern.compile("^\\d{3}\\.\\d{3}\\.\\d{3}-\\d{2}$");
+    private static final int CPF_LENGTH = 11;
 
     private CpfUtil() {}
 
     /**
-     * Normalize CPF, removing special characters
+     * Normalize CPF, removing special characters. A CPF holding only digits is returned as it is.
      */
     public static String normalize(String cpf) {
         if (StringUtils.isBlank(cpf)) {
             return cpf;
         }
-        return cpf.replaceAll("[^0-9]", "");
+
+        int firstNonDigit = 0;
+        while (firstNonDigit < cpf.length() && isDigit(cpf.charAt(firstNonDigit))) {
+            firstNonDigit++;
+        }
+        if (firstNonDigit == cpf.length()) {
+            return cpf;
+        }
+
+        StringBuilder digits = new StringBuilder(CPF_LENGTH).append(cpf, 0, firstNonDigit);
+        for (int i = firstNonDigit + 1; i < cpf.length(); i++) {
+            char c = cpf.charAt(i);
+            if (isDigit(c)) {
+                digits.append(c);
+            }
+        }
+        return digits.toString();
     }
 
     /**
@@ -30,7 +46,7 @@ public class CpfUtil {
 
         String normalized = normalize(cpf);
 
-        if (normalized.length() != 11) {
+        if (normalized.length() != CPF_LENGTH) {
             return cpf;
         }
 
@@ -42,28 +58,70 @@ public class CpfUtil {
     }
 
     /**
-     * Validate CPF
+     * Validate CPF in a single pass without allocating. Characters other than ASCII digits are ignored,
+     * so 000.000.000-00 and 00000000000 are both accepted.
      */
-    public static boolean isValid(String cpf) {
-        if (StringUtils.isBlank(cpf)) {
+    public static boolean isValid(CharSequence cpf) {
+        if (cpf == null) {
             return false;
         }
 
-        String normalized = normalize(cpf);
-
-        if (normalized.length() != 11) {
-            return false;
+        Verifier verifier = new Verifier();
+        for (int i = 0; i < cpf.length(); i++) {
+            if (!verifier.accept(cpf.charAt(i))) {
+                return false;
+            }
         }
+        return verifier.isValid();
+    }
 
-        if (normalized.chars().allMatch(c -> c == normalized.charAt(0))) {
-            return false;
-        }
+    /**
+     * Validate the CPF held as ASCII in {@code bytes} from {@code from}, inclusive, to {@code to}, exclusive
+     */
+    public static boolean isValid(byte[] bytes, int from, int to) {
+        Verifier verifier = new Verifier();
+        for (int i = from; i < to; i++) {
+            if (!verifier.accept((char) (bytes[i] & 0xFF))) {
+                return false;
+            }
+        }
+        return verifier.isValid();
+    }
 
-        try {
-            return validateVerifierDigits(normalized);
-        } catch (NumberFormatException e) {
-            return false;
-        }
+    /**
+     * Validate a whole column of CPFs, returning the positions of the valid ones
+     */
+    public static BitSet validateAll(List<? extends CharSequence> cpfs) {
+        BitSet valid = new BitSet(cpfs.size());
+        for (int i = 0; i < cpfs.size(); i++) {
+            if (isValid(cpfs.get(i))) {
+                valid.set(i);
+            }
+        }
+        return valid;
+    }
+
+    /**
+     * Validate a column of CPFs held as ASCII, one per line, returning the numbers of the valid lines counted
+     * from 0. A carriage return before a line feed is ignored like any other character that is not a digit.
+     */
+    public static BitSet validateLines(byte[] column) {
+        BitSet valid = new BitSet();
+        int line = 0;
+        int start = 0;
+        while (start < column.length) {
+            int end = start;
+            while (end < column.length && column[end] != '\n') {
+                end++;
+            }
+
+            if (isValid(column, start, end)) {
+                valid.set(line);
+            }
+            line++;
+            start = end + 1;
+        }
+        return valid;
     }
 
     /**
@@ -105,36 +163,64 @@ public class CpfUtil {
     }
 
     //region Helpers
-    private static boolean validateVerifierDigits(String cpf) {
-        // Valida primeiro dígito verificador
-        int sum = 0;
-        for (int i = 0; i < 9; i++) {
-            int digit = Character.getNumericValue(cpf.charAt(i));
-            sum += digit * (10 - i);
-        }
-
-        int firstVerifier = 11 - (sum % 11);
-        if (firstVerifier >= 10) {
-            firstVerifier = 0;
-        }
-
-        if (firstVerifier != Character.getNumericValue(cpf.charAt(9))) {
-            return false;
-        }
-
-        // Valida segundo dígito verificador
-        sum = 0;
-        for (int i = 0; i < 10; i++) {
-            int digit = Character.getNumericValue(cpf.charAt(i));
-            sum += digit * (11 - i);
-        }
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
 
-        int secondVerifier = 11 - (sum % 11);
-        if (secondVerifier >= 10) {
-            secondVerifier = 0;
+    /**
+     * Running state of a validation: both weighted sums are accumulated as the digits arrive
+     */
+    private static final class Verifier {
+        private int count;
+        private int first;
+        private boolean allSame = true;
+        private int firstSum;
+        private int secondSum;
+        private int tenthDigit;
+        private int eleventhDigit;
+
+        /**
+         * Take the next character, returning false once there are too many digits for a CPF
+         */
+        boolean accept(char c) {
+            if (!isDigit(c)) {
+                return true;
+            }
+            if (count == CPF_LENGTH) {
+                return false;
+            }
+
+            int digit = c - '0';
+            if (count == 0) {
+                first = digit;
+            } else if (digit != first) {
+                allSame = false;
+            }
+
+            if (count < 9) {
+                firstSum += digit * (10 - count);
+                secondSum += digit * (11 - count);
+            } else if (count == 9) {
+                tenthDigit = digit;
+                secondSum += digit * 2;
+            } else {
+                eleventhDigit = digit;
+            }
+
+            count++;
+            return true;
+        }
+
+        boolean isValid() {
+            return count == CPF_LENGTH && !allSame
+                    && verifier(firstSum) == tenthDigit
+                    && verifier(secondSum) == eleventhDigit;
+        }
+
+        private static int verifier(int sum) {
+            int verifier = 11 - (sum % 11);
+            return verifier >= 10 ? 0 : verifier;
         }
-
-        return secondVerifier == Character.getNumericValue(cpf.charAt(10));
     }
     //endregion
 }
@@ -0,0 +1,63 @@
+package com.digitalbank.util;
+
+import java.math.BigDecimal;
+
+/**
+ * Amount of money held as a {@code long} number of cents.
+ * Arithmetic is overflow checked and allocates no BigDecimal; conversion to and from BigDecimal
+ * is meant for the JSON and JPA boundaries only.
+ */
+public record Money(long cents) implements Comparable<Money> {
+    public static final int SCALE = 2;
+    public static final Money ZERO = new Money(0);
+
+    /**
+     * Exact conversion from a decimal amount.
+     *
+     * @throws ArithmeticException when the amount has more than two decimal places or does not fit in a long
+     */
+    public static Money of(BigDecimal amount) {
+        if (amount.scale() > SCALE) {
+            amount = amount.stripTrailingZeros();
+            if (amount.scale() > SCALE) {
+                throw new ArithmeticException("Amount " + amount + " has more than " + SCALE + " decimal places");
+            }
+        }
+
+        return new Money(amount.movePointRight(SCALE).longValueExact());
+    }
+
+    public static Money ofCents(long cents) {
+        return new Money(cents);
+    }
+
+    public Money plus(Money other) {
+        return new Money(Math.addExact(cents, other.cents));
+    }
+
+    public Money minus(Money other) {
+        return new Money(Math.subtractExact(cents, other.cents));
+    }
+
+    public boolean isPositive() {
+        return cents > 0;
+    }
+
+    public boolean isLessThan(Money other) {
+        return cents < other.cents;
+    }
+
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(cents, SCALE);
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(cents, other.cents);
+    }
+
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString();
+    }
+}
@@ -0,0 +1,38 @@
+package com.digitalbank.util;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.Optional;
+
+/**
+ * Position in a transaction history ordered by (transaction_date, id), handed to clients as an opaque
+ * URL-safe string so the keyset columns can change without breaking them
+ */
+public record TransactionCursor(Instant transactionDate, long id) {
+    private static final char SEPARATOR = '_';
+
+    public String encode() {
+        String value = transactionDate.toString() + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * The cursor a string was encoded from, empty when it was not produced by {@link #encode()}
+     */
+    public static Optional<TransactionCursor> decode(String cursor) {
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII);
+            int separator = value.lastIndexOf(SEPARATOR);
+            if (separator < 0) {
+                return Optional.empty();
+            }
+
+            return Optional.of(new TransactionCursor(Instant.parse(value.substring(0, separator)),
+                    Long.parseLong(value.substring(separator + 1))));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            return Optional.empty();
+        }
+    }
+}
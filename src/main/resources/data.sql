@@ -12,3 +12,12 @@ INSERT INTO customer (name, email, cpf, balance, created_at) VALUES
 -- Insert admin user
 INSERT INTO customer (name, email, cpf, balance, created_at) VALUES
 ('Admin User', 'admin@digitalbank.com', '99988877766', 0.00, CURRENT_TIMESTAMP);
+
+-- Admin user receives a large share of transfers, so its balance is striped
+UPDATE customer SET balance_stripes = 8 WHERE email = 'admin@digitalbank.com';
+
+INSERT INTO customer_balance_stripe (customer_id, stripe, balance)
+SELECT c.id, s.stripe, 0.00
+FROM customer c
+CROSS JOIN (VALUES (0), (1), (2), (3), (4), (5), (6), (7)) AS s(stripe)
+WHERE c.email = 'admin@digitalbank.com';
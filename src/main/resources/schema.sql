@@ -5,6 +5,11 @@
 SET REFERENTIAL_INTEGRITY FALSE;
 
 -- Drop tables in reverse order of dependencies
+DROP TABLE IF EXISTS customer_summary;
+DROP TABLE IF EXISTS notification_outbox;
+DROP TABLE IF EXISTS ledger_checkpoint;
+DROP TABLE IF EXISTS idempotency_key;
+DROP TABLE IF EXISTS customer_balance_stripe;
 DROP TABLE IF EXISTS notification;
 DROP TABLE IF EXISTS bank_transaction;
 DROP TABLE IF EXISTS customer;
@@ -13,22 +18,28 @@ DROP TABLE IF EXISTS customer;
 DROP SEQUENCE IF EXISTS customer_seq;
 DROP SEQUENCE IF EXISTS transaction_seq;
 DROP SEQUENCE IF EXISTS notification_seq;
+DROP SEQUENCE IF EXISTS notification_outbox_seq;
 
 -- Create sequences for ID generation
 CREATE SEQUENCE customer_seq START WITH 1 INCREMENT BY 50;
 CREATE SEQUENCE transaction_seq START WITH 1 INCREMENT BY 50;
 CREATE SEQUENCE notification_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE notification_outbox_seq START WITH 1 INCREMENT BY 50;
 
 -- Customer table
 CREATE TABLE customer (
     id BIGINT DEFAULT NEXT VALUE FOR customer_seq PRIMARY KEY,
     name VARCHAR(100) NOT NULL,
-    email VARCHAR(100) UNIQUE NOT NULL,
-    cpf VARCHAR(14) UNIQUE NOT NULL,
+    email VARCHAR(100) NOT NULL,
+    cpf VARCHAR(14) NOT NULL,
     balance DECIMAL(19,2) DEFAULT 0.00,
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
-    version INTEGER DEFAULT 0
+    version INTEGER DEFAULT 0,
+    balance_stripes INTEGER DEFAULT 0,
+
+    CONSTRAINT uk_customer_email UNIQUE (email),
+    CONSTRAINT uk_customer_cpf UNIQUE (cpf)
 );
 
 COMMENT ON TABLE customer IS 'Digital bank customers';
@@ -37,6 +48,25 @@ COMMENT ON COLUMN customer.email IS 'Unique customer email';
 COMMENT ON COLUMN customer.cpf IS 'Unique customer CPF (format: 000.000.000-00)';
 COMMENT ON COLUMN customer.balance IS 'Current account balance (19 digits, 2 decimals)';
 COMMENT ON COLUMN customer.version IS 'Version control for optimistic locking';
+COMMENT ON COLUMN customer.balance_stripes IS 'Number of striped sub-balances of a hot account, 0 for regular accounts';
+
+-- Striped sub-balances of hot accounts
+CREATE TABLE customer_balance_stripe (
+    customer_id BIGINT NOT NULL,
+    stripe INTEGER NOT NULL,
+    balance DECIMAL(19,2) DEFAULT 0.00,
+
+    CONSTRAINT pk_customer_balance_stripe
+        PRIMARY KEY (customer_id, stripe),
+
+    CONSTRAINT fk_stripe_customer
+        FOREIGN KEY (customer_id)
+        REFERENCES customer(id)
+        ON DELETE CASCADE
+);
+
+COMMENT ON TABLE customer_balance_stripe IS 'Sub-balances of hot accounts, credited independently to avoid locking the customer row';
+COMMENT ON COLUMN customer_balance_stripe.balance IS 'Part of the customer balance held by this stripe';
 
 -- Bank Transaction table
 CREATE TABLE bank_transaction (
@@ -65,7 +95,7 @@ COMMENT ON TABLE bank_transaction IS 'Bank transaction records';
 COMMENT ON COLUMN bank_transaction.origin_customer_id IS 'ID of the origin customer';
 COMMENT ON COLUMN bank_transaction.destination_customer_id IS 'ID of the destination customer';
 COMMENT ON COLUMN bank_transaction.amount IS 'Transaction amount (positive)';
-COMMENT ON COLUMN bank_transaction.status IS 'Status: PENDING, COMPLETED, FAILED, CANCELLED';
+COMMENT ON COLUMN bank_transaction.status IS 'Status: PENDING, PROCESSING, COMPLETED, FAILED, CANCELLED';
 COMMENT ON COLUMN bank_transaction.description IS 'Optional transaction description';
 
 -- Notification table
@@ -77,6 +107,12 @@ CREATE TABLE notification (
     notification_type VARCHAR(50) DEFAULT 'TRANSFER',
     sent_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     is_sent BOOLEAN DEFAULT FALSE,
+    delivery_status VARCHAR(20) DEFAULT 'SENT' NOT NULL,
+    delivery_attempts INT DEFAULT 0 NOT NULL,
+    next_attempt_at TIMESTAMP,
+    last_error VARCHAR(500),
+    transfer_count INT DEFAULT 1 NOT NULL,
+    amount DECIMAL(19,2),
 
     CONSTRAINT fk_notification_customer
         FOREIGN KEY (customer_id)
@@ -90,15 +126,90 @@ CREATE TABLE notification (
 );
 
 COMMENT ON TABLE notification IS 'Customer notifications';
-COMMENT ON COLUMN notification.notification_type IS 'Type: TRANSFER_RECEIVED, TRANSFER_SENT, TRANSFER_FAILED, ALERT, SYSTEM, PROMOTIONAL';
+COMMENT ON COLUMN notification.notification_type IS 'Type: TRANSFER_RECEIVED, TRANSFER_DIGEST, TRANSFER_SENT, TRANSFER_FAILED, ALERT, SYSTEM, PROMOTIONAL';
+COMMENT ON COLUMN notification.transfer_count IS 'Transfers summed up by a TRANSFER_DIGEST, whose bank_transaction_id is the most recent one';
+COMMENT ON COLUMN notification.amount IS 'Total received by a TRANSFER_DIGEST, null when the amount is the one of the transaction';
+COMMENT ON COLUMN notification.delivery_status IS 'Email delivery: PENDING, SENT, DEAD_LETTER after the last attempt failed';
+COMMENT ON COLUMN notification.next_attempt_at IS 'When a PENDING email is attempted again, pushed past a lease while an attempt is in flight';
+
+-- Transfer notifications waiting to be delivered, written in the transfer transaction
+CREATE TABLE notification_outbox (
+    id BIGINT DEFAULT NEXT VALUE FOR notification_outbox_seq PRIMARY KEY,
+    bank_transaction_id BIGINT NOT NULL,
+    origin_customer_id BIGINT NOT NULL,
+    destination_customer_id BIGINT NOT NULL,
+    origin_name VARCHAR(100) NOT NULL,
+    destination_name VARCHAR(100) NOT NULL,
+    destination_email VARCHAR(100) NOT NULL,
+    amount DECIMAL(19,2) NOT NULL,
+    transaction_date TIMESTAMP NOT NULL,
+    available_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL,
+
+    CONSTRAINT fk_outbox_transaction
+        FOREIGN KEY (bank_transaction_id)
+        REFERENCES bank_transaction(id)
+        ON DELETE CASCADE
+);
+
+COMMENT ON TABLE notification_outbox IS 'Transfer notifications not delivered yet, with a snapshot of what they need';
+COMMENT ON COLUMN notification_outbox.available_at IS 'When the row can be claimed, pushed forward while a relay holds it';
+
+-- Idempotency keys of transfer requests
+CREATE TABLE idempotency_key (
+    idempotency_key VARCHAR(255) PRIMARY KEY,
+    request_hash VARCHAR(64) NOT NULL,
+    response TEXT,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    claimed_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL,
+    completed_at TIMESTAMP
+);
+
+COMMENT ON TABLE idempotency_key IS 'Idempotency-Key headers already seen on transfer requests';
+COMMENT ON COLUMN idempotency_key.request_hash IS 'SHA-256 of the request the key was first used with';
+COMMENT ON COLUMN idempotency_key.response IS 'Stored JSON response, empty while the first execution is in progress';
+COMMENT ON COLUMN idempotency_key.claimed_at IS 'When the execution in progress claimed the key, taken over by a retry once its lease ran out';
+
+-- Activity totals per customer, kept up to date by the writes that change them
+CREATE TABLE customer_summary (
+    customer_id BIGINT PRIMARY KEY,
+    total_outgoing_transactions BIGINT DEFAULT 0 NOT NULL,
+    total_incoming_transactions BIGINT DEFAULT 0 NOT NULL,
+    total_outgoing_amount DECIMAL(19,2) DEFAULT 0.00 NOT NULL,
+    total_incoming_amount DECIMAL(19,2) DEFAULT 0.00 NOT NULL,
+    total_notifications BIGINT DEFAULT 0 NOT NULL,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+
+    CONSTRAINT fk_summary_customer
+        FOREIGN KEY (customer_id)
+        REFERENCES customer(id)
+        ON DELETE CASCADE
+);
+
+COMMENT ON TABLE customer_summary IS 'Transactions and notifications of each customer, updated incrementally and rebuilt in chunks when needed';
+COMMENT ON COLUMN customer_summary.total_outgoing_transactions IS 'Transactions sent, whatever their status';
+COMMENT ON COLUMN customer_summary.total_outgoing_amount IS 'Amount of the COMPLETED transactions sent';
+COMMENT ON COLUMN customer_summary.total_incoming_amount IS 'Amount of the COMPLETED transactions received';
+
+-- Ledger journal projection progress
+CREATE TABLE ledger_checkpoint (
+    id INTEGER PRIMARY KEY,
+    journal_offset BIGINT DEFAULT 0 NOT NULL,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+COMMENT ON TABLE ledger_checkpoint IS 'Offset of the ledger journal up to which entries are written to the database';
+
+INSERT INTO ledger_checkpoint (id, journal_offset) VALUES (1, 0);
 
 -- Performance indexes
 CREATE INDEX idx_customer_email ON customer(email);
 CREATE INDEX idx_customer_cpf ON customer(cpf);
 CREATE INDEX idx_customer_created ON customer(created_at);
 
-CREATE INDEX idx_transaction_origin ON bank_transaction(origin_customer_id);
-CREATE INDEX idx_transaction_destination ON bank_transaction(destination_customer_id);
+-- One range per customer and direction in (transaction_date, id) order, the keyset of the history pages.
+-- The trailing columns cover the history projection; on PostgreSQL they belong in an INCLUDE clause.
+CREATE INDEX idx_transaction_origin_history ON bank_transaction(origin_customer_id, transaction_date, id, destination_customer_id, amount, status);
+CREATE INDEX idx_transaction_destination_history ON bank_transaction(destination_customer_id, transaction_date, id, origin_customer_id, amount, status);
 CREATE INDEX idx_transaction_date ON bank_transaction(transaction_date);
 CREATE INDEX idx_transaction_status ON bank_transaction(status);
 CREATE INDEX idx_transaction_amount ON bank_transaction(amount);
@@ -107,6 +218,11 @@ CREATE INDEX idx_notification_customer ON notification(customer_id);
 CREATE INDEX idx_notification_sent ON notification(is_sent);
 CREATE INDEX idx_notification_type ON notification(notification_type);
 CREATE INDEX idx_notification_date ON notification(sent_at);
+CREATE INDEX idx_notification_next_attempt ON notification(delivery_status, next_attempt_at);
+
+CREATE INDEX idx_idempotency_key_created ON idempotency_key(created_at);
+
+CREATE INDEX idx_notification_outbox_available ON notification_outbox(available_at);
 
 -- Validation constraints
 ALTER TABLE customer ADD CONSTRAINT chk_balance_positive
@@ -118,6 +234,9 @@ ALTER TABLE customer ADD CONSTRAINT chk_cpf_format
 ALTER TABLE customer ADD CONSTRAINT chk_email_format
     CHECK (email ~ '^[A-Za-z0-9._%+-]+@[A-Za-z0-9.-]+\.[A-Za-z]{2,}$');
 
+ALTER TABLE customer_balance_stripe ADD CONSTRAINT chk_stripe_balance_positive
+    CHECK (balance >= 0);
+
 ALTER TABLE bank_transaction ADD CONSTRAINT chk_amount_positive
     CHECK (amount > 0);
 
@@ -126,23 +245,3 @@ ALTER TABLE bank_transaction ADD CONSTRAINT chk_valid_status
 
 -- Re-enable referential integrity
 SET REFERENTIAL_INTEGRITY TRUE;
-
--- Create a view for customer summary
-CREATE VIEW customer_summary AS
-SELECT
-    c.id,
-    c.name,
-    c.email,
-    c.cpf,
-    c.balance,
-    c.created_at,
-    COUNT(DISTINCT t_out.id) AS total_outgoing_transactions,
-    COUNT(DISTINCT t_in.id) AS total_incoming_transactions,
-    COALESCE(SUM(CASE WHEN t_out.status = 'COMPLETED' THEN t_out.amount ELSE 0 END), 0) AS total_outgoing_amount,
-    COALESCE(SUM(CASE WHEN t_in.status = 'COMPLETED' THEN t_in.amount ELSE 0 END), 0) AS total_incoming_amount,
-    COUNT(DISTINCT n.id) AS total_notifications
-FROM customer c
-LEFT JOIN bank_transaction t_out ON c.id = t_out.origin_customer_id
-LEFT JOIN bank_transaction t_in ON c.id = t_in.destination_customer_id
-LEFT JOIN notification n ON c.id = n.customer_id
-GROUP BY c.id, c.name, c.email, c.cpf, c.balance, c.created_at;
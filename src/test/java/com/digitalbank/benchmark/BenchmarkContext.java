@@ -0,0 +1,51 @@
+package com.digitalbank.benchmark;
+
+import com.digitalbank.DigitalBankApplication;
+import com.digitalbank.entity.Customer;
+import com.digitalbank.repository.CustomerRepository;
+import com.digitalbank.util.CpfUtil;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Boots the application without the web layer for JMH benchmarks.
+ * The notification outbox is written by every transfer but never relayed, so no emails are sent while measuring.
+ */
+final class BenchmarkContext {
+
+    private BenchmarkContext() {}
+
+    static ConfigurableApplicationContext start(String... args) {
+        List<String> arguments = new ArrayList<>(List.of(
+                "--logging.level.com.digitalbank=OFF",
+                "--app.notification.outbox.poll-interval=86400000"));
+        arguments.addAll(List.of(args));
+
+        return new SpringApplicationBuilder(DigitalBankApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(arguments.toArray(String[]::new));
+    }
+
+    static long[] createCustomers(ConfigurableApplicationContext context, int count, BigDecimal balance) {
+        CustomerRepository customerRepository = context.getBean(CustomerRepository.class);
+
+        List<Customer> customers = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            customers.add(Customer.builder()
+                    .name("Benchmark Customer " + i)
+                    .email("benchmark" + i + "@digitalbank.com")
+                    .cpf(CpfUtil.generate())
+                    .balance(balance)
+                    .build());
+        }
+
+        return customerRepository.saveAll(customers).stream()
+                .mapToLong(Customer::getId)
+                .toArray();
+    }
+}
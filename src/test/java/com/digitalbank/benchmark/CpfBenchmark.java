@@ -0,0 +1,136 @@
+package com.digitalbank.benchmark;
+
+import com.digitalbank.util.CpfUtil;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CPFs validated per second over a column of formatted, numeric and invalid CPFs: one by one with the
+ * regex and stream based validation CpfUtil had before, one by one with the single pass validator, and as a
+ * whole column of strings or of ASCII lines. Run with {@code -prof gc} to compare the allocation rate too:
+ * {@code mvn -Pbenchmark test-compile exec:exec -Djmh.args="CpfBenchmark -prof gc"}
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class CpfBenchmark {
+    private static final int CPFS = 1024;
+
+    private final List<String> cpfs = new ArrayList<>(CPFS);
+    private byte[] lines;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        for (int i = 0; i < CPFS; i++) {
+            String cpf = CpfUtil.generate();
+            cpfs.add(switch (random.nextInt(4)) {
+                case 0 -> cpf;
+                case 1, 2 -> CpfUtil.format(cpf);
+                default -> cpf.substring(0, 10) + (cpf.charAt(10) == '9' ? '0' : (char) (cpf.charAt(10) + 1));
+            });
+        }
+        lines = (String.join("\n", cpfs) + "\n").getBytes(StandardCharsets.US_ASCII);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CPFS)
+    public int previous() {
+        int valid = 0;
+        for (String cpf : cpfs) {
+            if (Previous.isValid(cpf)) {
+                valid++;
+            }
+        }
+        return valid;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CPFS)
+    public int singlePass() {
+        int valid = 0;
+        for (String cpf : cpfs) {
+            if (CpfUtil.isValid(cpf)) {
+                valid++;
+            }
+        }
+        return valid;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CPFS)
+    public BitSet column() {
+        return CpfUtil.validateAll(cpfs);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CPFS)
+    public BitSet asciiLines() {
+        return CpfUtil.validateLines(lines);
+    }
+
+    /**
+     * The validation CpfUtil had before the single pass validator, kept as the baseline
+     */
+    private static final class Previous {
+
+        static boolean isValid(String cpf) {
+            if (cpf == null || cpf.isBlank()) {
+                return false;
+            }
+
+            String normalized = cpf.replaceAll("[^0-9]", "");
+
+            if (normalized.length() != 11) {
+                return false;
+            }
+
+            if (normalized.chars().allMatch(c -> c == normalized.charAt(0))) {
+                return false;
+            }
+
+            try {
+                return validateVerifierDigits(normalized);
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+
+        private static boolean validateVerifierDigits(String cpf) {
+            int sum = 0;
+            for (int i = 0; i < 9; i++) {
+                sum += Character.getNumericValue(cpf.charAt(i)) * (10 - i);
+            }
+
+            int firstVerifier = 11 - (sum % 11);
+            if (firstVerifier >= 10) {
+                firstVerifier = 0;
+            }
+
+            if (firstVerifier != Character.getNumericValue(cpf.charAt(9))) {
+                return false;
+            }
+
+            sum = 0;
+            for (int i = 0; i < 10; i++) {
+                sum += Character.getNumericValue(cpf.charAt(i)) * (11 - i);
+            }
+
+            int secondVerifier = 11 - (sum % 11);
+            if (secondVerifier >= 10) {
+                secondVerifier = 0;
+            }
+
+            return secondVerifier == Character.getNumericValue(cpf.charAt(10));
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.digitalbank.benchmark;
+
+import com.digitalbank.dto.EmailDTO;
+import com.digitalbank.service.EmailService;
+import com.digitalbank.support.SmtpSink;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Emails per second delivered to the in-process {@link SmtpSink} through the pooled SMTP connections,
+ * with one connection and with several. Each invocation queues a burst of transfer emails and waits for all of them;
+ * several threads render and queue emails so rendering does not hide the delivery side:
+ * {@code mvn -Pbenchmark test-compile exec:exec -Djmh.args=EmailDeliveryBenchmark}
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class EmailDeliveryBenchmark {
+    private static final int EMAILS = 100;
+
+    @Param({"1", "4"})
+    public int connections;
+
+    private SmtpSink smtpSink;
+    private ConfigurableApplicationContext context;
+    private EmailService emailService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        smtpSink = SmtpSink.start();
+        context = BenchmarkContext.start(
+                "--spring.mail.port=" + smtpSink.getPort(),
+                "--app.email.smtp.connections=" + connections);
+        emailService = context.getBean(EmailService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        context.close();
+        smtpSink.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EMAILS)
+    public void sendTransferEmails() {
+        CompletableFuture<?>[] responses = new CompletableFuture<?>[EMAILS];
+        for (int i = 0; i < EMAILS; i++) {
+            CompletableFuture<EmailDTO> response = emailService.sendTransferEmail("customer" + i + "@example.com",
+                    "Customer " + i, "Benchmark Sender", "10.00", String.valueOf(i), "17 January 2024, 10:00");
+            responses[i] = response;
+        }
+        CompletableFuture.allOf(responses).join();
+    }
+}
@@ -0,0 +1,72 @@
+package com.digitalbank.benchmark;
+
+import com.digitalbank.service.EmailTemplateService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.thymeleaf.TemplateEngine;
+import org.thymeleaf.context.Context;
+
+import java.time.Year;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transfer emails rendered per second, both bodies each time: through Thymeleaf with a fresh context per body
+ * as before, and through the templates the EmailTemplateService compiled at startup:
+ * {@code mvn -Pbenchmark test-compile exec:exec -Djmh.args=EmailTemplateBenchmark}
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EmailTemplateBenchmark {
+    private static final String TEMPLATE = "transfer-received";
+    private static final Map<String, Object> VARIABLES = Map.of(
+            "recipientName", "Ana Souza",
+            "senderName", "Bruno Lima",
+            "amount", "150.00",
+            "transactionId", "42",
+            "date", "17 January 2024, 10:00");
+
+    private ConfigurableApplicationContext context;
+    private TemplateEngine templateEngine;
+    private EmailTemplateService emailTemplateService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start();
+        templateEngine = context.getBean(TemplateEngine.class);
+        emailTemplateService = context.getBean(EmailTemplateService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void thymeleaf(Blackhole blackhole) {
+        blackhole.consume(templateEngine.process("email/" + TEMPLATE + ".html", context(VARIABLES)));
+        blackhole.consume(templateEngine.process("email/" + TEMPLATE + ".txt", context(VARIABLES)));
+    }
+
+    @Benchmark
+    public EmailTemplateService.RenderedEmail compiled() {
+        return emailTemplateService.render(TEMPLATE, VARIABLES);
+    }
+
+    //region Helpers
+    private static Context context(Map<String, Object> variables) {
+        Context context = new Context(Locale.getDefault());
+        context.setVariable("companyName", "Digital Bank");
+        context.setVariable("supportEmail", "support@digitalbank.com");
+        context.setVariable("currentYear", Year.now().getValue());
+        context.setVariables(variables);
+        return context;
+    }
+    //endregion
+}
@@ -0,0 +1,121 @@
+package com.digitalbank.benchmark;
+
+import com.digitalbank.dto.BankTransactionBatchResponseDTO;
+import com.digitalbank.dto.BankTransactionRequestDTO;
+import com.digitalbank.entity.BankTransaction;
+import com.digitalbank.entity.Customer;
+import com.digitalbank.entity.Notification;
+import com.digitalbank.entity.enums.NotificationStatusEnum;
+import com.digitalbank.repository.BankTransactionRepository;
+import com.digitalbank.repository.CustomerRepository;
+import com.digitalbank.repository.NotificationRepository;
+import com.digitalbank.service.BankTransactionService;
+import com.digitalbank.util.CpfUtil;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rows inserted per second by the bulk insert paths, with JDBC batching disabled (batch size 1) and
+ * at the configured batch size. With pooled sequence ids Hibernate no longer inserts each row on its
+ * own to read back the generated key, so the larger batch size should cut the round trips per row:
+ * {@code mvn -Pbenchmark test-compile exec:exec -Djmh.args=InsertBenchmark}
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InsertBenchmark {
+    private static final int ROWS = 100;
+    private static final BigDecimal AMOUNT = new BigDecimal("1.00");
+
+    @Param({"1", "20"})
+    public int jdbcBatchSize;
+
+    private ConfigurableApplicationContext context;
+    private CustomerRepository customerRepository;
+    private NotificationRepository notificationRepository;
+    private BankTransactionService bankTransactionService;
+    private long[] accountIds;
+    private Customer customer;
+    private BankTransaction bankTransaction;
+    private int nextCustomer;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("--spring.jpa.properties.hibernate.jdbc.batch_size=" + jdbcBatchSize);
+        customerRepository = context.getBean(CustomerRepository.class);
+        notificationRepository = context.getBean(NotificationRepository.class);
+        bankTransactionService = context.getBean(BankTransactionService.class);
+        accountIds = BenchmarkContext.createCustomers(context, 200, new BigDecimal("100000000.00"));
+
+        bankTransactionService.processBatch(List.of(transfer(0)));
+        customer = customerRepository.findById(accountIds[1]).orElseThrow();
+        bankTransaction = context.getBean(BankTransactionRepository.class).findAll().getFirst();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public List<Customer> createCustomers() {
+        List<Customer> customers = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            int number = nextCustomer++;
+            customers.add(Customer.builder()
+                    .name("Insert Customer " + number)
+                    .email("insert" + number + "@digitalbank.com")
+                    .cpf(CpfUtil.generate())
+                    .build());
+        }
+
+        return customerRepository.saveAll(customers);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public List<Notification> saveNotifications() {
+        List<Notification> notifications = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            notifications.add(Notification.builder()
+                    .customer(customer)
+                    .bankTransaction(bankTransaction)
+                    .message("You received a transaction of $ 1.00")
+                    .notificationType(NotificationStatusEnum.TRANSFER_RECEIVED)
+                    .build());
+        }
+
+        return notificationRepository.saveAll(notifications);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public BankTransactionBatchResponseDTO transferBatch() {
+        List<BankTransactionRequestDTO> requests = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            requests.add(transfer(i));
+        }
+
+        return bankTransactionService.processBatch(requests);
+    }
+
+    //region Helpers
+    private BankTransactionRequestDTO transfer(int i) {
+        int origin = i % accountIds.length;
+        return BankTransactionRequestDTO.builder()
+                .originCustomerId(accountIds[origin])
+                .destinationCustomerId(accountIds[(origin + 1) % accountIds.length])
+                .amount(AMOUNT)
+                .build();
+    }
+    //endregion
+}
@@ -0,0 +1,67 @@
+package com.digitalbank.benchmark;
+
+import com.digitalbank.util.Money;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one transfer step (validate the amount, check the balance, debit and credit) with
+ * BigDecimal balances against the long cents that StripedBalanceService and the ledger move.
+ * Run with {@code -prof gc} to compare the
+ * allocation rate as well as the latency:
+ * {@code mvn -Pbenchmark test-compile exec:exec -Djmh.args="MoneyBenchmark -prof gc"}
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class MoneyBenchmark {
+    private static final int ACCOUNTS = 1024;
+
+    private final BigDecimal[] decimalBalances = new BigDecimal[ACCOUNTS];
+    private final long[] centBalances = new long[ACCOUNTS];
+    private BigDecimal amount;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        for (int i = 0; i < ACCOUNTS; i++) {
+            decimalBalances[i] = new BigDecimal("1000000.00");
+            centBalances[i] = 100_000_000L;
+        }
+        amount = new BigDecimal("12.34");
+    }
+
+    @Benchmark
+    public BigDecimal bigDecimal() {
+        int origin = next++ & (ACCOUNTS - 1);
+        int destination = (origin + 1) & (ACCOUNTS - 1);
+
+        if (amount.compareTo(BigDecimal.ZERO) <= 0 || decimalBalances[origin].compareTo(amount) < 0) {
+            return BigDecimal.ZERO;
+        }
+
+        decimalBalances[origin] = decimalBalances[origin].subtract(amount);
+        decimalBalances[destination] = decimalBalances[destination].add(amount);
+        return decimalBalances[destination];
+    }
+
+    @Benchmark
+    public long money() {
+        int origin = next++ & (ACCOUNTS - 1);
+        int destination = (origin + 1) & (ACCOUNTS - 1);
+
+        Money cents = Money.of(amount);
+        if (!cents.isPositive() || centBalances[origin] < cents.cents()) {
+            return 0;
+        }
+
+        centBalances[origin] -= cents.cents();
+        centBalances[destination] = Math.addExact(centBalances[destination], cents.cents());
+        return centBalances[destination];
+    }
+}
@@ -0,0 +1,62 @@
+package com.digitalbank.benchmark;
+
+import com.digitalbank.dto.BankTransactionRequestDTO;
+import com.digitalbank.dto.BankTransactionResponseDTO;
+import com.digitalbank.service.BankTransactionService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transfer throughput of the pessimistic and optimistic modes.
+ * LOW contention spreads transfers over many accounts, HIGH sends every transfer between the same two.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class TransferModeBenchmark {
+    private static final BigDecimal AMOUNT = new BigDecimal("1.00");
+
+    @Param({"PESSIMISTIC", "OPTIMISTIC"})
+    public String mode;
+
+    @Param({"LOW", "HIGH"})
+    public String contention;
+
+    private ConfigurableApplicationContext context;
+    private BankTransactionService bankTransactionService;
+    private long[] accountIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("--app.transaction.mode=" + mode);
+        bankTransactionService = context.getBean(BankTransactionService.class);
+        accountIds = BenchmarkContext.createCustomers(context, "LOW".equals(contention) ? 200 : 2,
+                new BigDecimal("100000000.00"));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public BankTransactionResponseDTO transfer() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int origin = random.nextInt(accountIds.length);
+        int destination = (origin + 1 + random.nextInt(accountIds.length - 1)) % accountIds.length;
+
+        return bankTransactionService.process(BankTransactionRequestDTO.builder()
+                .originCustomerId(accountIds[origin])
+                .destinationCustomerId(accountIds[destination])
+                .amount(AMOUNT)
+                .build());
+    }
+}
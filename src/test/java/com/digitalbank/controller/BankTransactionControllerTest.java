@@ -1,6 +1,9 @@
 package com.digitalbank.controller;
 
 import com.digitalbank.dto.BankTransactionRequestDTO;
+import com.digitalbank.dto.BankTransactionResponseDTO;
+import com.digitalbank.entity.enums.BankTransactionStatusEnum;
+import com.digitalbank.service.AsyncTransferService;
 import com.digitalbank.service.BankTransactionService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
@@ -13,7 +16,10 @@ import org.springframework.test.web.servlet.MockMvc;
 
 import java.math.BigDecimal;
 
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(BankTransactionController.class)
@@ -29,6 +35,9 @@ public class BankTransactionControllerTest {
     @MockBean
     private BankTransactionService bankTransactionService;
 
+    @MockBean
+    private AsyncTransferService asyncTransferService;
+
     @Test
     void shouldReturnCreatedWhenTransactionSucceeded() throws Exception {
         // Arrange
@@ -60,4 +69,43 @@ public class BankTransactionControllerTest {
                         .content(objectMapper.writeValueAsString(request)))
                 .andExpect(status().isBadRequest());
     }
+
+    @Test
+    void shouldReturnBadRequestWhenDescriptionExceedsItsColumn() throws Exception {
+        // Arrange
+        BankTransactionRequestDTO request = BankTransactionRequestDTO.builder()
+                .originCustomerId(1L)
+                .destinationCustomerId(2L)
+                .amount(new BigDecimal("100.00"))
+                .description("x".repeat(256))
+                .build();
+
+        // Act & Assert
+        mockMvc.perform(post("/api/v1/bank-transaction/transfer")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void shouldReturnAcceptedWithPendingTransactionWhenSubmittedAsync() throws Exception {
+        // Arrange
+        BankTransactionRequestDTO request = BankTransactionRequestDTO.builder()
+                .originCustomerId(1L)
+                .destinationCustomerId(2L)
+                .amount(new BigDecimal("100.00"))
+                .build();
+        when(asyncTransferService.submit(any())).thenReturn(BankTransactionResponseDTO.builder()
+                .id(50L)
+                .status(BankTransactionStatusEnum.PENDING)
+                .build());
+
+        // Act & Assert
+        mockMvc.perform(post("/api/v1/bank-transaction/transfer/async")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.id").value(50))
+                .andExpect(jsonPath("$.status").value("PENDING"));
+    }
 }
@@ -0,0 +1,141 @@
+package com.digitalbank.controller;
+
+import com.digitalbank.entity.Customer;
+import com.digitalbank.entity.enums.FileFormatEnum;
+import com.digitalbank.exception.custom.CustomerNotFoundException;
+import com.digitalbank.service.BankTransactionHistoryService;
+import com.digitalbank.service.CustomerImportService;
+import com.digitalbank.service.CustomerService;
+import com.digitalbank.service.CustomerSummaryService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(CustomerController.class)
+@AutoConfigureMockMvc(addFilters = false)
+public class CustomerControllerTest {
+    private static final String STATEMENT = "id,transaction_date,direction,counterparty_id,amount,status,description\n" +
+            "1,2024-03-01T00:00:00Z,DEBIT,2,5.50,COMPLETED,\n";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private CustomerService customerService;
+
+    @MockBean
+    private CustomerImportService customerImportService;
+
+    @MockBean
+    private CustomerSummaryService customerSummaryService;
+
+    @MockBean
+    private BankTransactionHistoryService bankTransactionHistoryService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        when(bankTransactionHistoryService.exportStatement(eq(1L), any(), any(), eq(FileFormatEnum.CSV), any()))
+                .thenAnswer(invocation -> {
+                    OutputStream output = invocation.getArgument(4);
+                    output.write(STATEMENT.getBytes(StandardCharsets.UTF_8));
+                    output.flush();
+                    return 1L;
+                });
+    }
+
+    @Test
+    void shouldLeaveTheInternalStateOfACustomerOutOfItsJson() throws Exception {
+        // Arrange
+        when(customerService.findCustomerById(1L)).thenReturn(Customer.builder()
+                .id(1L)
+                .name("Hot Customer")
+                .email("hot@example.com")
+                .balance(new BigDecimal("10.00"))
+                .version(3)
+                .balanceStripes(8)
+                .build());
+
+        // Act & Assert
+        mockMvc.perform(get("/api/v1/customer/1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.balance").value(10.00))
+                .andExpect(jsonPath("$.version").doesNotExist())
+                .andExpect(jsonPath("$.balanceStripes").doesNotExist())
+                .andExpect(jsonPath("$.hot").doesNotExist());
+    }
+
+    @Test
+    void shouldGzipTheStatementWhenTheClientAcceptsIt() throws Exception {
+        // Act
+        MvcResult result = mockMvc.perform(get("/api/v1/customer/1/statement")
+                        .param("from", "2024-03-01T00:00:00Z")
+                        .param("to", "2024-04-01T00:00:00Z")
+                        .header(HttpHeaders.ACCEPT_ENCODING, "br, GZIP;q=0.8"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING))
+                .andExpect(content().contentTypeCompatibleWith("text/csv"))
+                .andReturn();
+
+        // Assert
+        try (GZIPInputStream input = new GZIPInputStream(new ByteArrayInputStream(result.getResponse().getContentAsByteArray()))) {
+            assertEquals(STATEMENT, new String(input.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void shouldSendTheStatementUncompressedWithoutGzipInAcceptEncoding() throws Exception {
+        // Act & Assert
+        mockMvc.perform(get("/api/v1/customer/1/statement")
+                        .param("from", "2024-03-01T00:00:00Z")
+                        .param("to", "2024-04-01T00:00:00Z")
+                        .header(HttpHeaders.ACCEPT_ENCODING, "identity"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+                .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING))
+                .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"statement-1.csv\""))
+                .andExpect(content().string(STATEMENT));
+    }
+
+    @Test
+    void shouldAnswerAnUnknownCustomerBeforeStartingTheGzipStream() throws Exception {
+        // Arrange
+        doThrow(new CustomerNotFoundException(9L)).when(bankTransactionHistoryService)
+                .checkStatement(eq(9L), any(Instant.class), any(Instant.class));
+
+        // Act & Assert
+        mockMvc.perform(get("/api/v1/customer/9/statement")
+                        .param("from", "2024-03-01T00:00:00Z")
+                        .header(HttpHeaders.ACCEPT_ENCODING, "gzip"))
+                .andExpect(status().isNotFound())
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING));
+        verify(bankTransactionHistoryService, never()).exportStatement(eq(9L), any(), any(), any(), any());
+    }
+}
@@ -0,0 +1,87 @@
+package com.digitalbank.service;
+
+import com.digitalbank.dto.BankTransactionRequestDTO;
+import com.digitalbank.entity.Customer;
+import com.digitalbank.repository.CustomerRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+public class AccountLockManagerTest {
+    private static final int ROUNDS = 50;
+
+    @Autowired
+    private BankTransactionService bankTransactionService;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private AccountLockMetrics accountLockMetrics;
+
+    @Test
+    void shouldFinishOpposingTransfersWithoutDeadlocks() throws Exception {
+        // Arrange
+        Customer a = customerRepository.findByEmail("john.smith@email.com").orElseThrow();
+        Customer b = customerRepository.findByEmail("maria.silva@email.com").orElseThrow();
+        long deadlocksBefore = accountLockMetrics.snapshot(a.getId()).getDeadlocks()
+                + accountLockMetrics.snapshot(b.getId()).getDeadlocks();
+        long acquisitionsBefore = accountLockMetrics.snapshot(a.getId()).getAcquisitions();
+
+        BankTransactionRequestDTO aToB = transfer(a.getId(), b.getId());
+        BankTransactionRequestDTO bToA = transfer(b.getId(), a.getId());
+
+        CyclicBarrier barrier = new CyclicBarrier(2);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        // Act
+        List<Future<Integer>> results = new ArrayList<>();
+        for (BankTransactionRequestDTO request : List.of(aToB, bToA)) {
+            results.add(executor.submit(() -> {
+                int completed = 0;
+                for (int round = 0; round < ROUNDS; round++) {
+                    barrier.await(10, TimeUnit.SECONDS);
+                    bankTransactionService.process(request);
+                    completed++;
+                }
+                return completed;
+            }));
+        }
+
+        executor.shutdown();
+
+        // Assert
+        for (Future<Integer> result : results) {
+            assertEquals(ROUNDS, result.get(60, TimeUnit.SECONDS));
+        }
+
+        assertEquals(a.getBalance(), customerRepository.findById(a.getId()).orElseThrow().getBalance());
+        assertEquals(b.getBalance(), customerRepository.findById(b.getId()).orElseThrow().getBalance());
+
+        long deadlocksAfter = accountLockMetrics.snapshot(a.getId()).getDeadlocks()
+                + accountLockMetrics.snapshot(b.getId()).getDeadlocks();
+        assertEquals(deadlocksBefore, deadlocksAfter);
+        long acquisitionsAfter = accountLockMetrics.snapshot(a.getId()).getAcquisitions();
+        assertEquals(2L * ROUNDS, acquisitionsAfter - acquisitionsBefore);
+    }
+
+    private BankTransactionRequestDTO transfer(Long origin, Long destination) {
+        return BankTransactionRequestDTO.builder()
+                .originCustomerId(origin)
+                .destinationCustomerId(destination)
+                .amount(new BigDecimal("1.00"))
+                .build();
+    }
+}
@@ -0,0 +1,59 @@
+package com.digitalbank.service;
+
+import com.digitalbank.dto.BankTransactionRequestDTO;
+import com.digitalbank.dto.BankTransactionResponseDTO;
+import com.digitalbank.entity.Customer;
+import com.digitalbank.entity.enums.BankTransactionStatusEnum;
+import com.digitalbank.repository.CustomerRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+public class AsyncTransferServiceTest {
+
+    @Autowired
+    private AsyncTransferService asyncTransferService;
+
+    @Autowired
+    private BankTransactionService bankTransactionService;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Test
+    void shouldAcceptTransfersAndReportTheirFinalStatus() throws Exception {
+        // Arrange
+        Customer carlos = customerRepository.findByEmail("carlos.oliveira@email.com").orElseThrow();
+        Customer ana = customerRepository.findByEmail("ana.santos@email.com").orElseThrow();
+
+        // Act
+        BankTransactionResponseDTO accepted = asyncTransferService.submit(transfer(carlos.getId(), ana.getId(), "5.00"));
+        BankTransactionResponseDTO rejected = asyncTransferService.submit(transfer(carlos.getId(), ana.getId(), "99999999.00"));
+
+        BankTransactionResponseDTO completed = asyncTransferService.findStatus(accepted.getId(), 10_000).get(15, TimeUnit.SECONDS);
+        BankTransactionResponseDTO failed = asyncTransferService.findStatus(rejected.getId(), 10_000).get(15, TimeUnit.SECONDS);
+
+        // Assert
+        assertEquals(BankTransactionStatusEnum.PENDING, accepted.getStatus());
+        assertEquals(BankTransactionStatusEnum.COMPLETED, completed.getStatus());
+        assertEquals(BankTransactionStatusEnum.FAILED, failed.getStatus());
+        assertEquals(BankTransactionStatusEnum.COMPLETED, bankTransactionService.findBankTransactionById(accepted.getId()).getStatus());
+        assertEquals(BankTransactionStatusEnum.FAILED, bankTransactionService.findBankTransactionById(rejected.getId()).getStatus());
+    }
+
+    //region Helpers
+    private BankTransactionRequestDTO transfer(Long originId, Long destinationId, String amount) {
+        return BankTransactionRequestDTO.builder()
+                .originCustomerId(originId)
+                .destinationCustomerId(destinationId)
+                .amount(new BigDecimal(amount))
+                .build();
+    }
+    //endregion
+}
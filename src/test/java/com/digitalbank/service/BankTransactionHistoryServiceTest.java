@@ -0,0 +1,111 @@
+package com.digitalbank.service;
+
+import com.digitalbank.dto.BankTransactionHistoryDTO;
+import com.digitalbank.dto.BankTransactionHistoryEntryDTO;
+import com.digitalbank.entity.BankTransaction;
+import com.digitalbank.entity.Customer;
+import com.digitalbank.entity.enums.BankTransactionStatusEnum;
+import com.digitalbank.entity.enums.TransactionDirectionEnum;
+import com.digitalbank.exception.custom.CustomerNotFoundException;
+import com.digitalbank.exception.custom.TransactionException;
+import com.digitalbank.repository.BankTransactionBatchRepository;
+import com.digitalbank.repository.CustomerRepository;
+import com.digitalbank.util.CpfUtil;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest
+public class BankTransactionHistoryServiceTest {
+
+    @Autowired
+    private BankTransactionHistoryService bankTransactionHistoryService;
+
+    @Autowired
+    private BankTransactionBatchRepository bankTransactionBatchRepository;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Test
+    void shouldPageSentAndReceivedTransactionsNewestFirstAcrossTiedDates() {
+        // Arrange
+        Customer customer = customer();
+        Customer other = customer();
+        Customer unrelated = customer();
+        Instant base = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+
+        List<BankTransaction> transactions = new ArrayList<>(List.of(
+                transaction(customer, other, "1.00", base),
+                transaction(other, customer, "2.00", base.plusSeconds(1)),
+                transaction(customer, other, "3.00", base.plusSeconds(1)),
+                transaction(other, unrelated, "4.00", base.plusSeconds(2)),
+                transaction(other, customer, "5.00", base.plusSeconds(3))));
+        bankTransactionBatchRepository.insertAll(transactions);
+
+        // Act
+        List<BankTransactionHistoryEntryDTO> history = new ArrayList<>();
+        List<Integer> pageSizes = new ArrayList<>();
+        String cursor = null;
+        do {
+            BankTransactionHistoryDTO page = bankTransactionHistoryService.findHistory(customer.getId(), cursor, 2);
+            history.addAll(page.getTransactions());
+            pageSizes.add(page.getTransactions().size());
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        // Assert
+        assertEquals(List.of(2, 2), pageSizes);
+        assertEquals(List.of(transactions.get(4).getId(), transactions.get(2).getId(), transactions.get(1).getId(),
+                transactions.get(0).getId()), history.stream().map(BankTransactionHistoryEntryDTO::getId).toList());
+        assertEquals(List.of(TransactionDirectionEnum.CREDIT, TransactionDirectionEnum.DEBIT, TransactionDirectionEnum.CREDIT,
+                TransactionDirectionEnum.DEBIT), history.stream().map(BankTransactionHistoryEntryDTO::getDirection).toList());
+        assertEquals(List.of(other.getId()), history.stream().map(BankTransactionHistoryEntryDTO::getCounterpartyId).distinct().toList());
+        assertEquals(0, new BigDecimal("5.00").compareTo(history.get(0).getAmount()));
+        assertEquals(base.plusSeconds(3), history.get(0).getTransactionDate());
+    }
+
+    @Test
+    void shouldRejectUnknownCustomersCursorsAndPageSizes() {
+        // Arrange
+        Customer customer = customer();
+
+        // Act & Assert
+        assertNull(bankTransactionHistoryService.findHistory(customer.getId(), null, null).getNextCursor());
+        assertThrows(CustomerNotFoundException.class, () -> bankTransactionHistoryService.findHistory(-1L, null, null));
+        assertThrows(TransactionException.class, () -> bankTransactionHistoryService.findHistory(customer.getId(), "not-a-cursor", null));
+        assertThrows(TransactionException.class, () -> bankTransactionHistoryService.findHistory(customer.getId(), null, 0));
+    }
+
+    //region Helpers
+    private Customer customer() {
+        return customerRepository.saveAndFlush(Customer.builder()
+                .name("History Customer")
+                .email(UUID.randomUUID() + "@example.com")
+                .cpf(CpfUtil.generate())
+                .balance(BigDecimal.ZERO)
+                .build());
+    }
+
+    private static BankTransaction transaction(Customer origin, Customer destination, String amount, Instant date) {
+        return BankTransaction.builder()
+                .originCustomer(origin)
+                .destinationCustomer(destination)
+                .amount(new BigDecimal(amount))
+                .status(BankTransactionStatusEnum.COMPLETED)
+                .transactionDate(date)
+                .build();
+    }
+    //endregion
+}
@@ -1,23 +1,46 @@
 package com.digitalbank.service;
 
+import com.digitalbank.dto.BankTransactionBatchResponseDTO;
 import com.digitalbank.dto.BankTransactionRequestDTO;
+import com.digitalbank.dto.BankTransactionResponseDTO;
 import com.digitalbank.entity.BankTransaction;
 import com.digitalbank.entity.Customer;
+import com.digitalbank.entity.enums.BankTransactionStatusEnum;
+import com.digitalbank.entity.enums.TransferModeEnum;
+import com.digitalbank.exception.custom.IdempotencyKeyConflictException;
+import com.digitalbank.exception.custom.InsufficientBalanceException;
 import com.digitalbank.exception.custom.TransactionException;
+import com.digitalbank.properties.CacheProperties;
+import com.digitalbank.properties.TransactionProperties;
+import com.digitalbank.repository.BankTransactionBatchRepository;
 import com.digitalbank.repository.BankTransactionRepository;
+import com.digitalbank.repository.CustomerBalanceStripeRepository;
 import com.digitalbank.repository.CustomerRepository;
+import com.digitalbank.repository.NotificationOutboxRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Supplier;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.intThat;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -26,13 +49,30 @@ public class BankTransactionServiceTest {
     @Mock
     private BankTransactionRepository bankTransactionRepository;
 
+    @Mock
+    private BankTransactionBatchRepository bankTransactionBatchRepository;
+
     @Mock
     private CustomerRepository customerRepository;
 
     @Mock
-    private NotificationService notificationService;
+    private CustomerBalanceStripeRepository stripeRepository;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private NotificationOutboxRepository notificationOutboxRepository;
+
+    @Mock
+    private IdempotencyService idempotencyService;
+
+    @Mock
+    private CustomerSummaryService customerSummaryService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
 
-    @InjectMocks
     private BankTransactionService bankTransactionService;
 
     private Customer origin;
@@ -41,6 +81,8 @@ public class BankTransactionServiceTest {
 
     @BeforeEach
     void setUp() {
+        bankTransactionService = newService(TransferModeEnum.PESSIMISTIC);
+
         origin = Customer.builder()
                 .id(1L)
                 .name("João Silva")
@@ -60,6 +102,30 @@ public class BankTransactionServiceTest {
                 .build();
     }
 
+    private BankTransactionService newService(TransferModeEnum mode) {
+        TransactionProperties transactionProperties = TransactionProperties.builder()
+                .timeoutSeconds(30)
+                .mode(mode)
+                .lockMaxAttempts(3)
+                .lockInitialBackoffMs(1)
+                .lockMaxBackoffMs(5)
+                .optimisticMaxAttempts(3)
+                .contendedAccountCooldownMs(60000)
+                .build();
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        AccountLockManager accountLockManager = new AccountLockManager(customerRepository,
+                new AccountLockMetrics(meterRegistry), transactionProperties, transactionManager);
+        OptimisticTransferExecutor optimisticTransferExecutor = new OptimisticTransferExecutor(
+                transactionProperties, transactionManager, meterRegistry);
+
+        CustomerCache customerCache = new CustomerCache(CacheProperties.builder().enabled(false).build(), meterRegistry);
+
+        return new BankTransactionService(bankTransactionRepository, bankTransactionBatchRepository,
+                customerRepository, new StripedBalanceService(stripeRepository, jdbcTemplate, customerCache),
+                customerSummaryService, notificationOutboxRepository, accountLockManager, optimisticTransferExecutor,
+                idempotencyService, transactionProperties, Optional.empty());
+    }
+
     @Test
     void shouldProcessTransactionWithSuccess() {
         // Arrange
@@ -79,19 +145,151 @@ public class BankTransactionServiceTest {
 
         verify(customerRepository, times(2)).save(any(Customer.class));
         verify(bankTransactionRepository, times(1)).saveAndFlush(any());
-        verify(notificationService, times(1)).sendTransactionNotification(any());
+        verify(customerSummaryService, times(1)).recordTransactions(List.of(bt));
+        verify(notificationOutboxRepository, times(1)).insertAll(anyList());
     }
 
     @Test
-    void shouldThrowTransactionException() {
+    void shouldCreditHotDestinationOnAStripe() {
+        // Arrange
+        destination.setBalanceStripes(4);
+        BankTransaction bt = BankTransaction.builder().id(1L).amount(request.getAmount()).build();
+        when(customerRepository.findByIdWithLock(1L)).thenReturn(Optional.of(origin));
+        when(customerRepository.findByIdWithLock(2L)).thenReturn(Optional.of(destination));
+        when(stripeRepository.credit(eq(2L), anyInt(), eq(request.getAmount()))).thenReturn(true);
+        when(bankTransactionRepository.saveAndFlush(any())).thenReturn(bt);
+
+        // Act
+        bankTransactionService.process(request);
+
+        // Assert
+        assertEquals(new BigDecimal("800.00"), origin.getBalance());
+        assertEquals(new BigDecimal("500.00"), destination.getBalance());
+        verify(stripeRepository, times(1)).credit(eq(2L), intThat(stripe -> stripe >= 0 && stripe < 4), eq(request.getAmount()));
+    }
+
+    @Test
+    void shouldThrowInsufficientBalanceException() {
         // Arrange
         request.setAmount(new BigDecimal("1500.00"));
         when(customerRepository.findByIdWithLock(1L)).thenReturn(Optional.of(origin));
         when(customerRepository.findByIdWithLock(2L)).thenReturn(Optional.of(destination));
 
         // Act & Assert
-        assertThrows(TransactionException.class, () -> bankTransactionService.process(request));
+        assertThrows(InsufficientBalanceException.class, () -> bankTransactionService.process(request));
 
         verify(customerRepository, never()).save(any(Customer.class));
     }
+
+    @Test
+    void shouldKeepTheConflictOfAKeyCompletedByAnotherExecution() {
+        // Arrange
+        when(customerRepository.findByIdWithLock(1L)).thenReturn(Optional.of(origin));
+        when(customerRepository.findByIdWithLock(2L)).thenReturn(Optional.of(destination));
+        when(bankTransactionRepository.saveAndFlush(any())).thenReturn(BankTransaction.builder().id(1L).build());
+        when(idempotencyService.execute(eq("key"), eq(request), any())).thenAnswer(invocation ->
+                invocation.<Supplier<BankTransactionResponseDTO>>getArgument(2).get());
+        doThrow(new IdempotencyKeyConflictException("A request with Idempotency-Key key was already completed"))
+                .when(idempotencyService).complete(eq("key"), any());
+
+        // Act & Assert
+        assertThrows(IdempotencyKeyConflictException.class, () -> bankTransactionService.process(request, "key"));
+    }
+
+    @Test
+    void shouldRejectADescriptionLongerThanItsColumnBeforeLockingAnyCustomer() {
+        // Arrange
+        request.setDescription("x".repeat(BankTransaction.MAX_DESCRIPTION_LENGTH + 1));
+
+        // Act & Assert
+        TransactionException exception = assertThrows(TransactionException.class, () -> bankTransactionService.process(request));
+        assertTrue(exception.getMessage().contains("at most " + BankTransaction.MAX_DESCRIPTION_LENGTH + " characters"));
+        verifyNoInteractions(customerRepository);
+    }
+
+    @Test
+    void shouldStoreAcceptedTransfersAsFailedUnderTheirIdsWhenTheirProcessingFailed() {
+        // Arrange
+        when(customerRepository.findAllById(any())).thenReturn(List.of(origin, destination));
+
+        // Act
+        Map<Long, BankTransactionResponseDTO> results = bankTransactionService.failAccepted(Map.of(101L, request),
+                "Could not acquire lock");
+
+        // Assert
+        assertEquals(BankTransactionStatusEnum.FAILED, results.get(101L).getStatus());
+        assertEquals("Failed: Could not acquire lock", results.get(101L).getMessage());
+        verify(bankTransactionBatchRepository).insertAllWithIds(argThat(transactions -> transactions.size() == 1
+                && transactions.getFirst().getId() == 101L
+                && transactions.getFirst().getStatus() == BankTransactionStatusEnum.FAILED));
+    }
+
+    @Test
+    void shouldProcessBatchWithoutFailingOnInsufficientBalance() {
+        // Arrange
+        BankTransactionRequestDTO overdraft = BankTransactionRequestDTO.builder()
+                .originCustomerId(2L)
+                .destinationCustomerId(1L)
+                .amount(new BigDecimal("5000.00"))
+                .build();
+        when(customerRepository.findAllByIdWithLock(any())).thenReturn(List.of(origin, destination));
+
+        // Act
+        BankTransactionBatchResponseDTO response = bankTransactionService.processBatch(List.of(request, overdraft, request));
+
+        // Assert
+        assertEquals(3, response.getTotal());
+        assertEquals(2, response.getSucceeded());
+        assertEquals(1, response.getFailed());
+        assertEquals(BankTransactionStatusEnum.COMPLETED, response.getResults().get(0).getStatus());
+        assertEquals(BankTransactionStatusEnum.FAILED, response.getResults().get(1).getStatus());
+        assertEquals(BankTransactionStatusEnum.COMPLETED, response.getResults().get(2).getStatus());
+        assertEquals(new BigDecimal("600.00"), origin.getBalance());
+        assertEquals(new BigDecimal("900.00"), destination.getBalance());
+
+        verify(customerRepository, times(1)).findAllByIdWithLock(any());
+        verify(customerRepository, never()).findByIdWithLock(any());
+        verify(bankTransactionBatchRepository, times(1)).insertAll(anyList());
+        verify(notificationOutboxRepository, times(1)).insertAll(argThat(transactions -> transactions.size() == 2));
+    }
+
+    @Test
+    void shouldRetryTheWholeBatchWhenItsLocksTimeOut() {
+        // Arrange
+        when(customerRepository.findAllByIdWithLock(any()))
+                .thenThrow(new PessimisticLockingFailureException("Lock timeout"))
+                .thenReturn(List.of(origin, destination));
+
+        // Act
+        BankTransactionBatchResponseDTO response = bankTransactionService.processBatch(List.of(request));
+
+        // Assert
+        assertEquals(1, response.getSucceeded());
+        assertEquals(new BigDecimal("800.00"), origin.getBalance());
+        verify(customerRepository, times(2)).findAllByIdWithLock(any());
+        verify(bankTransactionBatchRepository, times(1)).insertAll(anyList());
+    }
+
+    @Test
+    void shouldFallBackToPessimisticLockingWhenVersionsKeepConflicting() {
+        // Arrange
+        bankTransactionService = newService(TransferModeEnum.OPTIMISTIC);
+        BankTransaction bt = BankTransaction.builder().id(1L).amount(request.getAmount()).build();
+        ObjectOptimisticLockingFailureException conflict = new ObjectOptimisticLockingFailureException(Customer.class, 1L);
+        when(customerRepository.findAllById(any())).thenReturn(List.of(origin, destination));
+        when(customerRepository.findByIdWithLock(1L)).thenReturn(Optional.of(origin));
+        when(customerRepository.findByIdWithLock(2L)).thenReturn(Optional.of(destination));
+        when(bankTransactionRepository.saveAndFlush(any()))
+                .thenThrow(conflict, conflict, conflict)
+                .thenReturn(bt);
+
+        // Act
+        var response = bankTransactionService.process(request);
+
+        // Assert
+        assertEquals(1L, response.getId());
+        verify(customerRepository, times(3)).findAllById(any());
+        verify(customerRepository, times(2)).findByIdWithLock(any());
+        verify(notificationOutboxRepository, times(1)).insertAll(anyList());
+    }
 }
@@ -0,0 +1,193 @@
+package com.digitalbank.service;
+
+import com.digitalbank.entity.BankTransaction;
+import com.digitalbank.entity.Customer;
+import com.digitalbank.entity.enums.BankTransactionStatusEnum;
+import com.digitalbank.entity.enums.FileFormatEnum;
+import com.digitalbank.repository.BankTransactionBatchRepository;
+import com.digitalbank.repository.CustomerRepository;
+import com.digitalbank.util.CpfUtil;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:file:./target/h2/statement_test;MODE=PostgreSQL",
+        "app.transaction.statement.flush-rows=1000"
+})
+public class BankTransactionStatementTest {
+    private static final int LARGE_STATEMENT_ROWS = 1_000_000;
+    private static final int INSERT_CHUNK_ROWS = 50_000;
+    private static final int HEAP_SAMPLE_EVERY_FLUSHES = 100;
+    private static final long MAX_HEAP_GROWTH_BYTES = 32L * 1024 * 1024;
+
+    @Autowired
+    private BankTransactionHistoryService bankTransactionHistoryService;
+
+    @Autowired
+    private BankTransactionBatchRepository bankTransactionBatchRepository;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void shouldExportThePeriodOldestFirstAsCsvAndNdjson() throws IOException {
+        // Arrange
+        Customer customer = customer();
+        Customer other = customer();
+        Instant start = Instant.parse("2024-03-01T00:00:00Z");
+        bankTransactionBatchRepository.insertAll(new ArrayList<>(List.of(
+                transaction(other, customer, "9.99", start.minusSeconds(1), "Before the period"),
+                transaction(other, customer, "20.00", start.plusSeconds(60), "Rent, \"March\""),
+                transaction(customer, other, "5.50", start, null),
+                transaction(customer, other, "1.00", start.plusSeconds(3600), "At the end of the period"))));
+
+        // Act
+        ByteArrayOutputStream csv = new ByteArrayOutputStream();
+        long csvRows = bankTransactionHistoryService.exportStatement(customer.getId(), start, start.plusSeconds(3600),
+                FileFormatEnum.CSV, csv);
+        ByteArrayOutputStream ndjson = new ByteArrayOutputStream();
+        bankTransactionHistoryService.exportStatement(customer.getId(), start, start.plusSeconds(3600),
+                FileFormatEnum.NDJSON, ndjson);
+
+        // Assert
+        assertEquals(2, csvRows);
+        String[] lines = csv.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(3, lines.length);
+        assertEquals("id,transaction_date,direction,counterparty_id,amount,status,description", lines[0]);
+        assertTrue(lines[1].matches("\\d+,2024-03-01T00:00:00Z,DEBIT," + other.getId() + ",5.50,COMPLETED,"), lines[1]);
+        assertTrue(lines[2].endsWith(",CREDIT," + other.getId() + ",20.00,COMPLETED,\"Rent, \"\"March\"\"\""), lines[2]);
+
+        List<JsonNode> rows = ndjson.toString(StandardCharsets.UTF_8).lines().map(this::readTree).toList();
+        assertEquals(2, rows.size());
+        assertEquals("DEBIT", rows.get(0).get("direction").asText());
+        assertEquals("Rent, \"March\"", rows.get(1).get("description").asText());
+        assertEquals(0, new BigDecimal("20.00").compareTo(rows.get(1).get("amount").decimalValue()));
+    }
+
+    @Test
+    @Tag("slow")
+    void shouldKeepTheHeapFlatWhileStreamingAMillionRowStatement() throws IOException {
+        // Arrange
+        Customer customer = customer();
+        Customer other = customer();
+        Instant start = Instant.parse("2023-01-01T00:00:00Z");
+        for (int first = 1; first <= LARGE_STATEMENT_ROWS; first += INSERT_CHUNK_ROWS) {
+            jdbcTemplate.update("INSERT INTO bank_transaction " +
+                            "(origin_customer_id, destination_customer_id, amount, status, transaction_date, description) " +
+                            "SELECT CASE WHEN MOD(X, 2) = 0 THEN CAST(? AS BIGINT) ELSE CAST(? AS BIGINT) END, " +
+                            "CASE WHEN MOD(X, 2) = 0 THEN CAST(? AS BIGINT) ELSE CAST(? AS BIGINT) END, " +
+                            "1 + MOD(X, 1000), 'COMPLETED', DATEADD(SECOND, X, CAST(? AS TIMESTAMP)), 'Bulk transfer ' || X " +
+                            "FROM SYSTEM_RANGE(CAST(? AS BIGINT), CAST(? AS BIGINT))",
+                    customer.getId(), other.getId(), other.getId(), customer.getId(), Timestamp.from(start),
+                    first, first + INSERT_CHUNK_ROWS - 1);
+        }
+
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        List<Long> samples = new ArrayList<>();
+        HeapSamplingOutputStream output = new HeapSamplingOutputStream(() -> {
+            System.gc();
+            samples.add(memory.getHeapMemoryUsage().getUsed());
+        });
+        System.gc();
+        long baseline = memory.getHeapMemoryUsage().getUsed();
+
+        // Act
+        long rows;
+        try (GZIPOutputStream gzip = new GZIPOutputStream(output, 8192, true)) {
+            rows = bankTransactionHistoryService.exportStatement(customer.getId(), start, start.plusSeconds(LARGE_STATEMENT_ROWS + 1),
+                    FileFormatEnum.CSV, gzip);
+        }
+
+        // Assert
+        assertEquals(LARGE_STATEMENT_ROWS, rows);
+        assertTrue(samples.size() >= 5, "Heap sampled " + samples.size() + " times");
+        long peak = samples.stream().mapToLong(Long::longValue).max().orElseThrow();
+        assertTrue(peak - baseline < MAX_HEAP_GROWTH_BYTES,
+                "Heap grew " + (peak - baseline) / 1024 / 1024 + " MB over the export, samples " + samples);
+    }
+
+    //region Helpers
+    private Customer customer() {
+        return customerRepository.saveAndFlush(Customer.builder()
+                .name("Statement Customer")
+                .email(UUID.randomUUID() + "@example.com")
+                .cpf(CpfUtil.generate())
+                .balance(BigDecimal.ZERO)
+                .build());
+    }
+
+    private static BankTransaction transaction(Customer origin, Customer destination, String amount, Instant date, String description) {
+        return BankTransaction.builder()
+                .originCustomer(origin)
+                .destinationCustomer(destination)
+                .amount(new BigDecimal(amount))
+                .status(BankTransactionStatusEnum.COMPLETED)
+                .transactionDate(date)
+                .description(description)
+                .build();
+    }
+
+    private JsonNode readTree(String line) {
+        try {
+            return objectMapper.readTree(line);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Discards the compressed export, sampling the heap on every HEAP_SAMPLE_EVERY_FLUSHES-th flush of it
+     */
+    private static final class HeapSamplingOutputStream extends OutputStream {
+        private final Runnable sample;
+        private int flushes;
+
+        private HeapSamplingOutputStream(Runnable sample) {
+            this.sample = sample;
+        }
+
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+
+        @Override
+        public void flush() {
+            if (++flushes % HEAP_SAMPLE_EVERY_FLUSHES == 0) {
+                sample.run();
+            }
+        }
+    }
+    //endregion
+}
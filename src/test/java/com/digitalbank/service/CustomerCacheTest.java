@@ -0,0 +1,97 @@
+package com.digitalbank.service;
+
+import com.digitalbank.entity.Customer;
+import com.digitalbank.properties.CacheProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+
+public class CustomerCacheTest {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void shouldAnswerRepeatedReadsFromMemoryUntilInvalidated() {
+        // Arrange
+        CustomerCache customerCache = cache(true, 10);
+        AtomicInteger loads = new AtomicInteger();
+
+        // Act
+        Customer first = customerCache.get(1L, () -> load(loads, "100.00"));
+        Customer second = customerCache.get(1L, () -> load(loads, "100.00"));
+        customerCache.invalidateAfterCommit(1L);
+        Customer third = customerCache.get(1L, () -> load(loads, "90.00"));
+
+        // Assert
+        assertEquals(2, loads.get());
+        assertNotSame(first, second);
+        assertEquals(0, new BigDecimal("100.00").compareTo(second.getBalance()));
+        assertEquals(0, new BigDecimal("90.00").compareTo(third.getBalance()));
+        assertEquals(1.0, meterRegistry.get("bank.cache.customer.requests").tag("result", "hit").counter().count());
+        assertEquals(2.0, meterRegistry.get("bank.cache.customer.requests").tag("result", "miss").counter().count());
+    }
+
+    @Test
+    void shouldNotCacheALoadThatRacedWithAnInvalidation() {
+        // Arrange
+        CustomerCache customerCache = cache(true, 10);
+        AtomicInteger loads = new AtomicInteger();
+
+        // Act
+        Customer stale = customerCache.get(1L, () -> {
+            // A transfer commits while the balance from before it is being read
+            customerCache.invalidate(List.of(1L));
+            return load(loads, "100.00");
+        });
+        Customer fresh = customerCache.get(1L, () -> load(loads, "90.00"));
+
+        // Assert
+        assertEquals(0, new BigDecimal("100.00").compareTo(stale.getBalance()));
+        assertEquals(0, new BigDecimal("90.00").compareTo(fresh.getBalance()));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void shouldEvictTheLeastRecentlyReadCustomerAndLoadEverythingWhenDisabled() {
+        // Arrange
+        CustomerCache bounded = cache(true, 2);
+        CustomerCache disabled = cache(false, 2);
+        AtomicInteger loads = new AtomicInteger();
+        AtomicInteger disabledLoads = new AtomicInteger();
+
+        // Act
+        bounded.get(1L, () -> load(loads, "1.00"));
+        bounded.get(2L, () -> load(loads, "2.00"));
+        bounded.get(1L, () -> load(loads, "1.00"));
+        bounded.get(3L, () -> load(loads, "3.00"));
+        bounded.get(1L, () -> load(loads, "1.00"));
+        bounded.get(2L, () -> load(loads, "2.00"));
+
+        disabled.get(1L, () -> load(disabledLoads, "1.00"));
+        disabled.get(1L, () -> load(disabledLoads, "1.00"));
+
+        // Assert
+        assertEquals(4, loads.get());
+        assertEquals(2, disabledLoads.get());
+    }
+
+    //region Helpers
+    private CustomerCache cache(boolean enabled, int size) {
+        return new CustomerCache(CacheProperties.builder()
+                .enabled(enabled)
+                .customerSize(size)
+                .customerTtlMs(60_000)
+                .build(), meterRegistry);
+    }
+
+    private static Customer load(AtomicInteger loads, String balance) {
+        loads.incrementAndGet();
+        return Customer.builder().id(1L).name("Customer").balance(new BigDecimal(balance)).build();
+    }
+    //endregion
+}
@@ -0,0 +1,133 @@
+package com.digitalbank.service;
+
+import com.digitalbank.dto.CustomerImportResultDTO;
+import com.digitalbank.entity.Customer;
+import com.digitalbank.entity.enums.CustomerImportStatusEnum;
+import com.digitalbank.entity.enums.FileFormatEnum;
+import com.digitalbank.exception.custom.CustomerImportException;
+import com.digitalbank.repository.CustomerRepository;
+import com.digitalbank.util.CpfUtil;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:customer_import_test;MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+        "app.customer.import.chunk-size=2"
+})
+public class CustomerImportServiceTest {
+
+    @Autowired
+    private CustomerImportService customerImportService;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Test
+    void shouldReportEveryCsvRowInChunksAndCreateOnlyTheValidUniqueOnes() {
+        // Arrange
+        String cpf = CpfUtil.generate();
+        String email = uniqueEmail();
+        String existingCpf = CpfUtil.generate();
+        customerRepository.saveAndFlush(Customer.builder()
+                .name("Existing Customer")
+                .email(uniqueEmail())
+                .cpf(existingCpf)
+                .balance(BigDecimal.ZERO)
+                .build());
+
+        String csv = "cpf,name,email,balance\n" +
+                CpfUtil.format(cpf) + ",\"Silva, Ana\"," + email + ",150.25\n" +
+                cpf + ",Same Cpf," + uniqueEmail() + ",\n" +
+                "\n" +
+                CpfUtil.generate() + ",Same Email Later Chunk," + email + ",1\n" +
+                "12345678900,Bad Cpf," + uniqueEmail() + ",1\n" +
+                existingCpf + ",Existing Cpf," + uniqueEmail() + ",1\n" +
+                CpfUtil.generate() + ",Bad Balance," + uniqueEmail() + ",ten\n";
+        List<List<CustomerImportResultDTO>> chunks = new ArrayList<>();
+
+        // Act
+        customerImportService.importCustomers(stream(csv), FileFormatEnum.CSV, chunks::add);
+
+        // Assert
+        assertEquals(List.of(2, 2, 2), chunks.stream().map(List::size).toList());
+        List<CustomerImportResultDTO> results = chunks.stream().flatMap(List::stream).toList();
+        assertEquals(List.of(2L, 3L, 5L, 6L, 7L, 8L), results.stream().map(CustomerImportResultDTO::getRow).toList());
+        assertEquals(List.of(
+                CustomerImportStatusEnum.CREATED,
+                CustomerImportStatusEnum.DUPLICATE,
+                CustomerImportStatusEnum.DUPLICATE,
+                CustomerImportStatusEnum.INVALID,
+                CustomerImportStatusEnum.DUPLICATE,
+                CustomerImportStatusEnum.INVALID
+        ), results.stream().map(CustomerImportResultDTO::getStatus).toList());
+        assertEquals("CPF repeated in the file", results.get(1).getMessage());
+        assertEquals("Email already exists", results.get(2).getMessage());
+        assertEquals("Invalid CPF", results.get(3).getMessage());
+        assertEquals("CPF already exists", results.get(4).getMessage());
+        assertTrue(results.get(5).getMessage().startsWith("Invalid balance"));
+
+        Customer created = customerRepository.findById(results.get(0).getId()).orElseThrow();
+        assertEquals("Silva, Ana", created.getName());
+        assertEquals(cpf, created.getCpf());
+        assertEquals(0, new BigDecimal("150.25").compareTo(created.getBalance()));
+    }
+
+    @Test
+    void shouldImportNdjsonRowsAndReportTheMalformedOnes() {
+        // Arrange
+        String cpf = CpfUtil.generate();
+        String ndjson = "{\"name\":\"Json Customer\",\"email\":\"" + uniqueEmail() + "\",\"cpf\":\"" + cpf + "\"}\n" +
+                "{\"name\":\"Broken\"\n" +
+                "{\"name\":\"No\",\"email\":\"not-an-email\",\"cpf\":\"" + CpfUtil.generate() + "\"}\n";
+        List<CustomerImportResultDTO> results = new ArrayList<>();
+
+        // Act
+        customerImportService.importCustomers(stream(ndjson), FileFormatEnum.NDJSON, results::addAll);
+
+        // Assert
+        assertEquals(3, results.size());
+        assertEquals(CustomerImportStatusEnum.CREATED, results.get(0).getStatus());
+        assertNotNull(results.get(0).getId());
+        assertNull(results.get(0).getMessage());
+        assertTrue(customerRepository.findByCpf(cpf).isPresent());
+        assertEquals(CustomerImportStatusEnum.INVALID, results.get(1).getStatus());
+        assertTrue(results.get(1).getMessage().startsWith("Malformed JSON"));
+        assertEquals(CustomerImportStatusEnum.INVALID, results.get(2).getStatus());
+        assertEquals("Full name must be between 3 and 100 characters; Invalid email format", results.get(2).getMessage());
+    }
+
+    @Test
+    void shouldRejectACsvWithoutTheRequiredColumns() {
+        // Act & Assert
+        CustomerImportException exception = assertThrows(CustomerImportException.class,
+                () -> customerImportService.importCustomers(stream("name,cpf\nAna," + CpfUtil.generate() + "\n"),
+                        FileFormatEnum.CSV, results -> {
+                        }));
+        assertEquals("CSV header is missing the email column", exception.getMessage());
+    }
+
+    //region Helpers
+    private static InputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String uniqueEmail() {
+        return UUID.randomUUID() + "@example.com";
+    }
+    //endregion
+}
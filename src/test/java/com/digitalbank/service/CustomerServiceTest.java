@@ -0,0 +1,184 @@
+package com.digitalbank.service;
+
+import com.digitalbank.dto.CustomerDTO;
+import com.digitalbank.dto.CustomerPageDTO;
+import com.digitalbank.entity.Customer;
+import com.digitalbank.exception.custom.DuplicateResourceException;
+import com.digitalbank.exception.custom.TransactionException;
+import com.digitalbank.properties.CustomerProperties;
+import com.digitalbank.repository.CustomerRepository;
+import com.digitalbank.service.ledger.LedgerEngine;
+import com.digitalbank.util.CpfUtil;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest
+public class CustomerServiceTest {
+
+    @Autowired
+    private CustomerService customerService;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private CustomerProperties customerProperties;
+
+    @MockBean
+    private LedgerEngine ledgerEngine;
+
+    @Test
+    void shouldSkipTheUniquenessLookupsForANewCustomerAndRejectItsDuplicates() {
+        // Arrange
+        CustomerDTO customer = customer(CpfUtil.generate(), uniqueEmail());
+        double skippedBefore = checks("cpf", "skipped");
+        double lookedUpBefore = checks("cpf", "looked-up");
+
+        // Act
+        Customer created = customerService.createCustomer(customer);
+        DuplicateResourceException sameCpf = assertThrows(DuplicateResourceException.class,
+                () -> customerService.createCustomer(customer(customer.getCpf(), uniqueEmail())));
+        DuplicateResourceException sameEmail = assertThrows(DuplicateResourceException.class,
+                () -> customerService.createCustomer(customer(CpfUtil.generate(), customer.getEmail())));
+
+        // Assert
+        assertNotNull(created.getId());
+        assertEquals("CPF already exists", sameCpf.getMessage());
+        assertEquals("Email already exists", sameEmail.getMessage());
+        assertEquals(skippedBefore + 2, checks("cpf", "skipped"));
+        assertEquals(lookedUpBefore + 1, checks("cpf", "looked-up"));
+    }
+
+    @Test
+    void shouldRejectADuplicateTheFiltersDoNotKnowThroughTheUniqueConstraint() {
+        // Arrange
+        String cpf = CpfUtil.generate();
+        customerRepository.saveAndFlush(Customer.builder()
+                .name("Inserted Elsewhere")
+                .email(uniqueEmail())
+                .cpf(cpf)
+                .balance(BigDecimal.ZERO)
+                .build());
+
+        // Act
+        DuplicateResourceException duplicate = assertThrows(DuplicateResourceException.class,
+                () -> customerService.createCustomer(customer(cpf, uniqueEmail())));
+
+        // Assert
+        assertEquals("CPF already exists", duplicate.getMessage());
+    }
+
+    @Test
+    void shouldWalkEveryCustomerThroughTheKeysetPagesInIdOrder() {
+        // Arrange
+        List<Long> created = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            created.add(customerService.createCustomer(customer(CpfUtil.generate(), uniqueEmail())).getId());
+        }
+        Long after = created.get(0) - 1;
+        List<Long> listed = new ArrayList<>();
+
+        // Act
+        CustomerPageDTO page;
+        do {
+            page = customerService.listCustomers(after, 2);
+            page.getCustomers().forEach(customer -> listed.add(customer.getId()));
+            after = page.getNextCursor();
+        } while (after != null);
+
+        // Assert
+        assertEquals(created, listed.subList(0, created.size()));
+        assertEquals(listed.stream().sorted().toList(), listed);
+        assertEquals(customerRepository.findAll().stream().filter(customer -> customer.getId() >= created.get(0)).count(),
+                listed.size());
+        assertThrows(TransactionException.class, () -> customerService.listCustomers(null, 0));
+    }
+
+    @Test
+    void shouldStreamEveryCustomerInBatchesWithTheTotalBalanceOfHotAccounts() {
+        // Arrange
+        Customer hot = customerService.createCustomer(customer(CpfUtil.generate(), uniqueEmail()));
+        customerService.markHot(hot.getId(), 4);
+        List<Long> streamed = new ArrayList<>();
+        List<Integer> batchSizes = new ArrayList<>();
+        List<Customer> hotStreamed = new ArrayList<>();
+
+        // Act
+        customerService.streamAllCustomers(batch -> {
+            batchSizes.add(batch.size());
+            batch.forEach(customer -> {
+                streamed.add(customer.getId());
+                if (customer.getId().equals(hot.getId())) {
+                    hotStreamed.add(customer);
+                }
+            });
+        });
+
+        // Assert
+        assertEquals(customerRepository.count(), streamed.size());
+        assertEquals(streamed.stream().sorted().toList(), streamed);
+        assertTrue(batchSizes.stream().allMatch(size -> size <= customerProperties.getExportBatchSize()));
+        assertEquals(1, hotStreamed.size());
+        assertEquals(0, new BigDecimal("10.00").compareTo(hotStreamed.get(0).getBalance()));
+    }
+
+    @Test
+    void shouldReturnTheStoredBalanceMarkedStaleWhenTheLedgerCannotAnswer() {
+        // Arrange
+        Customer created = customerService.createCustomer(customer(CpfUtil.generate(), uniqueEmail()));
+        Customer cached = customerService.findCustomerById(created.getId());
+        when(ledgerEngine.findBalance(anyLong())).thenThrow(new TransactionException("Ledger is not running"));
+        when(ledgerEngine.findBalances(anyCollection())).thenThrow(new TransactionException("Ledger is not running"));
+
+        // Act
+        Customer found = customerService.findCustomerById(created.getId());
+        List<Customer> listed = customerService.listCustomers(created.getId() - 1, 1).getCustomers();
+
+        // Assert
+        assertFalse(cached.isBalanceStale());
+        assertTrue(found.isBalanceStale());
+        assertEquals(0, new BigDecimal("10.00").compareTo(found.getBalance()));
+        assertEquals(1, listed.size());
+        assertTrue(listed.get(0).isBalanceStale());
+        assertEquals(0, new BigDecimal("10.00").compareTo(listed.get(0).getBalance()));
+    }
+
+    //region Helpers
+    private double checks(String field, String result) {
+        return meterRegistry.get("bank.customer.bloom.checks").tag("field", field).tag("result", result).counter().count();
+    }
+
+    private static CustomerDTO customer(String cpf, String email) {
+        return CustomerDTO.builder()
+                .name("Bloom Customer")
+                .email(email)
+                .cpf(cpf)
+                .balance(new BigDecimal("10.00"))
+                .build();
+    }
+
+    private static String uniqueEmail() {
+        return UUID.randomUUID() + "@example.com";
+    }
+    //endregion
+}
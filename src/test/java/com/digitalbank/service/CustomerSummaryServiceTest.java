@@ -0,0 +1,212 @@
+package com.digitalbank.service;
+
+import com.digitalbank.dto.BankTransactionRequestDTO;
+import com.digitalbank.dto.CustomerDTO;
+import com.digitalbank.dto.CustomerSummaryDTO;
+import com.digitalbank.entity.BankTransaction;
+import com.digitalbank.entity.Customer;
+import com.digitalbank.entity.enums.BankTransactionStatusEnum;
+import com.digitalbank.exception.custom.CustomerNotFoundException;
+import com.digitalbank.repository.BankTransactionBatchRepository;
+import com.digitalbank.repository.CustomerRepository;
+import com.digitalbank.util.CpfUtil;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:customer_summary_test;MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+        "app.notification.outbox.poll-interval=50",
+        "app.notification.digest.window=0",
+        "app.customer.summary.rebuild-chunk-size=2"
+})
+public class CustomerSummaryServiceTest {
+    private static final long OUTBOX_DRAIN_TIMEOUT_MS = 10000;
+
+    @Autowired
+    private CustomerSummaryService customerSummaryService;
+
+    @Autowired
+    private CustomerService customerService;
+
+    @Autowired
+    private BankTransactionService bankTransactionService;
+
+    @Autowired
+    private BankTransactionBatchRepository bankTransactionBatchRepository;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void shouldKeepTheTotalsOfTransfersAndTheirNotificationsUpToDate() throws InterruptedException {
+        // Arrange
+        Customer first = customerService.createCustomer(customer());
+        Customer second = customerService.createCustomer(customer());
+
+        // Act
+        bankTransactionService.process(transfer(first, second, "10.00"));
+        bankTransactionService.process(transfer(second, first, "2.50"));
+        bankTransactionService.processBatch(List.of(
+                transfer(first, second, "5.00"),
+                transfer(first, second, "1000.00")));
+        awaitOutboxDrained();
+
+        // Assert
+        CustomerSummaryDTO firstSummary = customerSummaryService.findSummary(first.getId());
+        assertEquals(2, firstSummary.getTotalOutgoingTransactions());
+        assertEquals(1, firstSummary.getTotalIncomingTransactions());
+        assertEquals(0, new BigDecimal("15.00").compareTo(firstSummary.getTotalOutgoingAmount()));
+        assertEquals(0, new BigDecimal("2.50").compareTo(firstSummary.getTotalIncomingAmount()));
+        assertEquals(notifications(first), firstSummary.getTotalNotifications());
+        assertTrue(firstSummary.getTotalNotifications() > 0);
+
+        CustomerSummaryDTO secondSummary = customerSummaryService.findSummary(second.getId());
+        assertEquals(1, secondSummary.getTotalOutgoingTransactions());
+        assertEquals(2, secondSummary.getTotalIncomingTransactions());
+        assertEquals(0, new BigDecimal("15.00").compareTo(secondSummary.getTotalIncomingAmount()));
+        assertEquals(notifications(second), secondSummary.getTotalNotifications());
+
+        customerSummaryService.rebuild();
+        assertTotalsEqual(firstSummary, customerSummaryService.findSummary(first.getId()));
+        assertTotalsEqual(secondSummary, customerSummaryService.findSummary(second.getId()));
+    }
+
+    @Test
+    void shouldRebuildRowsWrittenOutsideOfTheServicesWithoutMultiplyingThem() {
+        // Arrange
+        Customer first = saved();
+        Customer second = saved();
+        bankTransactionBatchRepository.insertAll(new ArrayList<>(List.of(
+                transaction(first, second, "3.00", BankTransactionStatusEnum.COMPLETED),
+                transaction(first, second, "3.00", BankTransactionStatusEnum.COMPLETED),
+                transaction(first, second, "100.00", BankTransactionStatusEnum.FAILED),
+                transaction(second, first, "7.00", BankTransactionStatusEnum.COMPLETED),
+                transaction(second, first, "7.00", BankTransactionStatusEnum.COMPLETED))));
+        for (int i = 0; i < 2; i++) {
+            jdbcTemplate.update("INSERT INTO notification (customer_id, message, notification_type) VALUES (?, 'Welcome', 'SYSTEM')",
+                    first.getId());
+        }
+        assertNull(customerSummaryService.findSummary(first.getId()).getUpdatedAt());
+
+        // Act
+        long rebuilt = customerSummaryService.rebuild();
+
+        // Assert
+        assertTrue(rebuilt >= 2);
+        CustomerSummaryDTO summary = customerSummaryService.findSummary(first.getId());
+        assertEquals(3, summary.getTotalOutgoingTransactions());
+        assertEquals(2, summary.getTotalIncomingTransactions());
+        assertEquals(0, new BigDecimal("6.00").compareTo(summary.getTotalOutgoingAmount()));
+        assertEquals(0, new BigDecimal("14.00").compareTo(summary.getTotalIncomingAmount()));
+        assertEquals(2, summary.getTotalNotifications());
+        assertNotNull(summary.getUpdatedAt());
+    }
+
+    @Test
+    void shouldRecountTheCounterpartiesOfADeletedCustomerAndDropRolledBackDeltas() {
+        // Arrange
+        Customer first = customerService.createCustomer(customer());
+        Customer second = customerService.createCustomer(customer());
+        Customer deleted = customerService.createCustomer(customer());
+        bankTransactionService.process(transfer(first, second, "10.00"));
+        bankTransactionService.process(transfer(deleted, second, "4.00"));
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+
+        // Act
+        customerService.deleteCustomer(deleted.getId());
+        transactionTemplate.executeWithoutResult(status -> {
+            customerSummaryService.recordTransactions(List.of(
+                    transaction(first, second, "50.00", BankTransactionStatusEnum.COMPLETED)));
+            status.setRollbackOnly();
+        });
+
+        // Assert
+        CustomerSummaryDTO summary = customerSummaryService.findSummary(second.getId());
+        assertEquals(1, summary.getTotalIncomingTransactions());
+        assertEquals(0, new BigDecimal("10.00").compareTo(summary.getTotalIncomingAmount()));
+        assertEquals(1, customerSummaryService.findSummary(first.getId()).getTotalOutgoingTransactions());
+        assertThrows(CustomerNotFoundException.class, () -> customerSummaryService.findSummary(deleted.getId()));
+    }
+
+    //region Helpers
+    private static CustomerDTO customer() {
+        return CustomerDTO.builder()
+                .name("Summary Customer")
+                .email(UUID.randomUUID() + "@example.com")
+                .cpf(CpfUtil.generate())
+                .balance(new BigDecimal("100.00"))
+                .build();
+    }
+
+    private Customer saved() {
+        return customerRepository.saveAndFlush(Customer.builder()
+                .name("Summary Customer")
+                .email(UUID.randomUUID() + "@example.com")
+                .cpf(CpfUtil.generate())
+                .balance(BigDecimal.ZERO)
+                .build());
+    }
+
+    private static BankTransactionRequestDTO transfer(Customer origin, Customer destination, String amount) {
+        return BankTransactionRequestDTO.builder()
+                .originCustomerId(origin.getId())
+                .destinationCustomerId(destination.getId())
+                .amount(new BigDecimal(amount))
+                .build();
+    }
+
+    private static BankTransaction transaction(Customer origin, Customer destination, String amount,
+                                               BankTransactionStatusEnum status) {
+        return BankTransaction.builder()
+                .originCustomer(origin)
+                .destinationCustomer(destination)
+                .amount(new BigDecimal(amount))
+                .status(status)
+                .transactionDate(Instant.now())
+                .build();
+    }
+
+    private long notifications(Customer customer) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM notification WHERE customer_id = ?", Long.class,
+                customer.getId());
+    }
+
+    private void awaitOutboxDrained() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + OUTBOX_DRAIN_TIMEOUT_MS;
+        while (jdbcTemplate.queryForObject("SELECT COUNT(*) FROM notification_outbox", Long.class) > 0) {
+            assertTrue(System.currentTimeMillis() < deadline, "Outbox not drained");
+            Thread.sleep(50);
+        }
+    }
+
+    private static void assertTotalsEqual(CustomerSummaryDTO expected, CustomerSummaryDTO actual) {
+        assertEquals(expected.getTotalOutgoingTransactions(), actual.getTotalOutgoingTransactions());
+        assertEquals(expected.getTotalIncomingTransactions(), actual.getTotalIncomingTransactions());
+        assertEquals(0, expected.getTotalOutgoingAmount().compareTo(actual.getTotalOutgoingAmount()));
+        assertEquals(0, expected.getTotalIncomingAmount().compareTo(actual.getTotalIncomingAmount()));
+        assertEquals(expected.getTotalNotifications(), actual.getTotalNotifications());
+    }
+    //endregion
+}
@@ -1,20 +1,39 @@
 package com.digitalbank.service;
 
 import com.digitalbank.dto.EmailDTO;
+import com.digitalbank.support.SmtpSink;
+import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
-@SpringBootTest
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:email_test;MODE=PostgreSQL;DB_CLOSE_DELAY=-1")
 public class EmailServiceTest {
+    private static final SmtpSink SMTP_SINK = SmtpSink.start();
 
     @Autowired
     private EmailService emailService;
 
+    @DynamicPropertySource
+    static void smtpProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.mail.port", SMTP_SINK::getPort);
+    }
+
+    @AfterAll
+    static void stopSmtpSink() throws IOException {
+        SMTP_SINK.close();
+    }
+
     @Test
     void shouldSendTestEmail() {
         EmailDTO request = EmailDTO.builder()
@@ -36,4 +55,25 @@ public class EmailServiceTest {
         assertThat(response).isNotNull();
         assertThat(response.isSuccess()).isTrue();
     }
+
+    @Test
+    void shouldDeliverQueuedEmailsOverPooledConnections() {
+        // Arrange
+        int emails = 50;
+        int connectionsBefore = SMTP_SINK.getConnections();
+        int messagesBefore = SMTP_SINK.getMessages();
+
+        // Act
+        List<CompletableFuture<EmailDTO>> responses = new ArrayList<>();
+        for (int i = 0; i < emails; i++) {
+            responses.add(emailService.sendTransferEmail("customer" + i + "@example.com", "Customer " + i,
+                    "Test Sender", "10.00", String.valueOf(i), "17 January 2024, 10:00"));
+        }
+        CompletableFuture.allOf(responses.toArray(CompletableFuture[]::new)).join();
+
+        // Assert
+        assertThat(responses).allMatch(response -> response.join().isSuccess());
+        assertThat(SMTP_SINK.getMessages() - messagesBefore).isEqualTo(emails);
+        assertThat(SMTP_SINK.getConnections() - connectionsBefore).isLessThanOrEqualTo(2);
+    }
 }
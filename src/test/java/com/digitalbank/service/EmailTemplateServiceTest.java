@@ -0,0 +1,68 @@
+package com.digitalbank.service;
+
+import com.digitalbank.service.EmailTemplateService.RenderedEmail;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.thymeleaf.TemplateEngine;
+import org.thymeleaf.context.Context;
+
+import java.time.Year;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+public class EmailTemplateServiceTest {
+
+    @Autowired
+    private EmailTemplateService emailTemplateService;
+
+    @Autowired
+    private TemplateEngine templateEngine;
+
+    @Test
+    void shouldRenderTheCompiledHtmlBodyLikeThymeleaf() {
+        // Arrange
+        Map<String, Object> variables = variables("Ana <Souza> & Co");
+
+        Context context = new Context(Locale.getDefault());
+        context.setVariable("companyName", "Digital Bank");
+        context.setVariable("supportEmail", "support@digitalbank.com");
+        context.setVariable("currentYear", String.valueOf(Year.now().getValue()));
+        context.setVariables(variables);
+
+        // Act
+        RenderedEmail rendered = emailTemplateService.render("transfer-received", variables);
+
+        // Assert
+        assertEquals(templateEngine.process("email/transfer-received.html", context), rendered.html());
+        assertTrue(rendered.html().contains("Ana &lt;Souza&gt; &amp; Co"));
+    }
+
+    @Test
+    void shouldSubstituteTheVariablesOfTheTextBody() {
+        // Act
+        RenderedEmail rendered = emailTemplateService.render("transfer-received", variables("Ana Souza"));
+
+        // Assert
+        assertTrue(rendered.text().contains("Hello Ana Souza,"));
+        assertTrue(rendered.text().contains("You have received a transfer of $150.00 from Bruno Lima."));
+        assertTrue(rendered.text().contains("© " + Year.now().getValue() + " Digital Bank."));
+        assertFalse(rendered.text().contains("${"));
+    }
+
+    //region Helpers
+    private static Map<String, Object> variables(String recipientName) {
+        return Map.of(
+                "recipientName", recipientName,
+                "senderName", "Bruno Lima",
+                "amount", "150.00",
+                "transactionId", "42",
+                "date", "17 January 2024, 10:00");
+    }
+    //endregion
+}
@@ -0,0 +1,128 @@
+package com.digitalbank.service;
+
+import com.digitalbank.dto.BankTransactionRequestDTO;
+import com.digitalbank.dto.BankTransactionResponseDTO;
+import com.digitalbank.entity.Customer;
+import com.digitalbank.exception.custom.IdempotencyKeyConflictException;
+import com.digitalbank.repository.CustomerRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest
+public class IdempotencyServiceTest {
+    private static final int DUPLICATES = 8;
+
+    @Autowired
+    private BankTransactionService bankTransactionService;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void shouldMoveMoneyOnceForConcurrentDuplicates() throws Exception {
+        // Arrange
+        Customer origin = customerRepository.findByEmail("pedro.costa@email.com").orElseThrow();
+        BankTransactionRequestDTO request = transfer(origin.getId(), "10.00");
+        String key = UUID.randomUUID().toString();
+
+        CyclicBarrier barrier = new CyclicBarrier(DUPLICATES);
+        ExecutorService executor = Executors.newFixedThreadPool(DUPLICATES);
+
+        // Act
+        List<Future<BankTransactionResponseDTO>> results = new ArrayList<>();
+        for (int i = 0; i < DUPLICATES; i++) {
+            results.add(executor.submit(() -> {
+                barrier.await(10, TimeUnit.SECONDS);
+                return bankTransactionService.process(request, key);
+            }));
+        }
+
+        executor.shutdown();
+
+        List<Long> transactionIds = new ArrayList<>();
+        for (Future<BankTransactionResponseDTO> result : results) {
+            transactionIds.add(result.get(60, TimeUnit.SECONDS).getId());
+        }
+        BankTransactionResponseDTO replay = bankTransactionService.process(request, key);
+
+        // Assert
+        assertEquals(1, transactionIds.stream().distinct().count());
+        assertEquals(transactionIds.get(0), replay.getId());
+        assertEquals(0, origin.getBalance().subtract(new BigDecimal("10.00"))
+                .compareTo(customerRepository.findById(origin.getId()).orElseThrow().getBalance()));
+    }
+
+    @Test
+    void shouldRejectKeyReusedWithDifferentRequest() {
+        // Arrange
+        Customer origin = customerRepository.findByEmail("pedro.costa@email.com").orElseThrow();
+        String key = UUID.randomUUID().toString();
+        bankTransactionService.process(transfer(origin.getId(), "1.00"), key);
+
+        // Act & Assert
+        assertThrows(IdempotencyKeyConflictException.class,
+                () -> bankTransactionService.process(transfer(origin.getId(), "2.00"), key));
+    }
+
+    @Test
+    void shouldTakeOverAKeyLeftInProgressOnceItsLeaseRanOut() {
+        // Arrange
+        Customer origin = customerRepository.findByEmail("pedro.costa@email.com").orElseThrow();
+        BankTransactionRequestDTO request = transfer(origin.getId(), "3.00");
+        String completedKey = UUID.randomUUID().toString();
+        bankTransactionService.process(request, completedKey);
+        String requestHash = jdbcTemplate.queryForObject(
+                "SELECT request_hash FROM idempotency_key WHERE idempotency_key = ?", String.class, completedKey);
+
+        String abandonedKey = UUID.randomUUID().toString();
+        String inProgressKey = UUID.randomUUID().toString();
+        claim(abandonedKey, requestHash, Instant.now().minus(Duration.ofMinutes(5)));
+        claim(inProgressKey, requestHash, Instant.now());
+        BigDecimal balanceBefore = customerRepository.findById(origin.getId()).orElseThrow().getBalance();
+
+        // Act
+        BankTransactionResponseDTO response = bankTransactionService.process(request, abandonedKey);
+
+        // Assert
+        assertEquals(0, balanceBefore.subtract(new BigDecimal("3.00"))
+                .compareTo(customerRepository.findById(origin.getId()).orElseThrow().getBalance()));
+        assertEquals(response.getId(), bankTransactionService.process(request, abandonedKey).getId());
+        assertThrows(IdempotencyKeyConflictException.class, () -> bankTransactionService.process(request, inProgressKey));
+    }
+
+    //region Helpers
+    private void claim(String key, String requestHash, Instant claimedAt) {
+        jdbcTemplate.update("INSERT INTO idempotency_key (idempotency_key, request_hash, created_at, claimed_at) " +
+                "VALUES (?, ?, ?, ?)", key, requestHash, Timestamp.from(claimedAt), Timestamp.from(claimedAt));
+    }
+
+    private BankTransactionRequestDTO transfer(Long origin, String amount) {
+        return BankTransactionRequestDTO.builder()
+                .originCustomerId(origin)
+                .destinationCustomerId(customerRepository.findByEmail("carlos.oliveira@email.com").orElseThrow().getId())
+                .amount(new BigDecimal(amount))
+                .build();
+    }
+    //endregion
+}
@@ -0,0 +1,107 @@
+package com.digitalbank.service;
+
+import com.digitalbank.dto.BankTransactionRequestDTO;
+import com.digitalbank.entity.Customer;
+import com.digitalbank.repository.CustomerRepository;
+import com.digitalbank.support.SmtpSink;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+        "app.notification.outbox.poll-interval=50",
+        "app.notification.digest.window=0",
+        "app.email.notification.email.retry.max-attempts=3",
+        "app.email.notification.email.retry.delay=200",
+        "app.email.notification.email.retry.multiplier=1",
+        "app.email.notification.email.retry.poll-interval=50",
+        "spring.datasource.url=jdbc:h2:mem:notification_retry_test;MODE=PostgreSQL;DB_CLOSE_DELAY=-1"
+})
+public class NotificationRetrySchedulerTest {
+    private static final int SMTP_PORT = SmtpSink.freePort();
+    private static final String DELIVERY_SQL = "SELECT delivery_status, delivery_attempts, is_sent, next_attempt_at " +
+            "FROM notification WHERE bank_transaction_id = ? AND notification_type = 'TRANSFER_RECEIVED'";
+
+    @Autowired
+    private BankTransactionService bankTransactionService;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @DynamicPropertySource
+    static void smtpProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.mail.port", () -> SMTP_PORT);
+    }
+
+    @Test
+    void shouldRetryFailedEmailsAndDeadLetterThemAfterTheLastAttempt() throws Exception {
+        // Arrange
+        List<Customer> customers = customerRepository.findAll();
+
+        // Act
+        long deadLettered = transfer(customers);
+        Map<String, Object> deadLetter = awaitDelivery(deadLettered, row -> "DEAD_LETTER".equals(row.get("delivery_status")));
+
+        long retried = transfer(customers);
+        Map<String, Object> failedOnce = awaitDelivery(retried, row -> ((Number) row.get("delivery_attempts")).intValue() >= 1);
+
+        Map<String, Object> sent;
+        try (SmtpSink smtpSink = SmtpSink.start(SMTP_PORT)) {
+            sent = awaitDelivery(retried, row -> "SENT".equals(row.get("delivery_status")));
+            assertTrue(smtpSink.getMessages() >= 1);
+        }
+
+        // Assert
+        assertEquals(3, ((Number) deadLetter.get("delivery_attempts")).intValue());
+        assertEquals(false, deadLetter.get("is_sent"));
+        assertEquals(null, deadLetter.get("next_attempt_at"));
+
+        assertEquals("PENDING", failedOnce.get("delivery_status"));
+
+        assertEquals(true, sent.get("is_sent"));
+        assertTrue(((Number) sent.get("delivery_attempts")).intValue() >= 2);
+        assertEquals("DEAD_LETTER", delivery(deadLettered).get("delivery_status"));
+    }
+
+    //region Helpers
+    private long transfer(List<Customer> customers) {
+        return bankTransactionService.process(BankTransactionRequestDTO.builder()
+                .originCustomerId(customers.get(0).getId())
+                .destinationCustomerId(customers.get(1).getId())
+                .amount(new BigDecimal("1.00"))
+                .build()).getId();
+    }
+
+    private Map<String, Object> awaitDelivery(long bankTransactionId, Predicate<Map<String, Object>> condition)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (System.currentTimeMillis() < deadline) {
+            List<Map<String, Object>> rows = jdbcTemplate.queryForList(DELIVERY_SQL, bankTransactionId);
+            if (!rows.isEmpty() && condition.test(rows.getFirst())) {
+                return rows.getFirst();
+            }
+            Thread.sleep(20);
+        }
+        throw new AssertionError("Notification of transaction " + bankTransactionId + " did not reach the expected state: "
+                + jdbcTemplate.queryForList(DELIVERY_SQL, bankTransactionId));
+    }
+
+    private Map<String, Object> delivery(long bankTransactionId) {
+        return jdbcTemplate.queryForMap(DELIVERY_SQL, bankTransactionId);
+    }
+    //endregion
+}
@@ -0,0 +1,126 @@
+package com.digitalbank.service;
+
+import com.digitalbank.dto.BankTransactionRequestDTO;
+import com.digitalbank.entity.Customer;
+import com.digitalbank.repository.CustomerRepository;
+import com.digitalbank.repository.NotificationOutboxRepository.OutboxEntry;
+import com.digitalbank.support.SmtpSink;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest(properties = {
+        "app.notification.outbox.poll-interval=50",
+        "app.notification.digest.window=1500",
+        "app.email.notification.email.retry.poll-interval=50",
+        "spring.datasource.url=jdbc:h2:mem:notification_digest_test;MODE=PostgreSQL;DB_CLOSE_DELAY=-1"
+})
+public class NotificationServiceTest {
+    private static final SmtpSink SMTP_SINK = SmtpSink.start();
+    private static final String RECEIVED_SQL = "SELECT notification_type, transfer_count, amount, delivery_status " +
+            "FROM notification WHERE customer_id = ? AND notification_type IN ('TRANSFER_RECEIVED', 'TRANSFER_DIGEST') " +
+            "ORDER BY id";
+
+    @Autowired
+    private BankTransactionService bankTransactionService;
+
+    @Autowired
+    private NotificationService notificationService;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @DynamicPropertySource
+    static void smtpProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.mail.port", SMTP_SINK::getPort);
+    }
+
+    @AfterAll
+    static void stopSmtpSink() throws IOException {
+        SMTP_SINK.close();
+    }
+
+    @Test
+    void shouldEmailTheFirstTransferAndMergeTheBurstAfterItIntoOneDigest() throws Exception {
+        // Arrange
+        List<Customer> customers = customerRepository.findAll();
+        long recipientId = customers.get(1).getId();
+        int messagesBefore = SMTP_SINK.getMessages();
+
+        // Act
+        transfer(customers, "1.00");
+        awaitReceived(recipientId, rows -> rows.size() == 1 && "SENT".equals(rows.getFirst().get("delivery_status")));
+
+        for (int i = 0; i < 5; i++) {
+            transfer(customers, "2.00");
+        }
+        List<Map<String, Object>> received = awaitReceived(recipientId,
+                rows -> rows.size() == 2 && "SENT".equals(rows.get(1).get("delivery_status")));
+
+        // Assert
+        assertEquals("TRANSFER_RECEIVED", received.get(0).get("notification_type"));
+        assertEquals(1, ((Number) received.get(0).get("transfer_count")).intValue());
+
+        assertEquals("TRANSFER_DIGEST", received.get(1).get("notification_type"));
+        assertEquals(5, ((Number) received.get(1).get("transfer_count")).intValue());
+        assertEquals(0, new BigDecimal("10.00").compareTo((BigDecimal) received.get(1).get("amount")));
+
+        assertEquals(2, SMTP_SINK.getMessages() - messagesBefore);
+        assertEquals(6, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM notification WHERE customer_id = ? " +
+                "AND notification_type = 'TRANSFER_SENT'", Integer.class, customers.get(0).getId()));
+    }
+
+    @Test
+    void shouldSkipAClaimedEntryWhoseTransactionWasDeletedSinceTheClaim() {
+        // Arrange
+        long notificationsBefore = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM notification", Long.class);
+        OutboxEntry deleted = new OutboxEntry(-1, -1, -1, -2, "Deleted Origin", "Deleted Recipient",
+                "deleted@example.com", new BigDecimal("1.00"), Instant.now());
+
+        // Act
+        notificationService.dispatch(List.of(deleted)).join();
+
+        // Assert
+        assertEquals(notificationsBefore, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM notification", Long.class));
+    }
+
+    //region Helpers
+    private void transfer(List<Customer> customers, String amount) {
+        bankTransactionService.process(BankTransactionRequestDTO.builder()
+                .originCustomerId(customers.get(0).getId())
+                .destinationCustomerId(customers.get(1).getId())
+                .amount(new BigDecimal(amount))
+                .build());
+    }
+
+    private List<Map<String, Object>> awaitReceived(long customerId, Predicate<List<Map<String, Object>>> condition)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (System.currentTimeMillis() < deadline) {
+            List<Map<String, Object>> rows = jdbcTemplate.queryForList(RECEIVED_SQL, customerId);
+            if (condition.test(rows)) {
+                return rows;
+            }
+            Thread.sleep(20);
+        }
+        throw new AssertionError("Notifications of customer " + customerId + " did not reach the expected state: "
+                + jdbcTemplate.queryForList(RECEIVED_SQL, customerId));
+    }
+    //endregion
+}
@@ -0,0 +1,81 @@
+package com.digitalbank.service;
+
+import com.digitalbank.dto.BankTransactionRequestDTO;
+import com.digitalbank.entity.Customer;
+import com.digitalbank.repository.CustomerRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+public class StripedBalanceServiceTest {
+    private static final int TRANSFERS_PER_SENDER = 40;
+
+    @Autowired
+    private BankTransactionService bankTransactionService;
+
+    @Autowired
+    private CustomerService customerService;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Test
+    void shouldKeepHotAccountBalanceAcrossConcurrentCreditsAndSweepingDebit() throws Exception {
+        // Arrange
+        Customer admin = customerRepository.findByEmail("admin@digitalbank.com").orElseThrow();
+        List<Customer> senders = List.of(
+                customerRepository.findByEmail("carlos.oliveira@email.com").orElseThrow(),
+                customerRepository.findByEmail("ana.santos@email.com").orElseThrow(),
+                customerRepository.findByEmail("pedro.costa@email.com").orElseThrow());
+        BigDecimal adminBefore = customerService.findCustomerById(admin.getId()).getBalance();
+
+        ExecutorService executor = Executors.newFixedThreadPool(senders.size());
+
+        // Act
+        List<Future<?>> results = new ArrayList<>();
+        for (Customer sender : senders) {
+            results.add(executor.submit(() -> {
+                for (int i = 0; i < TRANSFERS_PER_SENDER; i++) {
+                    bankTransactionService.process(transfer(sender.getId(), admin.getId(), "1.00"));
+                }
+            }));
+        }
+
+        executor.shutdown();
+        for (Future<?> result : results) {
+            result.get(60, TimeUnit.SECONDS);
+        }
+
+        BigDecimal received = new BigDecimal("1.00").multiply(BigDecimal.valueOf((long) TRANSFERS_PER_SENDER * senders.size()));
+        Customer adminAfterCredits = customerService.findCustomerById(admin.getId());
+
+        bankTransactionService.process(transfer(admin.getId(), senders.get(0).getId(), "100.00"));
+
+        // Assert
+        assertTrue(adminAfterCredits.isHot());
+        assertEquals(0, adminBefore.add(received).compareTo(adminAfterCredits.getBalance()));
+        assertEquals(0, adminBefore.compareTo(customerRepository.findById(admin.getId()).orElseThrow().getBalance()));
+        assertEquals(0, adminBefore.add(received).subtract(new BigDecimal("100.00"))
+                .compareTo(customerService.findCustomerById(admin.getId()).getBalance()));
+    }
+
+    private BankTransactionRequestDTO transfer(Long origin, Long destination, String amount) {
+        return BankTransactionRequestDTO.builder()
+                .originCustomerId(origin)
+                .destinationCustomerId(destination)
+                .amount(new BigDecimal(amount))
+                .build();
+    }
+}
@@ -0,0 +1,140 @@
+package com.digitalbank.service.ledger;
+
+import com.digitalbank.dto.BankTransactionRequestDTO;
+import com.digitalbank.dto.BankTransactionResponseDTO;
+import com.digitalbank.entity.Customer;
+import com.digitalbank.exception.custom.InsufficientBalanceException;
+import com.digitalbank.repository.BankTransactionRepository;
+import com.digitalbank.repository.CustomerRepository;
+import com.digitalbank.repository.LedgerCheckpointRepository;
+import com.digitalbank.service.CustomerService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+        "app.ledger.enabled=true",
+        "app.ledger.shards=4",
+        "app.ledger.journal.enabled=true",
+        "app.ledger.journal.directory=${java.io.tmpdir}/digital-bank-test/${random.uuid}",
+        "spring.datasource.url=jdbc:h2:mem:ledger_test;MODE=PostgreSQL;DB_CLOSE_DELAY=-1"
+})
+public class LedgerEngineTest {
+    private static final int TRANSFERS = 2000;
+
+    @Autowired
+    private LedgerEngine ledgerEngine;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private BankTransactionRepository bankTransactionRepository;
+
+    @Autowired
+    private LedgerCheckpointRepository ledgerCheckpointRepository;
+
+    @Autowired
+    private CustomerService customerService;
+
+    @Test
+    void shouldApplyConcurrentTransfersAcrossShardsAndPersistThem() throws Exception {
+        // Arrange
+        List<Customer> customers = customerRepository.findAll();
+        Map<Long, BigDecimal> expected = new HashMap<>();
+        customers.forEach(customer -> expected.put(customer.getId(), customer.getBalance()));
+        long transactionsBefore = bankTransactionRepository.count();
+
+        // Act
+        List<CompletableFuture<BankTransactionResponseDTO>> results = IntStream.range(0, TRANSFERS)
+                .parallel()
+                .mapToObj(i -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    int origin = random.nextInt(customers.size());
+                    int destination = (origin + 1 + random.nextInt(customers.size() - 1)) % customers.size();
+                    return ledgerEngine.submit(BankTransactionRequestDTO.builder()
+                            .originCustomerId(customers.get(origin).getId())
+                            .destinationCustomerId(customers.get(destination).getId())
+                            .amount(new BigDecimal("3.00"))
+                            .build());
+                })
+                .toList();
+
+        int succeeded = 0;
+        for (CompletableFuture<BankTransactionResponseDTO> result : results) {
+            try {
+                BankTransactionResponseDTO response = result.join();
+                expected.merge(response.getOriginCustomerId(), response.getAmount().negate(), BigDecimal::add);
+                expected.merge(response.getDestinationCustomerId(), response.getAmount(), BigDecimal::add);
+                succeeded++;
+            } catch (Exception e) {
+                // insufficient balance on an account drained by earlier transfers
+            }
+        }
+
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (bankTransactionRepository.count() < transactionsBefore + succeeded && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+
+        // Assert
+        assertEquals(transactionsBefore + succeeded, bankTransactionRepository.count());
+        assertTrue(ledgerCheckpointRepository.findJournalOffset() >= (long) succeeded * TransactionJournal.HEADER_SIZE);
+        for (Customer customer : customerRepository.findAll()) {
+            assertEquals(0, expected.get(customer.getId()).compareTo(customer.getBalance()),
+                    "Balance of customer " + customer.getId());
+        }
+    }
+
+    @Test
+    void shouldRejectTransferWithInsufficientBalance() {
+        Customer admin = customerRepository.findByEmail("admin@digitalbank.com").orElseThrow();
+        Customer john = customerRepository.findByEmail("john.smith@email.com").orElseThrow();
+
+        assertThrows(InsufficientBalanceException.class, () -> ledgerEngine.transfer(BankTransactionRequestDTO.builder()
+                .originCustomerId(admin.getId())
+                .destinationCustomerId(john.getId())
+                .amount(new BigDecimal("1000000.00"))
+                .build()));
+    }
+
+    @Test
+    void shouldReadTheBalanceOfACachedCustomerFromTheLedger() {
+        // Arrange
+        List<Customer> customers = customerRepository.findAll();
+        Customer richest = customers.stream().max(Comparator.comparing(Customer::getBalance)).orElseThrow();
+        Customer other = customers.stream().filter(customer -> !customer.getId().equals(richest.getId())).findFirst().orElseThrow();
+        BigDecimal before = customerService.findCustomerById(other.getId()).getBalance();
+
+        // Act
+        ledgerEngine.transfer(transfer(richest, other));
+        BigDecimal after = customerService.findCustomerById(other.getId()).getBalance();
+        ledgerEngine.transfer(transfer(other, richest));
+
+        // Assert
+        assertEquals(0, before.add(new BigDecimal("1.00")).compareTo(after));
+    }
+
+    //region Helpers
+    private static BankTransactionRequestDTO transfer(Customer origin, Customer destination) {
+        return BankTransactionRequestDTO.builder()
+                .originCustomerId(origin.getId())
+                .destinationCustomerId(destination.getId())
+                .amount(new BigDecimal("1.00"))
+                .build();
+    }
+    //endregion
+}
@@ -0,0 +1,177 @@
+package com.digitalbank.service.ledger;
+
+import com.digitalbank.dto.BankTransactionRequestDTO;
+import com.digitalbank.dto.BankTransactionResponseDTO;
+import com.digitalbank.dto.CustomerDTO;
+import com.digitalbank.entity.Customer;
+import com.digitalbank.repository.BankTransactionRepository;
+import com.digitalbank.repository.CustomerRepository;
+import com.digitalbank.repository.IdempotencyKeyRepository;
+import com.digitalbank.service.BankTransactionService;
+import com.digitalbank.service.CustomerService;
+import com.digitalbank.util.CpfUtil;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+
+@SpringBootTest(properties = {
+        "app.ledger.enabled=true",
+        "app.ledger.flush.interval=3600000",
+        "spring.datasource.url=jdbc:h2:mem:ledger_persister_test;MODE=PostgreSQL;DB_CLOSE_DELAY=-1"
+})
+public class LedgerPersisterTest {
+    @Autowired
+    private LedgerEngine ledgerEngine;
+
+    @Autowired
+    private LedgerPersister ledgerPersister;
+
+    @Autowired
+    private CustomerService customerService;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private BankTransactionRepository bankTransactionRepository;
+
+    @Autowired
+    private BankTransactionService bankTransactionService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @SpyBean
+    private IdempotencyKeyRepository idempotencyKeyRepository;
+
+    @Test
+    void shouldPersistTheTransfersAfterOneToACustomerDeletedBeforeItWasWritten() {
+        // Arrange
+        Customer origin = customerService.createCustomer(customer("100.00"));
+        Customer deleted = customerService.createCustomer(customer("0.00"));
+        Customer destination = customerService.createCustomer(customer("0.00"));
+        long transactionsBefore = bankTransactionRepository.count();
+
+        ledgerEngine.transfer(transfer(origin, deleted));
+        customerService.deleteCustomer(deleted.getId());
+        ledgerEngine.transfer(transfer(origin, destination));
+
+        // Act
+        ledgerPersister.replay(List.of());
+
+        // Assert
+        assertEquals(transactionsBefore + 1, bankTransactionRepository.count());
+        assertEquals(0, new BigDecimal("98.00").compareTo(balance(origin)));
+        assertEquals(0, new BigDecimal("1.00").compareTo(balance(destination)));
+    }
+
+    @Test
+    void shouldStoreTheResponseOfAnIdempotencyKeyWithItsLedgerTransfer() {
+        // Arrange
+        Customer origin = customerService.createCustomer(customer("100.00"));
+        Customer destination = customerService.createCustomer(customer("0.00"));
+        String key = UUID.randomUUID().toString();
+
+        // Act
+        BankTransactionResponseDTO response = bankTransactionService.process(transfer(origin, destination), key);
+        String beforePersisting = storedResponse(key);
+        ledgerPersister.replay(List.of());
+
+        // Assert
+        assertNull(beforePersisting);
+        assertNotNull(storedResponse(key));
+        assertTrue(bankTransactionRepository.existsById(response.getId()));
+    }
+
+    @Test
+    void shouldNotRunALedgerTransferAgainWhenStoringItsIdempotencyKeyFails() {
+        // Arrange
+        Customer origin = customerService.createCustomer(customer("100.00"));
+        Customer destination = customerService.createCustomer(customer("0.00"));
+        String key = UUID.randomUUID().toString();
+        doReturn(false).when(idempotencyKeyRepository).complete(eq(key), anyString());
+        long transactionsBefore = bankTransactionRepository.count();
+
+        // Act
+        BankTransactionResponseDTO first = bankTransactionService.process(transfer(origin, destination), key);
+        ledgerPersister.replay(List.of());
+        BankTransactionResponseDTO retry = bankTransactionService.process(transfer(origin, destination), key);
+        ledgerPersister.replay(List.of());
+
+        // Assert
+        assertEquals(first.getId(), retry.getId());
+        assertEquals(transactionsBefore + 1, bankTransactionRepository.count());
+        assertEquals(0, new BigDecimal("99.00").compareTo(balance(origin)));
+        assertEquals(0, new BigDecimal("1.00").compareTo(balance(destination)));
+    }
+
+    @Test
+    void shouldListTheLedgerBalancesOfTransfersNotPersistedYet() {
+        // Arrange
+        Customer origin = customerService.createCustomer(customer("100.00"));
+        Customer destination = customerService.createCustomer(customer("0.00"));
+        ledgerEngine.transfer(transfer(origin, destination));
+        List<Customer> streamed = new ArrayList<>();
+
+        // Act
+        List<Customer> page = customerService.listCustomers(origin.getId() - 1, 2).getCustomers();
+        customerService.streamAllCustomers(streamed::addAll);
+
+        // Assert
+        assertEquals(0, new BigDecimal("100.00").compareTo(balance(origin)));
+        assertEquals(0, new BigDecimal("99.00").compareTo(listedBalance(page, origin)));
+        assertEquals(0, new BigDecimal("1.00").compareTo(listedBalance(page, destination)));
+        assertEquals(0, new BigDecimal("99.00").compareTo(listedBalance(streamed, origin)));
+        assertEquals(0, new BigDecimal("1.00").compareTo(listedBalance(streamed, destination)));
+    }
+
+    //region Helpers
+    private static CustomerDTO customer(String balance) {
+        return CustomerDTO.builder()
+                .name("Ledger Customer")
+                .email(UUID.randomUUID() + "@example.com")
+                .cpf(CpfUtil.generate())
+                .balance(new BigDecimal(balance))
+                .build();
+    }
+
+    private static BankTransactionRequestDTO transfer(Customer origin, Customer destination) {
+        return BankTransactionRequestDTO.builder()
+                .originCustomerId(origin.getId())
+                .destinationCustomerId(destination.getId())
+                .amount(new BigDecimal("1.00"))
+                .build();
+    }
+
+    private BigDecimal balance(Customer customer) {
+        return customerRepository.findById(customer.getId()).orElseThrow().getBalance();
+    }
+
+    private static BigDecimal listedBalance(List<Customer> listed, Customer customer) {
+        return listed.stream()
+                .filter(c -> c.getId().equals(customer.getId()))
+                .findFirst()
+                .orElseThrow()
+                .getBalance();
+    }
+
+    private String storedResponse(String key) {
+        return jdbcTemplate.queryForObject("SELECT response FROM idempotency_key WHERE idempotency_key = ?", String.class, key);
+    }
+    //endregion
+}
@@ -0,0 +1,151 @@
+package com.digitalbank.service.ledger;
+
+import com.digitalbank.util.Money;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TransactionJournalTest {
+    private static final int SEGMENT_SIZE = 4096;
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    void shouldRecoverEntriesAfterTheProjectedOffsetAcrossSegments() throws Exception {
+        // Arrange
+        List<LedgerEntry> written = appendAll(new TransactionJournal(directory, SEGMENT_SIZE), 200, 0);
+        long projected = written.get(99).journalOffset();
+
+        // Act
+        List<LedgerEntry> recovered = new TransactionJournal(directory, SEGMENT_SIZE).recover(projected);
+
+        // Assert
+        assertTrue(segmentCount() > 1);
+        assertEquals(written.subList(100, 200), recovered);
+    }
+
+    @Test
+    void shouldDiscardTornRecordAndKeepAppendingAfterTheLastValidOne() throws Exception {
+        // Arrange
+        List<LedgerEntry> written = appendAll(new TransactionJournal(directory, SEGMENT_SIZE), 3, 0);
+        corrupt(written.get(1).journalOffset() + 20);
+
+        // Act
+        TransactionJournal journal = new TransactionJournal(directory, SEGMENT_SIZE);
+        List<LedgerEntry> recovered = journal.recover(0);
+        List<LedgerEntry> appended = append(journal, 1, 100);
+        List<LedgerEntry> afterRestart = new TransactionJournal(directory, SEGMENT_SIZE).recover(0);
+
+        // Assert
+        assertEquals(written.subList(0, 2), recovered);
+        // Both records have the same length, so the new one takes exactly the place of the torn one
+        assertEquals(written.get(2).journalOffset(), appended.get(0).journalOffset());
+        assertEquals(List.of(written.get(0), written.get(1), appended.get(0)), afterRestart);
+    }
+
+    @Test
+    void shouldFailTheUnforcedEntriesOfAFailedGroupAndEveryLaterOne() throws Exception {
+        // Arrange
+        TransactionJournal journal = new TransactionJournal(directory, SEGMENT_SIZE);
+        journal.recover(0);
+        List<LedgerEntry> durable = Collections.synchronizedList(new ArrayList<>());
+        List<Long> failed = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(4);
+        String oversize = "x".repeat(TransactionJournal.MAX_DESCRIPTION_BYTES + 1);
+
+        // Queued before the writer starts, so the three are written as one group
+        for (LedgerEntry entry : List.of(entry(0), entry(1, oversize), entry(2))) {
+            journal.append(entry, record(durable, done), e -> record(failed, entry, done));
+        }
+
+        // Act
+        journal.start();
+        while (done.getCount() > 1) {
+            Thread.sleep(1);
+        }
+        LedgerEntry later = entry(3);
+        journal.append(later, record(durable, done), e -> record(failed, later, done));
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        journal.stop();
+
+        // Assert
+        assertTrue(journal.isFailed());
+        assertEquals(List.of(), durable);
+        assertEquals(List.of(0L, 1L, 2L, 3L), failed);
+        // The first entry was written before the failure but never forced, so it is erased too
+        assertEquals(List.of(), new TransactionJournal(directory, SEGMENT_SIZE).recover(0));
+    }
+
+    private List<LedgerEntry> appendAll(TransactionJournal journal, int count, long firstId) throws Exception {
+        journal.recover(0);
+        return append(journal, count, firstId);
+    }
+
+    private List<LedgerEntry> append(TransactionJournal journal, int count, long firstId) throws Exception {
+        List<LedgerEntry> durable = new ArrayList<>();
+        CountDownLatch done = new CountDownLatch(count);
+        journal.start();
+
+        for (int i = 0; i < count; i++) {
+            journal.append(entry(firstId + i), record(durable, done), e -> {
+                throw new AssertionError("Journal failed", e);
+            });
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        journal.stop();
+        return durable;
+    }
+
+    private static Consumer<LedgerEntry> record(List<LedgerEntry> durable, CountDownLatch done) {
+        return entry -> {
+            durable.add(entry);
+            done.countDown();
+        };
+    }
+
+    private static void record(List<Long> failed, LedgerEntry entry, CountDownLatch done) {
+        failed.add(entry.transactionId());
+        done.countDown();
+    }
+
+    private LedgerEntry entry(long transactionId) {
+        return entry(transactionId, "Transfer " + transactionId);
+    }
+
+    private LedgerEntry entry(long transactionId, String description) {
+        return new LedgerEntry(LedgerEntry.Kind.TRANSFER, transactionId, 1, 51,
+                Money.ofCents(100 + transactionId), description, transactionId % 2 == 1 ? "key-" + transactionId : null,
+                Instant.ofEpochSecond(1_700_000_000L + transactionId, 123_456_789), 0);
+    }
+
+    private void corrupt(long offset) throws IOException {
+        try (FileChannel channel = FileChannel.open(directory.resolve(String.format("%020d.journal", 0)), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{0x7f}), offset);
+        }
+    }
+
+    private long segmentCount() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.digitalbank.support;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Minimal in-process SMTP server for tests and benchmarks. It accepts every message on a random local port,
+ * counts it and drops it, so delivery can be exercised without MailHog or any other external server.
+ */
+public final class SmtpSink implements AutoCloseable {
+    private final ServerSocket serverSocket;
+    private final AtomicInteger messages = new AtomicInteger();
+    private final AtomicInteger connections = new AtomicInteger();
+
+    private SmtpSink(ServerSocket serverSocket) {
+        this.serverSocket = serverSocket;
+    }
+
+    public static SmtpSink start() {
+        return start(0);
+    }
+
+    /**
+     * Start on the given port, zero for any free port
+     */
+    public static SmtpSink start(int port) {
+        try {
+            SmtpSink sink = new SmtpSink(new ServerSocket(port, 50, InetAddress.getLoopbackAddress()));
+            Thread.ofPlatform().name("smtp-sink").daemon().start(sink::accept);
+            return sink;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * A free local port with nothing listening on it, for tests where the SMTP host is down
+     */
+    public static int freePort() {
+        try (ServerSocket socket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            return socket.getLocalPort();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public int getMessages() {
+        return messages.get();
+    }
+
+    public int getConnections() {
+        return connections.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+    }
+
+    //region Helpers
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                connections.incrementAndGet();
+                Thread.ofPlatform().name("smtp-sink-connection").daemon().start(() -> serve(socket));
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+             OutputStream out = socket.getOutputStream()) {
+
+            reply(out, "220 localhost SMTP sink");
+
+            String line;
+            while ((line = in.readLine()) != null) {
+                String command = line.length() < 4 ? line : line.substring(0, 4).toUpperCase(Locale.ROOT);
+                switch (command) {
+                    case "EHLO", "HELO" -> reply(out, "250 localhost");
+                    case "MAIL", "RCPT", "RSET", "NOOP" -> reply(out, "250 OK");
+                    case "DATA" -> {
+                        reply(out, "354 End data with <CR><LF>.<CR><LF>");
+                        while ((line = in.readLine()) != null && !line.equals(".")) {
+                            // Message content is discarded
+                        }
+                        messages.incrementAndGet();
+                        reply(out, "250 OK");
+                    }
+                    case "QUIT" -> {
+                        reply(out, "221 Bye");
+                        return;
+                    }
+                    default -> reply(out, "502 Command not implemented");
+                }
+            }
+        } catch (IOException e) {
+            // Client went away
+        }
+    }
+
+    private static void reply(OutputStream out, String line) throws IOException {
+        out.write((line + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+    //endregion
+}
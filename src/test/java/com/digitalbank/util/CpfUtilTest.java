@@ -0,0 +1,68 @@
+package com.digitalbank.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CpfUtilTest {
+
+    @Test
+    void shouldValidateFormattedAndNumericCpfs() {
+        // Arrange
+        String cpf = CpfUtil.generate();
+        String formatted = CpfUtil.format(cpf);
+        byte[] bytes = ("x" + formatted + "x").getBytes(StandardCharsets.US_ASCII);
+
+        // Act & Assert
+        assertTrue(CpfUtil.isValid(cpf));
+        assertTrue(CpfUtil.isValid(formatted));
+        assertTrue(CpfUtil.isValid(new StringBuilder(formatted)));
+        assertTrue(CpfUtil.isValid(bytes, 1, bytes.length - 1));
+
+        assertFalse(CpfUtil.isValid((String) null));
+        assertFalse(CpfUtil.isValid("   "));
+        assertFalse(CpfUtil.isValid("111.111.111-11"));
+        assertFalse(CpfUtil.isValid(cpf.substring(0, 10)));
+        assertFalse(CpfUtil.isValid(cpf + "0"));
+        assertFalse(CpfUtil.isValid(cpf.substring(0, 10) + (cpf.charAt(10) == '9' ? '0' : (char) (cpf.charAt(10) + 1))));
+    }
+
+    @Test
+    void shouldReturnTheValidEntriesOfAColumn() {
+        // Arrange
+        List<String> column = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            column.add(i % 3 == 0 ? "123.456.789-00" : CpfUtil.format(CpfUtil.generate()));
+        }
+        byte[] lines = (String.join("\r\n", column) + "\n").getBytes(StandardCharsets.US_ASCII);
+
+        // Act
+        BitSet valid = CpfUtil.validateAll(column);
+        BitSet validLines = CpfUtil.validateLines(lines);
+
+        // Assert
+        for (int i = 0; i < column.size(); i++) {
+            assertEquals(i % 3 != 0, valid.get(i), column.get(i));
+        }
+        assertEquals(valid, validLines);
+    }
+
+    @Test
+    void shouldOnlyAllocateWhenNormalizingRemovesCharacters() {
+        // Arrange
+        String cpf = CpfUtil.generate();
+
+        // Act & Assert
+        assertSame(cpf, CpfUtil.normalize(cpf));
+        assertEquals(cpf, CpfUtil.normalize(CpfUtil.format(cpf)));
+        assertEquals(" ", CpfUtil.normalize(" "));
+    }
+}